@@ -0,0 +1,144 @@
+package com.lucap.scubakeep.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact, thread-safe set of strings that answers "possibly present" or
+ * "definitely absent".
+ * <p>
+ * Sized for an expected number of entries and false positive rate: about 14.4 bits per
+ * entry at 0.1%, whatever the length of the values. Each value sets {@code k} bits
+ * derived from one 64-bit hash (double hashing). Bits are set with compare-and-set,
+ * so adds and lookups need no lock. Values cannot be removed; rebuild the filter
+ * instead. Once more entries than expected were added, the false positive rate
+ * grows, see {@link #isSaturated()}.
+ */
+public final class BloomFilter {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final int expectedEntries;
+    private final AtomicInteger entries = new AtomicInteger();
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expectedEntries   the number of values the filter is sized for
+     * @param falsePositiveRate the wanted false positive rate at that size (0 to 1)
+     */
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        if (expectedEntries < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedEntries must be positive and "
+                    + "falsePositiveRate between 0 and 1");
+        }
+        double bitsPerEntry = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        int wordCount = (int) Math.ceil(expectedEntries * bitsPerEntry / Long.SIZE);
+
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round(bitsPerEntry * Math.log(2)));
+        this.expectedEntries = expectedEntries;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value to add
+     */
+    public void add(String value) {
+        long hash = hash(value);
+        long h1 = mix(hash);
+        long h2 = mix(hash + GOLDEN_GAMMA) | 1;
+
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            changed |= setBit(Math.floorMod(h1 + i * h2, bitCount));
+        }
+        if (changed) {
+            entries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Checks whether a value may have been added.
+     *
+     * @param value the value to look up
+     * @return false if the value was never added; true if it probably was
+     */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        long h1 = mix(hash);
+        long h2 = mix(hash + GOLDEN_GAMMA) | 1;
+
+        for (int i = 0; i < hashCount; i++) {
+            if (!getBit(Math.floorMod(h1 + i * h2, bitCount))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the approximate number of distinct values added (duplicates, and values
+     * whose bits were all set already, are not counted).
+     *
+     * @return the approximate number of entries
+     */
+    public int size() {
+        return entries.get();
+    }
+
+    /**
+     * Tells whether more entries were added than the filter was sized for, so its false
+     * positive rate is above the configured one.
+     *
+     * @return true if the filter should be rebuilt with a larger size
+     */
+    public boolean isSaturated() {
+        return entries.get() > expectedEntries;
+    }
+
+    private boolean setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    private boolean getBit(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the UTF-16 code units of a value.
+     */
+    private static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreading every input bit over the whole result.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
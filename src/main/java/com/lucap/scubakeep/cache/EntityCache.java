@@ -0,0 +1,59 @@
+package com.lucap.scubakeep.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lucap.scubakeep.dto.DiveLogResponseDTO;
+import com.lucap.scubakeep.dto.DiverResponseDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * In-process caches of the single dive log and diver responses.
+ * <p>
+ * Both caches are bounded by size and expire entries a fixed time after they were
+ * loaded. Services invalidate an entry after committing any change to the data it
+ * was built from (see {@link ReadThroughCache}). The caches are local to each
+ * instance: with several instances, a write is seen by the others at the latest
+ * when their entry expires.
+ * <p>
+ * Hits, misses, evictions and sizes are published as the Micrometer {@code cache.*}
+ * meters, tagged {@code cache=diveLogs} and {@code cache=divers}.
+ */
+@Getter
+@Component
+public class EntityCache {
+
+    private final ReadThroughCache<Long, DiveLogResponseDTO> diveLogs;
+    private final ReadThroughCache<UUID, DiverResponseDTO> divers;
+
+    public EntityCache(
+            @Value("${scubakeep.cache.maximum-size:10000}") long maximumSize,
+            @Value("${scubakeep.cache.expire-after-write:10m}") Duration expireAfterWrite,
+            MeterRegistry meterRegistry
+    ) {
+        this.diveLogs = new ReadThroughCache<>(
+                build("diveLogs", maximumSize, expireAfterWrite, meterRegistry));
+        this.divers = new ReadThroughCache<>(
+                build("divers", maximumSize, expireAfterWrite, meterRegistry));
+    }
+
+    private static <K, V> Cache<K, V> build(
+            String name,
+            long maximumSize,
+            Duration expireAfterWrite,
+            MeterRegistry meterRegistry
+    ) {
+        Cache<K, V> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+}
@@ -0,0 +1,91 @@
+package com.lucap.scubakeep.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Read-through cache whose entries are invalidated once the writing transaction commits.
+ * <p>
+ * Invalidating after commit alone still allows a stale read: a reader that loaded
+ * the old row before the commit could store it after the invalidation ran. The cache
+ * therefore counts invalidations. A reader notes the count before loading and, after
+ * storing its value, removes it again if the count changed in the meantime. A writer
+ * bumps the count before invalidating, so either the reader sees the bump or the
+ * writer's invalidation runs after the reader's store; in both cases no value loaded
+ * before a commit survives it.
+ *
+ * @param <K> the key type
+ * @param <V> the cached value type (must be immutable once returned)
+ */
+public class ReadThroughCache<K, V> {
+
+    private final Cache<K, V> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ReadThroughCache(Cache<K, V> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cached value of a key, loading and caching it on a miss.
+     * Exceptions thrown by the loader (e.g. not found) are propagated and nothing is cached.
+     *
+     * @param key    the key
+     * @param loader loads the current value from the database
+     * @return the cached or freshly loaded value
+     */
+    public V get(K key, Function<K, V> loader) {
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = invalidations.get();
+        V value = loader.apply(key);
+        cache.put(key, value);
+        if (invalidations.get() != stamp) {
+            cache.invalidate(key);
+        }
+        return value;
+    }
+
+    /**
+     * Invalidates a key once the current transaction commits (immediately without one).
+     * Nothing is invalidated if the transaction rolls back.
+     *
+     * @param key the key whose value is being changed
+     */
+    public void invalidateAfterCommit(K key) {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            cache.invalidate(key);
+        });
+    }
+
+    /**
+     * Invalidates every key once the current transaction commits (immediately without one).
+     */
+    public void invalidateAllAfterCommit() {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            cache.invalidateAll();
+        });
+    }
+
+    private static void afterCommit(Runnable invalidation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidation.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidation.run();
+            }
+        });
+    }
+}
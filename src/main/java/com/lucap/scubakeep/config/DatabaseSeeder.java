@@ -126,5 +126,6 @@ public class DatabaseSeeder implements CommandLineRunner {
 
         diveLogRepository.save(log1);
         diveLogRepository.save(log2);
+        diverRepository.incrementTotalDives(diver.getId(), 2L);
     }
 }
\ No newline at end of file
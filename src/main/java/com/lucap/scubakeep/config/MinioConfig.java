@@ -1,9 +1,11 @@
 package com.lucap.scubakeep.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 /**
  * Configuration class responsible for creating and configuring the {@link MinioClient}
@@ -26,6 +28,7 @@ public class MinioConfig {
      * @return a configured {@link MinioClient} instance
      */
     @Bean
+    @Primary
     public MinioClient minioClient(
             @Value("${storage.minio.url}") String url,
             @Value("${storage.minio.access-key}") String accessKey,
@@ -36,4 +39,53 @@ public class MinioConfig {
                 .credentials(accessKey, secretKey)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates the {@link MinioAsyncClient} used for multipart uploads, whose parts are
+     * sent individually (see {@code StreamingUploads}).
+     *
+     * @param url the MinIO server endpoint URL
+     * @param accessKey the access key used for authentication
+     * @param secretKey the secret key used for authentication
+     * @return a configured {@link MinioAsyncClient} instance
+     */
+    @Bean
+    public MinioAsyncClient minioAsyncClient(
+            @Value("${storage.minio.url}") String url,
+            @Value("${storage.minio.access-key}") String accessKey,
+            @Value("${storage.minio.secret-key}") String secretKey
+    ) {
+        return MinioAsyncClient.builder()
+                .endpoint(url)
+                .credentials(accessKey, secretKey)
+                .build();
+    }
+
+    /**
+     * Creates the {@link MinioClient} that signs presigned URLs handed to clients.
+     *
+     * <p>Presigned URLs embed the host they were signed for, so they are signed for
+     * the endpoint clients can reach (which differs from the internal one behind a
+     * proxy or in Docker). The region is configured so that signing never needs a
+     * request to the server.</p>
+     *
+     * @param publicUrl the MinIO endpoint URL as seen by clients
+     * @param region the bucket region
+     * @param accessKey the access key used for signing
+     * @param secretKey the secret key used for signing
+     * @return a {@link MinioClient} used for presigning only
+     */
+    @Bean
+    public MinioClient presigningMinioClient(
+            @Value("${storage.minio.public-url:${storage.minio.url}}") String publicUrl,
+            @Value("${storage.minio.region:us-east-1}") String region,
+            @Value("${storage.minio.access-key}") String accessKey,
+            @Value("${storage.minio.secret-key}") String secretKey
+    ) {
+        return MinioClient.builder()
+                .endpoint(publicUrl)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.lucap.scubakeep.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the {@code @Scheduled} maintenance jobs, e.g. the token revocation sync
+ * and the purge of expired refresh tokens.
+ *
+ * <p>Jobs run on every instance and must therefore be idempotent.</p>
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
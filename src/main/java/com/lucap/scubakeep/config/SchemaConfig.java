@@ -0,0 +1,62 @@
+package com.lucap.scubakeep.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of how the database schema is handled at startup.
+ *
+ * <p>The schema is owned by the Flyway migrations in {@code db/migration}. By default
+ * pending migrations are applied and Hibernate neither changes nor inspects the schema.
+ * With {@code scubakeep.schema.validate-only=true} nothing is changed: Flyway only
+ * validates the applied migrations (failing on pending ones) and Hibernate validates
+ * the entity mapping against the schema, so startup fails fast on any mismatch.</p>
+ */
+@Configuration
+public class SchemaConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaConfig.class);
+
+    private final boolean validateOnly;
+
+    public SchemaConfig(@Value("${scubakeep.schema.validate-only:false}") boolean validateOnly) {
+        this.validateOnly = validateOnly;
+    }
+
+    /**
+     * Applies pending migrations, or only validates them in validate-only mode.
+     *
+     * @return the strategy used by the Flyway auto-configuration at startup
+     */
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy() {
+        return flyway -> {
+            if (validateOnly) {
+                LOGGER.info("Validate-only startup: checking schema migrations");
+                flyway.validate();
+            } else {
+                flyway.migrate();
+            }
+        };
+    }
+
+    /**
+     * Enables Hibernate's schema validation in validate-only mode.
+     *
+     * @return the customizer applied to the JPA properties
+     */
+    @Bean
+    public HibernatePropertiesCustomizer schemaValidationCustomizer() {
+        return properties -> {
+            if (validateOnly) {
+                properties.put(AvailableSettings.HBM2DDL_AUTO, "validate");
+            }
+        };
+    }
+}
@@ -1,8 +1,17 @@
 package com.lucap.scubakeep.config;
 
+import com.lucap.scubakeep.security.BoundedPasswordEncoder;
+import com.lucap.scubakeep.security.CalibratedBCryptPasswordEncoder;
+import com.lucap.scubakeep.security.DiverUserDetailsService;
 import com.lucap.scubakeep.security.JwtAuthenticationFilter;
+import com.lucap.scubakeep.security.LoginThrottle;
+import com.lucap.scubakeep.security.PrincipalStatusCache;
 import com.lucap.scubakeep.security.JwtService;
+import com.lucap.scubakeep.security.ThrottledAuthenticationProvider;
+import com.lucap.scubakeep.security.TokenRevocationList;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,17 +21,21 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.time.Duration;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    private static final String BCRYPT_ID = "bcrypt";
+
     /**
      * Configures HTTP security rules for the application.
      *
@@ -37,7 +50,8 @@ public class SecurityConfig {
     public SecurityFilterChain securityFilterChain(
             HttpSecurity http,
             JwtService jwtService,
-            UserDetailsService userDetailsService
+            PrincipalStatusCache principalStatusCache,
+            TokenRevocationList tokenRevocationList
     ) throws Exception {
 
         http
@@ -51,7 +65,8 @@ public class SecurityConfig {
                                 response.sendError(HttpServletResponse.SC_UNAUTHORIZED))
                 )
                 .addFilterBefore(
-                        new JwtAuthenticationFilter(jwtService, userDetailsService),
+                        new JwtAuthenticationFilter(
+                                jwtService, principalStatusCache, tokenRevocationList),
                         UsernamePasswordAuthenticationFilter.class
                 )
                 .formLogin(form -> form.disable())
@@ -64,12 +79,62 @@ public class SecurityConfig {
     /**
      * Provides the application's PasswordEncoder bean.
      * Uses BCrypt hashing algorithm to securely store user passwords in the database.
+     * <p>
+     * The BCrypt cost is {@code security.password.bcrypt-cost} if set, otherwise it is
+     * calibrated at startup so one hash takes about {@code security.password.hash-budget}
+     * on this machine. Hashes are stored with an id prefix ({@code {bcrypt}...}) through
+     * a {@link DelegatingPasswordEncoder}; older hashes without prefix still match, and
+     * hashes without prefix or more than {@code security.password.bcrypt-cost-tolerance}
+     * cost steps away are rehashed on the next successful login.
+     * <p>
+     * Hashing runs on a bounded executor (one thread per core unless
+     * {@code security.password.hash-threads} is set), so login and registration
+     * bursts cannot occupy every request thread. A caller waits at most
+     * {@code security.password.queue-timeout} plus {@code security.password.hash-timeout}
+     * for its result.
+     *
+     * @return a calibrated BCrypt encoder behind a {@link BoundedPasswordEncoder}
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(
+            @Value("${security.password.hash-budget:100ms}") Duration hashBudget,
+            @Value("${security.password.bcrypt-min-cost:10}") int minCost,
+            @Value("${security.password.bcrypt-max-cost:14}") int maxCost,
+            @Value("${security.password.bcrypt-cost:0}") int fixedCost,
+            @Value("${security.password.bcrypt-cost-tolerance:1}") int costTolerance,
+            @Value("${security.password.hash-threads:0}") int hashThreads,
+            @Value("${security.password.queue-capacity:64}") int queueCapacity,
+            @Value("${security.password.queue-timeout:2s}") Duration queueTimeout,
+            @Value("${security.password.hash-timeout:1s}") Duration hashTimeout,
+            MeterRegistry meterRegistry
+    ) {
+        PasswordEncoder bcrypt = fixedCost > 0
+                ? new CalibratedBCryptPasswordEncoder(fixedCost, minCost, costTolerance)
+                : CalibratedBCryptPasswordEncoder.calibrate(
+                        hashBudget, minCost, maxCost, costTolerance);
+        DelegatingPasswordEncoder delegating =
+                new DelegatingPasswordEncoder(BCRYPT_ID, Map.of(BCRYPT_ID, bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(
+                delegating, threads, queueCapacity, queueTimeout, hashTimeout, meterRegistry);
+    }
+
+    /**
+     * Provides the username/email + password authentication used by the login
+     * endpoint, with failed logins throttled per account and client address.
      *
-     * @return a BCryptPasswordEncoder instance
+     * @return the provider the AuthenticationManager delegates to
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public ThrottledAuthenticationProvider authenticationProvider(
+            DiverUserDetailsService userDetailsService,
+            PasswordEncoder passwordEncoder,
+            LoginThrottle loginThrottle
+    ) {
+        return new ThrottledAuthenticationProvider(
+                userDetailsService, passwordEncoder, loginThrottle);
     }
 
     /**
@@ -118,6 +183,12 @@ public class SecurityConfig {
         // Allow anonymous read access only to public resources
         auth.requestMatchers(HttpMethod.GET, "/api/divelogs/**").permitAll();
         auth.requestMatchers(HttpMethod.GET, "/api/divers/*/image").permitAll();
+        auth.requestMatchers(HttpMethod.HEAD, "/api/divelogs/*/image", "/api/divers/*/image")
+                .permitAll();
+
+        // Health checks are public; metrics (e.g. cache hit rates) are for admins only
+        auth.requestMatchers("/actuator/health").permitAll();
+        auth.requestMatchers("/actuator/**").hasRole("ADMIN");
 
         // Any other request must be authenticated
         auth.anyRequest().authenticated();
@@ -1,24 +1,33 @@
 package com.lucap.scubakeep.controller;
 
+import com.lucap.scubakeep.dto.AvailabilityResponseDTO;
 import com.lucap.scubakeep.dto.DiverRequestDTO;
 import com.lucap.scubakeep.dto.DiverResponseDTO;
+import com.lucap.scubakeep.dto.RefreshTokenRequestDTO;
 import com.lucap.scubakeep.dto.TokenRequestDTO;
 import com.lucap.scubakeep.dto.TokenResponseDTO;
 import com.lucap.scubakeep.service.AuthService;
+import com.lucap.scubakeep.service.DiverAvailabilityService;
 import com.lucap.scubakeep.service.DiverService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
- * Authentication endpoints (registration and login).
+ * Authentication endpoints (registration, availability checks, login, token refresh
+ * and logout).
  *
  * <p>Contains public endpoints that are required to obtain access to the system.</p>
  */
@@ -28,9 +37,11 @@ import org.springframework.web.bind.annotation.RestController;
 public class AuthController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AuthController.class);
+    private static final String BEARER_PREFIX = "Bearer ";
 
     private final DiverService diverService;
     private final AuthService authService;
+    private final DiverAvailabilityService diverAvailabilityService;
 
     /**
      * Registers a new user/diver account.
@@ -48,14 +59,72 @@ public class AuthController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    /**
+     * Checks whether a username and/or an email can still be registered, e.g. while
+     * the registration form is filled in.
+     *
+     * <p>Only the values that are given are checked. The answer is advisory: the
+     * registration itself fails with 409 if a value was taken in the meantime.</p>
+     *
+     * @param username the username to check (optional)
+     * @param email the email to check (optional)
+     * @return the availability of each given value
+     */
+    @GetMapping("/availability")
+    public AvailabilityResponseDTO availability(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email
+    ) {
+        return diverAvailabilityService.checkAvailability(username, email);
+    }
+
     /**
      * Authenticates a user using username or email and password.
      *
      * @param tokenRequestDTO login request body
+     * @param request the HTTP request, whose client address failures are counted for
      * @return a token response (JWT will be returned in the future)
      */
     @PostMapping("/token")
-    public TokenResponseDTO token(@RequestBody @Valid TokenRequestDTO tokenRequestDTO) {
-        return authService.authenticate(tokenRequestDTO);
+    public TokenResponseDTO token(
+            @RequestBody @Valid TokenRequestDTO tokenRequestDTO,
+            HttpServletRequest request
+    ) {
+        return authService.authenticate(tokenRequestDTO, request.getRemoteAddr());
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and refresh token.
+     * <p>
+     * Each refresh token can be used once; reusing one ends its session.
+     *
+     * @param dto the refresh token of the last login or refresh
+     * @return the new token pair
+     */
+    @PostMapping("/refresh")
+    public TokenResponseDTO refresh(@RequestBody @Valid RefreshTokenRequestDTO dto) {
+        return authService.refresh(dto.getRefreshToken());
+    }
+
+    /**
+     * Logs out: revokes the bearer token of the request (if any) and the session of
+     * the given refresh token (if any).
+     *
+     * @param authorization the Authorization header
+     * @param dto optional body with the session's refresh token
+     * @return 204 No Content
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+            @RequestBody(required = false) RefreshTokenRequestDTO dto
+    ) {
+        String accessToken = authorization != null && authorization.startsWith(BEARER_PREFIX)
+                ? authorization.substring(BEARER_PREFIX.length())
+                : null;
+        authService.logout(accessToken, dto == null ? null : dto.getRefreshToken());
+        LOGGER.info("Logout processed");
+        return ResponseEntity.noContent().build();
     }
 }
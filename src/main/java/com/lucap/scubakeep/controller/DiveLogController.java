@@ -1,21 +1,36 @@
 package com.lucap.scubakeep.controller;
 
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
+import com.lucap.scubakeep.dto.DiveLogImportResultDTO;
 import com.lucap.scubakeep.dto.DiveLogRequestDTO;
 import com.lucap.scubakeep.dto.DiveLogResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadConfirmDTO;
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
+import com.lucap.scubakeep.pagination.DiveLogSort;
+import com.lucap.scubakeep.service.DiveLogImportService;
 import com.lucap.scubakeep.service.DiveLogService;
+import com.lucap.scubakeep.storage.ImageVariant;
+import com.lucap.scubakeep.storage.ObjectDownloads;
+import com.lucap.scubakeep.storage.StoredImage;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -33,13 +48,19 @@ public class DiveLogController {
     private static final Logger LOGGER = LoggerFactory.getLogger(DiveLogController.class);
 
     private final DiveLogService diveLogService;
+    private final DiveLogImportService diveLogImportService;
+    private final ObjectDownloads objectDownloads;
 
     /**
      * Retrieves dive logs with optional pagination and sorting.
+     * <p>
+     * Only the fields of {@link DiveLogSort} can be sorted by; the id is always added
+     * as a tiebreaker so pages are stable.
      *
      * @param page the page index (0-based)
      * @param size the number of items per page
-     * @param sortBy the field used for sorting
+     * @param sortBy the field used for sorting ({@code createdAt}, {@code diveDate}
+     *               or {@code maxDepth})
      * @param sortDir the sorting direction (asc or desc)
      * @param diverId optional diver id to filter dive logs by owner
      * @return a list of {@link DiveLogResponseDTO} matching the requested criteria
@@ -58,9 +79,7 @@ public class DiveLogController {
                 page, size, sortBy, sortDir, diverId
         );
 
-        Sort sort = "asc".equalsIgnoreCase(sortDir)
-                ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
+        Sort sort = DiveLogSort.fromParam(sortBy).toSort(DiveLogSort.directionFromParam(sortDir));
 
         List<DiveLogResponseDTO> dtoList =
                 diveLogService.getDiveLogs(PageRequest.of(page, size, sort), diverId);
@@ -68,6 +87,45 @@ public class DiveLogController {
         return ResponseEntity.ok(dtoList);
     }
 
+    /**
+     * Retrieves the dive log feed using keyset (cursor) pagination.
+     * <p>
+     * Returns the newest dive logs first unless another sort is requested. Pass the
+     * {@code nextCursor} of a response as {@code cursor}, with the same sort, to fetch
+     * the following page; latency does not depend on how deep the client has scrolled.
+     *
+     * @param cursor opaque continuation token from a previous page (omit for the first page)
+     * @param size the number of items per page
+     * @param diverId optional diver id to filter dive logs by owner
+     * @param sortBy the field used for sorting ({@code createdAt}, {@code diveDate}
+     *               or {@code maxDepth})
+     * @param sortDir the sorting direction (asc or desc)
+     * @return a page of {@link DiveLogResponseDTO} and the cursor of the next page
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<CursorPageResponseDTO<DiveLogResponseDTO>> getDiveLogFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) UUID diverId,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir
+    ) {
+        LOGGER.info("Received request to fetch dive log feed "
+                        + "(size={}, diverId={}, sortBy={}, sortDir={})",
+                size, diverId, sortBy, sortDir);
+
+        CursorPageResponseDTO<DiveLogResponseDTO> feed = diveLogService.getDiveLogFeed(
+                cursor,
+                size,
+                diverId,
+                DiveLogSort.fromParam(sortBy),
+                DiveLogSort.directionFromParam(sortDir)
+        );
+        LOGGER.info("Returning {} dive logs (hasNext={})",
+                feed.getItems().size(), feed.getNextCursor() != null);
+        return ResponseEntity.ok(feed);
+    }
+
     /**
      * Creates a new dive log entry.
      *
@@ -84,6 +142,27 @@ public class DiveLogController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    /**
+     * Imports dive logs in bulk from a logbook file into the authenticated diver's logbook.
+     * <p>
+     * Invalid rows are skipped and reported; all other rows are imported.
+     *
+     * @param file the CSV or UDDF file to import
+     * @param format optional format ({@code csv} or {@code uddf}); derived from the file name
+     * @return the import summary with per-row errors
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<DiveLogImportResultDTO> importDiveLogs(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String format
+    ) {
+        LOGGER.info("Received request to import dive logs from '{}'", file.getOriginalFilename());
+        DiveLogImportResultDTO result = diveLogImportService.importDiveLogs(file, format);
+        LOGGER.info("Imported {} dive logs ({} rejected)",
+                result.getImported(), result.getRejected());
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Retrieves a specific dive log by its ID.
      *
@@ -146,19 +225,87 @@ public class DiveLogController {
     }
 
     /**
-     * Retrieves the image associated with a dive log.
+     * Uploads an image for a specific dive log sent as the raw request body, with the
+     * image's type as {@code Content-Type}. Unlike the multipart upload, the body is
+     * streamed into object storage as it arrives; bodies above the size limit are
+     * answered with 413.
+     *
+     * @param id the ID of the dive log
+     * @param request the request whose body is the image
+     * @return the updated dive log as a {@link DiveLogResponseDTO}
+     * @throws IOException if the request body cannot be opened
+     */
+    @PutMapping("/{id}/image")
+    public DiveLogResponseDTO streamDiveLogImage(
+            @PathVariable Long id,
+            HttpServletRequest request) throws IOException {
+        LOGGER.info("Received streamed image upload for dive log ID {}", id);
+        return diveLogService.streamImage(id, request.getInputStream(),
+                request.getContentType(), request.getContentLengthLong());
+    }
+
+    /**
+     * Issues a presigned URL for uploading an image for a dive log directly to
+     * object storage. The upload must then be confirmed.
+     *
+     * @param id the ID of the dive log
+     * @param dto the content type and size of the image
+     * @return the upload URL, the object key and the URL's expiry
+     */
+    @PostMapping("/{id}/image/upload-url")
+    public ImageUploadResponseDTO createDiveLogImageUpload(
+            @PathVariable Long id,
+            @RequestBody @Valid ImageUploadRequestDTO dto) {
+        LOGGER.info("Received request for an image upload URL for dive log ID {}", id);
+        return diveLogService.createImageUpload(id, dto);
+    }
+
+    /**
+     * Confirms a direct image upload and attaches the image to the dive log.
+     *
+     * @param id the ID of the dive log
+     * @param dto the object key returned with the upload URL
+     * @return the updated dive log as a {@link DiveLogResponseDTO}
+     */
+    @PostMapping("/{id}/image/confirm")
+    public DiveLogResponseDTO confirmDiveLogImageUpload(
+            @PathVariable Long id,
+            @RequestBody @Valid ImageUploadConfirmDTO dto) {
+        LOGGER.info("Received image upload confirmation for dive log ID {}", id);
+        return diveLogService.confirmImageUpload(id, dto);
+    }
+
+    /**
+     * Streams the image associated with a dive log with its stored content type.
+     * Supports HEAD, conditional requests ({@code If-None-Match}) and single-range
+     * requests ({@code Range}, {@code If-Range}). With the current version
+     * ({@code ?v=}, as in the URLs returned by the API) the response may be cached as
+     * immutable. {@code size} selects a resized variant ({@code thumb}, {@code medium}
+     * or {@code full}, the default); until the variants have been generated the
+     * response is 404 with a {@code Retry-After} header, as the original is never sent.
      *
      * @param id the dive log ID
-     * @return the image file as a byte array
+     * @param version the image version from the image URL, if any
+     * @param size the requested variant, if any ({@code full} otherwise)
+     * @param headers the request headers
+     * @param method the request method (GET or HEAD)
+     * @return the image (200), the requested range of it (206), 304 if the client's
+     *         copy is current, or 404 if none exists
      */
-    @GetMapping(value = "/{id}/image", produces = MediaType.IMAGE_JPEG_VALUE)
-    public ResponseEntity<byte[]> getDiveLogImage(@PathVariable Long id) {
+    @GetMapping("/{id}/image")
+    public ResponseEntity<StreamingResponseBody> getDiveLogImage(
+            @PathVariable Long id,
+            @RequestParam(name = "v", required = false) String version,
+            @RequestParam(name = "size", required = false) String size,
+            @RequestHeader HttpHeaders headers,
+            HttpMethod method) {
         LOGGER.info("Received request to download image for dive log ID {}", id);
-        byte[] imageBytes = diveLogService.getDiveLogImageBytes(id);
+        ImageVariant variant = size == null ? null : ImageVariant.fromParam(size);
+        StoredImage image = diveLogService.getDiveLogImage(id);
 
-        if (imageBytes == null) {
+        if (image == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(imageBytes);
+        return objectDownloads.serveImage(image, variant, version, method, headers);
     }
 }
\ No newline at end of file
@@ -1,18 +1,31 @@
 package com.lucap.scubakeep.controller;
 
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
+import com.lucap.scubakeep.dto.DiverFilterDTO;
 import com.lucap.scubakeep.dto.DiverResponseDTO;
 import com.lucap.scubakeep.dto.DiverUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadConfirmDTO;
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
 import com.lucap.scubakeep.service.DiverService;
+import com.lucap.scubakeep.storage.ImageVariant;
+import com.lucap.scubakeep.storage.ObjectDownloads;
+import com.lucap.scubakeep.storage.StoredImage;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -29,19 +42,45 @@ public class DiverController {
     private static final Logger LOGGER = LoggerFactory.getLogger(DiverController.class);
 
     private final DiverService diverService;
+    private final ObjectDownloads objectDownloads;
 
     /**
-     * Retrieves all divers from the system.
+     * Retrieves the diver directory using keyset (cursor) pagination.
      * Just for ADMIN.
+     * <p>
+     * Divers are ordered by username. Pass the {@code nextCursor} of a response
+     * as {@code cursor} (with the same filters) to fetch the following page.
      *
-     * @return a list of {@link DiverResponseDTO} objects
+     * @param filter optional filters: countryCode, certification, role,
+     *               and q (username or email prefix)
+     * @param cursor opaque continuation token from a previous page (omit for the first page)
+     * @param size the number of items per page
+     * @return a page of {@link DiverResponseDTO} and the cursor of the next page
      */
     @GetMapping
-    public ResponseEntity<List<DiverResponseDTO>> getAllDivers() {
-        LOGGER.info("Received request to fetch all divers");
-        List<DiverResponseDTO> dtoList = diverService.getAllDivers();
-        LOGGER.info("Returning {} divers", dtoList.size());
-        return ResponseEntity.ok(dtoList);
+    public ResponseEntity<CursorPageResponseDTO<DiverResponseDTO>> getDivers(
+            @ModelAttribute DiverFilterDTO filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        LOGGER.info("Received request to fetch diver directory (size={})", size);
+        CursorPageResponseDTO<DiverResponseDTO> page = diverService.getDivers(filter, cursor, size);
+        LOGGER.info("Returning {} divers (hasNext={})",
+                page.getItems().size(), page.getNextCursor() != null);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Recomputes drifted dive counters from the dive log table.
+     * Just for ADMIN.
+     *
+     * @return the number of divers whose counter was corrected
+     */
+    @PostMapping("/dive-counts/reconcile")
+    public ResponseEntity<Map<String, Integer>> reconcileTotalDives() {
+        LOGGER.info("Received request to reconcile diver dive counts");
+        int corrected = diverService.reconcileTotalDives();
+        return ResponseEntity.ok(Map.of("correctedDivers", corrected));
     }
 
     // POST /api/divers removed since new users need to register through /auth/register
@@ -109,19 +148,87 @@ public class DiverController {
     }
 
     /**
-     * Retrieves the profile picture of a specific diver.
+     * Uploads a profile picture for a specific diver sent as the raw request body, with
+     * the picture's type as {@code Content-Type}. Unlike the multipart upload, the body
+     * is streamed into object storage as it arrives; bodies above the size limit are
+     * answered with 413.
+     *
+     * @param id the diver ID
+     * @param request the request whose body is the picture
+     * @return the updated diver as a {@link DiverResponseDTO}
+     * @throws IOException if the request body cannot be opened
+     */
+    @PutMapping("/{id}/image")
+    public DiverResponseDTO streamProfilePicture(
+            @PathVariable UUID id,
+            HttpServletRequest request) throws IOException {
+        LOGGER.info("Received streamed profile picture upload for diver ID {}", id);
+        return diverService.streamProfilePicture(id, request.getInputStream(),
+                request.getContentType(), request.getContentLengthLong());
+    }
+
+    /**
+     * Issues a presigned URL for uploading a profile picture directly to object
+     * storage. The upload must then be confirmed.
+     *
+     * @param id the diver ID
+     * @param dto the content type and size of the picture
+     * @return the upload URL, the object key and the URL's expiry
+     */
+    @PostMapping("/{id}/image/upload-url")
+    public ImageUploadResponseDTO createProfilePictureUpload(
+            @PathVariable UUID id,
+            @RequestBody @Valid ImageUploadRequestDTO dto) {
+        LOGGER.info("Received request for a profile picture upload URL for diver ID {}", id);
+        return diverService.createProfilePictureUpload(id, dto);
+    }
+
+    /**
+     * Confirms a direct upload and sets it as the diver's profile picture.
      *
      * @param id the diver ID
-     * @return the image file as a byte array
+     * @param dto the object key returned with the upload URL
+     * @return the updated diver as a {@link DiverResponseDTO}
      */
-    @GetMapping(value = "/{id}/image", produces = MediaType.IMAGE_JPEG_VALUE)
-    public ResponseEntity<byte[]> getProfilePicture(@PathVariable UUID id) {
+    @PostMapping("/{id}/image/confirm")
+    public DiverResponseDTO confirmProfilePictureUpload(
+            @PathVariable UUID id,
+            @RequestBody @Valid ImageUploadConfirmDTO dto) {
+        LOGGER.info("Received profile picture upload confirmation for diver ID {}", id);
+        return diverService.confirmProfilePictureUpload(id, dto);
+    }
+
+    /**
+     * Streams the profile picture of a specific diver with its stored content type.
+     * Supports HEAD, conditional requests ({@code If-None-Match}) and single-range
+     * requests ({@code Range}, {@code If-Range}). With the current version
+     * ({@code ?v=}, as in the URLs returned by the API) the response may be cached as
+     * immutable. {@code size} selects a resized variant ({@code thumb}, {@code medium}
+     * or {@code full}, the default); until the variants have been generated the
+     * response is 404 with a {@code Retry-After} header, as the original is never sent.
+     *
+     * @param id the diver ID
+     * @param version the image version from the image URL, if any
+     * @param size the requested variant, if any ({@code full} otherwise)
+     * @param headers the request headers
+     * @param method the request method (GET or HEAD)
+     * @return the image (200), the requested range of it (206), 304 if the client's
+     *         copy is current, or 404 if none exists
+     */
+    @GetMapping("/{id}/image")
+    public ResponseEntity<StreamingResponseBody> getProfilePicture(
+            @PathVariable UUID id,
+            @RequestParam(name = "v", required = false) String version,
+            @RequestParam(name = "size", required = false) String size,
+            @RequestHeader HttpHeaders headers,
+            HttpMethod method) {
         LOGGER.info("Received request to download profile picture for diver ID {}", id);
-        byte[] imageBytes = diverService.getProfilePictureBytes(id);
+        ImageVariant variant = size == null ? null : ImageVariant.fromParam(size);
+        StoredImage picture = diverService.getProfilePicture(id);
 
-        if (imageBytes == null) {
+        if (picture == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(imageBytes);
+        return objectDownloads.serveImage(picture, variant, version, method, headers);
     }
 }
@@ -0,0 +1,86 @@
+package com.lucap.scubakeep.controller;
+
+import com.lucap.scubakeep.dto.DiverFilterDTO;
+import com.lucap.scubakeep.export.ExportFormat;
+import com.lucap.scubakeep.service.ExportService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.UUID;
+
+/**
+ * REST controller for bulk exports.
+ * <p>
+ * Exports are streamed as NDJSON or CSV while rows are read from the database,
+ * so they never hold the whole result in memory.
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExportController.class);
+
+    private final ExportService exportService;
+
+    /**
+     * Streams dive logs as NDJSON or CSV.
+     * All dive logs for ADMIN; a single diver's dive logs for that diver or ADMIN.
+     *
+     * @param format the output format ({@code ndjson} or {@code csv})
+     * @param diverId optional diver id to restrict the export to one owner
+     * @return the streamed export as an attachment
+     */
+    @GetMapping("/divelogs")
+    public ResponseEntity<StreamingResponseBody> exportDiveLogs(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) UUID diverId
+    ) {
+        LOGGER.info("Received request to export dive logs (format={}, diverId={})",
+                format, diverId);
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        StreamingResponseBody body = exportService.exportDiveLogs(exportFormat, diverId);
+        return attachment("divelogs", exportFormat, body);
+    }
+
+    /**
+     * Streams the diver directory as NDJSON or CSV.
+     * Just for ADMIN.
+     *
+     * @param format the output format ({@code ndjson} or {@code csv})
+     * @param filter optional filters: countryCode, certification, role,
+     *               and q (username or email prefix)
+     * @return the streamed export as an attachment
+     */
+    @GetMapping("/divers")
+    public ResponseEntity<StreamingResponseBody> exportDivers(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @ModelAttribute DiverFilterDTO filter
+    ) {
+        LOGGER.info("Received request to export divers (format={})", format);
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        StreamingResponseBody body = exportService.exportDivers(exportFormat, filter);
+        return attachment("divers", exportFormat, body);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> attachment(
+            String name,
+            ExportFormat format,
+            StreamingResponseBody body
+    ) {
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(name + "." + format.getExtension())
+                .build();
+
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(body);
+    }
+}
@@ -0,0 +1,36 @@
+package com.lucap.scubakeep.controller;
+
+import com.lucap.scubakeep.dto.StorageReconciliationReportDTO;
+import com.lucap.scubakeep.service.StorageReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller for object storage maintenance.
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/admin/storage")
+public class StorageController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageController.class);
+
+    private final StorageReconciliationService storageReconciliationService;
+
+    /**
+     * Finds the stored images no dive log or diver references any more and, unless
+     * this is a dry run, deletes them. Dry run by default.
+     * Just for ADMIN.
+     *
+     * @param dryRun whether to only report the orphans instead of deleting them
+     * @return the counts of referenced, recent and orphaned objects
+     */
+    @PostMapping("/reconcile")
+    public StorageReconciliationReportDTO reconcile(
+            @RequestParam(defaultValue = "true") boolean dryRun) {
+        LOGGER.info("Received request to reconcile stored objects (dryRun={})", dryRun);
+        return storageReconciliationService.reconcile(dryRun);
+    }
+}
@@ -0,0 +1,22 @@
+package com.lucap.scubakeep.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object telling a signup form whether a username and/or email can
+ * still be registered. Only the values that were asked for are included.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AvailabilityResponseDTO {
+
+    private Boolean usernameAvailable;
+    private Boolean emailAvailable;
+}
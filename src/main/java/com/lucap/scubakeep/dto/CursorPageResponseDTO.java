@@ -0,0 +1,24 @@
+package com.lucap.scubakeep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for a single page of a keyset (cursor) paginated listing.
+ * <p>
+ * {@code nextCursor} is an opaque continuation token; it is {@code null}
+ * when there are no further results.
+ *
+ * @param <T> the type of the listed items
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponseDTO<T> {
+
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,26 @@
+package com.lucap.scubakeep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object summarizing a bulk dive log import.
+ * <p>
+ * Valid rows are imported; invalid rows are skipped and listed in {@code errors}
+ * (capped, see {@code rejected} for the full count).
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DiveLogImportResultDTO {
+
+    private int totalRows;
+    private int imported;
+    private int rejected;
+    private List<ImportRowErrorDTO> errors;
+}
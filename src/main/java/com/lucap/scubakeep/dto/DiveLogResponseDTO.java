@@ -1,5 +1,7 @@
 package com.lucap.scubakeep.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -20,6 +22,11 @@ import java.util.UUID;
 @Builder
 public class DiveLogResponseDTO {
 
+    /**
+     * Time-sorted id (see {@link com.lucap.scubakeep.id.Tsid}), written as a JSON
+     * string: it exceeds 2<sup>53</sup>, so JavaScript clients would round a number.
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
 
     private LocalDate diveDate;
@@ -36,6 +43,14 @@ public class DiveLogResponseDTO {
     private String diverUsername;
 
     private String imageUrl;
+    /**
+     * Dimensions and blurred preview (data URI) of the image, to lay it out before
+     * it loads; null until its resized variants ({@code &size=thumb|medium|full})
+     * have been generated.
+     */
+    private Integer imageWidth;
+    private Integer imageHeight;
+    private String imagePlaceholder;
 
     private Instant createdAt;
     private Instant updatedAt;
@@ -0,0 +1,28 @@
+package com.lucap.scubakeep.dto;
+
+import com.lucap.scubakeep.entity.Certification;
+import com.lucap.scubakeep.entity.Role;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Data Transfer Object holding the optional filters of the admin diver directory.
+ * <p>
+ * All fields are optional; a {@code null} field does not restrict the result.
+ * {@code q} matches divers whose username or email starts with the given text.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DiverFilterDTO {
+
+    private String countryCode;
+    private Certification certification;
+    private Role role;
+    private String q;
+}
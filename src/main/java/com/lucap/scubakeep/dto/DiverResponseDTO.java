@@ -31,6 +31,18 @@ public class DiverResponseDTO {
     private String lastName;
     private String countryCode;
     private String profilePicturePath;
+    /**
+     * Where to load the profile picture from: the versioned download URL of an
+     * uploaded picture, or the external link as given.
+     */
+    private String profilePictureUrl;
+    /**
+     * Dimensions and blurred preview (data URI) of an uploaded picture; null until
+     * its resized variants have been generated.
+     */
+    private Integer profilePictureWidth;
+    private Integer profilePictureHeight;
+    private String profilePicturePlaceholder;
 
     private Role role;
 
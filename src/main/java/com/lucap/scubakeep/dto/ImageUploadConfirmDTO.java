@@ -0,0 +1,18 @@
+package com.lucap.scubakeep.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Request body confirming a presigned image upload.
+ * <p>
+ * Contains the object key returned together with the upload URL.
+ */
+@Getter
+@Setter
+public class ImageUploadConfirmDTO {
+
+    @NotBlank(message = "Object key is required")
+    private String objectKey;
+}
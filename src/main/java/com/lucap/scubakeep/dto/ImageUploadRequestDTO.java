@@ -0,0 +1,31 @@
+package com.lucap.scubakeep.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Request body for a presigned image upload URL.
+ * <p>
+ * Describes the image the client is about to upload directly to object storage.
+ * The declared type and size are checked again against the stored object when the
+ * upload is confirmed.
+ */
+@Getter
+@Setter
+public class ImageUploadRequestDTO {
+
+    @NotBlank(message = "Content type is required")
+    private String contentType;
+
+    @NotNull(message = "Size is required")
+    @Positive(message = "Size must be positive")
+    private Long size;
+
+    /**
+     * Optional original file name; only its extension is kept in the object key.
+     */
+    private String fileName;
+}
@@ -0,0 +1,26 @@
+package com.lucap.scubakeep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Response body with a presigned image upload URL.
+ * <p>
+ * The client uploads the image with {@code PUT uploadUrl} (sending its
+ * {@code Content-Type}) before {@code expiresAt}, then confirms the upload with
+ * {@code objectKey}.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImageUploadResponseDTO {
+
+    private String uploadUrl;
+    private String objectKey;
+    private Instant expiresAt;
+}
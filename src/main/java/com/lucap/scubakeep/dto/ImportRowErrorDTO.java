@@ -0,0 +1,17 @@
+package com.lucap.scubakeep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object describing why a single row of an import file was rejected.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRowErrorDTO {
+
+    private int row;
+    private String message;
+}
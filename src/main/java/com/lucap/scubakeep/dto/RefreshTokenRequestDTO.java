@@ -0,0 +1,18 @@
+package com.lucap.scubakeep.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Request body for the refresh and logout endpoints.
+ * <p>
+ * Contains the refresh token returned by the last login or refresh.
+ */
+@Getter
+@Setter
+public class RefreshTokenRequestDTO {
+
+    @NotBlank(message = "Refresh token is required")
+    private String refreshToken;
+}
@@ -0,0 +1,36 @@
+package com.lucap.scubakeep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Data Transfer Object summarizing a reconciliation of stored objects against the
+ * database.
+ * <p>
+ * Objects are counted once: {@code referenced} by a dive log or diver (directly or
+ * as a variant), {@code recent} (unreferenced but within the grace period) or
+ * {@code orphaned}. In a dry run nothing is deleted; {@code orphans} lists the
+ * orphaned keys (capped, see {@code orphaned} for the full count).
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageReconciliationReportDTO {
+
+    private boolean dryRun;
+    private Instant modifiedBefore;
+    private long scanned;
+    private long referenced;
+    private long recent;
+    private long orphaned;
+    private long orphanedBytes;
+    private long deleted;
+    private long failed;
+    private List<String> orphans;
+}
@@ -4,13 +4,16 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 /**
- * Response body returned after a successful login.
+ * Response body returned after a successful login or refresh.
  * <p>
- * Contains the JWT token that the client must send with future requests.
+ * Contains the JWT token that the client must send with future requests, and the
+ * refresh token that obtains a new pair once the JWT expires (usable once).
  */
 @Getter
 @AllArgsConstructor
 public class TokenResponseDTO {
 
     private String token;
+
+    private String refreshToken;
 }
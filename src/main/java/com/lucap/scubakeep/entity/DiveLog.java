@@ -1,5 +1,7 @@
 package com.lucap.scubakeep.entity;
 
+import com.lucap.scubakeep.id.Tsid;
+import com.lucap.scubakeep.id.TsidId;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -20,11 +22,28 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name="dive_logs")
+@Table(
+        name = "dive_logs",
+        // Created by the migrations (V2, V3, V6); declared here for generated test schemas
+        indexes = {
+            @Index(name = "idx_dive_logs_diver_created", columnList = "diver_id, created_at, id"),
+            @Index(name = "idx_dive_logs_created", columnList = "created_at, id"),
+            @Index(name = "idx_dive_logs_dive_date", columnList = "dive_date"),
+            @Index(name = "idx_dive_logs_diver_dive_date", columnList = "diver_id, dive_date, id"),
+            @Index(name = "idx_dive_logs_depth", columnList = "maximum_depth, id"),
+            @Index(name = "idx_dive_logs_diver_depth", columnList = "diver_id, maximum_depth, id"),
+            @Index(name = "idx_dive_logs_pending_image", columnList = "image_width, image_path")
+        }
+)
 public class DiveLog {
 
+    /**
+     * Time-ordered id generated in-process (see {@link Tsid}), so inserts can be batched.
+     * Rows created before the switch keep their former auto-increment ids, which all
+     * sort before the generated ones.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TsidId
     private Long id;
 
     @Column(name = "dive_date", nullable = false)
@@ -51,6 +70,19 @@ public class DiveLog {
     @Column(name = "image_path", length = 120)
     private String imagePath;
 
+    /**
+     * Dimensions of the image and a tiny blurred preview (data URI), set once its
+     * resized variants have been generated.
+     */
+    @Column(name = "image_width")
+    private Integer imageWidth;
+
+    @Column(name = "image_height")
+    private Integer imageHeight;
+
+    @Column(name = "image_placeholder", length = 512)
+    private String imagePlaceholder;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false, nullable = false)
     private Instant createdAt;
@@ -60,6 +92,10 @@ public class DiveLog {
     private Instant updatedAt;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "diver_id", nullable = false)
+    @JoinColumn(
+            name = "diver_id",
+            nullable = false,
+            foreignKey = @ForeignKey(name = "fk_dive_logs_diver")
+    )
     private Diver diver;
 }
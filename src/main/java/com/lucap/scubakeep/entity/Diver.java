@@ -1,10 +1,16 @@
 package com.lucap.scubakeep.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.lucap.scubakeep.id.UuidV7;
+import com.lucap.scubakeep.id.UuidV7Id;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
 
 import java.time.Instant;
 import java.util.HashSet;
@@ -28,16 +34,25 @@ import java.util.UUID;
 @Builder
 @Table(
         name = "divers",
-        // Still need to check for uniqueness at application level
+        // Registration relies on these constraints (see DiverServiceImpl#createDiver)
         uniqueConstraints = {
             @UniqueConstraint(name = "uq_divers_email", columnNames = "email"),
             @UniqueConstraint(name = "uq_divers_username", columnNames = "username")
-        }
+        },
+        // Created by migration V6; declared here for generated test schemas
+        indexes = @Index(name = "idx_divers_pending_picture",
+                columnList = "profile_picture_width, profile_picture_path")
 )
 public class Diver {
 
+    /**
+     * Time-ordered UUID (version 7, see {@link UuidV7}) stored as {@code BINARY(16)},
+     * so new divers are appended to the primary key instead of scattered across it.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "id", length = 16)
     private UUID id;
 
     @Column(name = "username", nullable = false, length = 40)
@@ -66,6 +81,19 @@ public class Diver {
     @Column(name = "profile_picture_path", length = 255)
     private String profilePicturePath;
 
+    /**
+     * Dimensions of the profile picture and a tiny blurred preview (data URI), set
+     * once its resized variants have been generated.
+     */
+    @Column(name = "profile_picture_width")
+    private Integer profilePictureWidth;
+
+    @Column(name = "profile_picture_height")
+    private Integer profilePictureHeight;
+
+    @Column(name = "profile_picture_placeholder", length = 512)
+    private String profilePicturePlaceholder;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "role", length = 16, nullable = false)
     private Role role;
@@ -80,11 +108,16 @@ public class Diver {
      * - diver_id: foreign key to divers.id
      * - specialty: the String value
      * If the set is empty, the diver has no specialties, so no rows in diver_specialties.
+     * Batch-fetched so that mapping a page of divers loads all specialties in one statement.
      */
     @ElementCollection
+    @BatchSize(size = 200)
     @CollectionTable(
             name = "diver_specialties",
-            joinColumns = @JoinColumn(name = "diver_id"),
+            joinColumns = @JoinColumn(
+                    name = "diver_id",
+                    foreignKey = @ForeignKey(name = "fk_diver_specialties_diver")
+            ),
             uniqueConstraints = @UniqueConstraint(
                     name = "uq_diver_specialty",
                     columnNames = {"diver_id", "specialty"}
@@ -94,6 +127,19 @@ public class Diver {
     @Column(name = "specialty", nullable = false, length = 50)
     private Set<String> specialties = new HashSet<>();
 
+    /**
+     * Denormalized number of dive logs owned by this diver.
+     * Kept in step by atomic increment/decrement UPDATEs when dive logs are created
+     * or deleted, so listing divers never has to count dive_logs.
+     * Drift can be repaired with {@code DiverRepository#reconcileTotalDives()}.
+     * Not updatable through the entity: flushing a stale managed Diver must never
+     * overwrite increments committed by concurrent transactions.
+     */
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "total_dives", nullable = false, updatable = false)
+    private long totalDives = 0L;
+
     // UTC, time-zone independent compared to LocalDateTime
     @CreationTimestamp
     @Column(name = "created_at", updatable = false, nullable = false)
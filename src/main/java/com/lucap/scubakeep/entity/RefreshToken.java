@@ -0,0 +1,67 @@
+package com.lucap.scubakeep.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A refresh token, identified by the SHA-256 digest of the token (the token itself is
+ * never stored).
+ * <p>
+ * Every refresh replaces the token with a new one of the same family; the used token
+ * is kept with {@link #usedAt} set until it expires, so that a replayed token can be
+ * recognised and its whole family revoked.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(
+        name = "refresh_tokens",
+        // Created by the migration (V4); declared here for generated test schemas
+        indexes = {
+            @Index(name = "idx_refresh_tokens_family", columnList = "family_id"),
+            @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at"),
+            @Index(name = "fk_refresh_tokens_diver", columnList = "diver_id")
+        }
+)
+public class RefreshToken {
+
+    /**
+     * Lower-case hex SHA-256 digest of the token.
+     */
+    @Id
+    @Column(name = "token_hash", length = 64)
+    private String tokenHash;
+
+    /**
+     * Shared by all tokens issued from one login, through any number of refreshes.
+     */
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "family_id", length = 16, nullable = false, updatable = false)
+    private UUID familyId;
+
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "diver_id", length = 16, nullable = false, updatable = false)
+    private UUID diverId;
+
+    @Column(name = "expires_at", nullable = false, updatable = false)
+    private Instant expiresAt;
+
+    /**
+     * When the token was exchanged for a new one; null while it is the current token.
+     */
+    @Column(name = "used_at")
+    private Instant usedAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false, nullable = false)
+    private Instant createdAt;
+}
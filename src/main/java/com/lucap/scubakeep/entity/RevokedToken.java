@@ -0,0 +1,42 @@
+package com.lucap.scubakeep.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * An access token revoked before its expiry (on logout), identified by its
+ * {@code jti} claim. Only needed until {@link #expiresAt}, when the token is
+ * rejected anyway.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(
+        name = "revoked_tokens",
+        // Created by the migration (V4); declared here for generated test schemas
+        indexes = {
+            @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at"),
+            @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at")
+        }
+)
+public class RevokedToken {
+
+    @Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "jti", length = 16)
+    private UUID jti;
+
+    @Column(name = "expires_at", nullable = false, updatable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false, updatable = false)
+    private Instant revokedAt;
+}
@@ -2,6 +2,8 @@ package com.lucap.scubakeep.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.AuthenticationException;
@@ -58,6 +60,68 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(errors);
     }
 
+    /**
+     * Handles malformed pagination cursors sent by the client.
+     * <p>
+     * Returns: 400 Bad Request
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidCursor(InvalidCursorException ex) {
+        LOGGER.warn("Invalid pagination cursor: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(body);
+    }
+
+    /**
+     * Handles list and feed requests sorted by a field or direction that is not supported.
+     * <p>
+     * Returns: 400 Bad Request
+     */
+    @ExceptionHandler(UnsupportedSortException.class)
+    public ResponseEntity<Map<String, String>> handleUnsupportedSort(UnsupportedSortException ex) {
+        LOGGER.warn("Unsupported sort: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(body);
+    }
+
+    /**
+     * Handles export requests for an unknown output format.
+     * <p>
+     * Returns: 400 Bad Request
+     */
+    @ExceptionHandler(UnsupportedExportFormatException.class)
+    public ResponseEntity<Map<String, String>> handleUnsupportedExportFormat(
+            UnsupportedExportFormatException ex
+    ) {
+        LOGGER.warn("Unsupported export format: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(body);
+    }
+
+    /**
+     * Handles import files that are in an unsupported format or unreadable as a whole.
+     * Problems limited to single rows are reported in the import result instead.
+     * <p>
+     * Returns: 400 Bad Request
+     */
+    @ExceptionHandler({
+        UnsupportedImportFormatException.class,
+        InvalidImportFileException.class
+    })
+    public ResponseEntity<Map<String, String>> handleInvalidImport(RuntimeException ex) {
+        LOGGER.warn("Dive log import rejected: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(body);
+    }
+
     /**
      * Handles conflicts caused by duplicate user attributes such as email or username.
      * <p>
@@ -94,6 +158,102 @@ public class GlobalExceptionHandler {
                 .body(body);
     }
 
+    /**
+     * Handles refresh requests with an unknown, expired or already used refresh token.
+     * Returns HTTP 401 Unauthorized.
+     */
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRefreshToken(
+            InvalidRefreshTokenException ex) {
+
+        LOGGER.warn("Refresh rejected: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.UNAUTHORIZED)
+                .body(body);
+    }
+
+    /**
+     * Handles logins rejected because the account failed too often recently from the
+     * client address.
+     * <p>
+     * Returns 429 Too Many Requests with a Retry-After header.
+     */
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<Map<String, String>> handleLoginThrottled(LoginThrottledException ex) {
+        LOGGER.warn("Login throttled: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(body);
+    }
+
+    /**
+     * Handles images requested before their variants were generated.
+     * <p>
+     * Returns 404 Not Found with a Retry-After header, not to be cached.
+     */
+    @ExceptionHandler(ImageNotReadyException.class)
+    public ResponseEntity<Map<String, String>> handleImageNotReady(ImageNotReadyException ex) {
+        LOGGER.debug("Image not ready: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.NOT_FOUND)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .cacheControl(CacheControl.noStore())
+                .body(body);
+    }
+
+    /**
+     * Handles streamed uploads rejected because every part buffer is in use.
+     * <p>
+     * Returns 503 Service Unavailable with a Retry-After header.
+     */
+    @ExceptionHandler(UploadsOverloadedException.class)
+    public ResponseEntity<Map<String, String>> handleUploadsOverloaded(
+            UploadsOverloadedException ex) {
+
+        LOGGER.warn("Uploads overloaded: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(body);
+    }
+
+    /**
+     * Handles password hashing rejected because the hashing executor is saturated.
+     * <p>
+     * Returns 503 Service Unavailable with a Retry-After header.
+     */
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingOverloaded(
+            PasswordHashingOverloadedException ex) {
+
+        LOGGER.warn("Password hashing overloaded: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(body);
+    }
+
     /**
      * Handles inconsistent authentication state.
      * <p>
@@ -170,4 +330,47 @@ public class GlobalExceptionHandler {
                 .status(HttpStatus.BAD_REQUEST)
                 .body(body);
     }
+
+    /**
+     * Handles presigned uploads that cannot be accepted (missing, foreign or too large).
+     * <p>
+     * Returns: 400 Bad Request
+     */
+    @ExceptionHandler(InvalidUploadException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidUpload(InvalidUploadException ex) {
+        LOGGER.warn("Invalid upload: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(body);
+    }
+
+    /**
+     * Handles streamed uploads rejected for their size.
+     * <p>
+     * Returns: 413 Payload Too Large
+     */
+    @ExceptionHandler(UploadTooLargeException.class)
+    public ResponseEntity<Map<String, String>> handleUploadTooLarge(UploadTooLargeException ex) {
+        LOGGER.warn("Upload too large: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(body);
+    }
+
+    /**
+     * Handles image requests for a size that has no variant.
+     * <p>
+     * Returns: 400 Bad Request
+     */
+    @ExceptionHandler(UnsupportedImageSizeException.class)
+    public ResponseEntity<Map<String, String>> handleUnsupportedImageSize(
+            UnsupportedImageSizeException ex) {
+        LOGGER.warn("Unsupported image size: {}", ex.getMessage());
+
+        Map<String, String> body = new HashMap<>();
+        body.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(body);
+    }
 }
@@ -0,0 +1,19 @@
+package com.lucap.scubakeep.exception;
+
+import lombok.Getter;
+
+/**
+ * Exception thrown when an image is requested before its variants have been
+ * generated. The uploaded original is never served, since it may carry EXIF metadata
+ * such as the camera's GPS position.
+ */
+@Getter
+public class ImageNotReadyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ImageNotReadyException(long retryAfterSeconds) {
+        super("Image is still being processed, retry in " + retryAfterSeconds + " seconds");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
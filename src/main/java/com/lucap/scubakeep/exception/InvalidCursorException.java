@@ -0,0 +1,11 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when a pagination continuation token cannot be decoded.
+ */
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String cursor) {
+        super("Invalid pagination cursor: " + cursor);
+    }
+}
@@ -0,0 +1,13 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when a dive log import file cannot be read as a whole,
+ * e.g. a CSV file without the required header or malformed UDDF XML.
+ * Errors limited to single rows are reported per row instead.
+ */
+public class InvalidImportFileException extends RuntimeException {
+
+    public InvalidImportFileException(String reason) {
+        super("Invalid import file: " + reason);
+    }
+}
@@ -0,0 +1,11 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when a refresh token is unknown, expired, revoked or was already used.
+ */
+public class InvalidRefreshTokenException extends RuntimeException {
+
+    public InvalidRefreshTokenException() {
+        super("Invalid or expired refresh token");
+    }
+}
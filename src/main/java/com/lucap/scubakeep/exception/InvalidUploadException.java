@@ -0,0 +1,12 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when a presigned upload cannot be accepted: the object was not
+ * uploaded, does not belong to the resource, or is too large.
+ */
+public class InvalidUploadException extends RuntimeException {
+
+    public InvalidUploadException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package com.lucap.scubakeep.exception;
+
+import lombok.Getter;
+
+/**
+ * Exception thrown when an account has failed to log in too often recently from one
+ * client address.
+ */
+@Getter
+public class LoginThrottledException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(long retryAfterSeconds) {
+        super("Too many failed login attempts, retry in " + retryAfterSeconds + " seconds");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,12 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when a password cannot be hashed or checked in time because
+ * the hashing executor is saturated (e.g. during a login burst).
+ */
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    public PasswordHashingOverloadedException() {
+        super("Too many concurrent sign-ins, please retry shortly");
+    }
+}
@@ -8,4 +8,8 @@ public class StorageOperationException extends RuntimeException {
     public StorageOperationException(String objectKey) {
         super("Object storage operation failed for key: " + objectKey);
     }
+
+    public StorageOperationException(String objectKey, Throwable cause) {
+        super("Object storage operation failed for key: " + objectKey, cause);
+    }
 }
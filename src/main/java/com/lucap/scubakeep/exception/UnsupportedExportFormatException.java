@@ -0,0 +1,11 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when an export is requested in a format that is not supported.
+ */
+public class UnsupportedExportFormatException extends RuntimeException {
+
+    public UnsupportedExportFormatException(String format) {
+        super("Unsupported export format: " + format);
+    }
+}
@@ -0,0 +1,11 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when an image is requested in a size that is not generated.
+ */
+public class UnsupportedImageSizeException extends RuntimeException {
+
+    public UnsupportedImageSizeException(String size, String supported) {
+        super("Unsupported image size '" + size + "' (available: " + supported + ")");
+    }
+}
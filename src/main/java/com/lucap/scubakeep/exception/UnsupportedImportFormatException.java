@@ -0,0 +1,11 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when a dive log import file is in a format that is not supported.
+ */
+public class UnsupportedImportFormatException extends RuntimeException {
+
+    public UnsupportedImportFormatException(String format) {
+        super("Unsupported import format: " + format);
+    }
+}
@@ -0,0 +1,12 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when a list or feed is requested with a sort field or direction
+ * that is not supported.
+ */
+public class UnsupportedSortException extends RuntimeException {
+
+    public UnsupportedSortException(String reason) {
+        super("Unsupported sort: " + reason);
+    }
+}
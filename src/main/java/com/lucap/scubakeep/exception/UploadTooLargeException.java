@@ -0,0 +1,14 @@
+package com.lucap.scubakeep.exception;
+
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Exception thrown when a streamed upload is larger than the allowed maximum, either
+ * by its declared length or once the limit is crossed while reading it.
+ */
+public class UploadTooLargeException extends RuntimeException {
+
+    public UploadTooLargeException(DataSize maxSize) {
+        super("Upload exceeds the maximum size of " + maxSize.toMegabytes() + " MB");
+    }
+}
@@ -0,0 +1,12 @@
+package com.lucap.scubakeep.exception;
+
+/**
+ * Exception thrown when a streamed upload cannot get a part buffer in time because
+ * every buffer is held by other uploads' parts.
+ */
+public class UploadsOverloadedException extends RuntimeException {
+
+    public UploadsOverloadedException() {
+        super("Too many concurrent uploads, please retry shortly");
+    }
+}
@@ -0,0 +1,13 @@
+package com.lucap.scubakeep.export;
+
+import java.util.function.Function;
+
+/**
+ * A single CSV column: its header and how to extract the cell value from a row.
+ *
+ * @param header the column header
+ * @param value  extracts the cell value; {@code null} results in an empty cell
+ * @param <T>    the exported row type
+ */
+public record CsvColumn<T>(String header, Function<T, Object> value) {
+}
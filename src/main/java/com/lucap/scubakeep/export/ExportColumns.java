@@ -0,0 +1,49 @@
+package com.lucap.scubakeep.export;
+
+import com.lucap.scubakeep.dto.DiveLogResponseDTO;
+import com.lucap.scubakeep.dto.DiverResponseDTO;
+
+import java.util.List;
+
+/**
+ * CSV column layouts of the exported resources.
+ * <p>
+ * NDJSON exports serialize the full response DTOs; CSV exports use these columns.
+ */
+public final class ExportColumns {
+
+    public static final List<CsvColumn<DiveLogResponseDTO>> DIVE_LOGS = List.of(
+            new CsvColumn<>("id", DiveLogResponseDTO::getId),
+            new CsvColumn<>("diveDate", DiveLogResponseDTO::getDiveDate),
+            new CsvColumn<>("location", DiveLogResponseDTO::getLocation),
+            new CsvColumn<>("diveSite", DiveLogResponseDTO::getDiveSite),
+            new CsvColumn<>("maxDepth", DiveLogResponseDTO::getMaxDepth),
+            new CsvColumn<>("duration", DiveLogResponseDTO::getDuration),
+            new CsvColumn<>("diveBuddy", DiveLogResponseDTO::getDiveBuddy),
+            new CsvColumn<>("notes", DiveLogResponseDTO::getNotes),
+            new CsvColumn<>("diverId", DiveLogResponseDTO::getDiverId),
+            new CsvColumn<>("diverUsername", DiveLogResponseDTO::getDiverUsername),
+            new CsvColumn<>("imageUrl", DiveLogResponseDTO::getImageUrl),
+            new CsvColumn<>("createdAt", DiveLogResponseDTO::getCreatedAt),
+            new CsvColumn<>("updatedAt", DiveLogResponseDTO::getUpdatedAt)
+    );
+
+    public static final List<CsvColumn<DiverResponseDTO>> DIVERS = List.of(
+            new CsvColumn<>("id", DiverResponseDTO::getId),
+            new CsvColumn<>("username", DiverResponseDTO::getUsername),
+            new CsvColumn<>("email", DiverResponseDTO::getEmail),
+            new CsvColumn<>("firstName", DiverResponseDTO::getFirstName),
+            new CsvColumn<>("lastName", DiverResponseDTO::getLastName),
+            new CsvColumn<>("countryCode", DiverResponseDTO::getCountryCode),
+            new CsvColumn<>("role", DiverResponseDTO::getRole),
+            new CsvColumn<>("highestCertification", DiverResponseDTO::getHighestCertification),
+            new CsvColumn<>("specialties", DiverResponseDTO::getSpecialties),
+            new CsvColumn<>("totalDives", DiverResponseDTO::getTotalDives),
+            new CsvColumn<>("rank", DiverResponseDTO::getRank),
+            new CsvColumn<>("createdAt", DiverResponseDTO::getCreatedAt),
+            new CsvColumn<>("updatedAt", DiverResponseDTO::getUpdatedAt)
+    );
+
+    private ExportColumns() {
+    }
+}
@@ -0,0 +1,50 @@
+package com.lucap.scubakeep.export;
+
+import com.lucap.scubakeep.exception.UnsupportedExportFormatException;
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+
+/**
+ * Output formats supported by the streaming export endpoints.
+ */
+public enum ExportFormat {
+
+    /** Newline-delimited JSON: one JSON object per line. */
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    /** RFC 4180 comma-separated values with a header row. */
+    CSV("text/csv", "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Resolves a format from a case-insensitive request parameter.
+     *
+     * @param value the requested format, e.g. {@code csv}
+     * @return the matching format
+     * @throws UnsupportedExportFormatException if no format matches
+     */
+    public static ExportFormat fromParam(String value) {
+        for (ExportFormat format : values()) {
+            if (format.name().equals(value.trim().toUpperCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+        throw new UnsupportedExportFormatException(value);
+    }
+}
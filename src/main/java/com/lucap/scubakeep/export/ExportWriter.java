@@ -0,0 +1,142 @@
+package com.lucap.scubakeep.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes export rows one at a time to an output stream as NDJSON or CSV.
+ * <p>
+ * Nothing is accumulated: each row is serialized into a small buffer that is
+ * flushed to the client every {@value #FLUSH_INTERVAL} rows, so memory use does
+ * not depend on the number of exported rows.
+ * I/O failures (typically a client disconnect) are rethrown as
+ * {@link UncheckedIOException} so they abort the surrounding export.
+ *
+ * @param <T> the exported row type
+ */
+public final class ExportWriter<T> {
+
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private final ExportFormat format;
+    private final Writer writer;
+    private final ObjectMapper objectMapper;
+    private final List<CsvColumn<T>> columns;
+    private long rowCount;
+
+    private ExportWriter(
+            ExportFormat format,
+            OutputStream out,
+            ObjectMapper objectMapper,
+            List<CsvColumn<T>> columns
+    ) {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.objectMapper = objectMapper;
+        this.columns = columns;
+    }
+
+    /**
+     * Opens a writer and emits the CSV header row when applicable.
+     *
+     * @param format       the output format
+     * @param out          the response stream
+     * @param objectMapper the mapper used for NDJSON rows
+     * @param columns      the CSV columns (ignored for NDJSON)
+     * @param <T>          the exported row type
+     * @return a writer ready to accept rows
+     */
+    public static <T> ExportWriter<T> open(
+            ExportFormat format,
+            OutputStream out,
+            ObjectMapper objectMapper,
+            List<CsvColumn<T>> columns
+    ) {
+        ExportWriter<T> exportWriter = new ExportWriter<>(format, out, objectMapper, columns);
+        if (format == ExportFormat.CSV) {
+            exportWriter.writeLine(columns.stream()
+                    .map(column -> escapeCsv(column.header()))
+                    .collect(Collectors.joining(",")));
+        }
+        return exportWriter;
+    }
+
+    /**
+     * Writes a single row.
+     *
+     * @param row the row to export
+     */
+    public void write(T row) {
+        if (format == ExportFormat.CSV) {
+            writeLine(columns.stream()
+                    .map(column -> escapeCsv(toCell(column.value().apply(row))))
+                    .collect(Collectors.joining(",")));
+        } else {
+            try {
+                writeLine(objectMapper.writeValueAsString(row));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        rowCount++;
+        if (rowCount % FLUSH_INTERVAL == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Flushes buffered rows to the client.
+     */
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String toCell(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Collection<?> values) {
+            return values.stream().map(String::valueOf).sorted().collect(Collectors.joining(";"));
+        }
+        return value.toString();
+    }
+
+    /**
+     * Quotes a CSV cell when it contains a separator, quote or line break (RFC 4180).
+     */
+    private static String escapeCsv(String cell) {
+        if (cell.contains(",") || cell.contains("\"")
+                || cell.contains("\n") || cell.contains("\r")) {
+            return "\"" + cell.replace("\"", "\"\"") + "\"";
+        }
+        return cell;
+    }
+}
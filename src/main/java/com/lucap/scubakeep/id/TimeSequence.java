@@ -0,0 +1,32 @@
+package com.lucap.scubakeep.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free, strictly increasing {@code (millis, counter)} sequence shared by the id
+ * generators.
+ * <p>
+ * The state packs the last used millisecond and a {@value #COUNTER_BITS}-bit counter into
+ * one {@code long}. Each call takes the larger of "previous + 1" and "now with a zero
+ * counter" with a single CAS loop, so ids stay unique and ordered when many ids are
+ * drawn in the same millisecond (the counter overflows into the next millisecond) or
+ * when the wall clock steps backwards (the sequence keeps counting from its last value).
+ */
+final class TimeSequence {
+
+    static final int COUNTER_BITS = 12;
+    static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * Returns the next {@code millis << COUNTER_BITS | counter} value.
+     *
+     * @param nowMillis the current time in milliseconds (on the caller's epoch)
+     * @return a value strictly greater than any previously returned one
+     */
+    long next(long nowMillis) {
+        long floor = nowMillis << COUNTER_BITS;
+        return state.updateAndGet(prev -> Math.max(prev + 1, floor));
+    }
+}
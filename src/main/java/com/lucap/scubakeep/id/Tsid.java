@@ -0,0 +1,75 @@
+package com.lucap.scubakeep.id;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+
+/**
+ * Time-sorted 64-bit ids (Snowflake layout) for high-volume tables.
+ * <p>
+ * Layout, most significant bit first:
+ * <pre>
+ *   0 | 41 bits millis since 2024-01-01Z | 10 bits node | 12 bits counter
+ * </pre>
+ * Ids are positive, strictly increasing within a JVM and roughly ordered across nodes,
+ * so new rows are appended at the right edge of the clustered index and the id alone
+ * is a valid keyset cursor. The node id is read from the {@code scubakeep.id.node}
+ * system property or the {@code SCUBAKEEP_NODE_ID} environment variable and must be
+ * unique per running instance; when unset a random node id is picked at startup.
+ * <p>
+ * Values exceed 2<sup>53</sup>, the largest integer a JavaScript number holds exactly,
+ * so they are written to JSON as strings (see
+ * {@link com.lucap.scubakeep.dto.DiveLogResponseDTO#getId()}).
+ */
+public final class Tsid {
+
+    private static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int NODE_SHIFT = TimeSequence.COUNTER_BITS;
+    private static final int TIME_SHIFT = NODE_BITS + TimeSequence.COUNTER_BITS;
+    private static final long NODE = resolveNode();
+
+    private static final TimeSequence SEQUENCE = new TimeSequence();
+
+    private Tsid() {
+    }
+
+    /**
+     * Generates the next id.
+     *
+     * @return a new, unique, time-ordered id
+     */
+    public static long next() {
+        long sequence = SEQUENCE.next(System.currentTimeMillis() - EPOCH_MILLIS);
+        long millis = sequence >>> TimeSequence.COUNTER_BITS;
+        return millis << TIME_SHIFT
+                | NODE << NODE_SHIFT
+                | sequence & TimeSequence.COUNTER_MASK;
+    }
+
+    /**
+     * Extracts the creation time encoded in an id.
+     *
+     * @param id an id produced by {@link #next()}
+     * @return the millisecond at which the id was generated
+     */
+    public static Instant timestamp(long id) {
+        return Instant.ofEpochMilli((id >>> TIME_SHIFT) + EPOCH_MILLIS);
+    }
+
+    private static long resolveNode() {
+        String configured = System.getProperty(
+                "scubakeep.id.node",
+                System.getenv("SCUBAKEEP_NODE_ID")
+        );
+        long maxNode = (1L << NODE_BITS) - 1;
+        if (configured == null || configured.isBlank()) {
+            return new SecureRandom().nextInt((int) maxNode + 1);
+        }
+
+        long node = Long.parseLong(configured.trim());
+        if (node < 0 || node > maxNode) {
+            throw new IllegalStateException("Node id must be between 0 and " + maxNode);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,20 @@
+package com.lucap.scubakeep.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code Long} identifier generated in-process with {@link Tsid#next()}.
+ * <p>
+ * Unlike {@code IDENTITY}, the id is known before the INSERT, so Hibernate can batch
+ * inserts and does not need a round trip per persisted entity.
+ */
+@IdGeneratorType(TsidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TsidId {
+}
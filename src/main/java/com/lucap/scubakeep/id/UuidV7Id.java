@@ -0,0 +1,20 @@
+package com.lucap.scubakeep.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code UUID} identifier generated in-process with {@link UuidV7#next()}.
+ * <p>
+ * Unlike random (version 4) UUIDs, consecutive ids are adjacent in the primary key
+ * index, so inserts do not scatter across (and fragment) the table.
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface UuidV7Id {
+}
@@ -0,0 +1,179 @@
+package com.lucap.scubakeep.importer;
+
+import com.lucap.scubakeep.dto.DiveLogRequestDTO;
+import com.lucap.scubakeep.exception.InvalidImportFileException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads dives from an RFC 4180 CSV file.
+ * <p>
+ * The first record must be a header. Columns are matched by name (case-insensitive),
+ * using the names of the CSV export: {@code diveDate} (ISO date), {@code location},
+ * {@code diveSite}, {@code maxDepth} (meters), {@code duration} (minutes) and the
+ * optional {@code diveBuddy} and {@code notes}. Other columns are ignored, so an
+ * exported file can be imported again as-is.
+ */
+class CsvDiveLogReader implements DiveLogRecordReader {
+
+    private static final List<String> REQUIRED_COLUMNS =
+            List.of("divedate", "location", "divesite", "maxdepth", "duration");
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private int rowNumber;
+
+    CsvDiveLogReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        readHeader();
+    }
+
+    @Override
+    public ImportRecord next() {
+        List<String> cells = readRecord();
+        while (cells != null && cells.size() == 1 && cells.get(0).isBlank()) {
+            cells = readRecord();
+        }
+        if (cells == null) {
+            return null;
+        }
+
+        rowNumber++;
+        try {
+            return ImportRecord.parsed(rowNumber, toDive(cells));
+        } catch (DateTimeParseException ex) {
+            return ImportRecord.failed(rowNumber,
+                    "diveDate: invalid date '" + cell(cells, "divedate") + "'");
+        } catch (NumberFormatException ex) {
+            return ImportRecord.failed(rowNumber, "maxDepth/duration: invalid number");
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void readHeader() {
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new InvalidImportFileException("empty CSV file");
+        }
+
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            columns.putIfAbsent(name, i);
+        }
+
+        List<String> missing = REQUIRED_COLUMNS.stream()
+                .filter(column -> !columns.containsKey(column))
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new InvalidImportFileException("missing CSV columns " + missing);
+        }
+    }
+
+    private DiveLogRequestDTO toDive(List<String> cells) {
+        DiveLogRequestDTO dive = new DiveLogRequestDTO();
+        String date = cell(cells, "divedate");
+        String depth = cell(cells, "maxdepth");
+        String duration = cell(cells, "duration");
+
+        dive.setDiveDate(date == null ? null : LocalDate.parse(date));
+        dive.setLocation(cell(cells, "location"));
+        dive.setDiveSite(cell(cells, "divesite"));
+        dive.setMaxDepth(depth == null ? null : Double.valueOf(depth));
+        dive.setDuration(duration == null ? null : Integer.valueOf(duration));
+        dive.setDiveBuddy(cell(cells, "divebuddy"));
+        dive.setNotes(cell(cells, "notes"));
+        return dive;
+    }
+
+    /**
+     * Returns the trimmed cell of the given column, or null if absent or blank.
+     */
+    private String cell(List<String> cells, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= cells.size()) {
+            return null;
+        }
+        String value = cells.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Reads one CSV record, honouring quoted cells that contain separators,
+     * escaped quotes ({@code ""}) or line breaks.
+     *
+     * @return the cells of the record, or null at end of input
+     */
+    private List<String> readRecord() {
+        int ch = read();
+        if (ch == -1) {
+            return null;
+        }
+
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        while (ch != -1 && ch != '\n') {
+            if (ch == '"') {
+                readQuoted(cell);
+            } else if (ch == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else if (ch != '\r') {
+                cell.append((char) ch);
+            }
+            ch = read();
+        }
+
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    /**
+     * Appends the content of a quoted section up to its closing quote.
+     */
+    private void readQuoted(StringBuilder cell) {
+        try {
+            int ch = reader.read();
+            while (ch != -1) {
+                if (ch == '"') {
+                    reader.mark(1);
+                    if (reader.read() != '"') {
+                        reader.reset();
+                        return;
+                    }
+                }
+                cell.append((char) ch);
+                ch = reader.read();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private int read() {
+        try {
+            return reader.read();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
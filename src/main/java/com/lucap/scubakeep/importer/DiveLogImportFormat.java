@@ -0,0 +1,61 @@
+package com.lucap.scubakeep.importer;
+
+import com.lucap.scubakeep.exception.UnsupportedImportFormatException;
+
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * File formats accepted by the dive log import.
+ */
+public enum DiveLogImportFormat {
+
+    /** CSV with a header row, using the column names of the CSV export. */
+    CSV(CsvDiveLogReader::new),
+
+    /** Universal Dive Data Format (XML), as exported by most dive computers and logbooks. */
+    UDDF(UddfDiveLogReader::new);
+
+    private final Function<InputStream, DiveLogRecordReader> readerFactory;
+
+    DiveLogImportFormat(Function<InputStream, DiveLogRecordReader> readerFactory) {
+        this.readerFactory = readerFactory;
+    }
+
+    /**
+     * Opens a reader over the given file content.
+     *
+     * @param in the file content
+     * @return a reader positioned before the first dive
+     */
+    public DiveLogRecordReader open(InputStream in) {
+        return readerFactory.apply(in);
+    }
+
+    /**
+     * Resolves the format from an explicit request parameter, falling back
+     * to the extension of the uploaded file name.
+     *
+     * @param format   the requested format, or null
+     * @param filename the uploaded file name, or null
+     * @return the matching format
+     * @throws UnsupportedImportFormatException if no format matches
+     */
+    public static DiveLogImportFormat resolve(String format, String filename) {
+        String value = format;
+        if ((value == null || value.isBlank()) && filename != null && filename.contains(".")) {
+            value = filename.substring(filename.lastIndexOf('.') + 1);
+        }
+        if (value == null || value.isBlank()) {
+            throw new UnsupportedImportFormatException("unknown");
+        }
+
+        for (DiveLogImportFormat candidate : values()) {
+            if (candidate.name().equals(value.trim().toUpperCase(Locale.ROOT))) {
+                return candidate;
+            }
+        }
+        throw new UnsupportedImportFormatException(value);
+    }
+}
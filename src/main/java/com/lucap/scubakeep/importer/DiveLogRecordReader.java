@@ -0,0 +1,22 @@
+package com.lucap.scubakeep.importer;
+
+/**
+ * Pull-based reader over the dives of an import file.
+ * <p>
+ * Implementations parse the file incrementally, so only the current row
+ * is held in memory regardless of the file size.
+ */
+public interface DiveLogRecordReader extends AutoCloseable {
+
+    /**
+     * Reads the next dive.
+     *
+     * @return the next record, or null when the file has been fully read
+     * @throws com.lucap.scubakeep.exception.InvalidImportFileException
+     *         if the file structure is malformed
+     */
+    ImportRecord next();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,24 @@
+package com.lucap.scubakeep.importer;
+
+import com.lucap.scubakeep.dto.DiveLogRequestDTO;
+
+/**
+ * A single dive read from an import file.
+ * <p>
+ * Exactly one of {@code dive} and {@code error} is set: rows that cannot be
+ * parsed (e.g. a malformed number) carry a parse error instead of a dive.
+ *
+ * @param rowNumber 1-based position of the dive in the file (header excluded)
+ * @param dive      the parsed dive, or null if the row could not be parsed
+ * @param error     the parse error, or null if the row was parsed
+ */
+public record ImportRecord(int rowNumber, DiveLogRequestDTO dive, String error) {
+
+    public static ImportRecord parsed(int rowNumber, DiveLogRequestDTO dive) {
+        return new ImportRecord(rowNumber, dive, null);
+    }
+
+    public static ImportRecord failed(int rowNumber, String error) {
+        return new ImportRecord(rowNumber, null, error);
+    }
+}
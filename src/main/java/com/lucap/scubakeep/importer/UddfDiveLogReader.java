@@ -0,0 +1,199 @@
+package com.lucap.scubakeep.importer;
+
+import com.lucap.scubakeep.dto.DiveLogRequestDTO;
+import com.lucap.scubakeep.exception.InvalidImportFileException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads dives from a UDDF (Universal Dive Data Format) file with a StAX pull parser.
+ * <p>
+ * Dive sites ({@code divesite/site}) and buddies ({@code diver/buddy}) precede the
+ * dives in a UDDF document and are kept in small lookup maps; each
+ * {@code profiledata//dive} element is then turned into one record, so the
+ * (potentially large) dive list is never held in memory.
+ * <p>
+ * Mapping: {@code datetime} to the dive date, {@code greatestdepth} (meters) to
+ * the max depth, {@code diveduration} (seconds, rounded up to minutes) to the
+ * duration, linked site name and location, linked buddy names and {@code notes/para}.
+ * DTDs and external entities are disabled.
+ */
+class UddfDiveLogReader implements DiveLogRecordReader {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final XMLStreamReader xml;
+    private final Map<String, String[]> sites = new HashMap<>();
+    private final Map<String, String> buddies = new HashMap<>();
+    private int rowNumber;
+
+    UddfDiveLogReader(InputStream in) {
+        try {
+            this.xml = FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException ex) {
+            throw new InvalidImportFileException("malformed UDDF: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public ImportRecord next() {
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (xml.getLocalName()) {
+                    case "site" -> readSite();
+                    case "buddy" -> readBuddy();
+                    case "dive" -> {
+                        return readDive(++rowNumber);
+                    }
+                    default -> {
+                        // Not relevant for the import
+                    }
+                }
+            }
+            return null;
+        } catch (XMLStreamException ex) {
+            throw new InvalidImportFileException("malformed UDDF: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            xml.close();
+        } catch (XMLStreamException ex) {
+            throw new InvalidImportFileException("malformed UDDF: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads a {@code site} element into {@code id -> [name, location]}.
+     */
+    private void readSite() throws XMLStreamException {
+        String id = xml.getAttributeValue(null, "id");
+        String[] site = new String[2];
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("name".equals(name) && depth == 1) {
+                    site[0] = xml.getElementText().trim();
+                } else if ("location".equals(name)) {
+                    site[1] = xml.getElementText().trim();
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        if (id != null) {
+            sites.put(id, site);
+        }
+    }
+
+    /**
+     * Reads a {@code buddy} element into {@code id -> "firstname lastname"}.
+     */
+    private void readBuddy() throws XMLStreamException {
+        String id = xml.getAttributeValue(null, "id");
+        StringBuilder name = new StringBuilder();
+        while (!isEndOf(xml.next(), "buddy")) {
+            if (xml.isStartElement() && ("firstname".equals(xml.getLocalName())
+                    || "lastname".equals(xml.getLocalName()))) {
+                name.append(name.isEmpty() ? "" : " ").append(xml.getElementText().trim());
+            }
+        }
+        if (id != null) {
+            buddies.put(id, name.toString());
+        }
+    }
+
+    /**
+     * Reads a {@code dive} element into a record, resolving site and buddy links.
+     */
+    private ImportRecord readDive(int row) throws XMLStreamException {
+        Map<String, String> values = new HashMap<>();
+        List<String> links = new ArrayList<>();
+        List<String> notes = new ArrayList<>();
+
+        while (!isEndOf(xml.next(), "dive")) {
+            if (!xml.isStartElement()) {
+                continue;
+            }
+            switch (xml.getLocalName()) {
+                case "link" -> links.add(xml.getAttributeValue(null, "ref"));
+                case "para" -> notes.add(xml.getElementText().trim());
+                case "datetime", "greatestdepth", "diveduration" ->
+                        values.putIfAbsent(xml.getLocalName(), xml.getElementText().trim());
+                default -> {
+                    // Not relevant for the import
+                }
+            }
+        }
+
+        try {
+            return ImportRecord.parsed(row, toDive(values, links, notes));
+        } catch (DateTimeParseException | IndexOutOfBoundsException ex) {
+            return ImportRecord.failed(row,
+                    "datetime: invalid date '" + values.get("datetime") + "'");
+        } catch (NumberFormatException ex) {
+            return ImportRecord.failed(row, "greatestdepth/diveduration: invalid number");
+        }
+    }
+
+    private DiveLogRequestDTO toDive(
+            Map<String, String> values,
+            List<String> links,
+            List<String> notes
+    ) {
+        DiveLogRequestDTO dive = new DiveLogRequestDTO();
+        String datetime = values.get("datetime");
+        String depth = values.get("greatestdepth");
+        String seconds = values.get("diveduration");
+
+        dive.setDiveDate(datetime == null ? null : LocalDate.parse(datetime.substring(0, 10)));
+        dive.setMaxDepth(depth == null ? null : Double.valueOf(depth));
+        dive.setDuration(seconds == null
+                ? null
+                : (int) Math.ceil(Double.parseDouble(seconds) / 60.0));
+
+        List<String> buddyNames = new ArrayList<>();
+        for (String ref : links) {
+            String[] site = sites.get(ref);
+            if (site != null) {
+                dive.setDiveSite(site[0]);
+                dive.setLocation(site[1] != null ? site[1] : site[0]);
+            } else if (buddies.containsKey(ref)) {
+                buddyNames.add(buddies.get(ref));
+            }
+        }
+        dive.setDiveBuddy(buddyNames.isEmpty() ? null : String.join(", ", buddyNames));
+        dive.setNotes(notes.isEmpty() ? null : String.join("\n", notes));
+        return dive;
+    }
+
+    private boolean isEndOf(int event, String element) {
+        return event == XMLStreamConstants.END_ELEMENT && element.equals(xml.getLocalName());
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -5,6 +5,8 @@ import com.lucap.scubakeep.dto.DiveLogResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogUpdateRequestDTO;
 import com.lucap.scubakeep.entity.DiveLog;
 import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.projection.DiveLogView;
+import com.lucap.scubakeep.storage.ObjectDownloads;
 
 /**
  * Mapper class responsible for converting between DiveLog entities
@@ -58,8 +60,21 @@ public class DiveLogMapper {
      * @return a corresponding DiveLogResponseDTO
      */
     public static DiveLogResponseDTO toResponseDTO(DiveLog diveLog) {
-        Diver diver = diveLog.getDiver();
+        return toResponseDTO(diveLog, diveLog.getDiver().getUsername());
+    }
 
+    /**
+     * Converts a {@link DiveLog} entity into a {@link DiveLogResponseDTO} when the
+     * owner's username is already known.
+     * <p>
+     * Only the id of the owning diver is read, so an uninitialized reference
+     * (see {@code getReferenceById}) is not loaded.
+     *
+     * @param diveLog       the DiveLog entity
+     * @param diverUsername the username of the owning diver
+     * @return a corresponding DiveLogResponseDTO
+     */
+    public static DiveLogResponseDTO toResponseDTO(DiveLog diveLog, String diverUsername) {
         return DiveLogResponseDTO.builder()
                 .id(diveLog.getId())
                 .diveDate(diveLog.getDiveDate())
@@ -69,13 +84,55 @@ public class DiveLogMapper {
                 .duration(diveLog.getDuration())
                 .notes(diveLog.getNotes())
                 .diveBuddy(diveLog.getDiveBuddy())
-                .diverId(diver.getId())
-                .diverUsername(diver.getUsername())
-                .imageUrl(diveLog.getImagePath() == null
-                        ? null
-                        : "/api/divelogs/" + diveLog.getId() + "/image")
+                .diverId(diveLog.getDiver().getId())
+                .diverUsername(diverUsername)
+                .imageUrl(imageUrl(diveLog.getId(), diveLog.getImagePath()))
+                .imageWidth(diveLog.getImageWidth())
+                .imageHeight(diveLog.getImageHeight())
+                .imagePlaceholder(diveLog.getImagePlaceholder())
                 .createdAt(diveLog.getCreatedAt())
                 .updatedAt(diveLog.getUpdatedAt())
                 .build();
     }
+
+    /**
+     * Converts a {@link DiveLogView} projection into a {@link DiveLogResponseDTO}.
+     * <p>
+     * The projection already carries the owner's id and username, so no
+     * entity or lazy association is touched.
+     *
+     * @param view the flat dive log projection
+     * @return a corresponding DiveLogResponseDTO
+     */
+    public static DiveLogResponseDTO toResponseDTO(DiveLogView view) {
+        return DiveLogResponseDTO.builder()
+                .id(view.id())
+                .diveDate(view.diveDate())
+                .location(view.location())
+                .diveSite(view.diveSite())
+                .maxDepth(view.maxDepth())
+                .duration(view.duration())
+                .notes(view.notes())
+                .diveBuddy(view.diveBuddy())
+                .diverId(view.diverId())
+                .diverUsername(view.diverUsername())
+                .imageUrl(imageUrl(view.id(), view.imagePath()))
+                .imageWidth(view.imageWidth())
+                .imageHeight(view.imageHeight())
+                .imagePlaceholder(view.imagePlaceholder())
+                .createdAt(view.createdAt())
+                .updatedAt(view.updatedAt())
+                .build();
+    }
+
+    /**
+     * Builds the versioned download URL of a dive log image, which clients may
+     * cache as immutable (a new upload changes the version). Without a {@code size}
+     * it serves the metadata-free {@code full} variant once it exists.
+     */
+    private static String imageUrl(Long id, String imagePath) {
+        return imagePath == null
+                ? null
+                : "/api/divelogs/" + id + "/image?v=" + ObjectDownloads.version(imagePath);
+    }
 }
@@ -5,9 +5,11 @@ import com.lucap.scubakeep.dto.DiverResponseDTO;
 import com.lucap.scubakeep.dto.DiverUpdateRequestDTO;
 import com.lucap.scubakeep.entity.Diver;
 import com.lucap.scubakeep.entity.Rank;
+import com.lucap.scubakeep.storage.ObjectDownloads;
 
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -64,7 +66,12 @@ public class DiverMapper {
         diver.setFirstName(dto.getFirstName());
         diver.setLastName(dto.getLastName());
         diver.setCountryCode(normalizeCountryCode(dto.getCountryCode()));
-        diver.setProfilePicturePath(dto.getProfilePicturePath());
+        if (!Objects.equals(diver.getProfilePicturePath(), dto.getProfilePicturePath())) {
+            diver.setProfilePicturePath(dto.getProfilePicturePath());
+            diver.setProfilePictureWidth(null);
+            diver.setProfilePictureHeight(null);
+            diver.setProfilePicturePlaceholder(null);
+        }
         diver.setHighestCertification(dto.getHighestCertification());
 
         // Specialties only changes if client explicitly provides it
@@ -76,16 +83,16 @@ public class DiverMapper {
     /**
      * Converts a {@link Diver} entity into a {@link DiverResponseDTO}.
      * <p>
-     * {@code totalDives} is computed from {@code DiveLog} records (not stored on the Diver entity).
-     * {@code rank} is derived from the computed total dive count.
+     * {@code totalDives} is read from the denormalized counter on the Diver entity,
+     * so no {@code DiveLog} query is needed.
+     * {@code rank} is derived from that total dive count.
      *
      * @param diver the Diver entity
-     * @param totalDives the total number of dives logged for this diver (computed externally)
      * @return a DTO containing diver information for API responses
      */
-    public static DiverResponseDTO toResponseDTO(Diver diver, long totalDives) {
+    public static DiverResponseDTO toResponseDTO(Diver diver) {
 
-        long dives = Math.max(0L, totalDives);
+        long dives = Math.max(0L, diver.getTotalDives());
         String rank = Rank.fromTotalDives(dives).getDisplayName();
 
         return DiverResponseDTO.builder()
@@ -96,6 +103,10 @@ public class DiverMapper {
                 .lastName(diver.getLastName())
                 .countryCode(diver.getCountryCode())
                 .profilePicturePath(diver.getProfilePicturePath())
+                .profilePictureUrl(profilePictureUrl(diver))
+                .profilePictureWidth(diver.getProfilePictureWidth())
+                .profilePictureHeight(diver.getProfilePictureHeight())
+                .profilePicturePlaceholder(diver.getProfilePicturePlaceholder())
                 .role(diver.getRole())
                 .highestCertification(diver.getHighestCertification())
                 .specialties(copySpecialties(diver.getSpecialties()))
@@ -133,4 +144,17 @@ public class DiverMapper {
     private static String normalizeCountryCode(String countryCode) {
         return countryCode == null ? null : countryCode.trim().toUpperCase(Locale.ROOT);
     }
+
+    /**
+     * Builds the URL of the profile picture: uploaded pictures get their versioned
+     * download URL, which clients may cache as immutable and which serves the
+     * metadata-free {@code full} variant once it exists; external links are kept.
+     */
+    private static String profilePictureUrl(Diver diver) {
+        String path = diver.getProfilePicturePath();
+        if (path == null || path.startsWith("http")) {
+            return path;
+        }
+        return "/api/divers/" + diver.getId() + "/image?v=" + ObjectDownloads.version(path);
+    }
 }
@@ -0,0 +1,120 @@
+package com.lucap.scubakeep.pagination;
+
+import com.lucap.scubakeep.exception.InvalidCursorException;
+import com.lucap.scubakeep.projection.DiveLogView;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Continuation token for keyset (seek) pagination over dive logs.
+ * <p>
+ * Identifies the last row of a page by its {@code (sort key, id)} pair, together with
+ * the sort it was issued for, e.g. {@code maxDepth DESC, id DESC}. The next page is
+ * fetched with a seek predicate instead of an OFFSET, so latency does not grow with
+ * scroll depth. A cursor can only continue the sort it was issued for.
+ * <p>
+ * Clients only ever see the encoded, URL-safe form and must treat it as opaque.
+ * Version 1 tokens (newest first only) are still accepted.
+ *
+ * @param sort      the sort field of the page
+ * @param direction the sort direction of the page
+ * @param value     sort key of the last returned dive log
+ * @param id        id of the last returned dive log (tiebreaker for equal sort keys)
+ */
+public record DiveLogCursor(
+        DiveLogSort sort,
+        Sort.Direction direction,
+        Comparable<?> value,
+        Long id
+) {
+
+    private static final String VERSION = "v2";
+    private static final String LEGACY_VERSION = "v1";
+    private static final String SEPARATOR = ":";
+
+    /**
+     * Creates a cursor positioned after the given dive log.
+     *
+     * @param last      the last dive log of a page
+     * @param sort      the sort field of the page
+     * @param direction the sort direction of the page
+     * @return the cursor of the following page
+     */
+    public static DiveLogCursor after(
+            DiveLogView last,
+            DiveLogSort sort,
+            Sort.Direction direction
+    ) {
+        return new DiveLogCursor(sort, direction, sort.valueOf(last), last.id());
+    }
+
+    /**
+     * Encodes this cursor into an opaque, URL-safe token.
+     * <p>
+     * The sort key comes last, so it may itself contain separators (e.g. an ISO instant).
+     *
+     * @return the encoded continuation token
+     */
+    public String encode() {
+        String raw = VERSION + SEPARATOR
+                + sort.name() + SEPARATOR
+                + direction.name() + SEPARATOR
+                + id + SEPARATOR
+                + value;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a continuation token previously produced by {@link #encode()}.
+     *
+     * @param token the opaque token sent by the client
+     * @return the decoded cursor
+     * @throws InvalidCursorException if the token is malformed or of an unknown version
+     */
+    public static DiveLogCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 5);
+
+            if (parts.length == 4 && LEGACY_VERSION.equals(parts[0])) {
+                return decodeLegacy(parts);
+            }
+            if (parts.length != 5 || !VERSION.equals(parts[0])) {
+                throw new InvalidCursorException(token);
+            }
+
+            DiveLogSort sort = DiveLogSort.valueOf(parts[1]);
+            return new DiveLogCursor(
+                    sort,
+                    Sort.Direction.valueOf(parts[2]),
+                    sort.parseValue(parts[4]),
+                    Long.parseLong(parts[3])
+            );
+        } catch (IllegalArgumentException | DateTimeException ex) {
+            throw new InvalidCursorException(token);
+        }
+    }
+
+    /**
+     * Decodes a version 1 token ({@code v1:epochSecond:nano:id}), which was only
+     * issued for the newest-first feed.
+     */
+    private static DiveLogCursor decodeLegacy(String[] parts) {
+        Instant createdAt = Instant.ofEpochSecond(
+                Long.parseLong(parts[1]),
+                Long.parseLong(parts[2])
+        );
+        return new DiveLogCursor(
+                DiveLogSort.CREATED_AT,
+                Sort.Direction.DESC,
+                createdAt,
+                Long.parseLong(parts[3])
+        );
+    }
+}
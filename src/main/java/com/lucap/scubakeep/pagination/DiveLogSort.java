@@ -0,0 +1,129 @@
+package com.lucap.scubakeep.pagination;
+
+import com.lucap.scubakeep.exception.UnsupportedSortException;
+import com.lucap.scubakeep.projection.DiveLogView;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Fields dive log lists and feeds can be sorted by.
+ * <p>
+ * Each field is backed by an index on {@code (field, id)} and one on
+ * {@code (diver_id, field, id)} (see the V2 and V3 migrations) and is always combined
+ * with {@code id} in the same direction as a tiebreaker. The order is therefore
+ * deterministic, is read straight from an index instead of a filesort, and can be
+ * continued with a keyset {@link DiveLogCursor}. Any other field is rejected before
+ * a query is built.
+ */
+public enum DiveLogSort {
+
+    CREATED_AT("createdAt", DiveLogView::createdAt, Instant::parse, "created_at", "created"),
+
+    DIVE_DATE("diveDate", DiveLogView::diveDate, LocalDate::parse, "dive_date", "date"),
+
+    MAX_DEPTH("maxDepth", DiveLogView::maxDepth, Double::valueOf, "max_depth", "depth");
+
+    /** Unique tiebreaker appended to every sort. */
+    public static final String TIEBREAKER = "id";
+
+    private final String property;
+    private final Function<DiveLogView, Comparable<?>> extractor;
+    private final Function<String, Comparable<?>> parser;
+    private final List<String> aliases;
+
+    DiveLogSort(
+            String property,
+            Function<DiveLogView, Comparable<?>> extractor,
+            Function<String, Comparable<?>> parser,
+            String... aliases
+    ) {
+        this.property = property;
+        this.extractor = extractor;
+        this.parser = parser;
+        this.aliases = List.of(aliases);
+    }
+
+    /**
+     * Returns the entity property this field sorts by.
+     *
+     * @return the property name, e.g. {@code diveDate}
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Builds the sort for this field with the id tiebreaker in the same direction.
+     *
+     * @param direction the sort direction
+     * @return the sort on {@code (property, id)}
+     */
+    public Sort toSort(Sort.Direction direction) {
+        return Sort.by(direction, property, TIEBREAKER);
+    }
+
+    /**
+     * Returns the sort key of a dive log, used to position a cursor after it.
+     *
+     * @param view the dive log
+     * @return the value of this field
+     */
+    public Comparable<?> valueOf(DiveLogView view) {
+        return extractor.apply(view);
+    }
+
+    /**
+     * Parses a sort key previously formatted with {@code toString()}.
+     *
+     * @param value the formatted sort key
+     * @return the parsed value
+     * @throws IllegalArgumentException or {@link java.time.DateTimeException} if malformed
+     */
+    public Comparable<?> parseValue(String value) {
+        return parser.apply(value);
+    }
+
+    /**
+     * Resolves a sort field from a case-insensitive request parameter.
+     *
+     * @param value the requested field, e.g. {@code diveDate} or {@code dive_date}
+     * @return the matching field
+     * @throws UnsupportedSortException if the field is not sortable
+     */
+    public static DiveLogSort fromParam(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (DiveLogSort sort : values()) {
+            if (sort.property.toLowerCase(Locale.ROOT).equals(normalized)
+                    || sort.aliases.contains(normalized)) {
+                return sort;
+            }
+        }
+        throw new UnsupportedSortException("field '" + value + "' (sortable: " + supported() + ")");
+    }
+
+    /**
+     * Resolves a sort direction from a case-insensitive request parameter.
+     *
+     * @param value the requested direction, {@code asc} or {@code desc}
+     * @return the matching direction
+     * @throws UnsupportedSortException if the value is neither
+     */
+    public static Sort.Direction directionFromParam(String value) {
+        return Sort.Direction.fromOptionalString(value.trim())
+                .orElseThrow(() -> new UnsupportedSortException(
+                        "direction '" + value + "' (use asc or desc)"));
+    }
+
+    private static String supported() {
+        return Arrays.stream(values())
+                .map(DiveLogSort::getProperty)
+                .collect(Collectors.joining(", "));
+    }
+}
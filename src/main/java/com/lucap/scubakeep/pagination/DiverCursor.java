@@ -0,0 +1,56 @@
+package com.lucap.scubakeep.pagination;
+
+import com.lucap.scubakeep.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Continuation token for keyset (seek) pagination over the diver directory.
+ * <p>
+ * The directory is ordered by {@code username ASC}; usernames are unique,
+ * so the last username of a page identifies the position without a tiebreaker.
+ * <p>
+ * Clients only ever see the encoded, URL-safe form and must treat it as opaque.
+ *
+ * @param username username of the last returned diver
+ */
+public record DiverCursor(String username) {
+
+    private static final String VERSION = "v1";
+    private static final String SEPARATOR = ":";
+
+    /**
+     * Encodes this cursor into an opaque, URL-safe token.
+     *
+     * @return the encoded continuation token
+     */
+    public String encode() {
+        String raw = VERSION + SEPARATOR + username;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a continuation token previously produced by {@link #encode()}.
+     *
+     * @param token the opaque token sent by the client
+     * @return the decoded cursor
+     * @throws InvalidCursorException if the token is malformed or of an unknown version
+     */
+    public static DiverCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 2);
+
+            if (parts.length != 2 || !VERSION.equals(parts[0]) || parts[1].isEmpty()) {
+                throw new InvalidCursorException(token);
+            }
+
+            return new DiverCursor(parts[1]);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException(token);
+        }
+    }
+}
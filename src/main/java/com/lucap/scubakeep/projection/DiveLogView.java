@@ -0,0 +1,50 @@
+package com.lucap.scubakeep.projection;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Flat, read-only projection of a dive log joined with its owner's username.
+ * <p>
+ * Built directly by JPQL constructor expressions in
+ * {@link com.lucap.scubakeep.repository.DiveLogRepository}, so list and detail reads
+ * return everything a {@code DiveLogResponseDTO} needs in a single round trip,
+ * without hydrating managed entities or touching the lazy {@code diver} association.
+ *
+ * @param id               the dive log id
+ * @param diveDate         the date of the dive
+ * @param location         the dive location
+ * @param diveSite         the dive site
+ * @param maxDepth         the maximum depth reached
+ * @param duration         the dive duration in minutes
+ * @param diveBuddy        the optional dive buddy
+ * @param notes            the optional notes
+ * @param imagePath        the object storage key of the image, or null
+ * @param imageWidth       the image width, once its variants have been generated
+ * @param imageHeight      the image height, once its variants have been generated
+ * @param imagePlaceholder the blurred preview of the image, or null
+ * @param createdAt        creation timestamp
+ * @param updatedAt        last update timestamp
+ * @param diverId          the owning diver's id
+ * @param diverUsername    the owning diver's username
+ */
+public record DiveLogView(
+        Long id,
+        LocalDate diveDate,
+        String location,
+        String diveSite,
+        Double maxDepth,
+        Integer duration,
+        String diveBuddy,
+        String notes,
+        String imagePath,
+        Integer imageWidth,
+        Integer imageHeight,
+        String imagePlaceholder,
+        Instant createdAt,
+        Instant updatedAt,
+        UUID diverId,
+        String diverUsername
+) {
+}
@@ -0,0 +1,25 @@
+package com.lucap.scubakeep.projection;
+
+import com.lucap.scubakeep.entity.Role;
+
+import java.util.UUID;
+
+/**
+ * Slim, read-only projection of the columns needed to log a diver in.
+ * <p>
+ * Built by a JPQL constructor expression in
+ * {@link com.lucap.scubakeep.repository.DiverRepository}, so a login reads one row
+ * and issues the token from it without loading the {@code Diver} entity.
+ *
+ * @param id       the diver id
+ * @param username the diver's username
+ * @param password the BCrypt hash of the password
+ * @param role     the diver's role
+ */
+public record DiverCredentials(
+        UUID id,
+        String username,
+        String password,
+        Role role
+) {
+}
@@ -0,0 +1,21 @@
+package com.lucap.scubakeep.projection;
+
+import java.util.UUID;
+
+/**
+ * The unique identifiers of a diver (id, username and email).
+ * <p>
+ * Built by a JPQL constructor expression in
+ * {@link com.lucap.scubakeep.repository.DiverRepository} to fill the in-memory
+ * filter of taken usernames and emails.
+ *
+ * @param id       the diver id
+ * @param username the diver's username
+ * @param email    the diver's email
+ */
+public record DiverIdentifiers(
+        UUID id,
+        String username,
+        String email
+) {
+}
@@ -0,0 +1,16 @@
+package com.lucap.scubakeep.projection;
+
+/**
+ * A dive log image whose variants have not been generated yet.
+ * <p>
+ * Built by a JPQL constructor expression in
+ * {@link com.lucap.scubakeep.repository.DiveLogRepository} to retry the generation.
+ *
+ * @param diveLogId the dive log id
+ * @param imageKey  the object key of the uploaded image
+ */
+public record PendingDiveLogImage(
+        Long diveLogId,
+        String imageKey
+) {
+}
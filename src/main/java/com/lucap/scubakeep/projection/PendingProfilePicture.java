@@ -0,0 +1,18 @@
+package com.lucap.scubakeep.projection;
+
+import java.util.UUID;
+
+/**
+ * A profile picture whose variants have not been generated yet.
+ * <p>
+ * Built by a JPQL constructor expression in
+ * {@link com.lucap.scubakeep.repository.DiverRepository} to retry the generation.
+ *
+ * @param diverId    the diver id
+ * @param pictureKey the object key of the uploaded picture
+ */
+public record PendingProfilePicture(
+        UUID diverId,
+        String pictureKey
+) {
+}
@@ -0,0 +1,37 @@
+package com.lucap.scubakeep.repository;
+
+import com.lucap.scubakeep.pagination.DiveLogCursor;
+import com.lucap.scubakeep.pagination.DiveLogSort;
+import com.lucap.scubakeep.projection.DiveLogView;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keyset (seek) pagination over dive logs for every {@link DiveLogSort} field.
+ * <p>
+ * Rows are ordered by {@code (field, id)} in the requested direction and continue
+ * strictly after the cursor position instead of skipping an OFFSET, so every page
+ * costs the same and reads one range of the matching index.
+ */
+public interface DiveLogFeedRepository {
+
+    /**
+     * Fetches the dive logs following a cursor position.
+     *
+     * @param sort      the sort field
+     * @param direction the sort direction
+     * @param diverId   optional owner filter
+     * @param after     the cursor of the previous page, or null for the first page
+     * @param limit     the maximum number of rows to fetch
+     * @return up to {@code limit} dive logs in sort order
+     */
+    List<DiveLogView> findFeedPage(
+            DiveLogSort sort,
+            Sort.Direction direction,
+            UUID diverId,
+            DiveLogCursor after,
+            int limit
+    );
+}
@@ -0,0 +1,104 @@
+package com.lucap.scubakeep.repository;
+
+import com.lucap.scubakeep.entity.DiveLog;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.pagination.DiveLogCursor;
+import com.lucap.scubakeep.pagination.DiveLogSort;
+import com.lucap.scubakeep.projection.DiveLogView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Criteria implementation of {@link DiveLogFeedRepository}.
+ * <p>
+ * Builds the same projection as {@link DiveLogRepository#SELECT_VIEW}, with the sort
+ * field taken from the {@link DiveLogSort} whitelist only, never from client input.
+ */
+@RequiredArgsConstructor
+class DiveLogFeedRepositoryImpl implements DiveLogFeedRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<DiveLogView> findFeedPage(
+            DiveLogSort sort,
+            Sort.Direction direction,
+            UUID diverId,
+            DiveLogCursor after,
+            int limit
+    ) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DiveLogView> query = cb.createQuery(DiveLogView.class);
+        Root<DiveLog> d = query.from(DiveLog.class);
+        Join<DiveLog, Diver> dv = d.join("diver");
+
+        List<Predicate> where = new ArrayList<>();
+        if (diverId != null) {
+            where.add(cb.equal(d.get("diver").get("id"), diverId));
+        }
+        if (after != null) {
+            where.add(seek(cb, d, after));
+        }
+
+        query.select(view(cb, d, dv))
+                .where(where.toArray(Predicate[]::new))
+                .orderBy(order(cb, d.get(sort.getProperty()), direction),
+                        order(cb, d.get(DiveLogSort.TIEBREAKER), direction));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private static Selection<DiveLogView> view(
+            CriteriaBuilder cb,
+            Root<DiveLog> d,
+            Join<DiveLog, Diver> dv
+    ) {
+        return cb.construct(DiveLogView.class,
+                d.get("id"), d.get("diveDate"), d.get("location"), d.get("diveSite"),
+                d.get("maxDepth"), d.get("duration"), d.get("diveBuddy"), d.get("notes"),
+                d.get("imagePath"), d.get("imageWidth"), d.get("imageHeight"),
+                d.get("imagePlaceholder"), d.get("createdAt"), d.get("updatedAt"),
+                dv.get("id"), dv.get("username"));
+    }
+
+    /**
+     * Builds the seek predicate {@code key > v OR (key = v AND id > lastId)}
+     * (or {@code <} for descending order) of a cursor.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate seek(CriteriaBuilder cb, Root<DiveLog> d, DiveLogCursor after) {
+        Expression key = d.get(after.sort().getProperty());
+        Comparable value = after.value();
+        Path<Long> id = d.get(DiveLogSort.TIEBREAKER);
+
+        if (after.direction().isAscending()) {
+            return cb.or(
+                    cb.greaterThan(key, value),
+                    cb.and(cb.equal(key, value), cb.greaterThan(id, after.id()))
+            );
+        }
+        return cb.or(
+                cb.lessThan(key, value),
+                cb.and(cb.equal(key, value), cb.lessThan(id, after.id()))
+        );
+    }
+
+    private static Order order(CriteriaBuilder cb, Expression<?> key, Sort.Direction direction) {
+        return direction.isAscending() ? cb.asc(key) : cb.desc(key);
+    }
+}
@@ -1,25 +1,163 @@
 package com.lucap.scubakeep.repository;
 
 import com.lucap.scubakeep.entity.DiveLog;
+import com.lucap.scubakeep.projection.DiveLogView;
+import com.lucap.scubakeep.projection.PendingDiveLogImage;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for performing CRUD and query operations on {@link DiveLog} entities.
  * <p>
  * Inherits standard data access methods from {@link JpaRepository}.
+ * Read paths return {@link DiveLogView} projections joined with the owner's username,
+ * so a page of dive logs costs one SELECT (plus a COUNT for {@link Page} results)
+ * instead of one extra SELECT per distinct lazily loaded diver.
+ * <p>
+ * Keyset (seek) pagination for the feed is provided by {@link DiveLogFeedRepository},
+ * for every whitelisted sort field: instead of an OFFSET it continues strictly after
+ * the last row of the previous page, so every page costs the same.
+ * <p>
+ * The {@code stream*} methods back the exports: rows are read from an open cursor
+ * in batches of {@value #EXPORT_FETCH_SIZE} and, being projections, are never
+ * attached to the persistence context, so memory stays flat for any table size.
+ * They must be consumed inside a transaction and closed afterwards.
  */
 @Repository
-public interface DiveLogRepository extends JpaRepository<DiveLog, Long> {
+public interface DiveLogRepository extends JpaRepository<DiveLog, Long>, DiveLogFeedRepository {
+
+    String SELECT_VIEW = """
+            SELECT new com.lucap.scubakeep.projection.DiveLogView(
+                d.id, d.diveDate, d.location, d.diveSite, d.maxDepth, d.duration,
+                d.diveBuddy, d.notes, d.imagePath, d.imageWidth, d.imageHeight,
+                d.imagePlaceholder, d.createdAt, d.updatedAt,
+                dv.id, dv.username)
+            FROM DiveLog d JOIN d.diver dv
+            """;
+
+    String EXPORT_FETCH_SIZE = "1000";
+
+    List<DiveLog> findByDiverId(UUID diverId);
+
+    @Query(SELECT_VIEW + "WHERE d.id = :id")
+    Optional<DiveLogView> findViewById(Long id);
+
+    @Query(
+            value = SELECT_VIEW,
+            countQuery = "SELECT COUNT(d) FROM DiveLog d"
+    )
+    Page<DiveLogView> findViews(Pageable pageable);
+
+    @Query(
+            value = SELECT_VIEW + "WHERE dv.id = :diverId",
+            countQuery = "SELECT COUNT(d) FROM DiveLog d WHERE d.diver.id = :diverId"
+    )
+    Page<DiveLogView> findViewsByDiverId(UUID diverId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query(SELECT_VIEW + "ORDER BY d.id")
+    Stream<DiveLogView> streamViews();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query(SELECT_VIEW + "WHERE dv.id = :diverId ORDER BY d.id")
+    Stream<DiveLogView> streamViewsByDiverId(UUID diverId);
+
+    /**
+     * Returns the username of a dive log's owner, for authorization checks that do
+     * not need the dive log itself.
+     *
+     * @param id the dive log id
+     * @return the owner's username, or empty if the dive log does not exist
+     */
+    @Query("SELECT dv.username FROM DiveLog d JOIN d.diver dv WHERE d.id = :id")
+    Optional<String> findOwnerUsernameById(Long id);
+
+    /**
+     * Returns the image keys of those of the given dive logs that have an image, for
+     * checking which stored objects are still referenced.
+     *
+     * @param ids the dive log ids
+     * @return the image keys; deleted dive logs are simply absent
+     */
+    @Query("SELECT d.imagePath FROM DiveLog d WHERE d.id IN :ids AND d.imagePath IS NOT NULL")
+    List<String> findImagePathsByIdIn(Collection<Long> ids);
 
-    java.util.List<DiveLog> findByDiverId(UUID diverId);
+    /**
+     * Returns the dive log images whose variants have not been generated, in image key
+     * order, one batch at a time.
+     *
+     * @param after         the exclusive lower bound of the image keys, e.g. the last
+     *                      key of the previous batch
+     * @param updatedBefore only dive logs last modified before this time, so images
+     *                      whose generation was just queued are left alone
+     * @param limit         the batch size
+     * @return the pending images of the next dive logs
+     */
+    @Query("""
+            SELECT new com.lucap.scubakeep.projection.PendingDiveLogImage(d.id, d.imagePath)
+            FROM DiveLog d
+            WHERE d.imageWidth IS NULL AND d.imagePath > :after AND d.updatedAt < :updatedBefore
+            ORDER BY d.imagePath
+            """)
+    List<PendingDiveLogImage> findPendingImages(String after, Instant updatedBefore, Limit limit);
 
-    Page<DiveLog> findByDiverId(UUID diverId, Pageable pageable);
+    /**
+     * Sets a new image on a dive log, clearing the metadata of the previous one.
+     *
+     * @param id        the dive log id
+     * @param imagePath the object key of the new image
+     * @param updatedAt the modification time to record
+     * @return the number of updated rows (0 if the dive log no longer exists)
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE DiveLog d
+            SET d.imagePath = :imagePath, d.imageWidth = NULL, d.imageHeight = NULL,
+                d.imagePlaceholder = NULL, d.updatedAt = :updatedAt
+            WHERE d.id = :id
+            """)
+    int updateImage(Long id, String imagePath, Instant updatedAt);
 
-    // Can cause performance issue with getAllDivers() with N+1 queries
-    long countByDiverId(UUID diverId);
+    /**
+     * Records the metadata of an image whose variants have been generated, unless
+     * the dive log has been given another image meanwhile.
+     *
+     * @param id          the dive log id
+     * @param imagePath   the object key the variants were generated from
+     * @param width       the image width in pixels
+     * @param height      the image height in pixels
+     * @param placeholder the blurred preview data URI, or null
+     * @return the number of updated rows (0 if the image was replaced or removed)
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE DiveLog d
+            SET d.imageWidth = :width, d.imageHeight = :height, d.imagePlaceholder = :placeholder
+            WHERE d.id = :id AND d.imagePath = :imagePath
+            """)
+    int updateImageMetadata(
+            Long id,
+            String imagePath,
+            Integer width,
+            Integer height,
+            String placeholder
+    );
 }
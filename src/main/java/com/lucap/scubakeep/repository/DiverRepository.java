@@ -1,15 +1,31 @@
 package com.lucap.scubakeep.repository;
 
+import com.lucap.scubakeep.entity.Certification;
 import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.projection.DiverCredentials;
+import com.lucap.scubakeep.projection.DiverIdentifiers;
+import com.lucap.scubakeep.projection.PendingProfilePicture;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Repository interface for performing CRUD and query operations on {@link Diver} entities.
  * <p>
  * Inherits standard data access methods from {@link JpaRepository}.
+ * The denormalized {@code totalDives} counter is only changed through the atomic
+ * UPDATE statements below (never read-modify-write), so concurrent dive log
+ * writes for the same diver cannot lose increments.
  */
 @Repository
 public interface DiverRepository extends JpaRepository<Diver, UUID> {
@@ -19,4 +35,230 @@ public interface DiverRepository extends JpaRepository<Diver, UUID> {
 
     java.util.Optional<Diver> findByEmail(String email);
     java.util.Optional<Diver> findByUsername(String username);
+
+    /**
+     * Returns the login credentials of the diver whose username or email matches
+     * the identifier, in one statement.
+     * <p>
+     * Usernames may look like email addresses, so a username match wins over an
+     * email match of another diver (as it did with separate lookups).
+     *
+     * @param identifier the username or email entered at login
+     * @return the credentials, if a diver matches
+     */
+    @Query("""
+            SELECT new com.lucap.scubakeep.projection.DiverCredentials(
+                d.id, d.username, d.password, d.role)
+            FROM Diver d
+            WHERE d.username = :identifier OR d.email = :identifier
+            ORDER BY CASE WHEN d.username = :identifier THEN 0 ELSE 1 END
+            LIMIT 1
+            """)
+    java.util.Optional<DiverCredentials> findCredentialsByIdentifier(String identifier);
+
+    /**
+     * Returns the identifiers of the divers with an id in the given range, in id
+     * order, one batch at a time.
+     *
+     * @param from  the inclusive lower bound of the id range
+     * @param to    the exclusive upper bound of the id range
+     * @param limit the batch size
+     * @return the identifiers of the next divers
+     */
+    @Query("""
+            SELECT new com.lucap.scubakeep.projection.DiverIdentifiers(
+                d.id, d.username, d.email)
+            FROM Diver d
+            WHERE d.id >= :from AND d.id < :to
+            ORDER BY d.id
+            """)
+    List<DiverIdentifiers> findIdentifiersBetween(UUID from, UUID to, Limit limit);
+
+    /**
+     * Loads a diver together with its specialties in one statement, so the response
+     * can be built without an open persistence context (e.g. to fill the cache).
+     *
+     * @param id the diver id
+     * @return the diver with initialized specialties, if it exists
+     */
+    @EntityGraph(attributePaths = "specialties")
+    java.util.Optional<Diver> findWithSpecialtiesById(UUID id);
+
+    /**
+     * Returns the current role of a diver, used to check access token claims.
+     *
+     * @param id the diver id
+     * @return the role, or empty if the diver no longer exists
+     */
+    @Query("SELECT d.role FROM Diver d WHERE d.id = :id")
+    java.util.Optional<Role> findRoleById(UUID id);
+
+    /**
+     * Returns one page of the admin diver directory using keyset pagination on
+     * {@code username}. Every filter is optional and ignored when {@code null}.
+     * <p>
+     * Dive counts come from the denormalized {@code totalDives} column and
+     * specialties are batch-fetched, so a page costs a constant number of statements.
+     *
+     * @param after         username of the last row of the previous page, or null
+     * @param countryCode   optional ISO country code
+     * @param certification optional highest certification
+     * @param role          optional role
+     * @param prefix        optional LIKE pattern matched against username or email
+     * @param limit         the maximum number of rows to fetch
+     * @return the divers following {@code after}, ordered by username
+     */
+    @Query("""
+            SELECT d FROM Diver d
+            WHERE (:after IS NULL OR d.username > :after)
+              AND (:countryCode IS NULL OR d.countryCode = :countryCode)
+              AND (:certification IS NULL OR d.highestCertification = :certification)
+              AND (:role IS NULL OR d.role = :role)
+              AND (:prefix IS NULL
+                   OR d.username LIKE :prefix ESCAPE '!'
+                   OR d.email LIKE :prefix ESCAPE '!')
+            ORDER BY d.username ASC
+            """)
+    List<Diver> findDirectoryPage(
+            String after,
+            String countryCode,
+            Certification certification,
+            Role role,
+            String prefix,
+            Limit limit
+    );
+
+    /**
+     * Replaces a diver's password hash, e.g. when a login rehashes it with the current cost.
+     *
+     * @param diverId  the diver id
+     * @param password the new password hash
+     * @return the number of updated rows (0 if the diver no longer exists)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Diver d SET d.password = :password WHERE d.id = :diverId")
+    int updatePassword(UUID diverId, String password);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Diver d SET d.totalDives = d.totalDives + :delta WHERE d.id = :diverId")
+    int incrementTotalDives(UUID diverId, long delta);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Diver d SET d.totalDives = d.totalDives - 1
+            WHERE d.id = :diverId AND d.totalDives > 0
+            """)
+    int decrementTotalDives(UUID diverId);
+
+    /**
+     * Recomputes the dive counter of every diver whose stored value
+     * drifted from the actual number of dive logs.
+     *
+     * @return the number of divers that were corrected
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Diver d
+            SET d.totalDives = (SELECT COUNT(l) FROM DiveLog l WHERE l.diver.id = d.id)
+            WHERE d.totalDives <> (SELECT COUNT(l2) FROM DiveLog l2 WHERE l2.diver.id = d.id)
+            """)
+    int reconcileTotalDives();
+
+    /**
+     * Returns the username of a diver, for authorization checks that do not need
+     * the diver itself.
+     *
+     * @param id the diver id
+     * @return the username, or empty if the diver does not exist
+     */
+    @Query("SELECT d.username FROM Diver d WHERE d.id = :id")
+    java.util.Optional<String> findUsernameById(UUID id);
+
+    /**
+     * Returns the profile picture keys of those of the given divers that have one, for
+     * checking which stored objects are still referenced.
+     *
+     * @param ids the diver ids
+     * @return the picture keys; deleted divers are simply absent
+     */
+    @Query("""
+            SELECT d.profilePicturePath FROM Diver d
+            WHERE d.id IN :ids AND d.profilePicturePath IS NOT NULL
+            """)
+    List<String> findProfilePicturePathsByIdIn(Collection<UUID> ids);
+
+    /**
+     * Returns the profile pictures whose variants have not been generated, in picture
+     * key order, one batch at a time.
+     *
+     * @param after         the exclusive lower bound of the picture keys, e.g. the last
+     *                      key of the previous batch
+     * @param updatedBefore only divers last modified before this time, so pictures
+     *                      whose generation was just queued are left alone
+     * @param limit         the batch size
+     * @return the pending pictures of the next divers
+     */
+    @Query("""
+            SELECT new com.lucap.scubakeep.projection.PendingProfilePicture(
+                d.id, d.profilePicturePath)
+            FROM Diver d
+            WHERE d.profilePictureWidth IS NULL AND d.profilePicturePath > :after
+                AND d.updatedAt < :updatedBefore
+            ORDER BY d.profilePicturePath
+            """)
+    List<PendingProfilePicture> findPendingProfilePictures(
+            String after,
+            Instant updatedBefore,
+            Limit limit
+    );
+
+    /**
+     * Sets a new profile picture, clearing the metadata of the previous one.
+     *
+     * @param diverId     the diver id
+     * @param picturePath the object key of the new picture
+     * @param updatedAt   the modification time to record
+     * @return the number of updated rows (0 if the diver no longer exists)
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Diver d
+            SET d.profilePicturePath = :picturePath, d.profilePictureWidth = NULL,
+                d.profilePictureHeight = NULL, d.profilePicturePlaceholder = NULL,
+                d.updatedAt = :updatedAt
+            WHERE d.id = :diverId
+            """)
+    int updateProfilePicture(UUID diverId, String picturePath, Instant updatedAt);
+
+    /**
+     * Records the metadata of a profile picture whose variants have been generated,
+     * unless the diver has set another picture meanwhile.
+     *
+     * @param diverId     the diver id
+     * @param picturePath the object key the variants were generated from
+     * @param width       the picture width in pixels
+     * @param height      the picture height in pixels
+     * @param placeholder the blurred preview data URI, or null
+     * @return the number of updated rows (0 if the picture was replaced or removed)
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Diver d
+            SET d.profilePictureWidth = :width, d.profilePictureHeight = :height,
+                d.profilePicturePlaceholder = :placeholder
+            WHERE d.id = :diverId AND d.profilePicturePath = :picturePath
+            """)
+    int updateProfilePictureMetadata(
+            UUID diverId,
+            String picturePath,
+            Integer width,
+            Integer height,
+            String placeholder
+    );
 }
@@ -0,0 +1,46 @@
+package com.lucap.scubakeep.repository;
+
+import com.lucap.scubakeep.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Repository for {@link RefreshToken} entities, looked up by token digest.
+ * <p>
+ * A token is consumed with one conditional UPDATE ({@link #markUsed}), so two
+ * concurrent refreshes with the same token cannot both succeed.
+ */
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    /**
+     * Marks a token as used, unless it was used already.
+     *
+     * @param tokenHash the token digest
+     * @param usedAt    the time of use
+     * @return 1 if this call consumed the token, 0 if it was used before
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE RefreshToken t SET t.usedAt = :usedAt
+            WHERE t.tokenHash = :tokenHash AND t.usedAt IS NULL
+            """)
+    int markUsed(String tokenHash, Instant usedAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshToken t WHERE t.familyId = :familyId")
+    int deleteByFamilyId(UUID familyId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshToken t WHERE t.expiresAt <= :now")
+    int deleteExpired(Instant now);
+}
@@ -0,0 +1,42 @@
+package com.lucap.scubakeep.repository;
+
+import com.lucap.scubakeep.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for {@link RevokedToken} entities, keyed by the access token id.
+ */
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, UUID> {
+
+    /**
+     * Returns the ids of all revoked tokens that have not expired yet.
+     *
+     * @param now the current time
+     * @return the ids of the live revoked tokens
+     */
+    @Query("SELECT t.jti FROM RevokedToken t WHERE t.expiresAt > :now")
+    List<UUID> findLiveIds(Instant now);
+
+    /**
+     * Returns the ids of the tokens revoked since the given time.
+     *
+     * @param since the earliest revocation time to return
+     * @return the ids of the recently revoked tokens
+     */
+    @Query("SELECT t.jti FROM RevokedToken t WHERE t.revokedAt >= :since")
+    List<UUID> findIdsRevokedSince(Instant since);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RevokedToken t WHERE t.expiresAt <= :now")
+    int deleteExpired(Instant now);
+}
@@ -0,0 +1,14 @@
+package com.lucap.scubakeep.security;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A verified access token.
+ *
+ * @param id        the token id ({@code jti} claim), used to revoke the token
+ * @param principal the diver the token was issued to
+ * @param expiresAt when the token expires ({@code exp} claim)
+ */
+public record AccessToken(UUID id, DiverPrincipal principal, Instant expiresAt) {
+}
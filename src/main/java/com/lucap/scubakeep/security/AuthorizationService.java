@@ -1,18 +1,36 @@
 package com.lucap.scubakeep.security;
 
+import com.lucap.scubakeep.exception.AuthenticatedUserNotFoundException;
 import com.lucap.scubakeep.exception.UnauthorizedResourceAccessException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
+import java.util.Optional;
+
 /**
  * Centralized authorization helper for owner/admin checks.
  * Used to enforce that only the resource owner or an admin
  * can modify or delete a resource.
+ * <p>
+ * Decisions are based on the {@link DiverPrincipal} built from the access token,
+ * so no check queries the database.
  */
 @Component
 public class AuthorizationService {
 
+    /**
+     * Returns the currently authenticated diver.
+     *
+     * @return the principal of the current request
+     * @throws AuthenticatedUserNotFoundException if the request is not authenticated by a token
+     */
+    public DiverPrincipal currentDiver() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return principal().orElseThrow(() ->
+                new AuthenticatedUserNotFoundException(auth == null ? null : auth.getName()));
+    }
+
     /**
      * Ensures that the currently authenticated user is
      * either the resource owner or an administrator.
@@ -22,10 +40,9 @@ public class AuthorizationService {
      * Returns 403 Forbidden (handled by GlobalExceptionHandler).
      */
     public void assertOwnerOrAdmin(String ownerUsername) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String currentUsername = auth.getName(); // this is diver.getUsername()
-
-        boolean isOwner = ownerUsername != null && ownerUsername.equals(currentUsername);
+        boolean isOwner = ownerUsername != null && principal()
+                .map(p -> ownerUsername.equals(p.username()))
+                .orElse(false);
 
         if (!isAdmin() && !isOwner) {
             throw new UnauthorizedResourceAccessException();
@@ -47,12 +64,20 @@ public class AuthorizationService {
     /**
      * Helper to checks whether the currently authenticated user has the ADMIN role.
      * <p>
-     * Returns true if the user has ROLE_ADMIN, otherwise false.
+     * Returns true if the token's role claim is ADMIN, otherwise false.
      */
     private boolean isAdmin() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return principal().map(DiverPrincipal::isAdmin).orElse(false);
+    }
 
-        return auth.getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    /**
+     * Returns the diver of the current request, or empty for anonymous requests.
+     */
+    private Optional<DiverPrincipal> principal() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof DiverPrincipal principal) {
+            return Optional.of(principal);
+        }
+        return Optional.empty();
     }
 }
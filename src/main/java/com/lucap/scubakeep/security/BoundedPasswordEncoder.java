@@ -0,0 +1,160 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.exception.PasswordHashingOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulkhead for CPU-heavy password hashing.
+ * <p>
+ * BCrypt deliberately costs tens of milliseconds of CPU per call. Run on the request
+ * threads, a login burst occupies every core and cheap requests time out behind it.
+ * This encoder runs {@link #encode} and {@link #matches} of its delegate on a small
+ * fixed pool (one thread per core by default) with a bounded queue:
+ * <ul>
+ *     <li>a call that finds the queue full fails immediately;</li>
+ *     <li>a call that waited in the queue longer than the queue timeout fails when
+ *     its turn comes, without hashing;</li>
+ *     <li>a caller still without a result after the queue timeout plus the hash timeout
+ *     stops waiting and its call is cancelled, so a request thread is never held
+ *     behind a backlog of slow hashes;</li>
+ * </ul>
+ * all with {@link PasswordHashingOverloadedException} (503 Service Unavailable).
+ * <p>
+ * Meters: {@code password.hash} (execution time, tagged {@code operation}),
+ * {@code password.hash.queue} (waiting calls) and {@code password.hash.rejected}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long queueTimeoutNanos;
+    private final long maxWaitNanos;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(
+            PasswordEncoder delegate,
+            int threads,
+            int queueCapacity,
+            Duration queueTimeout,
+            Duration hashTimeout,
+            MeterRegistry meterRegistry
+    ) {
+        this.delegate = delegate;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.maxWaitNanos = queueTimeoutNanos + hashTimeout.toNanos();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                daemonThreads(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = hashTimer("encode", meterRegistry);
+        this.matchesTimer = hashTimer("matches", meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected")
+                .description("Password hashing calls rejected because the executor was saturated")
+                .register(meterRegistry);
+        Gauge.builder("password.hash.queue", executor, e -> e.getQueue().size())
+                .description("Password hashing calls waiting for a thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Inspects the stored hash only, so it runs on the caller's thread.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs a hashing call on the executor and waits for its result.
+     */
+    private <T> T submit(Timer timer, Callable<T> hashing) {
+        long enqueuedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                if (System.nanoTime() - enqueuedAt > queueTimeoutNanos) {
+                    throw new PasswordHashingOverloadedException();
+                }
+                return timer.recordCallable(hashing);
+            });
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new PasswordHashingOverloadedException();
+        }
+        return await(result);
+    }
+
+    private <T> T await(Future<T> result) {
+        try {
+            return result.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            result.cancel(true);
+            rejected.increment();
+            throw new PasswordHashingOverloadedException();
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingOverloadedException();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof PasswordHashingOverloadedException overloaded) {
+                rejected.increment();
+                throw overloaded;
+            }
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", ex.getCause());
+        }
+    }
+
+    private static Timer hashTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("password.hash")
+                .description("Time spent hashing or checking a password")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
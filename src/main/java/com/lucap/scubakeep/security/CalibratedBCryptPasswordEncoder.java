@@ -0,0 +1,120 @@
+package com.lucap.scubakeep.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt encoder whose cost (work factor) is configured, or chosen at startup to fit
+ * a per-hash latency budget on the current hardware.
+ * <p>
+ * {@link #calibrate(Duration, int, int, int)} times a few hashes at a low cost and
+ * extrapolates: every cost step doubles the work, so the chosen cost is the highest
+ * one whose estimated hash time stays within the budget, clamped to a configured range.
+ * One timing is noisy, so replicas may calibrate one cost apart; a fleet that must
+ * agree exactly sets the cost instead.
+ * <p>
+ * Unlike the plain BCrypt encoder, {@link #upgradeEncoding(String)} reports hashes
+ * whose cost is more than a tolerance away from this encoder's cost, in either
+ * direction, or below the minimum cost. Logins then rehash such passwords, so moving
+ * to much smaller or bigger instances brings login latency back to the budget, while
+ * replicas a cost step apart do not rehash each other's hashes back and forth.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+    private static final int PROBE_COST = 6;
+    private static final int PROBE_RUNS = 5;
+
+    private final int cost;
+    private final int lowestAccepted;
+    private final int highestAccepted;
+
+    /**
+     * Creates an encoder with a fixed cost.
+     *
+     * @param cost      the cost of new hashes
+     * @param minCost   the lowest cost a stored hash may keep
+     * @param tolerance how many cost steps a stored hash may be away from {@code cost}
+     */
+    public CalibratedBCryptPasswordEncoder(int cost, int minCost, int tolerance) {
+        super(cost);
+        this.cost = cost;
+        this.lowestAccepted = Math.max(minCost, cost - tolerance);
+        this.highestAccepted = cost + tolerance;
+    }
+
+    /**
+     * Creates an encoder with the highest cost whose hash time fits the budget here.
+     *
+     * @param budget    the target time of one hash
+     * @param minCost   the lowest acceptable cost, used even if it exceeds the budget
+     * @param maxCost   the highest cost to use
+     * @param tolerance how many cost steps a stored hash may be away from the chosen cost
+     * @return the calibrated encoder
+     */
+    public static CalibratedBCryptPasswordEncoder calibrate(
+            Duration budget,
+            int minCost,
+            int maxCost,
+            int tolerance
+    ) {
+        long probeNanos = measure(PROBE_COST);
+        int cost = costFor(budget.toNanos(), probeNanos, PROBE_COST, minCost, maxCost);
+        LOGGER.info("BCrypt cost {} chosen for a {} ms budget (cost {} hashed in {} us)",
+                cost, budget.toMillis(), PROBE_COST, probeNanos / 1_000);
+        return new CalibratedBCryptPasswordEncoder(cost, minCost, tolerance);
+    }
+
+    /**
+     * Returns the highest cost whose estimated hash time fits the budget, given the
+     * time of one hash at {@code probeCost}, clamped to {@code [minCost, maxCost]}.
+     */
+    static int costFor(long budgetNanos, long probeNanos, int probeCost, int minCost, int maxCost) {
+        int cost = probeCost;
+        long estimate = Math.max(1, probeNanos);
+        while (estimate * 2 <= budgetNanos && cost < maxCost) {
+            estimate *= 2;
+            cost++;
+        }
+        return Math.max(minCost, Math.min(maxCost, cost));
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        if (!matcher.find()) {
+            return false;
+        }
+        int stored = Integer.parseInt(matcher.group(1));
+        return stored < lowestAccepted || stored > highestAccepted;
+    }
+
+    /**
+     * Returns the fastest of a few hashes at the given cost; the first runs warm up the JIT.
+     */
+    private static long measure(int probeCost) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(probeCost);
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_RUNS; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration-password");
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+}
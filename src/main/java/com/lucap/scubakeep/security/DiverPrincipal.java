@@ -0,0 +1,42 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.entity.Role;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The authenticated diver, built from the verified claims of an access token.
+ * <p>
+ * Carries everything authorization needs, so authenticated requests do not load
+ * the diver from the database. {@link #getName()} returns the username, so
+ * {@code Authentication#getName()} keeps its meaning.
+ *
+ * @param id       the diver id (token subject)
+ * @param username the diver's username
+ * @param role     the diver's role when the token was issued
+ */
+public record DiverPrincipal(UUID id, String username, Role role)
+        implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    public boolean isAdmin() {
+        return role == Role.ADMIN;
+    }
+
+    /**
+     * Returns the granted authorities of this diver ({@code ROLE_USER} or {@code ROLE_ADMIN}).
+     *
+     * @return the authorities
+     */
+    public List<GrantedAuthority> authorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+}
@@ -0,0 +1,52 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.projection.DiverCredentials;
+import lombok.Getter;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Spring Security user of a login, carrying the diver's id and role next to the
+ * credentials so the token can be issued without loading the diver again.
+ * <p>
+ * The password hash is erased once authentication succeeds.
+ */
+@Getter
+public class DiverUserDetails implements UserDetails, CredentialsContainer {
+
+    private final UUID id;
+    private final String username;
+    private final Role role;
+    private String password;
+
+    public DiverUserDetails(DiverCredentials credentials) {
+        this.id = credentials.id();
+        this.username = credentials.username();
+        this.role = credentials.role();
+        this.password = credentials.password();
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return toPrincipal().authorities();
+    }
+
+    @Override
+    public void eraseCredentials() {
+        this.password = null;
+    }
+
+    /**
+     * Returns the principal that the issued token will describe.
+     *
+     * @return the diver principal
+     */
+    public DiverPrincipal toPrincipal() {
+        return new DiverPrincipal(id, username, role);
+    }
+}
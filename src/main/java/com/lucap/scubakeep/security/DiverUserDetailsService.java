@@ -1,25 +1,34 @@
 package com.lucap.scubakeep.security;
 
-import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.projection.DiverCredentials;
 import com.lucap.scubakeep.repository.DiverRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-
 /**
  * Loads Divers from the database for Spring Security authentication.
+ * <p>
+ * Also stores rehashed passwords: after a successful login whose stored hash no longer
+ * matches the configured encoding ({@code PasswordEncoder#upgradeEncoding}), Spring
+ * Security encodes the presented password again and passes it to
+ * {@link #updatePassword(UserDetails, String)}.
  */
 @Service
 @RequiredArgsConstructor
-public class DiverUserDetailsService implements UserDetailsService {
+public class DiverUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiverUserDetailsService.class);
 
     private final DiverRepository diverRepository;
 
     /**
      * Loads a user by username (or email) for authentication.
+     * <p>
+     * A single query reads only the credential columns; the returned
+     * {@link DiverUserDetails} also carries the id and role the token is issued for.
      *
      * @param identifier username or email
      * @return UserDetails used by Spring Security
@@ -27,17 +36,27 @@ public class DiverUserDetailsService implements UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String identifier) throws UsernameNotFoundException {
-        Diver diver = diverRepository.findByUsername(identifier)
-                .or(() -> diverRepository.findByEmail(identifier))
+        return diverRepository.findCredentialsByIdentifier(identifier)
+                .map(DiverUserDetails::new)
                 .orElseThrow(() ->
                         new UsernameNotFoundException(
                                 "User not found (username or email): " + identifier
                         ));
+    }
 
-        return new org.springframework.security.core.userdetails.User(
-                diver.getUsername(),
-                diver.getPassword(),
-                List.of(new SimpleGrantedAuthority("ROLE_" + diver.getRole().name()))
-        );
+    /**
+     * Persists a password rehashed during login.
+     *
+     * @param user        the authenticated user
+     * @param newPassword the new password hash
+     * @return the user with the new password hash
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        DiverUserDetails diver = (DiverUserDetails) user;
+        diverRepository.updatePassword(diver.getId(), newPassword);
+        LOGGER.info("Rehashed the password of diver {}", diver.getId());
+        return new DiverUserDetails(new DiverCredentials(
+                diver.getId(), diver.getUsername(), newPassword, diver.getRole()));
     }
-}
\ No newline at end of file
+}
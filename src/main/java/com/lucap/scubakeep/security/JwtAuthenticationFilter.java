@@ -1,22 +1,17 @@
 package com.lucap.scubakeep.security;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.DecodedJWT;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -24,14 +19,20 @@ import java.util.Optional;
  *
  * <p>If a valid token is present in the Authorization header, an Authentication is created
  * and stored in the SecurityContext.</p>
+ *
+ * <p>The principal is a {@link DiverPrincipal} built from the verified claims (cached per
+ * token by {@link JwtService#authenticate(String)}), so the diver is not loaded per
+ * request. Only its current role is checked, through the short-lived
+ * {@link PrincipalStatusCache}, so tokens of deleted divers or of changed roles stop
+ * working within seconds instead of at expiry. Tokens revoked on logout are rejected
+ * through the in-memory {@link TokenRevocationList}, without a query per request.</p>
  */
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
-
-    private record JwtPrincipal(String username, String role) { }
+    private final PrincipalStatusCache principalStatusCache;
+    private final TokenRevocationList tokenRevocationList;
 
     /**
      * Extracts the JWT token from the Authorization header using the Bearer scheme.
@@ -53,21 +54,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      * Builds an authenticated SecurityContext for the current request.
      *
      * @param request the current HTTP request
-     * @param username the authenticated user's username
-     * @param role the authenticated user's role (e.g. USER, ADMIN)
+     * @param principal the authenticated diver
      */
-    private void setAuthentication(
-            HttpServletRequest request,
-            String username,
-            String role
-    ) {
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
+    private void setAuthentication(HttpServletRequest request, DiverPrincipal principal) {
         UsernamePasswordAuthenticationToken authentication =
                 new UsernamePasswordAuthenticationToken(
-                        userDetails,
+                        principal,
                         null,
-                        List.of(new SimpleGrantedAuthority("ROLE_" + role))
+                        principal.authorities()
                 );
 
         authentication.setDetails(
@@ -77,26 +71,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         SecurityContextHolder.getContext().setAuthentication(authentication);
     }
 
-    /**
-     * Decodes and verifies the token and extracts the required authentication claims.
-     *
-     * @param token the raw JWT token string
-     * @return a JwtPrincipal if required claims are present; otherwise {@code null}
-     * @throws JWTVerificationException if the token is invalid or expired
-     */
-    private JwtPrincipal decodeAndConvert(String token) {
-        DecodedJWT jwt = jwtService.decode(token);
-
-        String username = jwt.getClaim("username").asString();
-        String role = jwt.getClaim("role").asString();
-
-        if (username == null || role == null) {
-            return null;
-        }
-
-        return new JwtPrincipal(username, role);
-    }
-
     /**
      * Authenticates the current request using the provided JWT token.
      *
@@ -110,12 +84,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         try {
-            JwtPrincipal principal = decodeAndConvert(token);
-            if (principal == null) {
+            AccessToken accessToken = jwtService.authenticate(token);
+            if (accessToken == null
+                    || tokenRevocationList.isRevoked(accessToken.id())
+                    || !principalStatusCache.isCurrent(accessToken.principal())) {
                 return;
             }
 
-            setAuthentication(request, principal.username(), principal.role());
+            setAuthentication(request, accessToken.principal());
 
         } catch (JWTVerificationException ex) {
             // Invalid or expired token: request remains unauthenticated
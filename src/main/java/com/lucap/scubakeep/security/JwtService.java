@@ -5,40 +5,64 @@ import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.JWTVerifier;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.lucap.scubakeep.entity.Role;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.UUID;
 
 /**
- * Generates signed JWT tokens for authenticated users.
+ * Generates and verifies signed JWT tokens for authenticated users.
  * <p>
  * Token contains:
  * - subject: userId (UUID)
+ * - id (jti): random UUID, used to revoke the token (see {@link TokenRevocationList})
  * - claims: username, role
  * - expiration: configured via application.properties (security.jwt.expiration)
+ * <p>
+ * Clients send the same token with every request, so verified tokens are cached:
+ * {@link #authenticate(String)} keeps a verified token until it expires, keyed by the
+ * SHA-256 digest of the token (the raw bearer token is not kept in memory). Repeated
+ * requests then skip the signature check and JSON parsing.
+ * The cache is bounded by {@code security.jwt.token-cache-size}; 0 disables it.
  */
 @Service
 public class JwtService {
 
     private final Algorithm algorithm;
+    private final JWTVerifier verifier;
     private final long expirationMillis;
+    private final Cache<String, AccessToken> verifiedTokens;
 
     public JwtService(
         @Value("${security.jwt.secret}") String secret,
-        @Value("${security.jwt.expiration}") long expirationMillis
+        @Value("${security.jwt.expiration}") long expirationMillis,
+        @Value("${security.jwt.token-cache-size:10000}") long tokenCacheSize,
+        MeterRegistry meterRegistry
     ) {
         this.algorithm = Algorithm.HMAC256(secret);
+        this.verifier = JWT.require(algorithm).build();
         this.expirationMillis = expirationMillis;
+        this.verifiedTokens = tokenCacheSize > 0
+                ? buildCache(tokenCacheSize, meterRegistry)
+                : null;
     }
 
     /**
      * Generates a signed JWT for the given user.
      *
-     * The token contains the user's ID as subject,
+     * The token contains the user's ID as subject and a random token ID,
      * includes username and role as claims,
      * and expires according to the configured duration.
      *
@@ -54,6 +78,7 @@ public class JwtService {
 
         return JWT.create()
                 .withSubject(String.valueOf(userId))
+                .withJWTId(UUID.randomUUID().toString())
                 .withIssuedAt(Date.from(now))
                 .withExpiresAt(Date.from(expiresAt))
                 .withClaim("username", username)
@@ -70,7 +95,105 @@ public class JwtService {
      * @throws JWTVerificationException if the token is invalid or expired
      */
     public DecodedJWT decode(String token) throws JWTVerificationException {
-        JWTVerifier verifier = JWT.require(algorithm).build();
         return verifier.verify(token);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a valid token with its principal, from the cache when the token was
+     * already verified.
+     * <p>
+     * Invalid tokens and tokens with missing or malformed claims are never cached.
+     * Revocation is not checked here (see {@link TokenRevocationList}).
+     *
+     * @param token the raw JWT string
+     * @return the verified token, or {@code null} if a claim is missing or malformed
+     * @throws JWTVerificationException if the token is invalid or expired
+     */
+    public AccessToken authenticate(String token) throws JWTVerificationException {
+        return verifiedTokens == null
+                ? verify(token)
+                : verifiedTokens.get(digest(token), key -> verify(token));
+    }
+
+    /**
+     * Verifies a token and builds its principal from the subject, username and role claims.
+     *
+     * @return the verified token, or {@code null} if a claim is missing or malformed
+     */
+    private AccessToken verify(String token) {
+        DecodedJWT jwt = decode(token);
+
+        String subject = jwt.getSubject();
+        String tokenId = jwt.getId();
+        String username = jwt.getClaim("username").asString();
+        String role = jwt.getClaim("role").asString();
+
+        if (subject == null || tokenId == null || username == null || role == null
+                || jwt.getExpiresAt() == null) {
+            return null;
+        }
+
+        try {
+            DiverPrincipal principal =
+                    new DiverPrincipal(UUID.fromString(subject), username, Role.valueOf(role));
+            return new AccessToken(
+                    UUID.fromString(tokenId), principal, jwt.getExpiresAtAsInstant());
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static Cache<String, AccessToken> buildCache(
+            long maximumSize,
+            MeterRegistry meterRegistry
+    ) {
+        Cache<String, AccessToken> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwtTokens");
+    }
+
+    /**
+     * Expires each cached token at the token's own {@code exp} claim.
+     */
+    private static final class UntilTokenExpiry implements Expiry<String, AccessToken> {
+
+        @Override
+        public long expireAfterCreate(String key, AccessToken value, long currentTime) {
+            long millis = value.expiresAt().toEpochMilli() - System.currentTimeMillis();
+            return Math.max(0, millis) * 1_000_000L;
+        }
+
+        @Override
+        public long expireAfterUpdate(
+                String key,
+                AccessToken value,
+                long currentTime,
+                long currentDuration
+        ) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(
+                String key,
+                AccessToken value,
+                long currentTime,
+                long currentDuration
+        ) {
+            return currentDuration;
+        }
+    }
+}
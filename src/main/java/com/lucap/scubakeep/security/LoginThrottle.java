@@ -0,0 +1,95 @@
+package com.lucap.scubakeep.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lucap.scubakeep.exception.LoginThrottledException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throttle for failed logins, per account and client address.
+ * <p>
+ * Every failed login costs a full password hash check. Once an account has failed
+ * {@code security.login.max-failures} times from one client address within
+ * {@code security.login.failure-window}, further attempts from that address are
+ * rejected with {@link LoginThrottledException} (429 Too Many Requests) before any
+ * hashing, until the window ends. A successful login clears the count.
+ * <p>
+ * The account is resolved by {@link ThrottledAuthenticationProvider} before the
+ * password is checked, so its username and email share one budget. Counting per
+ * client address means nobody can lock a diver out by failing on their behalf: other
+ * addresses, including the diver's own, are not affected.
+ * <p>
+ * Counts are kept per instance in a bounded cache; attempts rejected here are
+ * counted by the {@code login.throttled} meter.
+ */
+@Component
+public class LoginThrottle {
+
+    private static final long MAXIMUM_KEYS = 100_000;
+
+    private final int maxFailures;
+    private final Duration window;
+    private final Cache<String, AtomicInteger> failures;
+    private final Counter throttled;
+
+    public LoginThrottle(
+            @Value("${security.login.max-failures:5}") int maxFailures,
+            @Value("${security.login.failure-window:15m}") Duration window,
+            MeterRegistry meterRegistry
+    ) {
+        this.maxFailures = maxFailures;
+        this.window = window;
+        this.failures = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_KEYS)
+                .expireAfterWrite(window)
+                .build();
+        this.throttled = Counter.builder("login.throttled")
+                .description("Login attempts rejected after too many failures")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rejects the attempt if the account has too many recent failures from the client.
+     *
+     * @param account the account key (a diver id, or an unknown identifier)
+     * @param client the client address, or null if unknown
+     * @throws LoginThrottledException if the account is throttled for the client
+     */
+    public void checkAllowed(String account, String client) {
+        AtomicInteger count = failures.getIfPresent(key(account, client));
+        if (count != null && count.get() >= maxFailures) {
+            throttled.increment();
+            throw new LoginThrottledException(window.toSeconds());
+        }
+    }
+
+    /**
+     * Counts a failed attempt. The window starts with the first failure.
+     *
+     * @param account the account key (a diver id, or an unknown identifier)
+     * @param client the client address, or null if unknown
+     */
+    public void recordFailure(String account, String client) {
+        failures.get(key(account, client), k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * Clears the failures of an account from the client after a successful login.
+     *
+     * @param account the account key (a diver id)
+     * @param client the client address, or null if unknown
+     */
+    public void recordSuccess(String account, String client) {
+        failures.invalidate(key(account, client));
+    }
+
+    private static String key(String account, String client) {
+        return account + " " + (client == null ? "" : client);
+    }
+}
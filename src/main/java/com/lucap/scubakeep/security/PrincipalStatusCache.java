@@ -0,0 +1,72 @@
+package com.lucap.scubakeep.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lucap.scubakeep.cache.ReadThroughCache;
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.repository.DiverRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Short-lived cache of each diver's current role, used to reject access tokens whose
+ * claims no longer hold.
+ * <p>
+ * Tokens are valid for an hour, but a deleted account or a changed role must not keep
+ * its access for that long. Instead of loading the diver on every request, the current
+ * role is cached for {@code security.jwt.principal-ttl} (30 seconds by default): a
+ * token is accepted only while its role claim matches it. Changes made on this instance
+ * take effect on commit (see {@link #invalidateAfterCommit(UUID)}); changes made on
+ * other instances at the latest when the entry expires.
+ */
+@Component
+public class PrincipalStatusCache {
+
+    private static final long MAXIMUM_SIZE = 100_000;
+
+    private final DiverRepository diverRepository;
+    private final ReadThroughCache<UUID, Optional<Role>> roles;
+
+    public PrincipalStatusCache(
+            DiverRepository diverRepository,
+            @Value("${security.jwt.principal-ttl:30s}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        this.diverRepository = diverRepository;
+        Cache<UUID, Optional<Role>> cache = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.roles = new ReadThroughCache<>(
+                CaffeineCacheMetrics.monitor(meterRegistry, cache, "principals"));
+    }
+
+    /**
+     * Checks that the diver of a principal still exists and still has its role.
+     *
+     * @param principal the principal built from token claims
+     * @return true if the claims are still current
+     */
+    public boolean isCurrent(DiverPrincipal principal) {
+        return roles.get(principal.id(), diverRepository::findRoleById)
+                .map(role -> role == principal.role())
+                .orElse(false);
+    }
+
+    /**
+     * Drops the cached role of a diver once the current transaction commits, so a role
+     * change or account deletion applies to the diver's tokens immediately.
+     *
+     * @param diverId the diver whose account changed
+     */
+    public void invalidateAfterCommit(UUID diverId) {
+        roles.invalidateAfterCommit(diverId);
+    }
+}
@@ -0,0 +1,143 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.entity.RefreshToken;
+import com.lucap.scubakeep.exception.InvalidRefreshTokenException;
+import com.lucap.scubakeep.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Issues, rotates and revokes refresh tokens.
+ * <p>
+ * A refresh token is 256 random bits (URL-safe Base64) valid for
+ * {@code security.jwt.refresh-expiration}; only its SHA-256 digest is stored. Each
+ * use exchanges it for a new token of the same family (one login session). A token
+ * that is presented again after it was used has leaked, or its rotation was lost:
+ * every token of the family is then deleted, so both the legitimate client and the
+ * attacker have to log in again.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Duration lifetime;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * A refresh token exchanged for a new one.
+     *
+     * @param diverId      the diver the token belongs to
+     * @param refreshToken the new refresh token
+     */
+    public record Rotation(UUID diverId, String refreshToken) {
+    }
+
+    public RefreshTokenService(
+            RefreshTokenRepository refreshTokenRepository,
+            @Value("${security.jwt.refresh-expiration:30d}") Duration lifetime
+    ) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.lifetime = lifetime;
+    }
+
+    /**
+     * Issues the first refresh token of a new session, on login.
+     *
+     * @param diverId the authenticated diver
+     * @return the refresh token, to be handed to the client only
+     */
+    @Transactional
+    public String issue(UUID diverId) {
+        return issue(diverId, UUID.randomUUID(), Instant.now());
+    }
+
+    /**
+     * Consumes a refresh token and issues its successor.
+     *
+     * @param refreshToken the refresh token presented by the client
+     * @return the diver and the new refresh token
+     * @throws InvalidRefreshTokenException if the token is unknown, expired or was used
+     *         before (its family is then revoked)
+     */
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public Rotation rotate(String refreshToken) {
+        Instant now = Instant.now();
+        RefreshToken current = refreshTokenRepository.findById(digest(refreshToken))
+                .filter(token -> token.getExpiresAt().isAfter(now))
+                .orElseThrow(InvalidRefreshTokenException::new);
+
+        if (refreshTokenRepository.markUsed(current.getTokenHash(), now) == 0) {
+            refreshTokenRepository.deleteByFamilyId(current.getFamilyId());
+            LOGGER.warn("Used refresh token presented again; revoked session {} of diver {}",
+                    current.getFamilyId(), current.getDiverId());
+            throw new InvalidRefreshTokenException();
+        }
+
+        String successor = issue(current.getDiverId(), current.getFamilyId(), now);
+        return new Rotation(current.getDiverId(), successor);
+    }
+
+    /**
+     * Revokes the session of a refresh token (logout). Unknown tokens are ignored.
+     *
+     * @param refreshToken the refresh token presented by the client
+     */
+    @Transactional
+    public void revoke(String refreshToken) {
+        refreshTokenRepository.findById(digest(refreshToken))
+                .ifPresent(token -> refreshTokenRepository.deleteByFamilyId(token.getFamilyId()));
+    }
+
+    /**
+     * Deletes expired refresh tokens, used or not.
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.refresh-purge-interval:1h}")
+    public void purgeExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(Instant.now());
+        if (deleted > 0) {
+            LOGGER.info("Deleted {} expired refresh tokens", deleted);
+        }
+    }
+
+    private String issue(UUID diverId, UUID familyId, Instant now) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(digest(token))
+                .familyId(familyId)
+                .diverId(diverId)
+                .expiresAt(now.plus(lifetime))
+                .build());
+        return token;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
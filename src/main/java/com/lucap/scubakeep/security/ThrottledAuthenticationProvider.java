@@ -0,0 +1,82 @@
+package com.lucap.scubakeep.security;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.util.Locale;
+
+/**
+ * Username/email and password authentication that applies the {@link LoginThrottle}
+ * between loading the credentials and checking the password.
+ * <p>
+ * At that point the identifier has been resolved to its diver, so failures are counted
+ * per diver id, whether the username or the email was entered, without another query.
+ * Identifiers that match no diver are counted by their normalized (trimmed,
+ * lower-case) form and checked before the lookup; they still fail with the same
+ * {@link BadCredentialsException} as a wrong password.
+ * The client address is read from the {@link WebAuthenticationDetails} of the
+ * authentication request.
+ */
+public class ThrottledAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private static final String UNKNOWN_ACCOUNT_PREFIX = "identifier:";
+
+    private final LoginThrottle loginThrottle;
+
+    public ThrottledAuthenticationProvider(
+            DiverUserDetailsService userDetailsService,
+            PasswordEncoder passwordEncoder,
+            LoginThrottle loginThrottle
+    ) {
+        super(passwordEncoder);
+        setUserDetailsService(userDetailsService);
+        setUserDetailsPasswordService(userDetailsService);
+        setHideUserNotFoundExceptions(false);
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        String unknownAccount = UNKNOWN_ACCOUNT_PREFIX
+                + authentication.getName().trim().toLowerCase(Locale.ROOT);
+        String client = client(authentication);
+        loginThrottle.checkAllowed(unknownAccount, client);
+        try {
+            return super.authenticate(authentication);
+        } catch (UsernameNotFoundException ex) {
+            loginThrottle.recordFailure(unknownAccount, client);
+            throw new BadCredentialsException(messages.getMessage(
+                    "AbstractUserDetailsAuthenticationProvider.badCredentials",
+                    "Bad credentials"));
+        }
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(
+            UserDetails user,
+            UsernamePasswordAuthenticationToken authentication
+    ) {
+        String account = ((DiverUserDetails) user).getId().toString();
+        String client = client(authentication);
+        loginThrottle.checkAllowed(account, client);
+        try {
+            super.additionalAuthenticationChecks(user, authentication);
+        } catch (BadCredentialsException ex) {
+            loginThrottle.recordFailure(account, client);
+            throw ex;
+        }
+        loginThrottle.recordSuccess(account, client);
+    }
+
+    private static String client(Authentication authentication) {
+        return authentication.getDetails() instanceof WebAuthenticationDetails details
+                ? details.getRemoteAddress()
+                : null;
+    }
+}
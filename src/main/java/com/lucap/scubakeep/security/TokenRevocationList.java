@@ -0,0 +1,137 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.cache.BloomFilter;
+import com.lucap.scubakeep.entity.RevokedToken;
+import com.lucap.scubakeep.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Revoked access tokens, checked on every authenticated request without a query.
+ * <p>
+ * Revoked token ids are stored in {@code revoked_tokens} until the token expires.
+ * Each instance keeps the live ids in a {@link BloomFilter} (about 14 bits per id),
+ * so the check of a token that was not revoked, i.e. almost every request, stays in
+ * memory. Only when the filter reports a possible match (a revoked token, or a false
+ * positive in about 0.1% of the cases) is the table queried to confirm it.
+ * <p>
+ * Tokens revoked on this instance are added at once. Every
+ * {@code security.jwt.revocation-sync-interval} the ids revoked since the last sync
+ * (by any instance) are added; once an hour, or when more ids than
+ * {@code security.jwt.revocation-filter-size} were added, the filter is rebuilt from
+ * the live rows and the expired rows are deleted.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+    private static final Duration REBUILD_PERIOD = Duration.ofHours(1);
+    // Syncs re-read this far back, covering rows committed late or by instances
+    // with a slightly different clock
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final int filterSize;
+    private final Counter lookups;
+
+    private volatile BloomFilter filter;
+    private volatile Instant builtAt;
+    private volatile Instant syncedAt;
+
+    public TokenRevocationList(
+            RevokedTokenRepository revokedTokenRepository,
+            @Value("${security.jwt.revocation-filter-size:100000}") int filterSize,
+            MeterRegistry meterRegistry
+    ) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.filterSize = filterSize;
+        this.lookups = Counter.builder("token.revocation.lookups")
+                .description("Token revocation checks that had to query the database")
+                .register(meterRegistry);
+        Gauge.builder("token.revocation.filter.size", this, list -> list.filter.size())
+                .description("Revoked token ids in the in-memory filter")
+                .register(meterRegistry);
+        rebuild(Instant.now());
+    }
+
+    /**
+     * Checks whether an access token was revoked.
+     *
+     * @param tokenId the token id ({@code jti})
+     * @return true if the token was revoked
+     */
+    public boolean isRevoked(UUID tokenId) {
+        if (!filter.mightContain(tokenId.toString())) {
+            return false;
+        }
+        lookups.increment();
+        return revokedTokenRepository.existsById(tokenId);
+    }
+
+    /**
+     * Revokes an access token until it expires.
+     *
+     * @param token the verified token to revoke
+     */
+    public void revoke(AccessToken token) {
+        Instant now = Instant.now();
+        if (!token.expiresAt().isAfter(now)) {
+            return;
+        }
+        revokedTokenRepository.save(new RevokedToken(token.id(), token.expiresAt(), now));
+        filter.add(token.id().toString());
+        LOGGER.info("Revoked access token {} of diver {}", token.id(), token.principal().id());
+    }
+
+    /**
+     * Adds the tokens revoked by any instance since the last sync, or rebuilds the
+     * filter when it is due.
+     */
+    @Scheduled(
+            fixedDelayString = "${security.jwt.revocation-sync-interval:10s}",
+            initialDelayString = "${security.jwt.revocation-sync-interval:10s}"
+    )
+    public void synchronize() {
+        Instant now = Instant.now();
+        if (filter.isSaturated() || builtAt.plus(REBUILD_PERIOD).isBefore(now)) {
+            rebuild(now);
+            return;
+        }
+        List<UUID> revoked = revokedTokenRepository.findIdsRevokedSince(
+                syncedAt.minus(SYNC_OVERLAP));
+        revoked.forEach(id -> filter.add(id.toString()));
+        syncedAt = now;
+    }
+
+    /**
+     * Replaces the filter with one holding the live revoked ids only. Revocations
+     * committed while the rows are read are picked up by the next sync.
+     */
+    private void rebuild(Instant now) {
+        int deleted = revokedTokenRepository.deleteExpired(now);
+        List<UUID> live = revokedTokenRepository.findLiveIds(now);
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(filterSize, live.size() * 2),
+                FALSE_POSITIVE_RATE);
+        live.forEach(id -> rebuilt.add(id.toString()));
+
+        filter = rebuilt;
+        builtAt = now;
+        syncedAt = now;
+        LOGGER.debug("Rebuilt token revocation filter: {} live ids, {} expired rows deleted",
+                live.size(), deleted);
+    }
+}
@@ -1,23 +1,39 @@
 package com.lucap.scubakeep.service;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.lucap.scubakeep.dto.TokenRequestDTO;
 import com.lucap.scubakeep.dto.TokenResponseDTO;
 import com.lucap.scubakeep.entity.Diver;
 import com.lucap.scubakeep.exception.AuthenticatedUserNotFoundException;
+import com.lucap.scubakeep.exception.InvalidRefreshTokenException;
 import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.security.AccessToken;
+import com.lucap.scubakeep.security.DiverUserDetails;
 import com.lucap.scubakeep.security.JwtService;
+import com.lucap.scubakeep.security.RefreshTokenService;
+import com.lucap.scubakeep.security.TokenRevocationList;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.stereotype.Service;
 
 /**
  * Authenticates users and returns an access token response.
  *
  * <p>
- * At this stage, authentication is validated via Spring Security's AuthenticationManager.
- * JWT generation will be added in the next step.
+ * Authentication is validated via Spring Security's AuthenticationManager. The
+ * authenticated {@link DiverUserDetails} already carries the id and role, so a login
+ * costs one credentials query and one password hash check. Failed logins are
+ * throttled per account and client address by
+ * {@link com.lucap.scubakeep.security.ThrottledAuthenticationProvider}.
+ * </p>
+ *
+ * <p>
+ * Every login starts a session with a refresh token; refreshing rotates it (see
+ * {@link RefreshTokenService}) and issues a new access token with the diver's current
+ * username and role. Logout revokes both tokens.
  * </p>
  */
 @RequiredArgsConstructor
@@ -25,36 +41,81 @@ import org.springframework.stereotype.Service;
 public class AuthService {
 
     private final AuthenticationManager authenticationManager;
-    private final DiverRepository diverRepository;
     private final JwtService jwtService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationList tokenRevocationList;
+    private final DiverRepository diverRepository;
 
     /**
      * Authenticates a user using username or email and password,
-     * and returns a signed JWT if authentication succeeds.
+     * and returns a signed JWT and a refresh token if authentication succeeds.
      *
-     * @param request login credentials (identifier and password)
-     * @return a JWT token wrapped in TokenResponseDTO
+     * @param request       login credentials (identifier and password)
+     * @param clientAddress the address the request came from, for throttling failures
+     * @return a JWT token and a refresh token wrapped in TokenResponseDTO
+     * @throws com.lucap.scubakeep.exception.LoginThrottledException if the account
+     *         failed too often recently from this address
      */
-    public TokenResponseDTO authenticate(TokenRequestDTO request) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        request.getIdentifier(),
-                        request.getPassword())
-        );
+    public TokenResponseDTO authenticate(TokenRequestDTO request, String clientAddress) {
+        UsernamePasswordAuthenticationToken credentials =
+                UsernamePasswordAuthenticationToken.unauthenticated(
+                        request.getIdentifier(), request.getPassword());
+        credentials.setDetails(new WebAuthenticationDetails(clientAddress, null));
+        Authentication authentication = authenticationManager.authenticate(credentials);
 
-        String username = authentication.getName();
+        if (!(authentication.getPrincipal() instanceof DiverUserDetails diver)) {
+            throw new AuthenticatedUserNotFoundException(authentication.getName());
+        }
 
-        Diver diver = diverRepository.findByUsername(username)
-                .orElseThrow(() ->
-                        new AuthenticatedUserNotFoundException("Authenticated user not found: "
-                                + username)
-                );
+        String token = jwtService.generateToken(
+                diver.getId(),
+                diver.getUsername(),
+                diver.getRole()
+        );
+        return new TokenResponseDTO(token, refreshTokenService.issue(diver.getId()));
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token.
+     *
+     * @param refreshToken the refresh token of the last login or refresh
+     * @return the new token pair
+     * @throws InvalidRefreshTokenException if the refresh token is not valid (any more),
+     *         or its diver no longer exists
+     */
+    public TokenResponseDTO refresh(String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+        Diver diver = diverRepository.findById(rotation.diverId())
+                .orElseThrow(InvalidRefreshTokenException::new);
 
         String token = jwtService.generateToken(
                 diver.getId(),
                 diver.getUsername(),
                 diver.getRole()
         );
-        return new TokenResponseDTO(token);
+        return new TokenResponseDTO(token, rotation.refreshToken());
+    }
+
+    /**
+     * Ends a session: revokes the access token until it expires and deletes the
+     * session's refresh tokens. Tokens that are missing or already invalid are ignored.
+     *
+     * @param accessToken  the raw JWT of the request, or null
+     * @param refreshToken the session's refresh token, or null
+     */
+    public void logout(String accessToken, String refreshToken) {
+        if (accessToken != null) {
+            try {
+                AccessToken verified = jwtService.authenticate(accessToken);
+                if (verified != null) {
+                    tokenRevocationList.revoke(verified);
+                }
+            } catch (JWTVerificationException ex) {
+                // Invalid or expired token: nothing to revoke
+            }
+        }
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
     }
 }
\ No newline at end of file
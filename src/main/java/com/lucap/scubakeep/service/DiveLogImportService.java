@@ -0,0 +1,12 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.dto.DiveLogImportResultDTO;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Service interface defining bulk dive log imports from logbook files.
+ */
+public interface DiveLogImportService {
+
+    DiveLogImportResultDTO importDiveLogs(MultipartFile file, String format);
+}
@@ -0,0 +1,220 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.dto.DiveLogImportResultDTO;
+import com.lucap.scubakeep.dto.DiveLogRequestDTO;
+import com.lucap.scubakeep.dto.ImportRowErrorDTO;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.exception.AuthenticatedUserNotFoundException;
+import com.lucap.scubakeep.exception.InvalidImportFileException;
+import com.lucap.scubakeep.id.Tsid;
+import com.lucap.scubakeep.id.UuidV7;
+import com.lucap.scubakeep.importer.DiveLogImportFormat;
+import com.lucap.scubakeep.importer.DiveLogRecordReader;
+import com.lucap.scubakeep.importer.ImportRecord;
+import com.lucap.scubakeep.repository.DiverRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Service implementation for bulk dive log imports.
+ * <p>
+ * The file is parsed incrementally; each row is validated against the
+ * {@link DiveLogRequestDTO} constraints and valid rows are inserted with plain JDBC
+ * batches of {@value #BATCH_SIZE} rows, one transaction per batch. Ids are generated
+ * in-process with {@link Tsid}, exactly like Hibernate does for {@code DiveLog}; going
+ * through the persistence context instead would keep every imported row in memory.
+ * <p>
+ * Each batch also increments the diver's dive counter in the same transaction,
+ * so a failure never leaves the counter out of step with the committed rows.
+ */
+@Service
+public class DiveLogImportServiceImpl implements DiveLogImportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiveLogImportServiceImpl.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO dive_logs (id, dive_date, location, dive_site, maximum_depth, duration,
+                                   dive_buddy, dive_notes, diver_id, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final DiverRepository diverRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityCache entityCache;
+
+    public DiveLogImportServiceImpl(
+            DiverRepository diverRepository,
+            JdbcTemplate jdbcTemplate,
+            Validator validator,
+            PlatformTransactionManager transactionManager,
+            EntityCache entityCache
+    ) {
+        this.diverRepository = diverRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * Imports the dives of a CSV or UDDF file into the authenticated diver's logbook.
+     * <p>
+     * Rows that cannot be parsed or violate the dive log constraints are skipped and
+     * reported; all other rows are imported. Batches committed before a fatal error
+     * (e.g. malformed XML halfway through the file) stay imported.
+     *
+     * @param file   the uploaded logbook file
+     * @param format {@code csv} or {@code uddf}; derived from the file name if null
+     * @return the import summary with per-row errors
+     * @throws AuthenticatedUserNotFoundException if the authenticated user does not exist
+     * @throws InvalidImportFileException if the file cannot be read as a whole
+     */
+    @Override
+    public DiveLogImportResultDTO importDiveLogs(MultipartFile file, String format) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        Diver diver = diverRepository.findByUsername(username)
+                .orElseThrow(() -> new AuthenticatedUserNotFoundException(username));
+        DiveLogImportFormat importFormat =
+                DiveLogImportFormat.resolve(format, file.getOriginalFilename());
+
+        LOGGER.info("Importing {} dive logs for diver '{}'", importFormat, username);
+
+        ImportProgress progress = new ImportProgress();
+        try (InputStream in = file.getInputStream();
+             DiveLogRecordReader reader = importFormat.open(in)) {
+            readAll(reader, diver.getId(), progress);
+        } catch (IOException ex) {
+            throw new InvalidImportFileException(ex.getMessage());
+        }
+
+        LOGGER.info("Imported {} of {} dive logs for diver '{}' ({} rejected)",
+                progress.imported, progress.total, username, progress.rejected);
+        return DiveLogImportResultDTO.builder()
+                .totalRows(progress.total)
+                .imported(progress.imported)
+                .rejected(progress.rejected)
+                .errors(progress.errors)
+                .build();
+    }
+
+    /**
+     * Validates every record and flushes valid ones in batches.
+     */
+    private void readAll(DiveLogRecordReader reader, UUID diverId, ImportProgress progress) {
+        List<DiveLogRequestDTO> batch = new ArrayList<>(BATCH_SIZE);
+        ImportRecord row;
+        while ((row = reader.next()) != null) {
+            progress.total++;
+            String error = row.error() != null ? row.error() : validate(row.dive());
+            if (error != null) {
+                progress.reject(row.rowNumber(), error);
+                continue;
+            }
+
+            batch.add(row.dive());
+            if (batch.size() == BATCH_SIZE) {
+                progress.imported += insertBatch(diverId, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            progress.imported += insertBatch(diverId, batch);
+        }
+    }
+
+    /**
+     * Checks a parsed dive against the {@link DiveLogRequestDTO} constraints.
+     *
+     * @return the joined violation messages, or null if the dive is valid
+     */
+    private String validate(DiveLogRequestDTO dive) {
+        var violations = validator.validate(dive);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .sorted(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Inserts one batch and bumps the diver's counter in a single transaction.
+     *
+     * @return the number of inserted rows
+     */
+    private int insertBatch(UUID diverId, List<DiveLogRequestDTO> batch) {
+        Timestamp now = Timestamp.from(Instant.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(),
+                    (ps, dive) -> bind(ps, dive, diverId, now));
+            diverRepository.incrementTotalDives(diverId, batch.size());
+            entityCache.getDivers().invalidateAfterCommit(diverId);
+        });
+        return batch.size();
+    }
+
+    private static void bind(
+            PreparedStatement ps,
+            DiveLogRequestDTO dive,
+            UUID diverId,
+            Timestamp now
+    ) throws SQLException {
+        ps.setLong(1, Tsid.next());
+        ps.setObject(2, dive.getDiveDate());
+        ps.setString(3, dive.getLocation());
+        ps.setString(4, dive.getDiveSite());
+        ps.setDouble(5, dive.getMaxDepth());
+        ps.setInt(6, dive.getDuration());
+        ps.setObject(7, dive.getDiveBuddy(), Types.VARCHAR);
+        ps.setObject(8, dive.getNotes(), Types.VARCHAR);
+        ps.setBytes(9, UuidV7.toBytes(diverId));
+        ps.setTimestamp(10, now);
+        ps.setTimestamp(11, now);
+    }
+
+    /**
+     * Mutable counters of a running import.
+     */
+    private static final class ImportProgress {
+
+        private int total;
+        private int imported;
+        private int rejected;
+        private final List<ImportRowErrorDTO> errors = new ArrayList<>();
+
+        private void reject(int row, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportRowErrorDTO(row, message));
+            }
+        }
+    }
+}
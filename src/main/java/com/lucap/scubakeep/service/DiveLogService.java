@@ -1,12 +1,20 @@
 package com.lucap.scubakeep.service;
 
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogRequestDTO;
 import com.lucap.scubakeep.dto.DiveLogResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadConfirmDTO;
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
+import com.lucap.scubakeep.pagination.DiveLogSort;
 
+import com.lucap.scubakeep.storage.StoredImage;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
 
@@ -17,10 +25,16 @@ import java.util.UUID;
  */
 public interface DiveLogService {
 
-    List<DiveLogResponseDTO> getAllDiveLogs();
-
     List<DiveLogResponseDTO> getDiveLogs(Pageable pageable, UUID diverId);
 
+    CursorPageResponseDTO<DiveLogResponseDTO> getDiveLogFeed(
+            String cursor,
+            int size,
+            UUID diverId,
+            DiveLogSort sort,
+            Sort.Direction direction
+    );
+
     DiveLogResponseDTO createDiveLog(DiveLogRequestDTO dto);
 
     DiveLogResponseDTO getDiveLogById(Long id);
@@ -31,5 +45,11 @@ public interface DiveLogService {
 
     DiveLogResponseDTO uploadImage(Long id, MultipartFile file);
 
-    byte[] getDiveLogImageBytes(Long id);
+    DiveLogResponseDTO streamImage(Long id, InputStream body, String contentType, long length);
+
+    ImageUploadResponseDTO createImageUpload(Long id, ImageUploadRequestDTO dto);
+
+    DiveLogResponseDTO confirmImageUpload(Long id, ImageUploadConfirmDTO dto);
+
+    StoredImage getDiveLogImage(Long id);
 }
@@ -1,26 +1,42 @@
 package com.lucap.scubakeep.service;
 
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogRequestDTO;
 import com.lucap.scubakeep.dto.DiveLogResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadConfirmDTO;
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
 import com.lucap.scubakeep.entity.DiveLog;
 import com.lucap.scubakeep.entity.Diver;
 import com.lucap.scubakeep.exception.*;
 import com.lucap.scubakeep.mapper.DiveLogMapper;
+import com.lucap.scubakeep.pagination.DiveLogCursor;
+import com.lucap.scubakeep.pagination.DiveLogSort;
+import com.lucap.scubakeep.projection.DiveLogView;
 import com.lucap.scubakeep.repository.DiveLogRepository;
 import com.lucap.scubakeep.repository.DiverRepository;
 import com.lucap.scubakeep.security.AuthorizationService;
+import com.lucap.scubakeep.security.DiverPrincipal;
+import com.lucap.scubakeep.storage.ImageTypes;
 import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.PresignedUploads;
+import com.lucap.scubakeep.storage.StoredImage;
+import com.lucap.scubakeep.storage.StoredObject;
+import com.lucap.scubakeep.storage.StreamingUploads;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -36,27 +52,16 @@ public class DiveLogServiceImpl implements DiveLogService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DiveLogServiceImpl.class);
 
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+
     private final DiveLogRepository diveLogRepository;
     private final DiverRepository diverRepository;
     private final AuthorizationService authorizationService;
     private final MinioStorageService minioStorageService;
-
-    /**
-     * Retrieves all dive logs without pagination.
-     *
-     * @return a list of {@link DiveLogResponseDTO} representing all dive logs
-     */
-    @Override
-    @Transactional(readOnly = true)
-    public List<DiveLogResponseDTO> getAllDiveLogs() {
-
-        //return diveLogRepository.findAll()
-        //        .stream()
-        //        .map(DiveLogMapper::toResponseDTO)
-        //        .toList();
-
-        return getDiveLogs(Pageable.unpaged(), null);
-    }
+    private final PresignedUploads presignedUploads;
+    private final StreamingUploads streamingUploads;
+    private final ImageVariantService imageVariantService;
+    private final EntityCache entityCache;
 
     /**
      * Retrieves dive logs using pagination and sorting, optionally filtered by diver.
@@ -71,60 +76,115 @@ public class DiveLogServiceImpl implements DiveLogService {
 
         if (diverId == null) {
             LOGGER.info("Fetching dive logs (pageable={})", pageable);
-            return diveLogRepository.findAll(pageable)
+            return diveLogRepository.findViews(pageable)
                     .stream()
                     .map(DiveLogMapper::toResponseDTO)
                     .toList();
         }
 
         LOGGER.info("Fetching dive logs for diverId={} (pageable={})", diverId, pageable);
-        return diveLogRepository.findByDiverId(diverId, pageable)
+        return diveLogRepository.findViewsByDiverId(diverId, pageable)
                 .stream()
                 .map(DiveLogMapper::toResponseDTO)
                 .toList();
     }
 
+    /**
+     * Retrieves one page of the dive log feed using keyset (cursor) pagination.
+     * <p>
+     * The feed is ordered by {@code (sort, id)} in the requested direction. Instead of an
+     * OFFSET, each page continues strictly after the {@code (sort key, id)} encoded in
+     * the cursor, so latency stays flat no matter how far a client scrolls.
+     * One extra row is fetched to detect whether a further page exists.
+     *
+     * @param cursor    opaque continuation token from a previous page, or null for the first page
+     * @param size      the requested page size (clamped to 1..{@value #MAX_FEED_PAGE_SIZE})
+     * @param diverId   optional diver id to restrict the feed to one owner
+     * @param sort      the sort field
+     * @param direction the sort direction
+     * @return the page items and the continuation token for the next page (null if none)
+     * @throws InvalidCursorException if the cursor is malformed or was issued for another sort
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponseDTO<DiveLogResponseDTO> getDiveLogFeed(
+            String cursor,
+            int size,
+            UUID diverId,
+            DiveLogSort sort,
+            Sort.Direction direction
+    ) {
+        int pageSize = Math.clamp(size, 1, MAX_FEED_PAGE_SIZE);
+        DiveLogCursor after = cursor == null || cursor.isBlank()
+                ? null
+                : DiveLogCursor.decode(cursor);
+        if (after != null && (after.sort() != sort || after.direction() != direction)) {
+            throw new InvalidCursorException(cursor);
+        }
+
+        LOGGER.info("Fetching dive log feed (size={}, diverId={}, sort={} {}, cursor={})",
+                pageSize, diverId, sort, direction, after);
+
+        List<DiveLogView> rows =
+                diveLogRepository.findFeedPage(sort, direction, diverId, after, pageSize + 1);
+
+        boolean hasNext = rows.size() > pageSize;
+        List<DiveLogView> page = hasNext ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = hasNext
+                ? DiveLogCursor.after(page.get(page.size() - 1), sort, direction).encode()
+                : null;
+
+        return new CursorPageResponseDTO<>(
+                page.stream().map(DiveLogMapper::toResponseDTO).toList(),
+                nextCursor
+        );
+    }
+
     /**
      * Creates and saves a new dive log.
      *
      * @param dto the dive log request data
      * @return the created dive log as {@link DiveLogResponseDTO}
-     * @throws DiverNotFoundException if the referenced diver does not exist
+     * @throws AuthenticatedUserNotFoundException if the authenticated diver no longer exists
      */
     @Override
     @Transactional
     public DiveLogResponseDTO createDiveLog(DiveLogRequestDTO dto) {
 
-        // Used to extract diver id from dto
-        // now it extract it from authentication, fetch managed Diver from DB
-        // or throws AuthenticatedUserNotFound
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        LOGGER.info("Creating dive log for authenticated user '{}'", username);
+        // The owner comes from the token claims; counting the dive doubles as the
+        // existence check, so the diver row is never loaded
+        DiverPrincipal owner = authorizationService.currentDiver();
+        LOGGER.info("Creating dive log for authenticated user '{}'", owner.username());
 
-        Diver diver = diverRepository.findByUsername(username)
-                .orElseThrow(() -> new AuthenticatedUserNotFoundException(username));
+        if (diverRepository.incrementTotalDives(owner.id(), 1L) == 0) {
+            throw new AuthenticatedUserNotFoundException(owner.username());
+        }
 
-        DiveLog diveLog = DiveLogMapper.toEntity(dto, diver);
-        DiveLog saved = diveLogRepository.save(diveLog);
+        Diver diver = diverRepository.getReferenceById(owner.id());
+        DiveLog saved = diveLogRepository.save(DiveLogMapper.toEntity(dto, diver));
+        entityCache.getDivers().invalidateAfterCommit(owner.id());
 
-        LOGGER.info("Dive log created with ID {} for diver '{}'", saved.getId(), username);
-        return DiveLogMapper.toResponseDTO(saved);
+        LOGGER.info("Dive log created with ID {} for diver '{}'", saved.getId(), owner.username());
+        return DiveLogMapper.toResponseDTO(saved, owner.username());
     }
 
     /**
      * Retrieves a dive log by its ID.
+     * <p>
+     * Served from the dive log cache. Not transactional on purpose: a cache hit must
+     * not check out a connection, and a miss is a single projection query.
      *
      * @param id the ID of the dive log
      * @return the found {@link DiveLog}
      * @throws DiveLogNotFoundException if no log is found for the given ID
      */
     @Override
-    @Transactional(readOnly = true)
     public DiveLogResponseDTO getDiveLogById(Long id) {
         LOGGER.info("Fetching dive log with ID {}", id);
-        DiveLog diveLog = diveLogRepository.findById(id)
-                .orElseThrow(() -> new DiveLogNotFoundException(id));
-        return DiveLogMapper.toResponseDTO(diveLog);
+        return entityCache.getDiveLogs().get(id, key -> diveLogRepository.findViewById(key)
+                .map(DiveLogMapper::toResponseDTO)
+                .orElseThrow(() -> new DiveLogNotFoundException(key)));
     }
 
     /**
@@ -148,6 +208,9 @@ public class DiveLogServiceImpl implements DiveLogService {
         );
 
         diveLogRepository.delete(diveLog);
+        diverRepository.decrementTotalDives(diver.getId());
+        entityCache.getDiveLogs().invalidateAfterCommit(id);
+        entityCache.getDivers().invalidateAfterCommit(diver.getId());
 
         LOGGER.info("Dive log with ID {} deleted; diver ID {} total dives decremented",
                 id,
@@ -178,6 +241,7 @@ public class DiveLogServiceImpl implements DiveLogService {
         );
 
         DiveLogMapper.applyUpdates(diveLog, dto);
+        entityCache.getDiveLogs().invalidateAfterCommit(id);
 
         LOGGER.info("Dive log with ID {} updated successfully", id);
         return DiveLogMapper.toResponseDTO(diveLog);
@@ -187,36 +251,31 @@ public class DiveLogServiceImpl implements DiveLogService {
      * Uploads an image for a specific dive log and stores it in MinIO.
      * <p>
      * Enforces authorization (only the owner or an admin can upload) and
-     * validates that the uploaded file is an image.
+     * validates that the uploaded file is an image. Not transactional: the transfer
+     * to MinIO runs without holding a database connection, and the new key is then
+     * committed by a single UPDATE (see {@link #attachImage(Long, String)}).
      *
      * @param id   the ID of the dive log
      * @param file the multipart file containing the image
      * @return the updated dive log as {@link DiveLogResponseDTO}
      * @throws DiveLogNotFoundException if no dive log is found for the given ID
-     * @throws InvalidFileTypeException if the uploaded file is not a valid image type
+     * @throws InvalidFileTypeException if the uploaded file is not an accepted image type
      * @throws StorageOperationException if the upload to MinIO fails
      */
     @Override
-    @Transactional
     public DiveLogResponseDTO uploadImage(Long id, MultipartFile file) {
         LOGGER.info("Uploading image for dive log ID {}", id);
 
-        DiveLog diveLog = diveLogRepository.findById(id)
-                .orElseThrow(() -> new DiveLogNotFoundException(id));
-
-        authorizationService.assertOwnerOrAdmin(diveLog.getDiver().getUsername());
+        assertOwnerOrAdmin(id);
 
         // File validation
-        String cType = file.getContentType();
-        if (cType == null || !cType.startsWith("image/")) {
-            throw new InvalidFileTypeException(cType == null ? "unknown" : cType);
-        }
+        String cType = ImageTypes.require(file.getContentType());
 
         // Generate a unique path for MinIO
         String originalFilename = file.getOriginalFilename();
         String extension = originalFilename != null && originalFilename.contains(".")
                 ? originalFilename.substring(originalFilename.lastIndexOf(".")) : "";
-        String objectKey = "divelogs/" + id + "/" + UUID.randomUUID() + extension;
+        String objectKey = imagePrefix(id) + UUID.randomUUID() + extension;
 
         try {
             minioStorageService.upload(objectKey, file.getInputStream(), file.getSize(), cType);
@@ -224,26 +283,134 @@ public class DiveLogServiceImpl implements DiveLogService {
             throw new StorageOperationException(objectKey);
         }
 
-        diveLog.setImagePath(objectKey);
-        return DiveLogMapper.toResponseDTO(diveLog);
+        attachImage(id, objectKey);
+        return getDiveLogById(id);
     }
 
     /**
-     * Retrieves the raw bytes of the dive log image from MinIO.
+     * Uploads an image for a specific dive log from a raw request body, streaming it
+     * into MinIO part by part instead of spooling it to a temporary file first. Not
+     * transactional, like {@link #uploadImage}.
      *
      * @param id the ID of the dive log
-     * @return the image bytes, or null if no local image exists
+     * @param body the image content
+     * @param contentType the declared MIME type of the image
+     * @param length the declared length in bytes, or -1 if unknown
+     * @return the updated dive log as {@link DiveLogResponseDTO}
+     * @throws DiveLogNotFoundException if the dive log does not exist
+     * @throws InvalidFileTypeException if the content type is not an accepted image type
+     * @throws UploadTooLargeException if the image exceeds the maximum size
      */
     @Override
-    @Transactional(readOnly = true)
-    public byte[] getDiveLogImageBytes(Long id) {
-        DiveLog diveLog = diveLogRepository.findById(id)
+    public DiveLogResponseDTO streamImage(
+            Long id,
+            InputStream body,
+            String contentType,
+            long length
+    ) {
+        LOGGER.info("Streaming image for dive log ID {}", id);
+        assertOwnerOrAdmin(id);
+        StoredObject image = streamingUploads.upload(imagePrefix(id), body, contentType, length);
+
+        attachImage(id, image.key());
+        LOGGER.info("Streamed {} bytes as image of dive log ID {}", image.size(), id);
+        return getDiveLogById(id);
+    }
+
+    /**
+     * Issues a presigned URL for uploading the dive log image directly to MinIO.
+     * Only the owner or an admin can upload.
+     *
+     * @param id  the ID of the dive log
+     * @param dto the declared content type and size of the image
+     * @return the upload URL and the object key to confirm
+     * @throws DiveLogNotFoundException if no dive log is found for the given ID
+     * @throws InvalidFileTypeException if the declared type is not an accepted image type
+     */
+    @Override
+    public ImageUploadResponseDTO createImageUpload(Long id, ImageUploadRequestDTO dto) {
+        assertOwnerOrAdmin(id);
+        return presignedUploads.issue(imagePrefix(id), dto);
+    }
+
+    /**
+     * Attaches a directly uploaded image to the dive log, once the object has been
+     * verified in MinIO. Not transactional, like {@link #uploadImage}.
+     *
+     * @param id  the ID of the dive log
+     * @param dto the object key returned with the upload URL
+     * @return the updated dive log as {@link DiveLogResponseDTO}
+     * @throws DiveLogNotFoundException if no dive log is found for the given ID
+     * @throws InvalidUploadException if the object is missing, foreign or too large
+     * @throws InvalidFileTypeException if the object is not an accepted image type
+     */
+    @Override
+    public DiveLogResponseDTO confirmImageUpload(Long id, ImageUploadConfirmDTO dto) {
+        assertOwnerOrAdmin(id);
+        StoredObject image = presignedUploads.confirm(imagePrefix(id), dto.getObjectKey());
+
+        attachImage(id, image.key());
+        LOGGER.info("Confirmed direct image upload for dive log ID {}", id);
+        return getDiveLogById(id);
+    }
+
+    private static String imagePrefix(Long id) {
+        return "divelogs/" + id + "/";
+    }
+
+    private void assertOwnerOrAdmin(Long id) {
+        String owner = diveLogRepository.findOwnerUsernameById(id)
                 .orElseThrow(() -> new DiveLogNotFoundException(id));
+        authorizationService.assertOwnerOrAdmin(owner);
+    }
+
+    /**
+     * Commits a stored image as the dive log's new image, in a transaction of its own,
+     * and queues the generation of its variants; the metadata of the previous image
+     * no longer applies. If the dive log was deleted meanwhile or the update fails,
+     * the object is deleted again rather than left unreferenced.
+     */
+    private void attachImage(Long id, String objectKey) {
+        int updated;
+        try {
+            updated = diveLogRepository.updateImage(id, objectKey, Instant.now());
+        } catch (RuntimeException ex) {
+            discard(objectKey);
+            throw ex;
+        }
+        if (updated == 0) {
+            discard(objectKey);
+            throw new DiveLogNotFoundException(id);
+        }
+        entityCache.getDiveLogs().invalidateAfterCommit(id);
+        imageVariantService.generateForDiveLog(id, objectKey);
+    }
 
-        if (diveLog.getImagePath() == null) {
-            return null;
+    private void discard(String objectKey) {
+        try {
+            minioStorageService.delete(objectKey);
+            LOGGER.info("Deleted image {} that could not be attached", objectKey);
+        } catch (StorageOperationException ex) {
+            LOGGER.warn("Could not delete unattached image {}", objectKey, ex);
         }
+    }
+
+    /**
+     * Returns the dive log image's object key and whether its variants exist. The
+     * object store is not queried, so conditional requests can be answered from the
+     * key alone.
+     *
+     * @param id the ID of the dive log
+     * @return the image, or null if no local image exists
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public StoredImage getDiveLogImage(Long id) {
+        DiveLog diveLog = diveLogRepository.findById(id)
+                .orElseThrow(() -> new DiveLogNotFoundException(id));
 
-        return minioStorageService.download(diveLog.getImagePath());
+        return diveLog.getImagePath() == null
+                ? null
+                : new StoredImage(diveLog.getImagePath(), diveLog.getImageWidth() != null);
     }
 }
@@ -0,0 +1,16 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.dto.AvailabilityResponseDTO;
+
+/**
+ * Service interface answering whether usernames and emails are still free, for
+ * signup forms that check them while the user types.
+ * <p>
+ * The answer is advisory: registration itself relies on the unique constraints.
+ */
+public interface DiverAvailabilityService {
+
+    AvailabilityResponseDTO checkAvailability(String username, String email);
+
+    void recordTaken(String username, String email);
+}
@@ -0,0 +1,179 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.cache.BloomFilter;
+import com.lucap.scubakeep.dto.AvailabilityResponseDTO;
+import com.lucap.scubakeep.id.UuidV7;
+import com.lucap.scubakeep.projection.DiverIdentifiers;
+import com.lucap.scubakeep.repository.DiverRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Service implementation answering availability checks from a {@link BloomFilter}
+ * of taken usernames and emails.
+ * <p>
+ * A value the filter has never seen is free, without a query; this is the common
+ * case while a user types. Only a filter match (a taken value, or a false positive
+ * in about 1% of the cases) is confirmed with a unique-index lookup. Values are
+ * compared case-insensitively, like the database collation.
+ * <p>
+ * The filter is loaded at startup in id order, in batches, and sized for
+ * {@code scubakeep.availability.filter-size} divers (two values each). Registrations
+ * on this instance are added at once; every {@code scubakeep.availability.sync-interval}
+ * the divers created since the last sync (by any instance) are added by version 7 id
+ * range, bounded on both sides: divers migrated from before time-ordered ids keep
+ * random ids, which the range leaves out instead of re-reading them on every sync.
+ * Deleted accounts stay in the filter until it is rebuilt (when it holds more values
+ * than it was sized for); their values are confirmed free by the lookup meanwhile.
+ */
+@Service
+public class DiverAvailabilityServiceImpl implements DiverAvailabilityService {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(DiverAvailabilityServiceImpl.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int BATCH_SIZE = 5_000;
+    private static final int VALUES_PER_DIVER = 2;
+    private static final UUID FIRST_ID = new UUID(0, 0);
+    private static final UUID LAST_ID = new UUID(-1L, -1L);
+    // Syncs re-read this far back, covering divers committed late or created by
+    // instances with a slightly different clock
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final DiverRepository diverRepository;
+    private final int filterEntries;
+    private final Counter lookups;
+
+    private volatile BloomFilter taken;
+    private volatile Instant syncedAt;
+
+    public DiverAvailabilityServiceImpl(
+            DiverRepository diverRepository,
+            @Value("${scubakeep.availability.filter-size:1000000}") int filterSize,
+            MeterRegistry meterRegistry
+    ) {
+        this.diverRepository = diverRepository;
+        this.filterEntries = Math.multiplyExact(filterSize, VALUES_PER_DIVER);
+        this.lookups = Counter.builder("availability.lookups")
+                .description("Availability checks that had to query the database")
+                .register(meterRegistry);
+        rebuild(filterEntries);
+    }
+
+    /**
+     * Checks whether a username and/or an email are still free.
+     *
+     * @param username the username to check, or null
+     * @param email    the email to check, or null
+     * @return the availability of the values that were given
+     */
+    @Override
+    public AvailabilityResponseDTO checkAvailability(String username, String email) {
+        return AvailabilityResponseDTO.builder()
+                .usernameAvailable(isAvailable(
+                        usernameKey(username), username, diverRepository::existsByUsername))
+                .emailAvailable(isAvailable(
+                        emailKey(email), email, diverRepository::existsByEmail))
+                .build();
+    }
+
+    /**
+     * Marks the username and email of a newly registered diver as taken.
+     *
+     * @param username the registered username
+     * @param email    the registered email
+     */
+    @Override
+    public void recordTaken(String username, String email) {
+        taken.add(usernameKey(username));
+        taken.add(emailKey(email));
+    }
+
+    /**
+     * Adds the divers created by any instance since the last sync, or rebuilds the
+     * filter once it is saturated.
+     */
+    @Scheduled(
+            fixedDelayString = "${scubakeep.availability.sync-interval:30s}",
+            initialDelayString = "${scubakeep.availability.sync-interval:30s}"
+    )
+    public void synchronize() {
+        if (taken.isSaturated()) {
+            rebuild(Math.max(filterEntries, taken.size() * 2));
+            return;
+        }
+        Instant now = Instant.now();
+        load(taken, UuidV7.lowerBound(syncedAt.minus(SYNC_OVERLAP)),
+                UuidV7.lowerBound(now.plus(SYNC_OVERLAP)));
+        syncedAt = now;
+    }
+
+    private Boolean isAvailable(String key, String value, Predicate<String> exists) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        if (!taken.mightContain(key)) {
+            return true;
+        }
+        lookups.increment();
+        return !exists.test(value.trim());
+    }
+
+    private void rebuild(int size) {
+        Instant now = Instant.now();
+        BloomFilter rebuilt = new BloomFilter(size, FALSE_POSITIVE_RATE);
+        int divers = load(rebuilt, FIRST_ID, LAST_ID);
+
+        taken = rebuilt;
+        syncedAt = now;
+        LOGGER.info("Loaded the usernames and emails of {} divers into the availability filter",
+                divers);
+    }
+
+    /**
+     * Adds the identifiers of all divers in the given id range, in batches.
+     *
+     * @return the number of divers read
+     */
+    private int load(BloomFilter filter, UUID from, UUID to) {
+        int divers = 0;
+        UUID next = from;
+        List<DiverIdentifiers> batch;
+        do {
+            batch = diverRepository.findIdentifiersBetween(next, to, Limit.of(BATCH_SIZE));
+            for (DiverIdentifiers diver : batch) {
+                filter.add(usernameKey(diver.username()));
+                filter.add(emailKey(diver.email()));
+                next = diver.id();
+            }
+            divers += batch.size();
+        } while (batch.size() == BATCH_SIZE);
+        return divers;
+    }
+
+    private static String usernameKey(String username) {
+        return "u:" + normalize(username);
+    }
+
+    private static String emailKey(String email) {
+        return "e:" + normalize(email);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
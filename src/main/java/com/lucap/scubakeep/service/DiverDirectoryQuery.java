@@ -0,0 +1,77 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.dto.DiverFilterDTO;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.repository.DiverRepository;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Shared access to the keyset-paginated diver directory query.
+ * <p>
+ * Normalizes the optional {@link DiverFilterDTO} values into the form expected by
+ * {@link DiverRepository#findDirectoryPage} so the admin listing and the export
+ * apply exactly the same filters.
+ */
+final class DiverDirectoryQuery {
+
+    private DiverDirectoryQuery() {
+    }
+
+    /**
+     * Fetches the divers following {@code after} that match the filter, ordered by username.
+     *
+     * @param diverRepository the repository to query
+     * @param filter          optional directory filters
+     * @param after           username of the last row of the previous page, or null
+     * @param limit           the maximum number of rows to fetch
+     * @return the matching divers
+     */
+    static List<Diver> fetch(
+            DiverRepository diverRepository,
+            DiverFilterDTO filter,
+            String after,
+            int limit
+    ) {
+        return diverRepository.findDirectoryPage(
+                after,
+                normalizeCountryCode(filter.getCountryCode()),
+                filter.getCertification(),
+                filter.getRole(),
+                toPrefixPattern(filter.getQ()),
+                Limit.of(limit)
+        );
+    }
+
+    /**
+     * Normalizes an optional country code filter to the stored upper-case form.
+     *
+     * @param countryCode the raw filter value
+     * @return the normalized country code, or null if absent
+     */
+    private static String normalizeCountryCode(String countryCode) {
+        return countryCode == null || countryCode.isBlank()
+                ? null
+                : countryCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Turns a free-text search term into a LIKE prefix pattern,
+     * escaping LIKE wildcards with {@code !}.
+     *
+     * @param query the raw search term
+     * @return the prefix pattern, or null if absent
+     */
+    private static String toPrefixPattern(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        String escaped = query.trim()
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return escaped + "%";
+    }
+}
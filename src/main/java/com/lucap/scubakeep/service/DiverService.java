@@ -1,11 +1,17 @@
 package com.lucap.scubakeep.service;
 
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
+import com.lucap.scubakeep.dto.DiverFilterDTO;
 import com.lucap.scubakeep.dto.DiverRequestDTO;
 import com.lucap.scubakeep.dto.DiverResponseDTO;
 import com.lucap.scubakeep.dto.DiverUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadConfirmDTO;
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
+import com.lucap.scubakeep.storage.StoredImage;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.List;
+import java.io.InputStream;
 import java.util.UUID;
 
 /**
@@ -15,7 +21,11 @@ import java.util.UUID;
  */
 public interface DiverService {
 
-    List<DiverResponseDTO> getAllDivers();
+    CursorPageResponseDTO<DiverResponseDTO> getDivers(
+            DiverFilterDTO filter,
+            String cursor,
+            int size
+    );
 
     DiverResponseDTO createDiver(DiverRequestDTO dto);
 
@@ -27,5 +37,14 @@ public interface DiverService {
 
     DiverResponseDTO uploadProfilePicture(UUID id, MultipartFile file);
 
-    byte[] getProfilePictureBytes(UUID id);
+    DiverResponseDTO streamProfilePicture(
+            UUID id, InputStream body, String contentType, long length);
+
+    ImageUploadResponseDTO createProfilePictureUpload(UUID id, ImageUploadRequestDTO dto);
+
+    DiverResponseDTO confirmProfilePictureUpload(UUID id, ImageUploadConfirmDTO dto);
+
+    StoredImage getProfilePicture(UUID id);
+
+    int reconcileTotalDives();
 }
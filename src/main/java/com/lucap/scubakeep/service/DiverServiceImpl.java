@@ -1,25 +1,42 @@
 package com.lucap.scubakeep.service;
 
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
+import com.lucap.scubakeep.dto.DiverFilterDTO;
 import com.lucap.scubakeep.dto.DiverRequestDTO;
 import com.lucap.scubakeep.dto.DiverResponseDTO;
 import com.lucap.scubakeep.dto.DiverUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadConfirmDTO;
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
 import com.lucap.scubakeep.entity.Diver;
 import com.lucap.scubakeep.entity.Role;
 import com.lucap.scubakeep.exception.*;
 import com.lucap.scubakeep.mapper.DiverMapper;
-import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.pagination.DiverCursor;
 import com.lucap.scubakeep.repository.DiverRepository;
 import com.lucap.scubakeep.security.AuthorizationService;
+import com.lucap.scubakeep.security.PrincipalStatusCache;
+import com.lucap.scubakeep.storage.ImageTypes;
 import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.PresignedUploads;
+import com.lucap.scubakeep.storage.StoredImage;
+import com.lucap.scubakeep.storage.StoredObject;
+import com.lucap.scubakeep.storage.StreamingUploads;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 /**
@@ -33,32 +50,62 @@ public class DiverServiceImpl implements DiverService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DiverServiceImpl.class);
 
+    private static final int MAX_DIRECTORY_PAGE_SIZE = 200;
+    private static final String EMAIL_CONSTRAINT = "uq_divers_email";
+    private static final String USERNAME_CONSTRAINT = "uq_divers_username";
+
     private final DiverRepository diverRepository;
-    private final DiveLogRepository diveLogRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthorizationService authorizationService;
     private final MinioStorageService minioStorageService;
+    private final PresignedUploads presignedUploads;
+    private final StreamingUploads streamingUploads;
+    private final ImageVariantService imageVariantService;
+    private final EntityCache entityCache;
+    private final PrincipalStatusCache principalStatusCache;
+    private final DiverAvailabilityService diverAvailabilityService;
 
     /**
-     * Retrieves all divers in the system.
+     * Retrieves one page of the diver directory using keyset (cursor) pagination.
+     * <p>
+     * Divers are ordered by username and filtered by the optional criteria in
+     * {@code filter}. One extra row is fetched to detect whether a further page exists.
+     * Just for ADMIN.
      *
-     * @return list of all divers as {@link DiverResponseDTO}
+     * @param filter optional directory filters
+     * @param cursor opaque continuation token from a previous page, or null for the first page
+     * @param size   the requested page size (clamped to 1..{@value #MAX_DIRECTORY_PAGE_SIZE})
+     * @return the page items and the continuation token for the next page (null if none)
+     * @throws com.lucap.scubakeep.exception.InvalidCursorException if the cursor is malformed
      */
     @Override
-    public List<DiverResponseDTO> getAllDivers() {
-        LOGGER.info("Fetching all divers");
-
+    @Transactional(readOnly = true)
+    public CursorPageResponseDTO<DiverResponseDTO> getDivers(
+            DiverFilterDTO filter,
+            String cursor,
+            int size
+    ) {
         authorizationService.assertAdmin();
 
-        List<Diver> divers = diverRepository.findAll();
+        int pageSize = Math.clamp(size, 1, MAX_DIRECTORY_PAGE_SIZE);
+        String after = cursor == null || cursor.isBlank()
+                ? null
+                : DiverCursor.decode(cursor).username();
+
+        LOGGER.info("Fetching diver directory (size={}, after={})", pageSize, after);
 
-        // N+1 risk: This performs one COUNT query per diver.
-        return divers.stream()
-                .map(diver -> {
-                    long totalDives = diveLogRepository.countByDiverId(diver.getId());
-                    return DiverMapper.toResponseDTO(diver, totalDives);
-                })
-                .toList();
+        List<Diver> rows = DiverDirectoryQuery.fetch(diverRepository, filter, after, pageSize + 1);
+
+        boolean hasNext = rows.size() > pageSize;
+        List<Diver> page = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext
+                ? new DiverCursor(page.get(page.size() - 1).getUsername()).encode()
+                : null;
+
+        return new CursorPageResponseDTO<>(
+                page.stream().map(DiverMapper::toResponseDTO).toList(),
+                nextCursor
+        );
     }
 
     /**
@@ -66,24 +113,20 @@ public class DiverServiceImpl implements DiverService {
      * <p>
      * Server-managed field role is applied here.
      * Password must be encoded before persistence.
+     * <p>
+     * Uniqueness is enforced by a single INSERT against the unique constraints on
+     * username and email, instead of checking first: two concurrent registrations of
+     * the same name cannot both succeed, and a violation is reported as the matching
+     * conflict. The password is hashed before the insert's transaction begins, so
+     * no connection is held while hashing.
      *
      * @param dto the incoming request data for creating a diver
      * @return the created diver as {@link DiverResponseDTO} with 0 totalDives
+     * @throws EmailAlreadyExistsException if the email is already registered
+     * @throws UsernameAlreadyExistsException if the username is already taken
      */
     @Override
-    @Transactional
     public DiverResponseDTO createDiver(DiverRequestDTO dto) {
-
-        // 1. Check email uniqueness
-        if (diverRepository.existsByEmail(dto.getEmail())) {
-            throw new EmailAlreadyExistsException(dto.getEmail());
-        }
-
-        // 2. Check username uniqueness
-        if (diverRepository.existsByUsername(dto.getUsername())) {
-            throw new UsernameAlreadyExistsException(dto.getUsername());
-        }
-
         Diver diver = DiverMapper.toEntity(dto);
 
         // Server-managed fields
@@ -92,13 +135,44 @@ public class DiverServiceImpl implements DiverService {
         // Password handling
         diver.setPassword(passwordEncoder.encode(dto.getPassword()));
 
-        Diver saved = diverRepository.save(diver);
+        Diver saved;
+        try {
+            saved = diverRepository.saveAndFlush(diver);
+        } catch (DataIntegrityViolationException ex) {
+            throw translateDuplicate(ex, dto);
+        }
+        diverAvailabilityService.recordTaken(saved.getUsername(), saved.getEmail());
         LOGGER.info("Created new diver with ID {}", saved.getId());
-        return DiverMapper.toResponseDTO(saved, 0L);
+        return DiverMapper.toResponseDTO(saved);
+    }
+
+    /**
+     * Maps a violation of {@code uq_divers_email} or {@code uq_divers_username} to
+     * its conflict exception; any other violation is returned unchanged.
+     */
+    private static RuntimeException translateDuplicate(
+            DataIntegrityViolationException ex,
+            DiverRequestDTO dto
+    ) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation
+                    && violation.getConstraintName() != null) {
+                String constraint = violation.getConstraintName().toLowerCase(Locale.ROOT);
+                if (constraint.contains(EMAIL_CONSTRAINT)) {
+                    return new EmailAlreadyExistsException(dto.getEmail());
+                }
+                if (constraint.contains(USERNAME_CONSTRAINT)) {
+                    return new UsernameAlreadyExistsException(dto.getUsername());
+                }
+            }
+        }
+        return ex;
     }
 
     /**
      * Retrieves a diver by ID.
+     * <p>
+     * Served from the diver cache; the access check runs on every call.
      *
      * @param id the diver ID
      * @return the corresponding {@link DiverResponseDTO}
@@ -107,14 +181,14 @@ public class DiverServiceImpl implements DiverService {
     @Override
     public DiverResponseDTO getDiverById(UUID id) {
         LOGGER.info("Fetching diver with ID {}", id);
-        Diver diver = diverRepository.findById(id)
-                .orElseThrow(() -> new DiverNotFoundException(id));
+        DiverResponseDTO diver = entityCache.getDivers().get(id, key ->
+                diverRepository.findWithSpecialtiesById(key)
+                        .map(DiverMapper::toResponseDTO)
+                        .orElseThrow(() -> new DiverNotFoundException(key)));
 
         authorizationService.assertOwnerOrAdmin(diver.getUsername());
 
-        long totalDives = diveLogRepository.countByDiverId(id);
-
-        return DiverMapper.toResponseDTO(diver, totalDives);
+        return diver;
     }
 
     /**
@@ -134,6 +208,8 @@ public class DiverServiceImpl implements DiverService {
         authorizationService.assertOwnerOrAdmin(diver.getUsername());
 
         diverRepository.delete(diver);
+        entityCache.getDivers().invalidateAfterCommit(id);
+        principalStatusCache.invalidateAfterCommit(id);
         LOGGER.info("Diver with ID {} deleted successfully", id);
     }
 
@@ -156,46 +232,41 @@ public class DiverServiceImpl implements DiverService {
         authorizationService.assertOwnerOrAdmin(diver.getUsername());
 
         DiverMapper.applyUpdates(diver, dto);
-        long totalDives = diveLogRepository.countByDiverId(id);
+        entityCache.getDivers().invalidateAfterCommit(id);
 
         LOGGER.info("Diver with ID {} updated successfully", id);
-        return DiverMapper.toResponseDTO(diver, totalDives);
+        return DiverMapper.toResponseDTO(diver);
     }
 
     /**
      * Uploads a profile picture for a specific diver and stores it in MinIO.
      * <p>
      * Enforces authorization (only the owner or an admin can update the profile picture)
-     * and validates that the uploaded file is an image.
+     * and validates that the uploaded file is an image. Not transactional: the transfer
+     * to MinIO runs without holding a database connection, and the new key is then
+     * committed by a single UPDATE (see {@link #attachProfilePicture(UUID, String)}).
      *
      * @param id   the UUID of the diver
      * @param file the multipart file containing the image
      * @return the updated diver profile as {@link DiverResponseDTO}
      * @throws DiverNotFoundException if the diver does not exist
-     * @throws InvalidFileTypeException if the uploaded file is not a valid image type
+     * @throws InvalidFileTypeException if the uploaded file is not an accepted image type
      * @throws com.lucap.scubakeep.exception.StorageOperationException if the upload to MinIO fails
      */
     @Override
-    @Transactional
     public DiverResponseDTO uploadProfilePicture(UUID id, MultipartFile file) {
         LOGGER.info("Uploading profile picture for diver ID {}", id);
 
-        Diver diver = diverRepository.findById(id)
-                .orElseThrow(() -> new DiverNotFoundException(id));
-
-        authorizationService.assertOwnerOrAdmin(diver.getUsername());
+        assertOwnerOrAdmin(id);
 
         // File validation
-        String cType = file.getContentType();
-        if (cType == null || !cType.startsWith("image/")) {
-            throw new InvalidFileTypeException(cType == null ? "unknown" : cType);
-        }
+        String cType = ImageTypes.require(file.getContentType());
 
         // Generate a unique path for MinIO
         String originalFilename = file.getOriginalFilename();
         String extension = originalFilename != null && originalFilename.contains(".")
                 ? originalFilename.substring(originalFilename.lastIndexOf(".")) : "";
-        String objectKey = "profiles/" + id + "/" + UUID.randomUUID() + extension;
+        String objectKey = picturePrefix(id) + UUID.randomUUID() + extension;
 
         try {
             minioStorageService.upload(objectKey, file.getInputStream(), file.getSize(), cType);
@@ -203,20 +274,151 @@ public class DiverServiceImpl implements DiverService {
             throw new StorageOperationException(objectKey);
         }
 
-        diver.setProfilePicturePath(objectKey);
-        long totalDives = diveLogRepository.countByDiverId(id);
-        return DiverMapper.toResponseDTO(diver, totalDives);
+        attachProfilePicture(id, objectKey);
+        return getDiverById(id);
+    }
+
+    /**
+     * Uploads a profile picture for a specific diver from a raw request body, streaming
+     * it into MinIO part by part instead of spooling it to a temporary file first. Not
+     * transactional, like {@link #uploadProfilePicture}.
+     *
+     * @param id          the UUID of the diver
+     * @param body        the picture content
+     * @param contentType the declared MIME type of the picture
+     * @param length      the declared length in bytes, or -1 if unknown
+     * @return the updated diver as {@link DiverResponseDTO}
+     * @throws DiverNotFoundException if the diver does not exist
+     * @throws InvalidFileTypeException if the content type is not an accepted image type
+     * @throws UploadTooLargeException if the picture exceeds the maximum size
+     */
+    @Override
+    public DiverResponseDTO streamProfilePicture(
+            UUID id,
+            InputStream body,
+            String contentType,
+            long length
+    ) {
+        LOGGER.info("Streaming profile picture for diver ID {}", id);
+        assertOwnerOrAdmin(id);
+        StoredObject picture =
+                streamingUploads.upload(picturePrefix(id), body, contentType, length);
+
+        attachProfilePicture(id, picture.key());
+        LOGGER.info("Streamed {} bytes as profile picture of diver ID {}", picture.size(), id);
+        return getDiverById(id);
+    }
+
+    /**
+     * Issues a presigned URL for uploading the profile picture directly to MinIO.
+     * Only the diver or an admin can upload.
+     *
+     * @param id  the UUID of the diver
+     * @param dto the declared content type and size of the picture
+     * @return the upload URL and the object key to confirm
+     * @throws DiverNotFoundException if no diver is found for the given ID
+     * @throws InvalidFileTypeException if the declared type is not an accepted image type
+     */
+    @Override
+    public ImageUploadResponseDTO createProfilePictureUpload(UUID id, ImageUploadRequestDTO dto) {
+        assertOwnerOrAdmin(id);
+        return presignedUploads.issue(picturePrefix(id), dto);
+    }
+
+    /**
+     * Sets a directly uploaded picture as the diver's profile picture, once the
+     * object has been verified in MinIO. Not transactional, like
+     * {@link #uploadProfilePicture}.
+     *
+     * @param id  the UUID of the diver
+     * @param dto the object key returned with the upload URL
+     * @return the updated diver as {@link DiverResponseDTO}
+     * @throws DiverNotFoundException if no diver is found for the given ID
+     * @throws InvalidUploadException if the object is missing, foreign or too large
+     * @throws InvalidFileTypeException if the object is not an accepted image type
+     */
+    @Override
+    public DiverResponseDTO confirmProfilePictureUpload(UUID id, ImageUploadConfirmDTO dto) {
+        assertOwnerOrAdmin(id);
+        StoredObject picture = presignedUploads.confirm(picturePrefix(id), dto.getObjectKey());
+
+        attachProfilePicture(id, picture.key());
+        LOGGER.info("Confirmed direct profile picture upload for diver ID {}", id);
+        return getDiverById(id);
+    }
+
+    private static String picturePrefix(UUID id) {
+        return "profiles/" + id + "/";
+    }
+
+    private void assertOwnerOrAdmin(UUID id) {
+        String username = diverRepository.findUsernameById(id)
+                .orElseThrow(() -> new DiverNotFoundException(id));
+        authorizationService.assertOwnerOrAdmin(username);
+    }
+
+    /**
+     * Commits a stored picture as the diver's new profile picture, in a transaction of
+     * its own, and queues the generation of its variants; the metadata of the previous
+     * picture no longer applies. If the diver was deleted meanwhile or the update
+     * fails, the object is deleted again rather than left unreferenced.
+     */
+    private void attachProfilePicture(UUID id, String objectKey) {
+        int updated;
+        try {
+            updated = diverRepository.updateProfilePicture(id, objectKey, Instant.now());
+        } catch (RuntimeException ex) {
+            discard(objectKey);
+            throw ex;
+        }
+        if (updated == 0) {
+            discard(objectKey);
+            throw new DiverNotFoundException(id);
+        }
+        entityCache.getDivers().invalidateAfterCommit(id);
+        imageVariantService.generateForDiver(id, objectKey);
+    }
+
+    private void discard(String objectKey) {
+        try {
+            minioStorageService.delete(objectKey);
+            LOGGER.info("Deleted profile picture {} that could not be attached", objectKey);
+        } catch (StorageOperationException ex) {
+            LOGGER.warn("Could not delete unattached profile picture {}", objectKey, ex);
+        }
+    }
+
+    /**
+     * Recomputes the denormalized dive counter of every diver whose stored
+     * value drifted from the actual number of dive logs.
+     * Just for ADMIN.
+     *
+     * @return the number of divers whose counter was corrected
+     */
+    @Override
+    @Transactional
+    public int reconcileTotalDives() {
+        authorizationService.assertAdmin();
+
+        int corrected = diverRepository.reconcileTotalDives();
+        if (corrected > 0) {
+            entityCache.getDivers().invalidateAllAfterCommit();
+        }
+        LOGGER.info("Dive count reconciliation corrected {} divers", corrected);
+        return corrected;
     }
 
     /**
-     * Retrieves the raw bytes of the diver's profile picture from MinIO.
+     * Returns the object key of the diver's profile picture and whether its variants
+     * exist. The object store is not queried, so conditional requests can be
+     * answered from the key alone.
      *
      * @param id the UUID of the diver
-     * @return the image bytes, or null if no local image exists
+     * @return the picture, or null if no local image exists
      */
     @Override
     @Transactional(readOnly = true)
-    public byte[] getProfilePictureBytes(UUID id) {
+    public StoredImage getProfilePicture(UUID id) {
         Diver diver = diverRepository.findById(id)
                 .orElseThrow(() -> new DiverNotFoundException(id));
 
@@ -227,6 +429,6 @@ public class DiverServiceImpl implements DiverService {
             return null;
         }
 
-        return minioStorageService.download(path);
+        return new StoredImage(path, diver.getProfilePictureWidth() != null);
     }
 }
@@ -0,0 +1,20 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.dto.DiverFilterDTO;
+import com.lucap.scubakeep.export.ExportFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.UUID;
+
+/**
+ * Service interface defining streaming exports of dive logs and divers.
+ * <p>
+ * Authorization is checked when the export is requested; the returned body
+ * then streams the rows to the client without materializing them.
+ */
+public interface ExportService {
+
+    StreamingResponseBody exportDiveLogs(ExportFormat format, UUID diverId);
+
+    StreamingResponseBody exportDivers(ExportFormat format, DiverFilterDTO filter);
+}
@@ -0,0 +1,157 @@
+package com.lucap.scubakeep.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucap.scubakeep.dto.DiveLogResponseDTO;
+import com.lucap.scubakeep.dto.DiverFilterDTO;
+import com.lucap.scubakeep.dto.DiverResponseDTO;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.exception.DiverNotFoundException;
+import com.lucap.scubakeep.export.ExportColumns;
+import com.lucap.scubakeep.export.ExportFormat;
+import com.lucap.scubakeep.export.ExportWriter;
+import com.lucap.scubakeep.mapper.DiveLogMapper;
+import com.lucap.scubakeep.mapper.DiverMapper;
+import com.lucap.scubakeep.projection.DiveLogView;
+import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.security.AuthorizationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Service implementation for streaming exports.
+ * <p>
+ * Exports run after the controller has returned, on the async request thread, so
+ * they open their own read-only transactions instead of relying on
+ * {@code @Transactional}:
+ * <ul>
+ *   <li>Dive logs are read from a single server-side cursor
+ *       ({@link DiveLogRepository#streamViews()}) and written row by row.</li>
+ *   <li>Divers are read in keyset chunks of {@value #DIVER_CHUNK_SIZE}, each in its own
+ *       short transaction, so the session is discarded between chunks and the
+ *       specialties of a chunk are batch-fetched with one extra statement.</li>
+ * </ul>
+ * Memory use is therefore constant regardless of the number of exported rows.
+ */
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExportServiceImpl.class);
+
+    private static final int DIVER_CHUNK_SIZE = 200;
+
+    private final DiveLogRepository diveLogRepository;
+    private final DiverRepository diverRepository;
+    private final AuthorizationService authorizationService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ExportServiceImpl(
+            DiveLogRepository diveLogRepository,
+            DiverRepository diverRepository,
+            AuthorizationService authorizationService,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.diveLogRepository = diveLogRepository;
+        this.diverRepository = diverRepository;
+        this.authorizationService = authorizationService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Prepares a streaming export of dive logs.
+     * <p>
+     * Exporting every dive log is reserved to admins; exporting the dive logs
+     * of one diver is allowed to that diver and to admins.
+     *
+     * @param format  the output format
+     * @param diverId optional diver id to restrict the export to one owner
+     * @return the response body that streams the export
+     * @throws DiverNotFoundException if the given diver does not exist
+     */
+    @Override
+    public StreamingResponseBody exportDiveLogs(ExportFormat format, UUID diverId) {
+        if (diverId == null) {
+            authorizationService.assertAdmin();
+        } else {
+            Diver owner = diverRepository.findById(diverId)
+                    .orElseThrow(() -> new DiverNotFoundException(diverId));
+            authorizationService.assertOwnerOrAdmin(owner.getUsername());
+        }
+
+        LOGGER.info("Starting {} dive log export (diverId={})", format, diverId);
+
+        return out -> {
+            ExportWriter<DiveLogResponseDTO> writer =
+                    ExportWriter.open(format, out, objectMapper, ExportColumns.DIVE_LOGS);
+            readOnlyTransaction.executeWithoutResult(status -> writeDiveLogs(writer, diverId));
+            writer.flush();
+            LOGGER.info("Dive log export finished with {} rows", writer.getRowCount());
+        };
+    }
+
+    /**
+     * Prepares a streaming export of the diver directory.
+     * Just for ADMIN.
+     *
+     * @param format the output format
+     * @param filter optional directory filters
+     * @return the response body that streams the export
+     */
+    @Override
+    public StreamingResponseBody exportDivers(ExportFormat format, DiverFilterDTO filter) {
+        authorizationService.assertAdmin();
+
+        LOGGER.info("Starting {} diver export", format);
+
+        return out -> {
+            ExportWriter<DiverResponseDTO> writer =
+                    ExportWriter.open(format, out, objectMapper, ExportColumns.DIVERS);
+
+            String after = null;
+            List<DiverResponseDTO> chunk;
+            do {
+                chunk = fetchDiverChunk(filter, after);
+                chunk.forEach(writer::write);
+                after = chunk.isEmpty() ? null : chunk.get(chunk.size() - 1).getUsername();
+            } while (chunk.size() == DIVER_CHUNK_SIZE);
+
+            writer.flush();
+            LOGGER.info("Diver export finished with {} rows", writer.getRowCount());
+        };
+    }
+
+    /**
+     * Streams all (or one diver's) dive logs into the writer.
+     * Must run inside a transaction, which keeps the cursor open.
+     */
+    private void writeDiveLogs(ExportWriter<DiveLogResponseDTO> writer, UUID diverId) {
+        try (Stream<DiveLogView> rows = diverId == null
+                ? diveLogRepository.streamViews()
+                : diveLogRepository.streamViewsByDiverId(diverId)) {
+            rows.map(DiveLogMapper::toResponseDTO).forEach(writer::write);
+        }
+    }
+
+    /**
+     * Loads and maps one chunk of divers in its own read-only transaction.
+     */
+    private List<DiverResponseDTO> fetchDiverChunk(DiverFilterDTO filter, String after) {
+        return readOnlyTransaction.execute(status -> DiverDirectoryQuery
+                .fetch(diverRepository, filter, after, DIVER_CHUNK_SIZE)
+                .stream()
+                .map(DiverMapper::toResponseDTO)
+                .toList());
+    }
+}
@@ -0,0 +1,18 @@
+package com.lucap.scubakeep.service;
+
+import java.util.UUID;
+
+/**
+ * Service interface generating the resized variants of uploaded images in the
+ * background (see {@link com.lucap.scubakeep.storage.ImageVariant}).
+ * <p>
+ * Generation starts once the transaction that attached the image commits, and is
+ * retried while the variants are missing. Until they exist the image is not served,
+ * since the original may carry EXIF metadata.
+ */
+public interface ImageVariantService {
+
+    void generateForDiveLog(Long diveLogId, String imageKey);
+
+    void generateForDiver(UUID diverId, String pictureKey);
+}
@@ -0,0 +1,332 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.projection.PendingDiveLogImage;
+import com.lucap.scubakeep.projection.PendingProfilePicture;
+import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.storage.ImageProcessor;
+import com.lucap.scubakeep.storage.ImageVariant;
+import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.ProcessedImage;
+import com.lucap.scubakeep.storage.StoredObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Service implementation generating image variants on a bounded background executor.
+ * <p>
+ * Decoding and resizing a camera photo costs hundreds of milliseconds of CPU and
+ * tens of megabytes of heap, so it never runs on a request thread: uploads return
+ * at once and the work is queued on {@code scubakeep.images.threads} threads, with
+ * at most {@code scubakeep.images.queue-capacity} waiting images. When the queue is
+ * full the upload still succeeds, and its variants are generated later.
+ * <p>
+ * The original is never served (it may carry EXIF metadata), so an image without
+ * variants cannot be shown. Every {@code scubakeep.images.retry-interval}, images
+ * whose variants are still missing after that long are queued again, in key order,
+ * until the queue is full: those rejected on a full queue, those whose job failed,
+ * and those whose job was lost on a restart. An image whose job failed
+ * {@code scubakeep.images.max-attempts} times on this instance (e.g. an undecodable
+ * file) is not retried any more. Images already queued on this instance are skipped;
+ * another instance may process the same image, which only repeats idempotent work.
+ * <p>
+ * A job reads the original from MinIO, stores every variant under its derived key,
+ * then records the dimensions and placeholder on the row, but only if the row still
+ * references the same image; otherwise the variants are deleted again.
+ * <p>
+ * Meters: {@code image.variants} (processing time), {@code image.variants.queue}
+ * (waiting images), {@code image.variants.rejected} and {@code image.variants.failed}.
+ */
+@Service
+public class ImageVariantServiceImpl implements ImageVariantService, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageVariantServiceImpl.class);
+
+    private static final String VARIANT_CONTENT_TYPE = "image/jpeg";
+    private static final int RETRY_BATCH_SIZE = 100;
+
+    private final MinioStorageService minioStorageService;
+    private final ImageProcessor imageProcessor;
+    private final DiveLogRepository diveLogRepository;
+    private final DiverRepository diverRepository;
+    private final EntityCache entityCache;
+    private final Duration retryInterval;
+    private final int maxAttempts;
+    private final ThreadPoolExecutor executor;
+    // Keys of the images queued or being processed on this instance
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    // Failed attempts per image key; an entry is removed once the image succeeds
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private final Timer timer;
+    private final Counter rejected;
+    private final Counter failed;
+
+    /**
+     * A variant generation job.
+     */
+    @FunctionalInterface
+    interface Job {
+        void run() throws IOException;
+    }
+
+    public ImageVariantServiceImpl(
+            MinioStorageService minioStorageService,
+            ImageProcessor imageProcessor,
+            DiveLogRepository diveLogRepository,
+            DiverRepository diverRepository,
+            EntityCache entityCache,
+            @Value("${scubakeep.images.threads:2}") int threads,
+            @Value("${scubakeep.images.queue-capacity:100}") int queueCapacity,
+            @Value("${scubakeep.images.retry-interval:5m}") Duration retryInterval,
+            @Value("${scubakeep.images.max-attempts:3}") int maxAttempts,
+            MeterRegistry meterRegistry
+    ) {
+        this.minioStorageService = minioStorageService;
+        this.imageProcessor = imageProcessor;
+        this.diveLogRepository = diveLogRepository;
+        this.diverRepository = diverRepository;
+        this.entityCache = entityCache;
+        this.retryInterval = retryInterval;
+        this.maxAttempts = maxAttempts;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                daemonThreads(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.timer = Timer.builder("image.variants")
+                .description("Time spent generating the variants of an image")
+                .register(meterRegistry);
+        this.rejected = counter(meterRegistry, "image.variants.rejected",
+                "Images not queued for their variants because the queue was full");
+        this.failed = counter(meterRegistry, "image.variants.failed",
+                "Failed attempts to generate the variants of an image");
+        Gauge.builder("image.variants.queue", executor, e -> e.getQueue().size())
+                .description("Images waiting for their variants to be generated")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the generation of a dive log image's variants after the current
+     * transaction commits.
+     *
+     * @param diveLogId the dive log the image belongs to
+     * @param imageKey  the object key of the uploaded image
+     */
+    @Override
+    public void generateForDiveLog(Long diveLogId, String imageKey) {
+        afterCommit(() -> submit(imageKey, () -> generateDiveLogVariants(diveLogId, imageKey)));
+    }
+
+    /**
+     * Queues the generation of a profile picture's variants after the current
+     * transaction commits.
+     *
+     * @param diverId    the diver the picture belongs to
+     * @param pictureKey the object key of the uploaded picture
+     */
+    @Override
+    public void generateForDiver(UUID diverId, String pictureKey) {
+        afterCommit(() -> submit(pictureKey, () -> generateDiverVariants(diverId, pictureKey)));
+    }
+
+    /**
+     * Queues the images whose variants are still missing, until the queue is full.
+     */
+    @Scheduled(
+            fixedDelayString = "${scubakeep.images.retry-interval:5m}",
+            initialDelayString = "${scubakeep.images.retry-interval:5m}"
+    )
+    public void retryPending() {
+        Instant updatedBefore = Instant.now().minus(retryInterval);
+        boolean queueFull = !retry(
+                (after, limit) -> diveLogRepository.findPendingImages(after, updatedBefore, limit),
+                PendingDiveLogImage::imageKey,
+                image -> () -> generateDiveLogVariants(image.diveLogId(), image.imageKey()));
+        if (!queueFull) {
+            retry((after, limit) -> diverRepository.findPendingProfilePictures(
+                            after, updatedBefore, limit),
+                    PendingProfilePicture::pictureKey,
+                    picture -> () -> generateDiverVariants(
+                            picture.diverId(), picture.pictureKey()));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    void generateDiveLogVariants(Long diveLogId, String imageKey) throws IOException {
+        generate(imageKey,
+                image -> diveLogRepository.updateImageMetadata(diveLogId, imageKey,
+                        image.width(), image.height(), image.placeholder()),
+                () -> entityCache.getDiveLogs().invalidateAfterCommit(diveLogId));
+    }
+
+    void generateDiverVariants(UUID diverId, String pictureKey) throws IOException {
+        generate(pictureKey,
+                image -> diverRepository.updateProfilePictureMetadata(diverId, pictureKey,
+                        image.width(), image.height(), image.placeholder()),
+                () -> entityCache.getDivers().invalidateAfterCommit(diverId));
+    }
+
+    /**
+     * Stores the variants of an image and records its metadata.
+     *
+     * @param recordMetadata updates the owning row, returning the number of updated rows
+     * @param invalidate     evicts the owner's cached response
+     */
+    private void generate(
+            String imageKey,
+            ToIntFunction<ProcessedImage> recordMetadata,
+            Runnable invalidate
+    ) throws IOException {
+        ProcessedImage image = imageProcessor.process(read(imageKey));
+        for (Map.Entry<ImageVariant, byte[]> variant : image.variants().entrySet()) {
+            byte[] bytes = variant.getValue();
+            minioStorageService.upload(variant.getKey().keyOf(imageKey),
+                    new ByteArrayInputStream(bytes), bytes.length, VARIANT_CONTENT_TYPE);
+        }
+
+        if (recordMetadata.applyAsInt(image) == 0) {
+            for (ImageVariant variant : ImageVariant.values()) {
+                minioStorageService.delete(variant.keyOf(imageKey));
+            }
+            LOGGER.info("Image {} was replaced while processing; deleted its variants", imageKey);
+            return;
+        }
+        invalidate.run();
+        LOGGER.info("Generated the variants of image {} ({}x{})",
+                imageKey, image.width(), image.height());
+    }
+
+    private byte[] read(String imageKey) {
+        StoredObject original = minioStorageService.stat(imageKey);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) original.size());
+        minioStorageService.copyRange(imageKey, 0, original.size(), bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Queues the pending images returned by a query, one batch at a time.
+     *
+     * @param find   returns the next batch of pending images after the given key
+     * @param keyOf  the image key of a pending image
+     * @param jobFor the job generating the variants of a pending image
+     * @return false if the queue was full before every image was queued
+     */
+    private <T> boolean retry(
+            BiFunction<String, Limit, List<T>> find,
+            Function<T, String> keyOf,
+            Function<T, Job> jobFor
+    ) {
+        String after = "";
+        List<T> batch;
+        do {
+            batch = find.apply(after, Limit.of(RETRY_BATCH_SIZE));
+            for (T image : batch) {
+                after = keyOf.apply(image);
+                if (failures.getOrDefault(after, 0) < maxAttempts
+                        && !submit(after, jobFor.apply(image))) {
+                    return false;
+                }
+            }
+        } while (batch.size() == RETRY_BATCH_SIZE);
+        return true;
+    }
+
+    /**
+     * Queues a job unless one for the same image is already queued.
+     *
+     * @return false if the queue was full
+     */
+    private boolean submit(String imageKey, Job job) {
+        if (!queued.add(imageKey)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> run(imageKey, job));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            queued.remove(imageKey);
+            rejected.increment();
+            LOGGER.warn("Image processing queue is full; the variants of {} will be retried",
+                    imageKey);
+            return false;
+        }
+    }
+
+    private void run(String imageKey, Job job) {
+        long start = System.nanoTime();
+        try {
+            job.run();
+            failures.remove(imageKey);
+        } catch (IOException | RuntimeException ex) {
+            failed.increment();
+            int attempts = failures.merge(imageKey, 1, Integer::sum);
+            LOGGER.warn("Could not generate the variants of {} (attempt {} of {})",
+                    imageKey, attempts, maxAttempts, ex);
+        } finally {
+            queued.remove(imageKey);
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String description) {
+        return Counter.builder(name).description(description).register(meterRegistry);
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "image-variants-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.dto.StorageReconciliationReportDTO;
+
+/**
+ * Service interface defining the garbage collection of stored objects that no dive
+ * log or diver references any more.
+ */
+public interface StorageReconciliationService {
+
+    StorageReconciliationReportDTO reconcile(boolean dryRun);
+}
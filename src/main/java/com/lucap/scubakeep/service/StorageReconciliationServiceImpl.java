@@ -0,0 +1,268 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.dto.StorageReconciliationReportDTO;
+import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.security.AuthorizationService;
+import com.lucap.scubakeep.storage.ImageVariant;
+import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.StoredObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Service implementation deleting the objects under {@code divelogs/} and
+ * {@code profiles/} that no row references: originals replaced by a new upload, the
+ * variants generated from them, the images of deleted dive logs and divers, and
+ * uploads that were never attached.
+ * <p>
+ * Each prefix is listed in key order, in batches of {@value #BATCH_SIZE} objects. The
+ * owner id is the key segment after the prefix ({@code divelogs/{id}/...}), so a batch
+ * costs one primary key lookup of its owners' current image keys; an object is
+ * referenced if it is such a key or one of its {@link ImageVariant} keys. Unreferenced
+ * objects modified within {@code storage.gc.grace-period} are kept, so uploads that are
+ * being attached or confirmed are never deleted; the grace period must therefore
+ * exceed {@code storage.minio.presign-expiry}. Orphans are removed with multi-object
+ * delete requests.
+ * <p>
+ * Runs on {@code storage.gc.cron} ({@code -} disables it), deleting unless
+ * {@code storage.gc.dry-run} is set, and on demand for admins. Deletes are
+ * idempotent, so it may run on every instance. Meter: {@code storage.gc.deleted}.
+ */
+@Service
+public class StorageReconciliationServiceImpl implements StorageReconciliationService {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(StorageReconciliationServiceImpl.class);
+
+    private static final String DIVE_LOG_PREFIX = "divelogs/";
+    private static final String PROFILE_PREFIX = "profiles/";
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ORPHANS = 1000;
+
+    private final MinioStorageService minioStorageService;
+    private final DiveLogRepository diveLogRepository;
+    private final DiverRepository diverRepository;
+    private final AuthorizationService authorizationService;
+    private final Duration gracePeriod;
+    private final boolean scheduledDryRun;
+    private final Counter deletedObjects;
+
+    public StorageReconciliationServiceImpl(
+            MinioStorageService minioStorageService,
+            DiveLogRepository diveLogRepository,
+            DiverRepository diverRepository,
+            AuthorizationService authorizationService,
+            @Value("${storage.gc.grace-period:24h}") Duration gracePeriod,
+            @Value("${storage.gc.dry-run:false}") boolean scheduledDryRun,
+            MeterRegistry meterRegistry
+    ) {
+        this.minioStorageService = minioStorageService;
+        this.diveLogRepository = diveLogRepository;
+        this.diverRepository = diverRepository;
+        this.authorizationService = authorizationService;
+        this.gracePeriod = gracePeriod;
+        this.scheduledDryRun = scheduledDryRun;
+        this.deletedObjects = Counter.builder("storage.gc.deleted")
+                .description("Orphaned objects deleted from MinIO")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reconciles the stored objects with the database on demand.
+     * Just for ADMIN.
+     *
+     * @param dryRun whether to only report the orphans instead of deleting them
+     * @return the counts of referenced, recent and orphaned objects
+     * @throws com.lucap.scubakeep.exception.UnauthorizedResourceAccessException if the
+     *         caller is not an admin
+     */
+    @Override
+    public StorageReconciliationReportDTO reconcile(boolean dryRun) {
+        authorizationService.assertAdmin();
+        return run(dryRun);
+    }
+
+    /**
+     * Reconciles the stored objects with the database on schedule.
+     */
+    @Scheduled(cron = "${storage.gc.cron:0 30 3 * * *}")
+    public void reconcileScheduled() {
+        run(scheduledDryRun);
+    }
+
+    private StorageReconciliationReportDTO run(boolean dryRun) {
+        Report report = new Report(dryRun, Instant.now().minus(gracePeriod));
+        scan(DIVE_LOG_PREFIX, this::diveLogImages, report);
+        scan(PROFILE_PREFIX, this::profilePictures, report);
+
+        LOGGER.info("Reconciled {} stored objects (dryRun={}): {} referenced, {} recent, "
+                        + "{} orphaned ({} bytes), {} deleted, {} failed",
+                report.scanned, dryRun, report.referenced, report.recent, report.orphaned,
+                report.orphanedBytes, report.deleted, report.failed);
+        return report.toDto();
+    }
+
+    /**
+     * Reconciles the objects under a prefix, one batch at a time.
+     *
+     * @param references the current image keys of the given owner ids
+     */
+    private void scan(
+            String prefix,
+            Function<Set<String>, Collection<String>> references,
+            Report report
+    ) {
+        try (Stream<StoredObject> objects = minioStorageService.list(prefix)) {
+            Iterator<StoredObject> iterator = objects.iterator();
+            List<StoredObject> batch = new ArrayList<>(BATCH_SIZE);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == BATCH_SIZE || !iterator.hasNext()) {
+                    reconcileBatch(prefix, batch, references, report);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private void reconcileBatch(
+            String prefix,
+            List<StoredObject> batch,
+            Function<Set<String>, Collection<String>> references,
+            Report report
+    ) {
+        Set<String> ownerIds = new HashSet<>();
+        batch.forEach(object -> ownerIds.add(ownerId(prefix, object.key())));
+        Set<String> referenced = withVariants(references.apply(ownerIds));
+
+        List<String> orphans = new ArrayList<>();
+        for (StoredObject object : batch) {
+            report.scanned++;
+            if (referenced.contains(object.key())) {
+                report.referenced++;
+            } else if (!object.lastModified().isBefore(report.modifiedBefore)) {
+                report.recent++;
+            } else {
+                report.orphan(object);
+                orphans.add(object.key());
+            }
+        }
+        if (!report.dryRun) {
+            delete(orphans, report);
+        }
+    }
+
+    private void delete(List<String> orphans, Report report) {
+        List<String> failed = minioStorageService.deleteAll(orphans);
+        failed.forEach(key -> LOGGER.warn("Could not delete orphaned object {}", key));
+        report.deleted += orphans.size() - failed.size();
+        report.failed += failed.size();
+        deletedObjects.increment(orphans.size() - failed.size());
+    }
+
+    private Collection<String> diveLogImages(Set<String> ownerIds) {
+        List<Long> ids = new ArrayList<>();
+        for (String ownerId : ownerIds) {
+            try {
+                ids.add(Long.valueOf(ownerId));
+            } catch (NumberFormatException ex) {
+                // Not a dive log's key: nothing references it
+            }
+        }
+        return ids.isEmpty() ? List.of() : diveLogRepository.findImagePathsByIdIn(ids);
+    }
+
+    private Collection<String> profilePictures(Set<String> ownerIds) {
+        List<UUID> ids = new ArrayList<>();
+        for (String ownerId : ownerIds) {
+            try {
+                ids.add(UUID.fromString(ownerId));
+            } catch (IllegalArgumentException ex) {
+                // Not a diver's key: nothing references it
+            }
+        }
+        return ids.isEmpty() ? List.of() : diverRepository.findProfilePicturePathsByIdIn(ids);
+    }
+
+    /**
+     * Returns the owner id segment of a key, e.g. {@code 42} for
+     * {@code divelogs/42/a.png}, or an empty string if the key has none.
+     */
+    private static String ownerId(String prefix, String key) {
+        int end = key.indexOf('/', prefix.length());
+        return end < 0 ? "" : key.substring(prefix.length(), end);
+    }
+
+    private static Set<String> withVariants(Collection<String> imageKeys) {
+        Set<String> keys = new HashSet<>(imageKeys);
+        for (String imageKey : imageKeys) {
+            for (ImageVariant variant : ImageVariant.values()) {
+                keys.add(variant.keyOf(imageKey));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The counts of one run.
+     */
+    private static final class Report {
+
+        private final boolean dryRun;
+        private final Instant modifiedBefore;
+        private final List<String> orphans = new ArrayList<>();
+        private long scanned;
+        private long referenced;
+        private long recent;
+        private long orphaned;
+        private long orphanedBytes;
+        private long deleted;
+        private long failed;
+
+        private Report(boolean dryRun, Instant modifiedBefore) {
+            this.dryRun = dryRun;
+            this.modifiedBefore = modifiedBefore;
+        }
+
+        private void orphan(StoredObject object) {
+            orphaned++;
+            orphanedBytes += object.size();
+            if (orphans.size() < MAX_REPORTED_ORPHANS) {
+                orphans.add(object.key());
+            }
+        }
+
+        private StorageReconciliationReportDTO toDto() {
+            return StorageReconciliationReportDTO.builder()
+                    .dryRun(dryRun)
+                    .modifiedBefore(modifiedBefore)
+                    .scanned(scanned)
+                    .referenced(referenced)
+                    .recent(recent)
+                    .orphaned(orphaned)
+                    .orphanedBytes(orphanedBytes)
+                    .deleted(deleted)
+                    .failed(failed)
+                    .orphans(orphans)
+                    .build();
+        }
+    }
+}
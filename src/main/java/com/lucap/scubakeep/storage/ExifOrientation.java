@@ -0,0 +1,125 @@
+package com.lucap.scubakeep.storage;
+
+import java.awt.geom.AffineTransform;
+
+/**
+ * Reads the EXIF orientation of a JPEG and maps it to the transform that displays
+ * the pixels upright.
+ * <p>
+ * Cameras store portrait photos sideways and record the rotation in EXIF tag
+ * {@code 0x0112} only. Variants are written without EXIF, so the rotation has to be
+ * applied to their pixels instead.
+ */
+final class ExifOrientation {
+
+    /** Orientation of an image that is stored upright, or carries no EXIF. */
+    static final int NORMAL = 1;
+
+    private static final int SOI = 0xD8;
+    private static final int APP1 = 0xE1;
+    private static final int SOS = 0xDA;
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * Reads the orientation from the first EXIF segment of a JPEG.
+     *
+     * @param image the encoded image
+     * @return the orientation (1 to 8), or {@link #NORMAL} if the image is not a
+     *         JPEG, has no orientation tag or malformed EXIF
+     */
+    static int read(byte[] image) {
+        if (image.length < 4 || (image[0] & 0xFF) != 0xFF || (image[1] & 0xFF) != SOI) {
+            return NORMAL;
+        }
+        try {
+            int pos = 2;
+            while (pos + 4 <= image.length && (image[pos] & 0xFF) == 0xFF) {
+                int marker = image[pos + 1] & 0xFF;
+                if (marker == SOS) {
+                    break;
+                }
+                if (marker == APP1 && startsWith(image, pos + 4, EXIF_HEADER)) {
+                    return readTiff(image, pos + 4 + EXIF_HEADER.length);
+                }
+                pos += 2 + u16(image, pos + 2, false);
+            }
+        } catch (IndexOutOfBoundsException ex) {
+            // Truncated EXIF: treat the image as upright
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Returns the transform that draws an image of the given size upright.
+     *
+     * @param orientation the EXIF orientation
+     * @param width       the stored width
+     * @param height      the stored height
+     * @return the transform (identity for {@link #NORMAL})
+     */
+    static AffineTransform transform(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);
+            default -> new AffineTransform();
+        };
+    }
+
+    /**
+     * Checks whether an orientation turns the image by 90 degrees, swapping its
+     * width and height.
+     */
+    static boolean swapsSides(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    /**
+     * Looks up the orientation tag in IFD0 of the TIFF structure holding the EXIF data.
+     */
+    private static int readTiff(byte[] image, int tiff) {
+        boolean littleEndian = image[tiff] == 'I' && image[tiff + 1] == 'I';
+        int ifd = tiff + u32(image, tiff + 4, littleEndian);
+        int entries = u16(image, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (u16(image, entry, littleEndian) == ORIENTATION_TAG) {
+                int orientation = u16(image, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    private static boolean startsWith(byte[] image, int offset, byte[] prefix) {
+        if (offset + prefix.length > image.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (image[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u16(byte[] image, int offset, boolean littleEndian) {
+        int first = image[offset] & 0xFF;
+        int second = image[offset + 1] & 0xFF;
+        return littleEndian ? second << 8 | first : first << 8 | second;
+    }
+
+    private static int u32(byte[] image, int offset, boolean littleEndian) {
+        int high = u16(image, littleEndian ? offset + 2 : offset, littleEndian);
+        int low = u16(image, littleEndian ? offset : offset + 2, littleEndian);
+        return high << 16 | low;
+    }
+}
@@ -0,0 +1,212 @@
+package com.lucap.scubakeep.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes an uploaded image and encodes its resized {@link ImageVariant}s.
+ * <p>
+ * The image is decoded with {@code javax.imageio}, subsampled while reading when it
+ * is much larger than the biggest variant, so a camera photo is never held in memory
+ * at full resolution. The EXIF orientation is applied to the pixels and all metadata
+ * (EXIF, GPS position, camera details) is dropped: the variants are re-encoded as
+ * baseline JPEGs at {@code scubakeep.images.jpeg-quality}, with transparency
+ * flattened onto white. Downscaling halves the image repeatedly with bilinear
+ * filtering, which keeps thumbnails sharp without aliasing.
+ * <p>
+ * Images with more than {@code scubakeep.images.max-pixels} pixels are rejected
+ * before they are decoded.
+ */
+@Component
+public class ImageProcessor {
+
+    private static final List<ImageVariant> LARGEST_FIRST =
+            List.of(ImageVariant.FULL, ImageVariant.MEDIUM, ImageVariant.THUMB);
+    private static final int PLACEHOLDER_SIDE = 8;
+    private static final int MAX_PLACEHOLDER_LENGTH = 512;
+
+    private final float jpegQuality;
+    private final long maxPixels;
+
+    /**
+     * An image decoded upright, with the dimensions of the upright original.
+     */
+    private record Decoded(BufferedImage image, int width, int height) {
+    }
+
+    public ImageProcessor(
+            @Value("${scubakeep.images.jpeg-quality:0.8}") float jpegQuality,
+            @Value("${scubakeep.images.max-pixels:50000000}") long maxPixels
+    ) {
+        this.jpegQuality = jpegQuality;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Generates the variants, the dimensions and the placeholder of an image.
+     *
+     * @param original the uploaded image
+     * @return the processed image
+     * @throws IOException if the image cannot be decoded or has too many pixels
+     */
+    public ProcessedImage process(byte[] original) throws IOException {
+        Decoded decoded = decode(original, ExifOrientation.read(original));
+
+        Map<ImageVariant, byte[]> variants = new EnumMap<>(ImageVariant.class);
+        BufferedImage image = decoded.image();
+        for (ImageVariant variant : LARGEST_FIRST) {
+            image = scale(image, variant.getMaxSide());
+            variants.put(variant, encode(image, "jpeg", jpegQuality));
+        }
+        return new ProcessedImage(decoded.width(), decoded.height(), placeholder(image), variants);
+    }
+
+    /**
+     * Decodes the first image of the input, subsampled to no less than the largest
+     * variant, and turns it upright.
+     */
+    private Decoded decode(byte[] original, int orientation) throws IOException {
+        try (ImageInputStream input =
+                     new MemoryCacheImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Image of " + width + "x" + height + " is too large");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / ImageVariant.FULL.getMaxSide());
+                param.setSourceSubsampling(step, step, 0, 0);
+
+                BufferedImage upright = upright(reader.read(0, param), orientation);
+                boolean swapped = ExifOrientation.swapsSides(orientation);
+                return new Decoded(upright, swapped ? height : width, swapped ? width : height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Draws the image upright onto an opaque RGB canvas.
+     */
+    private static BufferedImage upright(BufferedImage image, int orientation) {
+        boolean swapped = ExifOrientation.swapsSides(orientation);
+        int width = swapped ? image.getHeight() : image.getWidth();
+        int height = swapped ? image.getWidth() : image.getHeight();
+        AffineTransform transform =
+                ExifOrientation.transform(orientation, image.getWidth(), image.getHeight());
+        return draw(image, width, height, transform);
+    }
+
+    /**
+     * Shrinks the image so that its longest side is at most {@code maxSide}, halving
+     * it while it is at least twice as large as the target.
+     */
+    private static BufferedImage scale(BufferedImage image, int maxSide) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        if (longest <= maxSide) {
+            return image;
+        }
+        double ratio = (double) maxSide / longest;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return current.getWidth() == width && current.getHeight() == height
+                ? current
+                : resize(current, width, height);
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        AffineTransform transform = AffineTransform.getScaleInstance(
+                (double) width / image.getWidth(), (double) height / image.getHeight());
+        return draw(image, width, height, transform);
+    }
+
+    private static BufferedImage draw(
+            BufferedImage image,
+            int width,
+            int height,
+            AffineTransform transform
+    ) {
+        BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return canvas;
+    }
+
+    /**
+     * Encodes a few pixels of the image as a PNG data URI, or returns null if it
+     * would not fit the database column.
+     */
+    private static String placeholder(BufferedImage thumbnail) throws IOException {
+        byte[] png = encode(scale(thumbnail, PLACEHOLDER_SIDE), "png", null);
+        String placeholder = "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+        return placeholder.length() <= MAX_PLACEHOLDER_LENGTH ? placeholder : null;
+    }
+
+    /**
+     * Encodes an image without metadata, in memory.
+     *
+     * @param quality the compression quality, or null for the writer's default
+     */
+    private static byte[] encode(BufferedImage image, String format, Float quality)
+            throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (quality != null) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
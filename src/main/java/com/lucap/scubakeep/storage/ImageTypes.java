@@ -0,0 +1,72 @@
+package com.lucap.scubakeep.storage;
+
+import com.lucap.scubakeep.exception.InvalidFileTypeException;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.Set;
+
+/**
+ * The raster image types accepted for upload and served inline.
+ * <p>
+ * Images are served without authentication from the API origin, so a type a browser
+ * would run as a document (e.g. {@code image/svg+xml}, which may carry script) must
+ * never be stored or served as an image. Uploads are checked against this list and
+ * stored under the normalized type; objects of any other type are served as
+ * attachments (see {@link ObjectDownloads}).
+ */
+public final class ImageTypes {
+
+    private static final Set<MediaType> ALLOWED = Set.of(
+            MediaType.IMAGE_JPEG,
+            MediaType.IMAGE_PNG,
+            MediaType.IMAGE_GIF,
+            new MediaType("image", "webp"));
+
+    private ImageTypes() {
+    }
+
+    /**
+     * Checks that an uploaded content type is an accepted image type.
+     *
+     * @param contentType the declared MIME type, possibly with parameters
+     * @return the type without parameters, e.g. {@code image/png}
+     * @throws InvalidFileTypeException if the type is missing or not accepted
+     */
+    public static String require(String contentType) {
+        MediaType type = inline(contentType);
+        if (type == null) {
+            throw new InvalidFileTypeException(contentType == null ? "unknown" : contentType);
+        }
+        return type.toString();
+    }
+
+    /**
+     * Tells whether a stored object may be served inline as an image.
+     *
+     * @param contentType the object's content type
+     * @return the accepted image type, or null if the object must not be shown inline
+     */
+    public static MediaType inline(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        try {
+            MediaType type = MediaType.parseMediaType(contentType);
+            MediaType plain = new MediaType(type.getType(), type.getSubtype());
+            return ALLOWED.contains(plain) ? plain : null;
+        } catch (InvalidMediaTypeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the key extension of an accepted type, e.g. {@code .png}.
+     *
+     * @param contentType an accepted type, as returned by {@link #require(String)}
+     * @return the extension, including the dot
+     */
+    public static String extension(String contentType) {
+        return "." + MediaType.parseMediaType(contentType).getSubtype();
+    }
+}
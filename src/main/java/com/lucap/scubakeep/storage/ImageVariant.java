@@ -0,0 +1,84 @@
+package com.lucap.scubakeep.storage;
+
+import com.lucap.scubakeep.exception.UnsupportedImageSizeException;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Resized variants generated for every uploaded image (see {@link ImageProcessor}).
+ * <p>
+ * Each variant is a JPEG whose longest side is at most {@link #getMaxSide()} pixels
+ * (smaller images are not enlarged), stored next to the original under a key
+ * derived from the original's key, e.g. {@code divelogs/42/<uuid>-thumb.jpg}. The
+ * original itself is kept as uploaded.
+ */
+public enum ImageVariant {
+
+    THUMB("thumb", 200),
+
+    MEDIUM("medium", 800),
+
+    FULL("full", 2048);
+
+    private final String param;
+    private final int maxSide;
+
+    ImageVariant(String param, int maxSide) {
+        this.param = param;
+        this.maxSide = maxSide;
+    }
+
+    /**
+     * Returns the name of the variant in the {@code size} request parameter.
+     *
+     * @return e.g. {@code thumb}
+     */
+    public String getParam() {
+        return param;
+    }
+
+    /**
+     * Returns the maximum length of the variant's longest side.
+     *
+     * @return the maximum width or height in pixels
+     */
+    public int getMaxSide() {
+        return maxSide;
+    }
+
+    /**
+     * Derives the object key of this variant from the key of the original image.
+     *
+     * @param originalKey the key of the uploaded image, e.g. {@code divelogs/42/a.png}
+     * @return the key of the variant, e.g. {@code divelogs/42/a-thumb.jpg}
+     */
+    public String keyOf(String originalKey) {
+        int name = originalKey.lastIndexOf('/') + 1;
+        int extension = originalKey.lastIndexOf('.');
+        String base = extension > name ? originalKey.substring(0, extension) : originalKey;
+        return base + "-" + param + ".jpg";
+    }
+
+    /**
+     * Resolves a variant from a case-insensitive request parameter.
+     *
+     * @param value the requested size, e.g. {@code thumb}
+     * @return the matching variant
+     * @throws UnsupportedImageSizeException if there is no such variant
+     */
+    public static ImageVariant fromParam(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        return Arrays.stream(values())
+                .filter(variant -> variant.param.equals(normalized))
+                .findFirst()
+                .orElseThrow(() -> new UnsupportedImageSizeException(value, supported()));
+    }
+
+    private static String supported() {
+        return Arrays.stream(values())
+                .map(ImageVariant::getParam)
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -1,14 +1,39 @@
 package com.lucap.scubakeep.storage;
 
 import com.lucap.scubakeep.exception.StorageOperationException;
+import com.google.common.collect.ImmutableMultimap;
 import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import io.minio.messages.Part;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service responsible for storing and retrieving objects from MinIO.
@@ -16,14 +41,23 @@ import java.io.InputStream;
 @Service
 public class MinioStorageService {
 
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final String NO_SUCH_KEY = "NoSuchKey";
+
     private final MinioClient minioClient;
+    private final MinioAsyncClient minioAsyncClient;
+    private final MinioClient presigningClient;
     private final String bucketName;
 
     public MinioStorageService(
             MinioClient minioClient,
+            MinioAsyncClient minioAsyncClient,
+            @Qualifier("presigningMinioClient") MinioClient presigningClient,
             @Value("${storage.minio.bucket}") String bucketName
     ) {
         this.minioClient = minioClient;
+        this.minioAsyncClient = minioAsyncClient;
+        this.presigningClient = presigningClient;
         this.bucketName = bucketName;
     }
 
@@ -56,23 +90,273 @@ public class MinioStorageService {
     }
 
     /**
-     * Downloads an object from MinIO.
+     * Starts a multipart upload, whose parts are then sent with
+     * {@link #uploadPart(String, String, int, byte[], int)}. Nothing is visible under
+     * the key until the upload is completed.
+     *
+     * @param objectKey the key (path) under which the object will be stored
+     * @param contentType the MIME type (e.g. image/png)
+     * @return the upload ID
+     */
+    public String createMultipartUpload(String objectKey, String contentType) {
+        try {
+            return minioAsyncClient.createMultipartUploadAsync(bucketName, null, objectKey,
+                            ImmutableMultimap.of("Content-Type", contentType),
+                            ImmutableMultimap.of())
+                    .join()
+                    .result()
+                    .uploadId();
+        } catch (Exception ex) {
+            throw new StorageOperationException(objectKey, ex);
+        }
+    }
+
+    /**
+     * Uploads one part of a multipart upload. Every part but the last must be at
+     * least 5 MiB.
+     *
+     * @param objectKey the key (path) of the object
+     * @param uploadId the ID returned by {@link #createMultipartUpload(String, String)}
+     * @param partNumber the position of the part, starting at 1
+     * @param data the buffer holding the part
+     * @param length the number of bytes of the buffer to send
+     * @return the part's ETag, needed to complete the upload
+     */
+    public String uploadPart(
+            String objectKey,
+            String uploadId,
+            int partNumber,
+            byte[] data,
+            int length
+    ) {
+        try {
+            return minioAsyncClient.uploadPartAsync(bucketName, null, objectKey, data, length,
+                            uploadId, partNumber, ImmutableMultimap.of(), ImmutableMultimap.of())
+                    .join()
+                    .etag();
+        } catch (Exception ex) {
+            throw new StorageOperationException(objectKey, ex);
+        }
+    }
+
+    /**
+     * Completes a multipart upload, making the object visible under its key.
      *
-     * @param objectKey the key (path) of the object to download
-     * @return the object content as bytes
+     * @param objectKey the key (path) of the object
+     * @param uploadId the ID of the upload
+     * @param etags the ETags of the parts, in part number order
      */
-    public byte[] download(String objectKey) {
+    public void completeMultipartUpload(String objectKey, String uploadId, List<String> etags) {
+        Part[] parts = IntStream.range(0, etags.size())
+                .mapToObj(i -> new Part(i + 1, etags.get(i)))
+                .toArray(Part[]::new);
+        try {
+            minioAsyncClient.completeMultipartUploadAsync(bucketName, null, objectKey, uploadId,
+                    parts, ImmutableMultimap.of(), ImmutableMultimap.of()).join();
+        } catch (Exception ex) {
+            throw new StorageOperationException(objectKey, ex);
+        }
+    }
+
+    /**
+     * Aborts a multipart upload, so MinIO discards the parts already uploaded.
+     *
+     * @param objectKey the key (path) of the object
+     * @param uploadId the ID of the upload
+     */
+    public void abortMultipartUpload(String objectKey, String uploadId) {
+        try {
+            minioAsyncClient.abortMultipartUploadAsync(bucketName, null, objectKey, uploadId,
+                    ImmutableMultimap.of(), ImmutableMultimap.of()).join();
+        } catch (Exception ex) {
+            throw new StorageOperationException(objectKey, ex);
+        }
+    }
+
+    /**
+     * Reads the metadata of an object, if it exists.
+     *
+     * @param objectKey the key (path) of the object
+     * @return the object's metadata, or empty if there is no such object
+     */
+    public Optional<StoredObject> find(String objectKey) {
+        try {
+            return Optional.of(stat(objectKey));
+        } catch (StorageOperationException ex) {
+            if (ex.getCause() instanceof ErrorResponseException error
+                    && NO_SUCH_KEY.equals(error.errorResponse().code())) {
+                return Optional.empty();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads the metadata of an object.
+     *
+     * @param objectKey the key (path) of the object
+     * @return the object's size, content type and modification time
+     */
+    public StoredObject stat(String objectKey) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectKey)
+                            .build());
+            return new StoredObject(objectKey, stat.size(), stat.contentType(),
+                    stat.lastModified().toInstant());
+        } catch (Exception ex) {
+            throw new StorageOperationException(objectKey, ex);
+        }
+    }
+
+    /**
+     * Copies a byte range of an object to the given stream through a fixed-size buffer,
+     * so the object is never held in memory. Only the requested range is fetched.
+     *
+     * @param objectKey the key (path) of the object
+     * @param offset the first byte to copy
+     * @param length the number of bytes to copy
+     * @param out the destination, e.g. the response body; not closed
+     */
+    public void copyRange(String objectKey, long offset, long length, OutputStream out) {
         try (InputStream inputStream = minioClient.getObject(
                 GetObjectArgs.builder()
                         .bucket(bucketName)
                         .object(objectKey)
-                        .build());
-             ByteArrayOutputStream buffer = new ByteArrayOutputStream()
+                        .offset(offset)
+                        .length(length)
+                        .build())
         ) {
-            inputStream.transferTo(buffer);
-            return buffer.toByteArray();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (Exception ex) {
+            throw new StorageOperationException(objectKey);
+        }
+    }
+
+    /**
+     * Deletes an object. Deleting a missing object is not an error.
+     *
+     * @param objectKey the key (path) of the object
+     */
+    public void delete(String objectKey) {
+        try {
+            minioClient.removeObject(
+                    RemoveObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectKey)
+                            .build());
+        } catch (Exception ex) {
+            throw new StorageOperationException(objectKey);
+        }
+    }
+
+    /**
+     * Lists the objects under a prefix, in key order. Pages of up to 1000 keys are
+     * fetched lazily while the stream is consumed, so any number of objects can be
+     * listed in constant memory.
+     *
+     * @param prefix the key prefix, e.g. {@code divelogs/}
+     * @return the objects' keys, sizes and modification times (without content type)
+     */
+    public Stream<StoredObject> list(String prefix) {
+        Iterable<Result<Item>> items = minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .recursive(true)
+                        .build());
+        return StreamSupport.stream(items.spliterator(), false)
+                .map(result -> listed(prefix, result));
+    }
+
+    private static StoredObject listed(String prefix, Result<Item> result) {
+        try {
+            Item item = result.get();
+            return new StoredObject(item.objectName(), item.size(), null,
+                    item.lastModified().toInstant());
+        } catch (Exception ex) {
+            throw new StorageOperationException(prefix, ex);
+        }
+    }
+
+    /**
+     * Deletes objects with multi-object delete requests of up to 1000 keys each.
+     * Deleting a missing object is not an error.
+     *
+     * @param objectKeys the keys (paths) of the objects
+     * @return the keys that could not be deleted
+     */
+    public List<String> deleteAll(Collection<String> objectKeys) {
+        if (objectKeys.isEmpty()) {
+            return List.of();
+        }
+        // The requests are only sent while the results are consumed
+        Iterable<Result<DeleteError>> errors = minioClient.removeObjects(
+                RemoveObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .objects(objectKeys.stream().map(DeleteObject::new).toList())
+                        .build());
+        List<String> failed = new ArrayList<>();
+        try {
+            for (Result<DeleteError> error : errors) {
+                failed.add(error.get().objectName());
+            }
+        } catch (Exception ex) {
+            throw new StorageOperationException(objectKeys.iterator().next(), ex);
+        }
+        return failed;
+    }
+
+    /**
+     * Creates a URL that lets its holder upload (PUT) the given object directly to
+     * MinIO until it expires. The URL is signed locally, without a request.
+     *
+     * @param objectKey the key (path) the object will be stored under
+     * @param expiry how long the URL stays valid
+     * @return the presigned URL
+     */
+    public String presignedUploadUrl(String objectKey, Duration expiry) {
+        return presign(Method.PUT, objectKey, expiry, Map.of());
+    }
+
+    /**
+     * Creates a URL that lets its holder download (GET) the given object directly
+     * from MinIO until it expires. The URL is signed locally, without a request.
+     *
+     * @param objectKey the key (path) of the object
+     * @param expiry how long the URL stays valid
+     * @param cacheControl the Cache-Control header MinIO should send, or null
+     * @return the presigned URL
+     */
+    public String presignedDownloadUrl(String objectKey, Duration expiry, String cacheControl) {
+        return presign(Method.GET, objectKey, expiry, cacheControl == null
+                ? Map.of()
+                : Map.of("response-cache-control", cacheControl));
+    }
+
+    private String presign(
+            Method method,
+            String objectKey,
+            Duration expiry,
+            Map<String, String> queryParams
+    ) {
+        try {
+            return presigningClient.getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .method(method)
+                            .bucket(bucketName)
+                            .object(objectKey)
+                            .expiry((int) expiry.toSeconds())
+                            .extraQueryParams(queryParams)
+                            .build());
         } catch (Exception ex) {
             throw new StorageOperationException(objectKey);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,353 @@
+package com.lucap.scubakeep.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Read-through cache of stored objects in front of {@link MinioStorageService}, in
+ * two tiers.
+ * <p>
+ * The content behind an object key never changes (see {@link ObjectDownloads}), so
+ * entries never go stale and are only evicted, least recently used first, when a tier
+ * is full. The memory tier holds objects in direct buffers outside the heap, bounded
+ * by {@code storage.cache.memory-size}, so cached images add no garbage collection
+ * work. The disk tier holds files in {@code storage.cache.directory}, bounded by
+ * {@code storage.cache.disk-size}, and sends them with
+ * {@link FileChannel#transferTo}, without reading them into the heap first.
+ * <p>
+ * A miss downloads the whole object once into the disk tier and copies it into the
+ * memory tier, so later range requests are answered locally as well; a disk hit is
+ * promoted to the memory tier. Concurrent misses of the same object are coalesced:
+ * one request downloads it while the others wait and then read the cached copy. Objects larger than
+ * {@code storage.cache.max-object-size} are streamed from MinIO uncached. A tier of
+ * size 0 is disabled.
+ * <p>
+ * The cache is local to each instance and the files it left are deleted on startup,
+ * so its directory must not be shared. Meters: {@code storage.cache.requests} (tagged
+ * {@code result=memory|disk|miss}), {@code storage.cache.hit.ratio},
+ * {@code storage.cache.bytes.saved} (bytes not fetched from MinIO) and
+ * {@code storage.cache.size} (tagged {@code tier}).
+ */
+@Component
+public class ObjectCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectCache.class);
+
+    private static final String FILE_PREFIX = "object-";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String FILE_GLOB = FILE_PREFIX + "*" + FILE_SUFFIX;
+
+    private final MinioStorageService minioStorageService;
+    private final Path directory;
+    private final long maxObjectSize;
+    private final WeightedLru<MemoryEntry> memory;
+    private final WeightedLru<DiskEntry> disk;
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+    private final ConcurrentMap<String, CompletableFuture<Void>> downloads =
+            new ConcurrentHashMap<>();
+
+    private record MemoryEntry(StoredObject object, ByteBuffer content) {
+    }
+
+    private record DiskEntry(StoredObject object, Path file) {
+    }
+
+    public ObjectCache(
+            MinioStorageService minioStorageService,
+            @Value("${storage.cache.memory-size:64MB}") DataSize memorySize,
+            @Value("${storage.cache.disk-size:1GB}") DataSize diskSize,
+            @Value("${storage.cache.max-object-size:10MB}") DataSize maxObjectSize,
+            @Value("${storage.cache.directory:${java.io.tmpdir}/scubakeep-object-cache}")
+            Path directory,
+            MeterRegistry meterRegistry
+    ) {
+        this.minioStorageService = minioStorageService;
+        this.directory = prepare(directory);
+        // Direct buffers are indexed by int
+        this.maxObjectSize = Math.min(maxObjectSize.toBytes(), Integer.MAX_VALUE);
+        this.memory = new WeightedLru<>(memorySize.toBytes(),
+                entry -> entry.content().capacity(), entry -> { });
+        this.disk = new WeightedLru<>(diskSize.toBytes(),
+                entry -> entry.object().size(), entry -> delete(entry.file()));
+
+        this.memoryHits = requests("memory", meterRegistry);
+        this.diskHits = requests("disk", meterRegistry);
+        this.misses = requests("miss", meterRegistry);
+        this.bytesSaved = Counter.builder("storage.cache.bytes.saved")
+                .description("Bytes served from the cache instead of MinIO")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.cache.hit.ratio", this, ObjectCache::hitRatio)
+                .description("Share of object reads served from the cache")
+                .register(meterRegistry);
+        size("memory", memory, meterRegistry);
+        size("disk", disk, meterRegistry);
+    }
+
+    /**
+     * Reads the metadata of an object, from the cache if the object is cached.
+     *
+     * @param objectKey the key (path) of the object
+     * @return the object's size, content type and modification time
+     */
+    public StoredObject stat(String objectKey) {
+        MemoryEntry inMemory = memory.get(objectKey);
+        if (inMemory != null) {
+            return inMemory.object();
+        }
+        DiskEntry onDisk = disk.get(objectKey);
+        return onDisk != null ? onDisk.object() : minioStorageService.stat(objectKey);
+    }
+
+    /**
+     * Copies a byte range of an object to the given stream, caching the object on a miss.
+     *
+     * @param object the object, as returned by {@link #stat(String)}
+     * @param offset the first byte to copy
+     * @param length the number of bytes to copy
+     * @param out the destination, e.g. the response body; not closed
+     * @throws IOException if the destination cannot be written
+     */
+    public void copyRange(StoredObject object, long offset, long length, OutputStream out)
+            throws IOException {
+        if (copyCached(object, offset, length, out)) {
+            return;
+        }
+        if (object.size() > maxObjectSize) {
+            misses.increment();
+            minioStorageService.copyRange(object.key(), offset, length, out);
+            return;
+        }
+        CompletableFuture<Void> fetch = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = downloads.putIfAbsent(object.key(), fetch);
+        if (inFlight == null) {
+            misses.increment();
+            try (FileChannel file = downloadFor(object, fetch)) {
+                copy(file, object, offset, length, out);
+            }
+            return;
+        }
+        // Another request is downloading the object: wait for it instead of fetching again
+        inFlight.join();
+        if (!copyCached(object, offset, length, out)) {
+            misses.increment();
+            minioStorageService.copyRange(object.key(), offset, length, out);
+        }
+    }
+
+    /**
+     * Copies the range from the memory or disk tier, promoting a disk hit to memory.
+     *
+     * @return false if the object is in neither tier
+     */
+    private boolean copyCached(StoredObject object, long offset, long length, OutputStream out)
+            throws IOException {
+        MemoryEntry inMemory = memory.get(object.key());
+        if (inMemory != null) {
+            hit(memoryHits, length);
+            write(inMemory.content(), offset, length, out);
+            return true;
+        }
+        DiskEntry onDisk = disk.get(object.key());
+        FileChannel file = onDisk != null ? open(onDisk.file()) : null;
+        if (file == null) {
+            return false;
+        }
+        try (file) {
+            hit(diskHits, length);
+            promote(object, file);
+            transfer(file, offset, length, out);
+        }
+        return true;
+    }
+
+    /**
+     * Downloads the object on behalf of every request waiting for it, then releases
+     * them before its own range is sent, so they read the cached copy meanwhile.
+     */
+    private FileChannel downloadFor(StoredObject object, CompletableFuture<Void> fetch) {
+        try {
+            return download(object);
+        } finally {
+            downloads.remove(object.key(), fetch);
+            fetch.complete(null);
+        }
+    }
+
+    /**
+     * Sends the range from the downloaded file, or from MinIO if it could not be cached.
+     */
+    private void copy(
+            FileChannel file,
+            StoredObject object,
+            long offset,
+            long length,
+            OutputStream out
+    ) throws IOException {
+        if (file == null) {
+            minioStorageService.copyRange(object.key(), offset, length, out);
+        } else {
+            transfer(file, offset, length, out);
+        }
+    }
+
+    /**
+     * Downloads a whole object into a new file and adds it to both tiers. The returned
+     * channel stays readable even if the file is evicted at once.
+     *
+     * @return the open file, or null if it could not be written
+     */
+    private FileChannel download(StoredObject object) {
+        Path file = null;
+        try {
+            file = Files.createTempFile(directory, FILE_PREFIX, FILE_SUFFIX);
+            try (OutputStream content = Files.newOutputStream(file)) {
+                minioStorageService.copyRange(object.key(), 0, object.size(), content);
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            promote(object, channel);
+            if (!disk.put(object.key(), new DiskEntry(object, file))) {
+                delete(file);
+            }
+            return channel;
+        } catch (IOException | RuntimeException ex) {
+            // e.g. a full disk; streaming from MinIO also surfaces MinIO's own errors
+            LOGGER.warn("Could not cache object {}; streaming it from MinIO", object.key(), ex);
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Copies a cached file into a direct buffer of the memory tier, if it fits.
+     */
+    private void promote(StoredObject object, FileChannel file) {
+        if (!memory.accepts(object.size()) || object.size() > maxObjectSize) {
+            return;
+        }
+        try {
+            ByteBuffer content = ByteBuffer.allocateDirect((int) object.size());
+            while (content.hasRemaining() && file.read(content, content.position()) >= 0) {
+                // Reads until the buffer is full or the file ends
+            }
+            if (!content.hasRemaining()) {
+                content.flip();
+                memory.put(object.key(), new MemoryEntry(object, content.asReadOnlyBuffer()));
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Could not load object {} into memory", object.key(), ex);
+        }
+    }
+
+    private static void write(ByteBuffer content, long offset, long length, OutputStream out)
+            throws IOException {
+        ByteBuffer range = content.duplicate();
+        range.limit((int) (offset + length)).position((int) offset);
+        WritableByteChannel target = Channels.newChannel(out);
+        while (range.hasRemaining()) {
+            target.write(range);
+        }
+    }
+
+    private static void transfer(FileChannel file, long offset, long length, OutputStream out)
+            throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            long sent = file.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                throw new IOException("Cached file is shorter than its object");
+            }
+            position += sent;
+        }
+    }
+
+    /**
+     * Opens a file of the disk tier, or returns null if it was evicted meanwhile.
+     */
+    private static FileChannel open(Path file) {
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException ex) {
+            LOGGER.warn("Could not open cached file {}", file, ex);
+            return null;
+        }
+    }
+
+    private void hit(Counter tier, long length) {
+        tier.increment();
+        bytesSaved.increment(length);
+    }
+
+    private double hitRatio() {
+        double hits = memoryHits.count() + diskHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static Counter requests(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("storage.cache.requests")
+                .description("Object reads by the tier that served them")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static void size(String tier, WeightedLru<?> lru, MeterRegistry meterRegistry) {
+        Gauge.builder("storage.cache.size", lru, WeightedLru::weight)
+                .description("Bytes held by a cache tier")
+                .tag("tier", tier)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates the cache directory and removes the files a previous run left in it.
+     */
+    private static Path prepare(Path directory) {
+        try (DirectoryStream<Path> stale =
+                     Files.newDirectoryStream(Files.createDirectories(directory), FILE_GLOB)) {
+            stale.forEach(ObjectCache::delete);
+            return directory;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot prepare cache directory " + directory, ex);
+        }
+    }
+
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not delete cached file {}", file, ex);
+        }
+    }
+}
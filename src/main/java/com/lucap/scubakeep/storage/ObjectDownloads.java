@@ -0,0 +1,294 @@
+package com.lucap.scubakeep.storage;
+
+import com.lucap.scubakeep.exception.ImageNotReadyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Builds download responses that stream stored objects to the client.
+ * <p>
+ * Uploads always write a new object key, so the content behind a key never changes.
+ * The strong ETag is therefore derived from the key alone: a matching
+ * {@code If-None-Match} is answered with {@code 304 Not Modified} without touching
+ * the object store. URLs carrying the key's version ({@code ?v=}, see
+ * {@link #version(String)}) are cacheable for a year as immutable; URLs without it
+ * may point to a newer image later and must be revalidated.
+ * <p>
+ * The body is copied to the servlet output while it is written, from the local
+ * {@link ObjectCache} or, for objects too large to cache, straight from the object
+ * store, so an object is never buffered on the heap. A single byte range
+ * ({@code Range: bytes=...}) is answered with {@code 206 Partial Content} and only
+ * that range is sent; {@code If-Range} (ETag or Last-Modified) falls back to the
+ * whole object when it changed. Requests for several ranges get the whole object.
+ * HEAD requests get the headers only. Objects that are not of an accepted
+ * {@link ImageTypes image type} are sent as attachments.
+ * <p>
+ * Images are served as one of their resized {@link ImageVariant}s, {@code FULL} when
+ * no size is requested: variants carry no EXIF, so the GPS position and camera data
+ * of the original upload are not published. The version in the URL is that of the
+ * original upload, which also identifies its variants. The original itself is never
+ * sent: until the variants exist the image is answered with {@code 404 Not Found}
+ * and a {@code Retry-After} header (see {@link ImageNotReadyException}).
+ * <p>
+ * With {@code storage.minio.presigned-downloads} enabled, GET and HEAD are instead
+ * redirected ({@code 302}) to a presigned MinIO URL valid for
+ * {@code storage.minio.presign-expiry}, so image bytes never pass through the
+ * application. The redirect of a versioned URL is cacheable for half that time, and
+ * MinIO is asked to send the immutable caching header with the image.
+ */
+@Component
+public class ObjectDownloads {
+
+    private static final int VERSION_BYTES = 8;
+    private static final String NOSNIFF_HEADER = "X-Content-Type-Options";
+    private static final CacheControl IMMUTABLE =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+    // Variants of a queued image usually exist within seconds
+    private static final long NOT_READY_RETRY_SECONDS = 5;
+
+    private final MinioStorageService minioStorageService;
+    private final ObjectCache objectCache;
+    private final boolean presignedDownloads;
+    private final Duration presignExpiry;
+
+    public ObjectDownloads(
+            MinioStorageService minioStorageService,
+            ObjectCache objectCache,
+            @Value("${storage.minio.presigned-downloads:false}") boolean presignedDownloads,
+            @Value("${storage.minio.presign-expiry:10m}") Duration presignExpiry
+    ) {
+        this.minioStorageService = minioStorageService;
+        this.objectCache = objectCache;
+        this.presignedDownloads = presignedDownloads;
+        this.presignExpiry = presignExpiry;
+    }
+
+    /**
+     * Returns the version of an object key, to be appended to its download URL as
+     * {@code ?v=}: a short digest of the key, which changes with every upload.
+     *
+     * @param objectKey the object key
+     * @return 16 lower-case hex characters
+     */
+    public static String version(String objectKey) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(objectKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, VERSION_BYTES);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Builds the response for an object, honouring the request's conditional and
+     * range headers.
+     *
+     * @param objectKey the key of the object to send
+     * @param version the {@code v} query parameter of the request, or null
+     * @param method the request method (GET or HEAD)
+     * @param request the request headers
+     * @return 304 if the client's copy is current, a 302 redirect to MinIO, 200 with
+     *         the object, 206 with the requested range, or 416 if the range starts
+     *         past the end of the object
+     */
+    public ResponseEntity<StreamingResponseBody> serve(
+            String objectKey,
+            String version,
+            HttpMethod method,
+            HttpHeaders request
+    ) {
+        return serve(objectKey, version(objectKey).equals(version), method, request);
+    }
+
+    /**
+     * Builds the response for an image in the requested size.
+     *
+     * @param image   the uploaded image
+     * @param size    the requested variant, or null for {@link ImageVariant#FULL}
+     * @param version the {@code v} query parameter of the request, or null
+     * @param method  the request method (GET or HEAD)
+     * @param request the request headers
+     * @return the response, as for {@link #serve(String, String, HttpMethod, HttpHeaders)}
+     * @throws ImageNotReadyException if the variants of the image do not exist yet
+     */
+    public ResponseEntity<StreamingResponseBody> serveImage(
+            StoredImage image,
+            ImageVariant size,
+            String version,
+            HttpMethod method,
+            HttpHeaders request
+    ) {
+        if (!image.hasVariants()) {
+            throw new ImageNotReadyException(NOT_READY_RETRY_SECONDS);
+        }
+        ImageVariant variant = size != null ? size : ImageVariant.FULL;
+        return serve(variant.keyOf(image.key()), version(image.key()).equals(version),
+                method, request);
+    }
+
+    private ResponseEntity<StreamingResponseBody> serve(
+            String objectKey,
+            boolean versioned,
+            HttpMethod method,
+            HttpHeaders request
+    ) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(entityTag(objectKey));
+        headers.setCacheControl(versioned ? IMMUTABLE : REVALIDATE);
+        if (notModified(objectKey, request)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        if (presignedDownloads) {
+            return redirect(objectKey, versioned);
+        }
+
+        StoredObject object = objectCache.stat(objectKey);
+        contentType(object, headers);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setLastModified(object.lastModified());
+
+        return content(object, requestedRange(object, request), method, headers);
+    }
+
+    /**
+     * Redirects to a presigned URL. The redirect carries no ETag: a revalidated
+     * redirect would keep pointing to a URL that may have expired.
+     */
+    private ResponseEntity<StreamingResponseBody> redirect(String objectKey, boolean versioned) {
+        String url = minioStorageService.presignedDownloadUrl(objectKey, presignExpiry,
+                versioned ? IMMUTABLE.getHeaderValue() : null);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setLocation(URI.create(url));
+        headers.setCacheControl(versioned
+                ? CacheControl.maxAge(presignExpiry.dividedBy(2)).cachePublic()
+                : CacheControl.noStore());
+        return new ResponseEntity<>(headers, HttpStatus.FOUND);
+    }
+
+    /**
+     * Builds the response carrying the whole object, or the given range of it.
+     */
+    private ResponseEntity<StreamingResponseBody> content(
+            StoredObject object,
+            HttpRange range,
+            HttpMethod method,
+            HttpHeaders headers
+    ) {
+        long start = 0;
+        long length = object.size();
+        if (range != null) {
+            start = range.getRangeStart(object.size());
+            long end = range.getRangeEnd(object.size());
+            if (start >= object.size() || end < start) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + object.size());
+                return new ResponseEntity<>(headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            length = end - start + 1;
+            headers.set(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + start + "-" + end + "/" + object.size());
+        }
+        headers.setContentLength(length);
+
+        long offset = start;
+        long count = length;
+        StreamingResponseBody body = HttpMethod.HEAD.equals(method)
+                ? null
+                : out -> objectCache.copyRange(object, offset, count, out);
+        return new ResponseEntity<>(body, headers,
+                range == null ? HttpStatus.OK : HttpStatus.PARTIAL_CONTENT);
+    }
+
+    /**
+     * Checks {@code If-None-Match} (weak comparison, as the RFC requires).
+     */
+    private static boolean notModified(String objectKey, HttpHeaders request) {
+        List<String> ifNoneMatch;
+        try {
+            ifNoneMatch = request.getIfNoneMatch();
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+        String etag = entityTag(objectKey);
+        return ifNoneMatch.stream().anyMatch(tag -> "*".equals(tag)
+                || etag.equals(tag.startsWith("W/") ? tag.substring(2) : tag));
+    }
+
+    /**
+     * Returns the single range to send, or null to send the whole object.
+     */
+    private static HttpRange requestedRange(StoredObject object, HttpHeaders request) {
+        List<HttpRange> ranges;
+        try {
+            ranges = request.getRange();
+        } catch (IllegalArgumentException ex) {
+            // An invalid Range header is ignored
+            return null;
+        }
+        if (ranges.size() != 1 || !rangeStillValid(object, request)) {
+            return null;
+        }
+        return ranges.get(0);
+    }
+
+    /**
+     * Checks {@code If-Range}: the range applies only if the client's copy, identified
+     * by a strong ETag or by its Last-Modified date, is still current.
+     */
+    private static boolean rangeStillValid(StoredObject object, HttpHeaders request) {
+        String ifRange = request.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(entityTag(object.key()));
+        }
+        try {
+            ZonedDateTime date = request.getFirstZonedDateTime(HttpHeaders.IF_RANGE);
+            return date != null && date.toInstant()
+                    .equals(object.lastModified().truncatedTo(ChronoUnit.SECONDS));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static String entityTag(String objectKey) {
+        return "\"" + version(objectKey) + "\"";
+    }
+
+    /**
+     * Sets the content type. Only accepted {@link ImageTypes} are shown inline; any
+     * other object (e.g. an SVG stored before types were checked) is sent as an
+     * opaque attachment, so it can never run as a document on the API origin.
+     */
+    private static void contentType(StoredObject object, HttpHeaders headers) {
+        MediaType type = ImageTypes.inline(object.contentType());
+        headers.set(NOSNIFF_HEADER, "nosniff");
+        if (type != null) {
+            headers.setContentType(type);
+            return;
+        }
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDisposition(ContentDisposition.attachment().build());
+    }
+}
@@ -0,0 +1,110 @@
+package com.lucap.scubakeep.storage;
+
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
+import com.lucap.scubakeep.exception.InvalidFileTypeException;
+import com.lucap.scubakeep.exception.InvalidUploadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Issues and verifies direct image uploads to object storage.
+ * <p>
+ * Instead of streaming the image through the application, the client gets a
+ * presigned PUT URL, valid for {@code storage.minio.presign-expiry}, for a new key
+ * under the resource's prefix. Nothing is recorded until the client confirms the
+ * upload: the object must then exist under that prefix, be of an accepted
+ * {@link ImageTypes image type} and be at most
+ * {@code storage.minio.max-image-size}; a rejected object is deleted.
+ */
+@Component
+public class PresignedUploads {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PresignedUploads.class);
+
+    private static final Pattern EXTENSION = Pattern.compile("\\.[A-Za-z0-9]{1,10}");
+
+    private final MinioStorageService minioStorageService;
+    private final Duration expiry;
+    private final DataSize maxImageSize;
+
+    public PresignedUploads(
+            MinioStorageService minioStorageService,
+            @Value("${storage.minio.presign-expiry:10m}") Duration expiry,
+            @Value("${storage.minio.max-image-size:10MB}") DataSize maxImageSize
+    ) {
+        this.minioStorageService = minioStorageService;
+        this.expiry = expiry;
+        this.maxImageSize = maxImageSize;
+    }
+
+    /**
+     * Issues an upload URL for a new object under the given prefix.
+     *
+     * @param prefix the key prefix of the resource, e.g. {@code divelogs/42/}
+     * @param dto the declared content type, size and file name
+     * @return the presigned URL, the object key and the URL's expiry
+     * @throws InvalidFileTypeException if the content type is not an accepted image type
+     * @throws InvalidUploadException if the declared size exceeds the limit
+     */
+    public ImageUploadResponseDTO issue(String prefix, ImageUploadRequestDTO dto) {
+        checkImage(dto.getContentType(), dto.getSize());
+
+        String objectKey = prefix + UUID.randomUUID() + extension(dto.getFileName());
+        return ImageUploadResponseDTO.builder()
+                .uploadUrl(minioStorageService.presignedUploadUrl(objectKey, expiry))
+                .objectKey(objectKey)
+                .expiresAt(Instant.now().plus(expiry))
+                .build();
+    }
+
+    /**
+     * Verifies an uploaded object before it is attached to its resource.
+     *
+     * @param prefix the key prefix of the resource the upload URL was issued for
+     * @param objectKey the key returned with the upload URL
+     * @return the verified object
+     * @throws InvalidUploadException if the key does not belong to the resource, the
+     *         object was not uploaded, or it is too large
+     * @throws InvalidFileTypeException if the object is not an accepted image type
+     */
+    public StoredObject confirm(String prefix, String objectKey) {
+        if (!objectKey.startsWith(prefix) || objectKey.indexOf('/', prefix.length()) >= 0) {
+            throw new InvalidUploadException("Object key does not belong to this resource");
+        }
+        StoredObject object = minioStorageService.find(objectKey)
+                .orElseThrow(() -> new InvalidUploadException("Object was not uploaded"));
+        try {
+            checkImage(object.contentType(), object.size());
+        } catch (RuntimeException ex) {
+            minioStorageService.delete(objectKey);
+            LOGGER.info("Deleted rejected upload {}", objectKey);
+            throw ex;
+        }
+        return object;
+    }
+
+    private void checkImage(String contentType, long size) {
+        ImageTypes.require(contentType);
+        if (size > maxImageSize.toBytes()) {
+            throw new InvalidUploadException("Image exceeds the maximum size of "
+                    + maxImageSize.toMegabytes() + " MB");
+        }
+    }
+
+    private static String extension(String fileName) {
+        if (fileName == null || !fileName.contains(".")) {
+            return "";
+        }
+        String extension = fileName.substring(fileName.lastIndexOf('.'));
+        return EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+}
@@ -0,0 +1,19 @@
+package com.lucap.scubakeep.storage;
+
+import java.util.Map;
+
+/**
+ * Result of processing an uploaded image.
+ *
+ * @param width       the width of the upright image in pixels
+ * @param height      the height of the upright image in pixels
+ * @param placeholder a data URI of a few pixels to show blurred while loading, or null
+ * @param variants    the encoded JPEG of every {@link ImageVariant}
+ */
+public record ProcessedImage(
+        int width,
+        int height,
+        String placeholder,
+        Map<ImageVariant, byte[]> variants
+) {
+}
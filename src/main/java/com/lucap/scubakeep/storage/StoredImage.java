@@ -0,0 +1,13 @@
+package com.lucap.scubakeep.storage;
+
+/**
+ * An uploaded image, as referenced by a dive log or a diver.
+ *
+ * @param key         the object key of the original upload
+ * @param hasVariants whether the resized variants of the upload have been generated
+ */
+public record StoredImage(
+        String key,
+        boolean hasVariants
+) {
+}
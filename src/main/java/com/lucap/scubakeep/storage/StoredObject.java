@@ -0,0 +1,19 @@
+package com.lucap.scubakeep.storage;
+
+import java.time.Instant;
+
+/**
+ * Metadata of an object in the bucket, read without downloading its content.
+ *
+ * @param key          the object key (path)
+ * @param size         the content length in bytes
+ * @param contentType  the MIME type given on upload
+ * @param lastModified when the object was written
+ */
+public record StoredObject(
+        String key,
+        long size,
+        String contentType,
+        Instant lastModified
+) {
+}
@@ -0,0 +1,399 @@
+package com.lucap.scubakeep.storage;
+
+import com.lucap.scubakeep.exception.InvalidUploadException;
+import com.lucap.scubakeep.exception.StorageOperationException;
+import com.lucap.scubakeep.exception.UploadTooLargeException;
+import com.lucap.scubakeep.exception.UploadsOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams upload bodies straight into object storage, without spooling them to a
+ * temporary file first.
+ * <p>
+ * Each part of {@code storage.minio.part-size} (at least 5 MiB, the S3 minimum) is
+ * first read into a buffer of the upload's own, which starts at 64 KiB and grows
+ * with the body. A body that ends within the first part, as thumbnails and most
+ * avatars do, is stored from it with a single PUT of known length. A larger one
+ * becomes a multipart upload: once a whole part has arrived it is copied into a part
+ * buffer and sent on one of {@code storage.minio.upload-threads} threads while the
+ * next part is read. Part buffers come from a pool of
+ * {@code storage.minio.upload-buffers}, shared by all uploads, and are only held
+ * while their part is queued or sent, never while a client is still sending, so slow
+ * clients cannot take the pool. A part waits up to
+ * {@code storage.minio.upload-buffer-timeout} for a free buffer; after that the
+ * upload is rejected with {@link UploadsOverloadedException}.
+ * <p>
+ * The whole body must arrive within {@code storage.minio.upload-read-timeout}, and
+ * no single read may take longer than {@code storage.minio.upload-idle-timeout}. A
+ * read that blocks for good is ended by the server's connection timeout
+ * ({@code server.tomcat.connection-timeout}), which should not exceed the idle
+ * timeout.
+ * <p>
+ * A declared length above {@code storage.minio.max-image-size} is rejected before
+ * anything is read, and a body is rejected as soon as it crosses the limit, so an
+ * oversized upload never buffers more than the limit. A failed or rejected multipart
+ * upload is aborted, so MinIO discards its parts.
+ * <p>
+ * Meters: {@code storage.uploads.parts}, {@code storage.uploads.rejected} (too large),
+ * {@code storage.uploads.timeouts} and {@code storage.uploads.buffers.free}.
+ */
+@Component
+public class StreamingUploads implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingUploads.class);
+
+    private static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+
+    private static final int FIRST_CHUNK = 64 * 1024;
+
+    private final MinioStorageService minioStorageService;
+    private final int partSize;
+    private final DataSize maxImageSize;
+    private final Duration bufferTimeout;
+    private final Duration readTimeout;
+    private final Duration idleTimeout;
+    private final Semaphore buffers;
+    private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final ThreadPoolExecutor executor;
+    private final Counter parts;
+    private final Counter rejected;
+    private final Counter timeouts;
+
+    public StreamingUploads(
+            MinioStorageService minioStorageService,
+            @Value("${storage.minio.part-size:8MB}") DataSize partSize,
+            @Value("${storage.minio.max-image-size:10MB}") DataSize maxImageSize,
+            @Value("${storage.minio.upload-threads:4}") int threads,
+            @Value("${storage.minio.upload-buffers:8}") int buffers,
+            @Value("${storage.minio.upload-buffer-timeout:30s}") Duration bufferTimeout,
+            @Value("${storage.minio.upload-read-timeout:2m}") Duration readTimeout,
+            @Value("${storage.minio.upload-idle-timeout:10s}") Duration idleTimeout,
+            MeterRegistry meterRegistry
+    ) {
+        if (partSize.toBytes() < MIN_PART_SIZE || partSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "storage.minio.part-size must be between 5MB and 2GB: " + partSize);
+        }
+        this.minioStorageService = minioStorageService;
+        this.partSize = (int) partSize.toBytes();
+        this.maxImageSize = maxImageSize;
+        this.bufferTimeout = bufferTimeout;
+        this.readTimeout = readTimeout;
+        this.idleTimeout = idleTimeout;
+        this.buffers = new Semaphore(buffers);
+        // Every queued part holds a buffer, so the queue never overflows
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(buffers), daemonThreads(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.parts = counter(meterRegistry, "storage.uploads.parts",
+                "Parts sent to MinIO by multipart uploads");
+        this.rejected = counter(meterRegistry, "storage.uploads.rejected",
+                "Uploads rejected for exceeding the maximum size");
+        this.timeouts = counter(meterRegistry, "storage.uploads.timeouts",
+                "Uploads whose body did not arrive within the read or idle timeout");
+        Gauge.builder("storage.uploads.buffers.free", this.buffers, Semaphore::availablePermits)
+                .description("Part buffers not held by an upload")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores an image read from the given stream under a new key.
+     *
+     * @param prefix the key prefix of the resource, e.g. {@code divelogs/42/}
+     * @param body the content, e.g. the request body; not closed
+     * @param declaredType the declared MIME type
+     * @param contentLength the declared length in bytes, or -1 if unknown
+     * @return the stored object
+     * @throws com.lucap.scubakeep.exception.InvalidFileTypeException if the content type
+     *         is not an accepted image type
+     * @throws UploadTooLargeException if the content exceeds the maximum size
+     * @throws InvalidUploadException if the body cannot be read to its end, or not
+     *         within the read or idle timeout
+     * @throws UploadsOverloadedException if no part buffer becomes free in time
+     * @throws StorageOperationException if MinIO fails
+     */
+    public StoredObject upload(
+            String prefix,
+            InputStream body,
+            String declaredType,
+            long contentLength
+    ) {
+        String contentType = ImageTypes.require(declaredType);
+        if (contentLength > maxImageSize.toBytes()) {
+            throw tooLarge();
+        }
+        Upload upload = new Upload(prefix + UUID.randomUUID() + ImageTypes.extension(contentType),
+                body, contentType);
+        long size = upload.run();
+        return new StoredObject(upload.objectKey, size, contentType, Instant.now());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The state of one upload: the body read so far and the parts in flight.
+     */
+    private final class Upload {
+
+        private final String objectKey;
+        private final InputStream body;
+        private final String contentType;
+        private final List<Future<String>> sent = new ArrayList<>();
+        private final long deadline = System.nanoTime() + readTimeout.toNanos();
+        // The part being read; grows up to the part size
+        private byte[] staging = new byte[FIRST_CHUNK];
+        private long size;
+        private boolean ended;
+
+        private Upload(String objectKey, InputStream body, String contentType) {
+            this.objectKey = objectKey;
+            this.body = body;
+            this.contentType = contentType;
+        }
+
+        /**
+         * Stores the body and returns its size.
+         */
+        long run() {
+            int length = readPart();
+            if (length == 0) {
+                throw new InvalidUploadException("Upload body is empty");
+            }
+            if (ended) {
+                minioStorageService.upload(objectKey,
+                        new ByteArrayInputStream(staging, 0, length), length, contentType);
+                return size;
+            }
+            String uploadId = minioStorageService.createMultipartUpload(objectKey, contentType);
+            sendParts(uploadId, length);
+            return size;
+        }
+
+        /**
+         * Sends the first part, then reads and sends the others until the body ends,
+         * and completes the upload; on any failure, aborts it.
+         */
+        private void sendParts(String uploadId, int firstLength) {
+            try {
+                int length = firstLength;
+                while (length > 0) {
+                    send(uploadId, length);
+                    if (ended) {
+                        break;
+                    }
+                    failFast();
+                    length = readPart();
+                }
+                minioStorageService.completeMultipartUpload(objectKey, uploadId, etags());
+            } catch (RuntimeException ex) {
+                abort(uploadId);
+                throw ex;
+            }
+        }
+
+        /**
+         * Reads the next part into the staging buffer, growing it as the body arrives.
+         *
+         * @return the length of the part; shorter than a part only once the body ended
+         */
+        private int readPart() {
+            int length = 0;
+            do {
+                if (length == staging.length) {
+                    staging = Arrays.copyOf(staging, Math.min(staging.length * 2, partSize));
+                }
+                length += read(staging, length);
+            } while (!ended && length < partSize);
+            return length;
+        }
+
+        /**
+         * Copies the part read into a pooled buffer and queues it; the buffer is
+         * released once the part has been sent.
+         */
+        private void send(String uploadId, int length) {
+            byte[] buffer = acquire(objectKey);
+            System.arraycopy(staging, 0, buffer, 0, length);
+            int partNumber = sent.size() + 1;
+            sent.add(executor.submit(() -> {
+                try {
+                    String etag = minioStorageService.uploadPart(
+                            objectKey, uploadId, partNumber, buffer, length);
+                    parts.increment();
+                    return etag;
+                } finally {
+                    release(buffer);
+                }
+            }));
+        }
+
+        /**
+         * Fills a buffer from the given offset on, reading at most one byte beyond the
+         * size limit and failing once the read deadline has passed or a read took
+         * longer than the idle timeout.
+         *
+         * @return the number of bytes read; fewer than requested once the body ended
+         */
+        private int read(byte[] buffer, int offset) {
+            long allowed = maxImageSize.toBytes() - size + 1;
+            int wanted = (int) Math.min(buffer.length - offset, allowed);
+            int length = 0;
+            try {
+                int count = 0;
+                while (length < wanted && count >= 0) {
+                    checkDeadline();
+                    long start = System.nanoTime();
+                    count = body.read(buffer, offset + length,
+                            Math.min(wanted - length, FIRST_CHUNK));
+                    if (System.nanoTime() - start > idleTimeout.toNanos()) {
+                        throw timedOut("No upload data received for " + idleTimeout);
+                    }
+                    length += Math.max(count, 0);
+                }
+            } catch (SocketTimeoutException ex) {
+                throw timedOut("No upload data received in time");
+            } catch (IOException ex) {
+                throw new InvalidUploadException("Upload body could not be read");
+            }
+            size += length;
+            if (size > maxImageSize.toBytes()) {
+                throw tooLarge();
+            }
+            ended = length < wanted;
+            return length;
+        }
+
+        private void checkDeadline() {
+            if (System.nanoTime() - deadline > 0) {
+                throw timedOut("Upload body was not received within " + readTimeout);
+            }
+        }
+
+        private InvalidUploadException timedOut(String message) {
+            timeouts.increment();
+            return new InvalidUploadException(message);
+        }
+
+        /**
+         * Rethrows the failure of a part that was already sent, so a broken upload
+         * stops reading the body.
+         */
+        private void failFast() {
+            for (Future<String> part : sent) {
+                if (part.isDone()) {
+                    await(part);
+                }
+            }
+        }
+
+        private List<String> etags() {
+            return sent.stream().map(this::await).toList();
+        }
+
+        private String await(Future<String> part) {
+            try {
+                return part.get();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new StorageOperationException(objectKey, ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new StorageOperationException(objectKey, ex);
+            }
+        }
+
+        /**
+         * Aborts the upload once no part is in flight any more, so that MinIO discards
+         * every part; the parts' own failures are not reported again.
+         */
+        private void abort(String uploadId) {
+            for (Future<String> part : sent) {
+                try {
+                    await(part);
+                } catch (RuntimeException ex) {
+                    LOGGER.debug("Part of aborted upload {} failed", objectKey, ex);
+                }
+            }
+            try {
+                minioStorageService.abortMultipartUpload(objectKey, uploadId);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Could not abort multipart upload of {}", objectKey, ex);
+            }
+        }
+    }
+
+    /**
+     * Takes a part buffer from the pool, waiting for one to be released if all are
+     * in use.
+     */
+    private byte[] acquire(String objectKey) {
+        try {
+            if (!buffers.tryAcquire(bufferTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("No upload buffer became free for {}", objectKey);
+                throw new UploadsOverloadedException();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new StorageOperationException(objectKey, ex);
+        }
+        byte[] buffer = freeBuffers.poll();
+        return buffer != null ? buffer : new byte[partSize];
+    }
+
+    private void release(byte[] buffer) {
+        freeBuffers.offer(buffer);
+        buffers.release();
+    }
+
+    private UploadTooLargeException tooLarge() {
+        rejected.increment();
+        return new UploadTooLargeException(maxImageSize);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String description) {
+        return Counter.builder(name).description(description).register(meterRegistry);
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "upload-part-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
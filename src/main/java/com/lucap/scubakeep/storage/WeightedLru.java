@@ -0,0 +1,86 @@
+package com.lucap.scubakeep.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe map bounded by the total weight of its values, evicting the least
+ * recently used entries first.
+ *
+ * @param <V> the value type
+ */
+final class WeightedLru<V> {
+
+    private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long capacity;
+    private final ToLongFunction<V> weigher;
+    private final Consumer<V> onRemoval;
+    private long weight;
+
+    /**
+     * Creates an empty map.
+     *
+     * @param capacity  the largest total weight, 0 to keep nothing
+     * @param weigher   the weight of a value, e.g. its size in bytes
+     * @param onRemoval called (under the lock) with every evicted or replaced value
+     */
+    WeightedLru(long capacity, ToLongFunction<V> weigher, Consumer<V> onRemoval) {
+        this.capacity = capacity;
+        this.weigher = weigher;
+        this.onRemoval = onRemoval;
+    }
+
+    /**
+     * Checks whether a value of the given weight can be stored at all.
+     */
+    boolean accepts(long valueWeight) {
+        return valueWeight <= capacity && capacity > 0;
+    }
+
+    /**
+     * Returns the value of a key and marks it as most recently used.
+     *
+     * @return the value, or null if absent
+     */
+    synchronized V get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Stores a value, evicting the least recently used entries until the total weight
+     * fits the capacity again.
+     *
+     * @return false if the value alone exceeds the capacity; it is then not stored
+     */
+    synchronized boolean put(String key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        if (!accepts(valueWeight)) {
+            return false;
+        }
+        V previous = entries.put(key, value);
+        weight += valueWeight;
+        if (previous != null) {
+            weight -= weigher.applyAsLong(previous);
+            onRemoval.accept(previous);
+        }
+
+        Iterator<Map.Entry<String, V>> eldest = entries.entrySet().iterator();
+        while (weight > capacity) {
+            V evicted = eldest.next().getValue();
+            eldest.remove();
+            weight -= weigher.applyAsLong(evicted);
+            onRemoval.accept(evicted);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the total weight of the stored values.
+     */
+    synchronized long weight() {
+        return weight;
+    }
+}
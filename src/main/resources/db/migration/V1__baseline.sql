@@ -0,0 +1,49 @@
+-- Baseline schema, equal to the schema previously maintained by Hibernate
+-- (ddl-auto=update) after db/upgrade/time-ordered-ids.sql.
+-- Existing databases are baselined at this version instead of running it
+-- (spring.flyway.baseline-on-migrate).
+
+CREATE TABLE divers (
+    id                    BINARY(16)   NOT NULL,
+    username              VARCHAR(40)  NOT NULL,
+    email                 VARCHAR(120) NOT NULL,
+    password              VARCHAR(255) NOT NULL,
+    first_name            VARCHAR(50)  NOT NULL,
+    last_name             VARCHAR(50)  NOT NULL,
+    country_code          VARCHAR(2)   NOT NULL,
+    profile_picture_path  VARCHAR(255),
+    role                  ENUM ('ADMIN', 'USER') NOT NULL,
+    highest_certification ENUM ('ADVANCED', 'DIVEMASTER', 'INSTRUCTOR', 'MASTER_SCUBA',
+                                'MSD_TRAINER', 'OPEN_WATER', 'RESCUE', 'UNCERTIFIED') NOT NULL,
+    total_dives           BIGINT       NOT NULL DEFAULT 0,
+    created_at            DATETIME(6)  NOT NULL,
+    updated_at            DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uq_divers_email UNIQUE (email),
+    CONSTRAINT uq_divers_username UNIQUE (username)
+) ENGINE = InnoDB;
+
+CREATE TABLE diver_specialties (
+    diver_id  BINARY(16)  NOT NULL,
+    specialty VARCHAR(50) NOT NULL,
+    PRIMARY KEY (diver_id, specialty),
+    CONSTRAINT fk_diver_specialties_diver FOREIGN KEY (diver_id) REFERENCES divers (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE dive_logs (
+    id            BIGINT       NOT NULL,
+    diver_id      BINARY(16)   NOT NULL,
+    dive_date     DATE         NOT NULL,
+    location      VARCHAR(120) NOT NULL,
+    dive_site     VARCHAR(120) NOT NULL,
+    maximum_depth DOUBLE       NOT NULL,
+    duration      INT          NOT NULL,
+    dive_buddy    VARCHAR(50),
+    dive_notes    VARCHAR(500),
+    image_path    VARCHAR(120),
+    created_at    DATETIME(6)  NOT NULL,
+    updated_at    DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    KEY fk_dive_logs_diver (diver_id),
+    CONSTRAINT fk_dive_logs_diver FOREIGN KEY (diver_id) REFERENCES divers (id)
+) ENGINE = InnoDB;
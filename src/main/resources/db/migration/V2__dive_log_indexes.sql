@@ -0,0 +1,12 @@
+-- Indexes for the dive log access paths.
+
+-- A diver's dive logs, newest first (feed and list filtered by diverId). Also serves
+-- the diver_id foreign key, which makes the single-column FK index redundant.
+CREATE INDEX idx_dive_logs_diver_created ON dive_logs (diver_id, created_at, id);
+ALTER TABLE dive_logs DROP INDEX fk_dive_logs_diver;
+
+-- Global feed and list, newest first, including the (created_at, id) seek predicate.
+CREATE INDEX idx_dive_logs_created ON dive_logs (created_at, id);
+
+-- Listing sorted by dive date.
+CREATE INDEX idx_dive_logs_dive_date ON dive_logs (dive_date);
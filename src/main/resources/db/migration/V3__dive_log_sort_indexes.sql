@@ -0,0 +1,12 @@
+-- Indexes for the whitelisted dive log sort fields (see DiveLogSort).
+-- Every sort is (field, id) in one direction, so each one needs an index on
+-- (field, id) and one on (diver_id, field, id) to serve both the global and the
+-- per-diver list and feed without a filesort. idx_dive_logs_dive_date (V2) already
+-- covers (dive_date, id): InnoDB appends the primary key to every secondary index.
+
+-- A diver's dive logs by dive date.
+CREATE INDEX idx_dive_logs_diver_dive_date ON dive_logs (diver_id, dive_date, id);
+
+-- Dive logs by maximum depth, globally and per diver.
+CREATE INDEX idx_dive_logs_depth ON dive_logs (maximum_depth, id);
+CREATE INDEX idx_dive_logs_diver_depth ON dive_logs (diver_id, maximum_depth, id);
@@ -0,0 +1,32 @@
+-- Refresh tokens and revoked access tokens (see RefreshTokenService and
+-- TokenRevocationList).
+
+-- Only the SHA-256 digest (hex) of a refresh token is stored. Tokens are rotated on
+-- every use: the used token stays, marked by used_at, until it expires, so presenting
+-- it again is detected and revokes every token of its family (one login session).
+CREATE TABLE refresh_tokens (
+    token_hash VARCHAR(64) NOT NULL,
+    family_id  BINARY(16)  NOT NULL,
+    diver_id   BINARY(16)  NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    used_at    DATETIME(6),
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (token_hash),
+    KEY idx_refresh_tokens_family (family_id),
+    KEY idx_refresh_tokens_expires_at (expires_at),
+    KEY fk_refresh_tokens_diver (diver_id),
+    CONSTRAINT fk_refresh_tokens_diver FOREIGN KEY (diver_id) REFERENCES divers (id)
+        ON DELETE CASCADE
+) ENGINE = InnoDB;
+
+-- Ids (jti) of access tokens revoked before their expiry. Rows are only needed until
+-- the token expires; every instance loads the live ones into an in-memory filter and
+-- picks up new ones by revoked_at.
+CREATE TABLE revoked_tokens (
+    jti        BINARY(16)  NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    revoked_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (jti),
+    KEY idx_revoked_tokens_expires_at (expires_at),
+    KEY idx_revoked_tokens_revoked_at (revoked_at)
+) ENGINE = InnoDB;
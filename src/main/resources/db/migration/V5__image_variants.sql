@@ -0,0 +1,15 @@
+-- Image metadata written once the resized variants of an upload have been generated
+-- (see ImageVariantService). The dimensions are those of the uploaded image after
+-- EXIF orientation; the placeholder is a data URI of a few pixels, shown blurred
+-- while the image loads. All three stay NULL until the variants exist, and are reset
+-- by every new upload.
+
+ALTER TABLE dive_logs
+    ADD COLUMN image_width       INT AFTER image_path,
+    ADD COLUMN image_height      INT AFTER image_width,
+    ADD COLUMN image_placeholder VARCHAR(512) AFTER image_height;
+
+ALTER TABLE divers
+    ADD COLUMN profile_picture_width       INT AFTER profile_picture_path,
+    ADD COLUMN profile_picture_height      INT AFTER profile_picture_width,
+    ADD COLUMN profile_picture_placeholder VARCHAR(512) AFTER profile_picture_height;
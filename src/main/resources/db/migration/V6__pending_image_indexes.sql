@@ -0,0 +1,7 @@
+-- Indexes for finding the images whose variants have not been generated yet (see
+-- ImageVariantServiceImpl#retryPending): metadata still NULL, image key set, walked
+-- in key order. Only pending images are read, however many rows have no image.
+
+CREATE INDEX idx_dive_logs_pending_image ON dive_logs (image_width, image_path);
+
+CREATE INDEX idx_divers_pending_picture ON divers (profile_picture_width, profile_picture_path);
@@ -0,0 +1,41 @@
+-- Upgrades an existing MariaDB schema to application-generated, time-ordered ids.
+--
+-- Run once, with the application stopped, before starting the version that generates
+-- ids in-process (Hibernate's ddl-auto=update does not change column types).
+--
+-- * dive_logs.id keeps its values and only loses AUTO_INCREMENT; generated TSIDs are
+--   far larger than any auto-increment value, so old rows still sort first.
+-- * divers.id and the diver_id foreign keys move from the native UUID type to
+--   BINARY(16). Existing (random) UUIDs keep their value, so URLs and stored object
+--   keys stay valid; only divers created afterwards get time-ordered UUIDs.
+-- * The foreign keys are recreated with explicit names (previously Hibernate's
+--   generated names, dropped below).
+
+ALTER TABLE dive_logs DROP FOREIGN KEY FKs5l15xf0y4afes6tsxirj0h0v;
+ALTER TABLE diver_specialties DROP FOREIGN KEY FK4n7i5oot4rfxl056ju37me79i;
+
+ALTER TABLE dive_logs MODIFY id BIGINT NOT NULL;
+
+ALTER TABLE divers ADD COLUMN id_bin BINARY(16);
+UPDATE divers SET id_bin = UNHEX(REPLACE(CAST(id AS CHAR), '-', ''));
+ALTER TABLE divers
+    DROP PRIMARY KEY,
+    DROP COLUMN id,
+    CHANGE id_bin id BINARY(16) NOT NULL FIRST,
+    ADD PRIMARY KEY (id);
+
+ALTER TABLE dive_logs ADD COLUMN diver_id_bin BINARY(16);
+UPDATE dive_logs SET diver_id_bin = UNHEX(REPLACE(CAST(diver_id AS CHAR), '-', ''));
+ALTER TABLE dive_logs
+    DROP COLUMN diver_id,
+    CHANGE diver_id_bin diver_id BINARY(16) NOT NULL,
+    ADD CONSTRAINT fk_dive_logs_diver FOREIGN KEY (diver_id) REFERENCES divers (id);
+
+ALTER TABLE diver_specialties ADD COLUMN diver_id_bin BINARY(16);
+UPDATE diver_specialties SET diver_id_bin = UNHEX(REPLACE(CAST(diver_id AS CHAR), '-', ''));
+ALTER TABLE diver_specialties
+    DROP COLUMN diver_id,
+    DROP PRIMARY KEY,
+    CHANGE diver_id_bin diver_id BINARY(16) NOT NULL FIRST,
+    ADD PRIMARY KEY (diver_id, specialty),
+    ADD CONSTRAINT fk_diver_specialties_diver FOREIGN KEY (diver_id) REFERENCES divers (id);
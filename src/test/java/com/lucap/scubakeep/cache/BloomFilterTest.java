@@ -0,0 +1,85 @@
+package com.lucap.scubakeep.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BloomFilter}.
+ */
+class BloomFilterTest {
+
+    /**
+     * Tests that every added value is found (no false negatives).
+     */
+    @Test
+    void mightContain_ReturnsTrue_ForAddedValues() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(1_000, 0.001);
+        String[] values = new String[1_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = UUID.randomUUID().toString();
+            filter.add(values[i]);
+        }
+
+        // Act & Assert
+        for (String value : values) {
+            assertTrue(filter.mightContain(value), value);
+        }
+    }
+
+    /**
+     * Tests that the false positive rate at the expected size stays close to the
+     * configured one.
+     */
+    @Test
+    void mightContain_KeepsFalsePositiveRate_AtExpectedSize() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("added-" + i);
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    /**
+     * Tests that the filter counts distinct values and reports saturation once it
+     * holds more values than it was sized for.
+     */
+    @Test
+    void isSaturated_AfterMoreEntriesThanExpected() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(10, 0.001);
+        for (int i = 0; i < 10; i++) {
+            filter.add("value-" + i);
+            filter.add("value-" + i);
+        }
+
+        // Act & Assert
+        assertEquals(10, filter.size());
+        assertFalse(filter.isSaturated());
+        filter.add("one-too-many");
+        assertTrue(filter.isSaturated());
+    }
+
+    /**
+     * Tests that invalid sizes are rejected.
+     */
+    @Test
+    void constructor_RejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1.0));
+    }
+}
@@ -0,0 +1,114 @@
+package com.lucap.scubakeep.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ReadThroughCache}.
+ */
+class ReadThroughCacheTest {
+
+    private ReadThroughCache<Long, String> cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ReadThroughCache<>(Caffeine.newBuilder().maximumSize(10).build());
+        loads = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Tests that a value is loaded once and then served from the cache.
+     */
+    @Test
+    void get_LoadsOnceThenHits() {
+        assertEquals("v1", cache.get(1L, this::load));
+        assertEquals("v1", cache.get(1L, this::load));
+
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Tests that an invalidation inside a transaction only takes effect after commit,
+     * and not at all on rollback.
+     */
+    @Test
+    void invalidateAfterCommit_WaitsForCommit() {
+        cache.get(1L, this::load);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAfterCommit(1L);
+        assertEquals("v1", cache.get(1L, this::load));
+
+        completeTransaction(false);
+        assertEquals("v1", cache.get(1L, this::load));
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAfterCommit(1L);
+        completeTransaction(true);
+        assertEquals("v2", cache.get(1L, this::load));
+    }
+
+    /**
+     * Tests that a value loaded before a commit, and stored after the commit's
+     * invalidation, is not kept.
+     */
+    @Test
+    void get_DoesNotKeepValueLoadedBeforeConcurrentInvalidation() {
+        String loaded = cache.get(1L, key -> {
+            String stale = load(key);
+            // A writer commits while this reader is still loading
+            cache.invalidateAfterCommit(key);
+            return stale;
+        });
+
+        assertEquals("v1", loaded);
+        assertEquals("v2", cache.get(1L, this::load));
+    }
+
+    /**
+     * Tests that a failed load caches nothing.
+     */
+    @Test
+    void get_DoesNotCacheFailedLoad() {
+        assertThrows(IllegalStateException.class, () -> cache.get(1L, key -> {
+            throw new IllegalStateException("not found");
+        }));
+
+        assertEquals("v1", cache.get(1L, this::load));
+    }
+
+    private String load(Long key) {
+        return "v" + loads.incrementAndGet();
+    }
+
+    private static void completeTransaction(boolean committed) {
+        List<TransactionSynchronization> synchronizations =
+                TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (committed) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(committed
+                    ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.lucap.scubakeep.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucap.scubakeep.dto.AvailabilityResponseDTO;
 import com.lucap.scubakeep.dto.DiverRequestDTO;
 import com.lucap.scubakeep.dto.DiverResponseDTO;
 import com.lucap.scubakeep.dto.TokenRequestDTO;
@@ -8,8 +9,12 @@ import com.lucap.scubakeep.dto.TokenResponseDTO;
 import com.lucap.scubakeep.entity.Certification;
 import com.lucap.scubakeep.entity.Role;
 import com.lucap.scubakeep.exception.EmailAlreadyExistsException;
+import com.lucap.scubakeep.exception.InvalidRefreshTokenException;
+import com.lucap.scubakeep.exception.LoginThrottledException;
+import com.lucap.scubakeep.exception.PasswordHashingOverloadedException;
 import com.lucap.scubakeep.exception.UsernameAlreadyExistsException;
 import com.lucap.scubakeep.service.AuthService;
+import com.lucap.scubakeep.service.DiverAvailabilityService;
 import com.lucap.scubakeep.service.DiverService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,7 +29,10 @@ import java.util.Set;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -48,6 +56,9 @@ class AuthControllerTest {
     @MockitoBean
     private AuthService authService;
 
+    @MockitoBean
+    private DiverAvailabilityService diverAvailabilityService;
+
     private DiverRequestDTO diverRequestDTO;
     private DiverResponseDTO diverResponseDTO;
     private TokenRequestDTO tokenRequestDTO;
@@ -163,13 +174,104 @@ class AuthControllerTest {
      */
     @Test
     void token_ShouldReturnTokenResponse() throws Exception {
-        TokenResponseDTO tokenResponse = new TokenResponseDTO("mocked-jwt-token");
-        when(authService.authenticate(any(TokenRequestDTO.class))).thenReturn(tokenResponse);
+        TokenResponseDTO tokenResponse =
+                new TokenResponseDTO("mocked-jwt-token", "mocked-refresh-token");
+        when(authService.authenticate(any(TokenRequestDTO.class), eq("127.0.0.1")))
+                .thenReturn(tokenResponse);
 
         mockMvc.perform(post("/auth/token")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(tokenRequestDTO)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.token").value("mocked-jwt-token"));
+                .andExpect(jsonPath("$.token").value("mocked-jwt-token"))
+                .andExpect(jsonPath("$.refreshToken").value("mocked-refresh-token"));
+    }
+
+    /**
+     * Tests POST /auth/token returns 429 with Retry-After when the account is throttled.
+     */
+    @Test
+    void token_ShouldReturnTooManyRequests_WhenThrottled() throws Exception {
+        when(authService.authenticate(any(TokenRequestDTO.class), any()))
+                .thenThrow(new LoginThrottledException(900));
+
+        mockMvc.perform(post("/auth/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(tokenRequestDTO)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "900"));
+    }
+
+    /**
+     * Tests POST /auth/register returns 503 with Retry-After when password hashing
+     * is saturated.
+     */
+    @Test
+    void register_ShouldReturnServiceUnavailable_WhenHashingIsOverloaded() throws Exception {
+        when(diverService.createDiver(any())).thenThrow(new PasswordHashingOverloadedException());
+
+        mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(diverRequestDTO)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    /**
+     * Tests POST /auth/refresh returns the new token pair.
+     */
+    @Test
+    void refresh_ShouldReturnNewTokens() throws Exception {
+        when(authService.refresh("old-refresh-token"))
+                .thenReturn(new TokenResponseDTO("new-jwt-token", "new-refresh-token"));
+
+        mockMvc.perform(post("/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"old-refresh-token\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("new-jwt-token"))
+                .andExpect(jsonPath("$.refreshToken").value("new-refresh-token"));
+    }
+
+    /**
+     * Tests POST /auth/refresh returns 401 when the refresh token is not valid.
+     */
+    @Test
+    void refresh_ShouldReturnUnauthorized_WhenRefreshTokenIsInvalid() throws Exception {
+        when(authService.refresh("reused-token")).thenThrow(new InvalidRefreshTokenException());
+
+        mockMvc.perform(post("/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"reused-token\"}"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.error").value("Invalid or expired refresh token"));
+    }
+
+    /**
+     * Tests POST /auth/logout revokes the bearer token and the refresh token.
+     */
+    @Test
+    void logout_ShouldRevokeBothTokens() throws Exception {
+        mockMvc.perform(post("/auth/logout")
+                        .header("Authorization", "Bearer access-token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"refresh-token\"}"))
+                .andExpect(status().isNoContent());
+
+        verify(authService).logout("access-token", "refresh-token");
+    }
+
+    /**
+     * Tests GET /auth/availability returns the availability of the given values only.
+     */
+    @Test
+    void availability_ShouldReturnAvailabilityOfGivenValues() throws Exception {
+        when(diverAvailabilityService.checkAvailability("taken", null))
+                .thenReturn(AvailabilityResponseDTO.builder().usernameAvailable(false).build());
+
+        mockMvc.perform(get("/auth/availability").param("username", "taken"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usernameAvailable").value(false))
+                .andExpect(jsonPath("$.emailAvailable").doesNotExist());
     }
 }
@@ -1,23 +1,44 @@
 package com.lucap.scubakeep.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
+import com.lucap.scubakeep.dto.DiveLogImportResultDTO;
 import com.lucap.scubakeep.dto.DiveLogRequestDTO;
+import com.lucap.scubakeep.dto.ImportRowErrorDTO;
 import com.lucap.scubakeep.dto.DiveLogResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
 import com.lucap.scubakeep.exception.DiveLogNotFoundException;
+import com.lucap.scubakeep.exception.InvalidCursorException;
+import com.lucap.scubakeep.exception.InvalidUploadException;
+import com.lucap.scubakeep.exception.UnsupportedImportFormatException;
 import com.lucap.scubakeep.exception.UnauthorizedResourceAccessException;
+import com.lucap.scubakeep.pagination.DiveLogSort;
+import com.lucap.scubakeep.service.DiveLogImportService;
 import com.lucap.scubakeep.service.DiveLogService;
+import com.lucap.scubakeep.storage.ImageVariant;
+import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.ObjectCache;
+import com.lucap.scubakeep.storage.ObjectDownloads;
+import com.lucap.scubakeep.storage.StoredImage;
+import com.lucap.scubakeep.storage.StoredObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
@@ -29,6 +50,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(DiveLogController.class)
+@Import(ObjectDownloads.class)
 @AutoConfigureMockMvc(addFilters = false)
 class DiveLogControllerTest {
 
@@ -41,6 +63,15 @@ class DiveLogControllerTest {
     @MockitoBean
     private DiveLogService diveLogService;
 
+    @MockitoBean
+    private DiveLogImportService diveLogImportService;
+
+    @MockitoBean
+    private MinioStorageService minioStorageService;
+
+    @MockitoBean
+    private ObjectCache objectCache;
+
     private DiveLogResponseDTO responseDTO;
     private DiveLogRequestDTO requestDTO;
     private DiveLogUpdateRequestDTO updateRequestDTO;
@@ -104,6 +135,80 @@ class DiveLogControllerTest {
                 .andExpect(status().isOk());
     }
 
+    /**
+     * Tests GET /api/divelogs maps a whitelisted sort field alias to its property
+     * and appends the id tiebreaker in the same direction.
+     */
+    @Test
+    void getAllDiveLogs_ShouldSortByWhitelistedFieldWithIdTiebreaker() throws Exception {
+        when(diveLogService.getDiveLogs(any(Pageable.class), any())).thenReturn(List.of(responseDTO));
+
+        mockMvc.perform(get("/api/divelogs")
+                        .param("sortBy", "dive_date")
+                        .param("sortDir", "ASC"))
+                .andExpect(status().isOk());
+
+        verify(diveLogService).getDiveLogs(
+                PageRequest.of(0, 20, Sort.by(Sort.Direction.ASC, "diveDate", "id")), null);
+    }
+
+    /**
+     * Tests GET /api/divelogs returns 400 Bad Request for a field that is not sortable,
+     * without reaching the service.
+     */
+    @Test
+    void getAllDiveLogs_ShouldReturnBadRequest_WhenSortFieldIsUnsupported() throws Exception {
+        mockMvc.perform(get("/api/divelogs").param("sortBy", "notes"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value(
+                        "Unsupported sort: field 'notes' (sortable: createdAt, diveDate, maxDepth)"));
+
+        verifyNoInteractions(diveLogService);
+    }
+
+    /**
+     * Tests GET /api/divelogs returns 400 Bad Request for an unknown sort direction.
+     */
+    @Test
+    void getAllDiveLogs_ShouldReturnBadRequest_WhenSortDirectionIsUnsupported() throws Exception {
+        mockMvc.perform(get("/api/divelogs").param("sortDir", "sideways"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(diveLogService);
+    }
+
+    /**
+     * Tests GET /api/divelogs/feed returns the page items and the next cursor.
+     */
+    @Test
+    void getDiveLogFeed_ShouldReturnItemsAndCursor() throws Exception {
+        when(diveLogService.getDiveLogFeed(
+                eq("abc"), eq(10), any(), eq(DiveLogSort.MAX_DEPTH), eq(Sort.Direction.ASC)))
+                .thenReturn(new CursorPageResponseDTO<>(List.of(responseDTO), "next-token"));
+
+        mockMvc.perform(get("/api/divelogs/feed")
+                        .param("cursor", "abc")
+                        .param("size", "10")
+                        .param("sortBy", "maxDepth")
+                        .param("sortDir", "asc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].location").value("Blue Hole"))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"));
+    }
+
+    /**
+     * Tests GET /api/divelogs/feed returns 400 Bad Request for a malformed cursor.
+     */
+    @Test
+    void getDiveLogFeed_ShouldReturnBadRequest_WhenCursorIsInvalid() throws Exception {
+        when(diveLogService.getDiveLogFeed(eq("broken"), anyInt(), any(), any(), any()))
+                .thenThrow(new InvalidCursorException("broken"));
+
+        mockMvc.perform(get("/api/divelogs/feed").param("cursor", "broken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid pagination cursor: broken"));
+    }
+
     /**
      * Tests POST /api/divelogs returns 201 Created.
      */
@@ -117,24 +222,28 @@ class DiveLogControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(requestDTO)))
                 .andExpect(status().isCreated())
-                .andExpect(jsonPath("$.id").value(1L))
+                .andExpect(jsonPath("$.id").value("1"))
                 .andExpect(jsonPath("$.location").value("Blue Hole"));
     }
 
     /**
-     * Tests GET /api/divelogs/{id} returns 200 OK and the correct JSON body.
+     * Tests GET /api/divelogs/{id} returns 200 OK and the correct JSON body, with an id
+     * above 2^53 read from the path and written as an exact JSON string.
      */
     @Test
     void getDiveLogById_ShouldReturnDiveLog() throws Exception {
         // Arrange
-        Long logId = 1L;
-        when(diveLogService.getDiveLogById(logId)).thenReturn(responseDTO);
+        Long logId = 9_007_199_254_740_993L;
+        when(diveLogService.getDiveLogById(logId)).thenReturn(DiveLogResponseDTO.builder()
+                .id(logId)
+                .location("Blue Hole")
+                .build());
 
         // Act & Assert
-        mockMvc.perform(get("/api/divelogs/{id}", logId))
+        mockMvc.perform(get("/api/divelogs/{id}", "9007199254740993"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.id").value(logId))
+                .andExpect(jsonPath("$.id").value("9007199254740993"))
                 .andExpect(jsonPath("$.location").value("Blue Hole"));
     }
 
@@ -231,25 +340,141 @@ class DiveLogControllerTest {
         mockMvc.perform(multipart("/api/divelogs/{id}/image", logId)
                         .file(file))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.id").value(logId))
+                .andExpect(jsonPath("$.id").value(logId.toString()))
                 .andExpect(jsonPath("$.location").value("Blue Hole"));
     }
 
     /**
-     * Tests GET /api/divelogs/{id}/image returns 200 OK and the image bytes.
+     * Tests PUT /api/divelogs/{id}/image passes the raw body with its declared type and
+     * length to the service.
      */
     @Test
-    void getDiveLogImage_ShouldReturnBytes() throws Exception {
+    void streamDiveLogImage_ShouldReturnUpdatedDiveLog() throws Exception {
         // Arrange
         Long logId = 1L;
-        byte[] imageBytes = "fake-image-content".getBytes();
-        when(diveLogService.getDiveLogImageBytes(logId)).thenReturn(imageBytes);
+        when(diveLogService.streamImage(eq(logId), any(), eq(MediaType.IMAGE_PNG_VALUE),
+                eq(18L))).thenReturn(responseDTO);
 
         // Act & Assert
-        mockMvc.perform(get("/api/divelogs/{id}/image", logId))
+        mockMvc.perform(put("/api/divelogs/{id}/image", logId)
+                        .contentType(MediaType.IMAGE_PNG)
+                        .content("fake-image-content".getBytes()))
                 .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(logId.toString()));
+    }
+
+    /**
+     * Tests POST /api/divelogs/{id}/image/upload-url returns the presigned upload URL.
+     */
+    @Test
+    void createImageUpload_ShouldReturnUploadUrl() throws Exception {
+        // Arrange
+        ImageUploadResponseDTO upload = ImageUploadResponseDTO.builder()
+                .uploadUrl("http://minio.example/divelogs/1/a.png?X-Amz-Signature=s")
+                .objectKey("divelogs/1/a.png")
+                .expiresAt(Instant.parse("2025-01-01T00:10:00Z"))
+                .build();
+        when(diveLogService.createImageUpload(eq(1L), any())).thenReturn(upload);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/divelogs/{id}/image/upload-url", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"contentType\":\"image/png\",\"size\":1024}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.objectKey").value("divelogs/1/a.png"))
+                .andExpect(jsonPath("$.uploadUrl").exists());
+    }
+
+    /**
+     * Tests POST /api/divelogs/{id}/image/confirm returns 400 Bad Request when the
+     * uploaded object is rejected.
+     */
+    @Test
+    void confirmImageUpload_ShouldReturnBadRequestWhenRejected() throws Exception {
+        // Arrange
+        when(diveLogService.confirmImageUpload(eq(1L), any()))
+                .thenThrow(new InvalidUploadException("Object was not uploaded"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/divelogs/{id}/image/confirm", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"objectKey\":\"divelogs/1/a.png\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Object was not uploaded"));
+    }
+
+    /**
+     * Tests GET /api/divelogs/{id}/image with a Range header returns 206 Partial Content
+     * with only the requested bytes, read through the object cache.
+     */
+    @Test
+    void getDiveLogImage_ShouldReturnRequestedRange() throws Exception {
+        // Arrange
+        Long logId = 1L;
+        StoredObject image = new StoredObject("divelogs/1/a-full.jpg", 1000,
+                MediaType.IMAGE_JPEG_VALUE, Instant.parse("2026-01-01T10:00:00Z"));
+        when(diveLogService.getDiveLogImage(logId))
+                .thenReturn(new StoredImage("divelogs/1/a.jpg", true));
+        when(objectCache.stat(image.key())).thenReturn(image);
+        doAnswer(invocation -> {
+            invocation.getArgument(3, OutputStream.class).write(new byte[100]);
+            return null;
+        }).when(objectCache).copyRange(eq(image), eq(100L), eq(100L),
+                any(OutputStream.class));
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/api/divelogs/{id}/image", logId)
+                        .header("Range", "bytes=100-199"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPartialContent())
                 .andExpect(content().contentType(MediaType.IMAGE_JPEG_VALUE))
-                .andExpect(content().bytes(imageBytes));
+                .andExpect(header().string("Content-Range", "bytes 100-199/1000"))
+                .andExpect(header().longValue("Content-Length", 100))
+                .andExpect(content().bytes(new byte[100]));
+    }
+
+    /**
+     * Tests GET /api/divelogs/{id}/image returns 304 Not Modified for a current ETag,
+     * without reading the object store.
+     */
+    @Test
+    void getDiveLogImage_ShouldReturnNotModified_WhenETagMatches() throws Exception {
+        // Arrange
+        Long logId = 1L;
+        String key = "divelogs/1/a.jpg";
+        when(diveLogService.getDiveLogImage(logId)).thenReturn(new StoredImage(key, true));
+        String variantKey = ImageVariant.FULL.keyOf(key);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/divelogs/{id}/image", logId)
+                        .header("If-None-Match", "\"" + ObjectDownloads.version(variantKey) + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Cache-Control", "no-cache, public"));
+        verifyNoInteractions(minioStorageService);
+    }
+
+    /**
+     * Tests GET /api/divelogs/{id}/image returns 404 Not Found with a Retry-After
+     * header, and without reading the object store, while the variants do not exist.
+     */
+    @Test
+    void getDiveLogImage_ShouldReturnNotFound_UntilVariantsExist() throws Exception {
+        // Arrange
+        Long logId = 1L;
+        when(diveLogService.getDiveLogImage(logId))
+                .thenReturn(new StoredImage("divelogs/1/a.jpg", false));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/divelogs/{id}/image", logId))
+                .andExpect(status().isNotFound())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(jsonPath("$.error").exists());
+        verifyNoInteractions(minioStorageService, objectCache);
     }
 
     /**
@@ -259,10 +484,47 @@ class DiveLogControllerTest {
     void getDiveLogImage_ShouldReturnNotFoundWhenNull() throws Exception {
         // Arrange
         Long logId = 1L;
-        when(diveLogService.getDiveLogImageBytes(logId)).thenReturn(null);
+        when(diveLogService.getDiveLogImage(logId)).thenReturn(null);
 
         // Act & Assert
         mockMvc.perform(get("/api/divelogs/{id}/image", logId))
                 .andExpect(status().isNotFound());
     }
+
+    /**
+     * Tests POST /api/divelogs/import returns the import summary with per-row errors.
+     */
+    @Test
+    void importDiveLogs_ShouldReturnSummary() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "dives.csv", "text/csv", "diveDate\n".getBytes());
+        when(diveLogImportService.importDiveLogs(any(), eq(null)))
+                .thenReturn(DiveLogImportResultDTO.builder()
+                        .totalRows(3)
+                        .imported(2)
+                        .rejected(1)
+                        .errors(List.of(new ImportRowErrorDTO(2, "Location is required")))
+                        .build());
+
+        mockMvc.perform(multipart("/api/divelogs/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value("Location is required"));
+    }
+
+    /**
+     * Tests POST /api/divelogs/import returns 400 for an unsupported file format.
+     */
+    @Test
+    void importDiveLogs_ShouldReturn400_WhenFormatIsUnsupported() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "dives.xlsx", null, new byte[0]);
+        when(diveLogImportService.importDiveLogs(any(), eq(null)))
+                .thenThrow(new UnsupportedImportFormatException("xlsx"));
+
+        mockMvc.perform(multipart("/api/divelogs/import").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unsupported import format: xlsx"));
+    }
 }
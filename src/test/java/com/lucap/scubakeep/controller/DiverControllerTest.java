@@ -1,33 +1,52 @@
 package com.lucap.scubakeep.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
+import com.lucap.scubakeep.dto.DiverFilterDTO;
 import com.lucap.scubakeep.dto.DiverResponseDTO;
 import com.lucap.scubakeep.dto.DiverUpdateRequestDTO;
 import com.lucap.scubakeep.entity.Certification;
 import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.exception.UploadTooLargeException;
 import com.lucap.scubakeep.service.DiverService;
+import com.lucap.scubakeep.storage.ImageVariant;
+import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.ObjectCache;
+import com.lucap.scubakeep.storage.ObjectDownloads;
+import com.lucap.scubakeep.storage.StoredImage;
+import com.lucap.scubakeep.storage.StoredObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean; // New Import
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.unit.DataSize;
 
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(DiverController.class)
+@Import(ObjectDownloads.class)
 @AutoConfigureMockMvc(addFilters = false)
 class DiverControllerTest {
 
@@ -40,6 +59,12 @@ class DiverControllerTest {
     @MockitoBean // Replaces @MockBean
     private DiverService diverService;
 
+    @MockitoBean
+    private MinioStorageService minioStorageService;
+
+    @MockitoBean
+    private ObjectCache objectCache;
+
     private DiverResponseDTO responseDTO;
     private DiverUpdateRequestDTO updateDTO;
     private UUID diverId;
@@ -63,17 +88,55 @@ class DiverControllerTest {
     }
 
     /**
-     * Tests GET /api/divers returns 200 OK and a list of divers.
+     * Tests GET /api/divers returns 200 OK and a directory page with its next cursor.
      */
     @Test
-    void getAllDivers_ShouldReturnList() throws Exception {
-        when(diverService.getAllDivers()).thenReturn(List.of(responseDTO));
+    void getDivers_ShouldReturnPage() throws Exception {
+        when(diverService.getDivers(any(DiverFilterDTO.class), eq(null), eq(50)))
+                .thenReturn(new CursorPageResponseDTO<>(List.of(responseDTO), "next"));
 
         mockMvc.perform(get("/api/divers"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$[0].username").value("scubadiver"))
-                .andExpect(jsonPath("$[0].id").value(diverId.toString()));
+                .andExpect(jsonPath("$.items[0].username").value("scubadiver"))
+                .andExpect(jsonPath("$.items[0].id").value(diverId.toString()))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    /**
+     * Tests GET /api/divers binds the filter query parameters.
+     */
+    @Test
+    void getDivers_ShouldBindFilters() throws Exception {
+        when(diverService.getDivers(any(DiverFilterDTO.class), eq("abc"), eq(10)))
+                .thenReturn(new CursorPageResponseDTO<>(List.of(), null));
+
+        mockMvc.perform(get("/api/divers")
+                        .param("countryCode", "IT")
+                        .param("certification", "ADVANCED")
+                        .param("role", "ADMIN")
+                        .param("q", "sc")
+                        .param("cursor", "abc")
+                        .param("size", "10"))
+                .andExpect(status().isOk());
+
+        verify(diverService).getDivers(argThat(filter ->
+                "IT".equals(filter.getCountryCode())
+                        && filter.getCertification() == Certification.ADVANCED
+                        && filter.getRole() == Role.ADMIN
+                        && "sc".equals(filter.getQ())), eq("abc"), eq(10));
+    }
+
+    /**
+     * Tests POST /api/divers/dive-counts/reconcile returns the number of corrected divers.
+     */
+    @Test
+    void reconcileTotalDives_ShouldReturnCorrectedCount() throws Exception {
+        when(diverService.reconcileTotalDives()).thenReturn(2);
+
+        mockMvc.perform(post("/api/divers/dive-counts/reconcile"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.correctedDivers").value(2));
     }
 
     /**
@@ -138,18 +201,55 @@ class DiverControllerTest {
     }
 
     /**
-     * Tests GET /api/divers/{id}/image returns 200 OK and byte content.
+     * Tests PUT /api/divers/{id}/image returns 413 Payload Too Large when the streamed
+     * picture exceeds the size limit.
      */
     @Test
-    void getProfilePicture_ShouldReturnBytes() throws Exception {
+    void streamProfilePicture_ShouldReturnPayloadTooLarge() throws Exception {
         // Arrange
-        byte[] imageBytes = "fake-image-bytes".getBytes();
-        when(diverService.getProfilePictureBytes(diverId)).thenReturn(imageBytes);
+        when(diverService.streamProfilePicture(eq(diverId), any(), any(), anyLong()))
+                .thenThrow(new UploadTooLargeException(DataSize.ofMegabytes(10)));
 
         // Act & Assert
-        mockMvc.perform(get("/api/divers/{id}/image", diverId))
+        mockMvc.perform(put("/api/divers/{id}/image", diverId)
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .content(new byte[64]))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.error").value("Upload exceeds the maximum size of 10 MB"));
+    }
+
+    /**
+     * Tests GET /api/divers/{id}/image streams the full-size variant of the picture,
+     * with its stored content type, instead of the original upload.
+     */
+    @Test
+    void getProfilePicture_ShouldStreamImage() throws Exception {
+        // Arrange
+        byte[] imageBytes = "fake-image-bytes".getBytes();
+        String original = "profiles/1/a.png";
+        StoredObject image = new StoredObject(ImageVariant.FULL.keyOf(original),
+                imageBytes.length, MediaType.IMAGE_JPEG_VALUE,
+                Instant.parse("2026-01-01T10:00:00Z"));
+        when(diverService.getProfilePicture(diverId)).thenReturn(new StoredImage(original, true));
+        when(objectCache.stat(image.key())).thenReturn(image);
+        doAnswer(invocation -> {
+            invocation.getArgument(3, OutputStream.class).write(imageBytes);
+            return null;
+        }).when(objectCache).copyRange(eq(image), eq(0L),
+                eq((long) imageBytes.length), any(OutputStream.class));
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/api/divers/{id}/image", diverId)
+                        .param("v", ObjectDownloads.version(original)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.IMAGE_JPEG_VALUE))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
                 .andExpect(content().bytes(imageBytes));
     }
 
@@ -159,7 +259,7 @@ class DiverControllerTest {
     @Test
     void getProfilePicture_ShouldReturnNotFound_WhenNoImage() throws Exception {
         // Arrange
-        when(diverService.getProfilePictureBytes(diverId)).thenReturn(null);
+        when(diverService.getProfilePicture(diverId)).thenReturn(null);
 
         // Act & Assert
         mockMvc.perform(get("/api/divers/{id}/image", diverId))
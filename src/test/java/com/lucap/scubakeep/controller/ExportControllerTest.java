@@ -0,0 +1,100 @@
+package com.lucap.scubakeep.controller;
+
+import com.lucap.scubakeep.dto.DiverFilterDTO;
+import com.lucap.scubakeep.exception.UnauthorizedResourceAccessException;
+import com.lucap.scubakeep.export.ExportFormat;
+import com.lucap.scubakeep.service.ExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ExportController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ExportService exportService;
+
+    /**
+     * Tests GET /api/export/divelogs streams the body as a CSV attachment.
+     */
+    @Test
+    void exportDiveLogs_ShouldStreamCsvAttachment() throws Exception {
+        UUID diverId = UUID.randomUUID();
+        when(exportService.exportDiveLogs(ExportFormat.CSV, diverId))
+                .thenReturn(out -> out.write("id\n1\n".getBytes(StandardCharsets.UTF_8)));
+
+        MvcResult result = mockMvc.perform(get("/api/export/divelogs")
+                        .param("format", "csv")
+                        .param("diverId", diverId.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        containsString("divelogs.csv")))
+                .andExpect(content().string("id\n1\n"));
+    }
+
+    /**
+     * Tests GET /api/export/divers defaults to NDJSON.
+     */
+    @Test
+    void exportDivers_ShouldDefaultToNdjson() throws Exception {
+        when(exportService.exportDivers(eq(ExportFormat.NDJSON), any(DiverFilterDTO.class)))
+                .thenReturn(out -> out.write("{}\n".getBytes(StandardCharsets.UTF_8)));
+
+        MvcResult result = mockMvc.perform(get("/api/export/divers").param("role", "USER"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string("{}\n"));
+    }
+
+    /**
+     * Tests that an unknown format is rejected with 400 Bad Request.
+     */
+    @Test
+    void exportDiveLogs_ShouldReturn400_WhenFormatIsUnknown() throws Exception {
+        mockMvc.perform(get("/api/export/divelogs").param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unsupported export format: xml"));
+
+        verifyNoInteractions(exportService);
+    }
+
+    /**
+     * Tests that authorization failures surface before streaming starts.
+     */
+    @Test
+    void exportDivers_ShouldReturn403_WhenNotAdmin() throws Exception {
+        when(exportService.exportDivers(any(), any()))
+                .thenThrow(new UnauthorizedResourceAccessException());
+
+        mockMvc.perform(get("/api/export/divers"))
+                .andExpect(status().isForbidden());
+    }
+}
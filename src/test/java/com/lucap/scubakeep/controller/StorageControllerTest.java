@@ -0,0 +1,60 @@
+package com.lucap.scubakeep.controller;
+
+import com.lucap.scubakeep.dto.StorageReconciliationReportDTO;
+import com.lucap.scubakeep.service.StorageReconciliationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(StorageController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class StorageControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private StorageReconciliationService storageReconciliationService;
+
+    /**
+     * Tests POST /api/admin/storage/reconcile is a dry run unless requested otherwise.
+     */
+    @Test
+    void reconcile_ShouldDefaultToDryRun() throws Exception {
+        when(storageReconciliationService.reconcile(true)).thenReturn(
+                StorageReconciliationReportDTO.builder()
+                        .dryRun(true)
+                        .scanned(3)
+                        .orphaned(1)
+                        .orphans(List.of("divelogs/1/old.png"))
+                        .build());
+
+        mockMvc.perform(post("/api/admin/storage/reconcile"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.dryRun").value(true))
+                .andExpect(jsonPath("$.orphans[0]").value("divelogs/1/old.png"));
+        verify(storageReconciliationService).reconcile(true);
+    }
+
+    /**
+     * Tests POST /api/admin/storage/reconcile?dryRun=false deletes the orphans.
+     */
+    @Test
+    void reconcile_ShouldDeleteWhenNotDryRun() throws Exception {
+        when(storageReconciliationService.reconcile(false)).thenReturn(
+                StorageReconciliationReportDTO.builder().deleted(1).build());
+
+        mockMvc.perform(post("/api/admin/storage/reconcile").param("dryRun", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(1));
+    }
+}
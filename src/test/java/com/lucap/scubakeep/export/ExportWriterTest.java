@@ -0,0 +1,72 @@
+package com.lucap.scubakeep.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportWriterTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private record Row(String name, Set<String> tags) {
+    }
+
+    private static final List<CsvColumn<Row>> COLUMNS = List.of(
+            new CsvColumn<>("name", Row::name),
+            new CsvColumn<>("tags", Row::tags)
+    );
+
+    /**
+     * Tests that CSV output has a header row, escapes special characters
+     * and joins collections.
+     */
+    @Test
+    void csv_ShouldWriteHeaderAndEscapeCells() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ExportWriter<Row> writer = ExportWriter.open(ExportFormat.CSV, out, objectMapper, COLUMNS);
+        writer.write(new Row("Reef, \"North\"", Set.of("b", "a")));
+        writer.write(new Row(null, Set.of()));
+        writer.flush();
+
+        assertEquals("name,tags\n\"Reef, \"\"North\"\"\",a;b\n,\n",
+                out.toString(StandardCharsets.UTF_8));
+        assertEquals(2, writer.getRowCount());
+    }
+
+    /**
+     * Tests that NDJSON output writes one JSON object per line and no header.
+     */
+    @Test
+    void ndjson_ShouldWriteOneObjectPerLine() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ExportWriter<Row> writer = ExportWriter.open(ExportFormat.NDJSON, out, objectMapper, COLUMNS);
+        writer.write(new Row("first", Set.of()));
+        writer.write(new Row("second", Set.of()));
+        writer.flush();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"name\":\"first\""));
+        assertTrue(lines[1].contains("\"name\":\"second\""));
+    }
+
+    /**
+     * Tests that formats are resolved case-insensitively.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"csv", "CSV", " Csv "})
+    void fromParam_ShouldIgnoreCase(String value) {
+        assertEquals(ExportFormat.CSV, ExportFormat.fromParam(value));
+    }
+}
@@ -0,0 +1,81 @@
+package com.lucap.scubakeep.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test suite for the {@link Tsid} and {@link UuidV7} id generators.
+ */
+class TsidTest {
+
+    /**
+     * Tests that ids drawn in a tight loop are positive and strictly increasing,
+     * even when far more than 4096 ids fall into the same millisecond.
+     */
+    @Test
+    void next_IsStrictlyIncreasing() {
+        long previous = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long id = Tsid.next();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    /**
+     * Tests that concurrent callers never receive the same id.
+     */
+    @Test
+    void next_IsUniqueAcrossThreads() {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 8).parallel().forEach(t ->
+                LongStream.range(0, 50_000).forEach(i -> ids.add(Tsid.next())));
+
+        assertEquals(400_000, ids.size());
+    }
+
+    /**
+     * Tests that the timestamp encoded in an id is the generation time.
+     */
+    @Test
+    void timestamp_ReturnsGenerationTime() {
+        Instant before = Instant.now().minusMillis(1);
+
+        Instant timestamp = Tsid.timestamp(Tsid.next());
+
+        assertFalse(timestamp.isBefore(before));
+        assertTrue(Duration.between(timestamp, Instant.now()).toSeconds() < 5);
+    }
+
+    /**
+     * Tests that UUIDs carry version 7 / RFC variant bits and that their 16-byte
+     * form sorts in generation order.
+     */
+    @Test
+    void uuidV7_IsVersion7AndOrderedAsBytes() {
+        List<byte[]> generated = IntStream.range(0, 10_000)
+                .mapToObj(i -> UuidV7.next())
+                .peek(uuid -> {
+                    assertEquals(7, uuid.version());
+                    assertEquals(2, uuid.variant());
+                })
+                .map(UuidV7::toBytes)
+                .toList();
+
+        for (int i = 1; i < generated.size(); i++) {
+            assertTrue(Arrays.compareUnsigned(generated.get(i - 1), generated.get(i)) < 0);
+        }
+        assertFalse(UuidV7.timestamp(UuidV7.next()).isAfter(Instant.now()));
+    }
+}
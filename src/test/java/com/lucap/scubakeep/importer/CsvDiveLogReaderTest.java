@@ -0,0 +1,71 @@
+package com.lucap.scubakeep.importer;
+
+import com.lucap.scubakeep.exception.InvalidImportFileException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvDiveLogReaderTest {
+
+    /**
+     * Tests that rows are mapped by header name, including quoted cells with
+     * separators, escaped quotes and line breaks, and that unknown columns are ignored.
+     */
+    @Test
+    void next_ShouldParseRowsByHeaderName() {
+        String csv = """
+                id,notes,diveDate,location,diveSite,maxDepth,duration,diveBuddy
+                1,"Saw a ""huge"" turtle,
+                then a shark",2023-08-15,Red Sea,Thistlegorm,30.5,45,John
+                2,,2023-08-16,Red Sea,"Shark, Yolanda",25,50,
+                """;
+
+        try (DiveLogRecordReader reader = open(csv)) {
+            ImportRecord first = reader.next();
+            ImportRecord second = reader.next();
+
+            assertEquals(1, first.rowNumber());
+            assertEquals(LocalDate.of(2023, 8, 15), first.dive().getDiveDate());
+            assertEquals("Saw a \"huge\" turtle,\nthen a shark", first.dive().getNotes());
+            assertEquals(30.5, first.dive().getMaxDepth());
+            assertEquals("John", first.dive().getDiveBuddy());
+            assertEquals("Shark, Yolanda", second.dive().getDiveSite());
+            assertNull(second.dive().getDiveBuddy());
+            assertNull(reader.next());
+        }
+    }
+
+    /**
+     * Tests that a malformed value fails only its own row.
+     */
+    @Test
+    void next_ShouldReportParseErrorPerRow() {
+        String csv = "diveDate,location,diveSite,maxDepth,duration\r\n"
+                + "15/08/2023,Red Sea,Reef,30,45\r\n"
+                + "2023-08-16,Red Sea,Reef,deep,45\r\n"
+                + "2023-08-17,Red Sea,Reef,20,40\r\n";
+
+        try (DiveLogRecordReader reader = open(csv)) {
+            assertTrue(reader.next().error().startsWith("diveDate"));
+            assertTrue(reader.next().error().startsWith("maxDepth"));
+            assertNotNull(reader.next().dive());
+        }
+    }
+
+    /**
+     * Tests that a file without the required columns is rejected as a whole.
+     */
+    @Test
+    void open_ShouldThrow_WhenRequiredColumnsAreMissing() {
+        assertThrows(InvalidImportFileException.class, () -> open("diveDate,location\n"));
+    }
+
+    private static DiveLogRecordReader open(String content) {
+        return DiveLogImportFormat.CSV.open(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,113 @@
+package com.lucap.scubakeep.importer;
+
+import com.lucap.scubakeep.exception.InvalidImportFileException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UddfDiveLogReaderTest {
+
+    private static final String UDDF = """
+            <?xml version="1.0" encoding="utf-8"?>
+            <uddf version="3.2.0">
+              <diver>
+                <owner id="me"><personal><firstname>Luca</firstname></personal></owner>
+                <buddy id="b1">
+                  <personal><firstname>John</firstname><lastname>Doe</lastname></personal>
+                </buddy>
+              </diver>
+              <divesite>
+                <site id="s1">
+                  <name>Thistlegorm</name>
+                  <geography><location>Red Sea, Egypt</location></geography>
+                </site>
+                <site id="s2"><name>House Reef</name></site>
+              </divesite>
+              <profiledata>
+                <repetitiongroup id="rg1">
+                  <dive id="d1">
+                    <informationbeforedive>
+                      <link ref="s1"/><link ref="b1"/>
+                      <datetime>2023-08-15T10:30:00</datetime>
+                    </informationbeforedive>
+                    <informationafterdive>
+                      <greatestdepth>30.5</greatestdepth>
+                      <diveduration>2610</diveduration>
+                      <notes><para>Amazing wreck dive!</para></notes>
+                    </informationafterdive>
+                  </dive>
+                  <dive id="d2">
+                    <informationbeforedive>
+                      <link ref="s2"/>
+                      <datetime>2023-08-16T09:00:00</datetime>
+                    </informationbeforedive>
+                    <informationafterdive>
+                      <greatestdepth>abc</greatestdepth>
+                      <diveduration>3000</diveduration>
+                    </informationafterdive>
+                  </dive>
+                </repetitiongroup>
+              </profiledata>
+            </uddf>
+            """;
+
+    /**
+     * Tests that dives are mapped with their linked site and buddy, and that
+     * durations in seconds are rounded up to minutes.
+     */
+    @Test
+    void next_ShouldMapDivesWithLinks() {
+        try (DiveLogRecordReader reader = open(UDDF)) {
+            ImportRecord first = reader.next();
+
+            assertEquals(1, first.rowNumber());
+            assertEquals(LocalDate.of(2023, 8, 15), first.dive().getDiveDate());
+            assertEquals("Thistlegorm", first.dive().getDiveSite());
+            assertEquals("Red Sea, Egypt", first.dive().getLocation());
+            assertEquals("John Doe", first.dive().getDiveBuddy());
+            assertEquals(30.5, first.dive().getMaxDepth());
+            assertEquals(44, first.dive().getDuration());
+            assertEquals("Amazing wreck dive!", first.dive().getNotes());
+        }
+    }
+
+    /**
+     * Tests that a malformed value fails only its own dive and the reader ends cleanly.
+     */
+    @Test
+    void next_ShouldReportParseErrorPerDive() {
+        try (DiveLogRecordReader reader = open(UDDF)) {
+            reader.next();
+            ImportRecord second = reader.next();
+
+            assertEquals(2, second.rowNumber());
+            assertTrue(second.error().startsWith("greatestdepth"));
+            assertNull(reader.next());
+        }
+    }
+
+    /**
+     * Tests that documents declaring a DTD are rejected (no entity expansion).
+     */
+    @Test
+    void next_ShouldRejectDoctype() {
+        String xml = """
+                <?xml version="1.0"?>
+                <!DOCTYPE uddf [<!ENTITY x SYSTEM "file:///etc/passwd">]>
+                <uddf><profiledata><dive><notes><para>&x;</para></notes></dive></profiledata></uddf>
+                """;
+
+        try (DiveLogRecordReader reader = open(xml)) {
+            assertThrows(InvalidImportFileException.class, reader::next);
+        }
+    }
+
+    private static DiveLogRecordReader open(String content) {
+        return DiveLogImportFormat.UDDF.open(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.lucap.scubakeep.pagination;
+
+import com.lucap.scubakeep.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiveLogCursorTest {
+
+    /**
+     * Tests that a cursor survives an encode/decode round trip with nanosecond precision.
+     */
+    @Test
+    void encodeDecode_ShouldRoundTrip() {
+        DiveLogCursor cursor = new DiveLogCursor(DiveLogSort.CREATED_AT, Sort.Direction.DESC,
+                Instant.parse("2024-05-01T10:15:30.123456Z"), 42L);
+
+        DiveLogCursor decoded = DiveLogCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    /**
+     * Tests that cursors of the other sort fields keep their typed sort key.
+     */
+    @Test
+    void encodeDecode_ShouldRoundTripEverySortField() {
+        DiveLogCursor byDate = new DiveLogCursor(DiveLogSort.DIVE_DATE, Sort.Direction.ASC,
+                LocalDate.of(2024, 2, 29), 7L);
+        DiveLogCursor byDepth = new DiveLogCursor(DiveLogSort.MAX_DEPTH, Sort.Direction.DESC,
+                32.5, 8L);
+
+        assertEquals(byDate, DiveLogCursor.decode(byDate.encode()));
+        assertEquals(byDepth, DiveLogCursor.decode(byDepth.encode()));
+    }
+
+    /**
+     * Tests that version 1 tokens, issued before sorting was configurable,
+     * still continue the newest-first feed.
+     */
+    @Test
+    void decode_ShouldAcceptVersion1Token() {
+        String token = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("v1:1714558530:123456000:42".getBytes(StandardCharsets.UTF_8));
+
+        DiveLogCursor decoded = DiveLogCursor.decode(token);
+
+        assertEquals(new DiveLogCursor(DiveLogSort.CREATED_AT, Sort.Direction.DESC,
+                Instant.parse("2024-05-01T10:15:30.123456Z"), 42L), decoded);
+    }
+
+    /**
+     * Tests that the encoded token is URL-safe (no padding or reserved characters).
+     */
+    @Test
+    void encode_ShouldProduceUrlSafeToken() {
+        String token = new DiveLogCursor(DiveLogSort.CREATED_AT, Sort.Direction.DESC,
+                Instant.now(), Long.MAX_VALUE).encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    }
+
+    /**
+     * Tests that malformed or tampered tokens are rejected.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"not base64!", "djE6YWJj", "", "djI6MTow0jE",
+        "djI6REVQVEg6REVTQzoxOjE", "djI6TUFYX0RFUFRIOkRFU0M6MTphYmM"})
+    void decode_ShouldThrow_WhenTokenIsMalformed(String token) {
+        assertThrows(InvalidCursorException.class, () -> DiveLogCursor.decode(token));
+    }
+
+    /**
+     * Tests that a token with an unknown version prefix is rejected.
+     */
+    @Test
+    void decode_ShouldThrow_WhenVersionIsUnknown() {
+        String token = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("v9:1:0:1".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(InvalidCursorException.class, () -> DiveLogCursor.decode(token));
+    }
+}
@@ -0,0 +1,30 @@
+package com.lucap.scubakeep.pagination;
+
+import com.lucap.scubakeep.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiverCursorTest {
+
+    /**
+     * Tests that a cursor survives an encode/decode round trip, separators included.
+     */
+    @Test
+    void encodeDecode_ShouldRoundTrip() {
+        DiverCursor cursor = new DiverCursor("deep:diver_01");
+
+        assertEquals(cursor, DiverCursor.decode(cursor.encode()));
+    }
+
+    /**
+     * Tests that malformed, empty or unknown-version tokens are rejected.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"not base64!", "", "djE6", "djk6bWFyaW8"})
+    void decode_ShouldThrow_WhenTokenIsMalformed(String token) {
+        assertThrows(InvalidCursorException.class, () -> DiverCursor.decode(token));
+    }
+}
@@ -0,0 +1,212 @@
+package com.lucap.scubakeep.repository;
+
+import com.lucap.scubakeep.dto.DiveLogResponseDTO;
+import com.lucap.scubakeep.entity.Certification;
+import com.lucap.scubakeep.entity.DiveLog;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.mapper.DiveLogMapper;
+import com.lucap.scubakeep.pagination.DiveLogCursor;
+import com.lucap.scubakeep.pagination.DiveLogSort;
+import com.lucap.scubakeep.projection.DiveLogView;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Query-count tests for the projection-based read paths of {@link DiveLogRepository}.
+ * <p>
+ * Runs against an embedded database with Hibernate statistics enabled and verifies
+ * that building response DTOs for a full page never triggers lazy diver loads.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class DiveLogRepositoryTest {
+
+    private static final int DIVERS = 10;
+    private static final int DIVE_LOGS = 100;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DiveLogRepository diveLogRepository;
+
+    private Statistics statistics;
+    private List<Diver> divers;
+
+    @BeforeEach
+    void setUp() {
+        divers = new ArrayList<>();
+        for (int i = 0; i < DIVERS; i++) {
+            divers.add(entityManager.persist(diver(i)));
+        }
+        for (int i = 0; i < DIVE_LOGS; i++) {
+            entityManager.persist(diveLog(divers.get(i % DIVERS), i));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager()
+                .getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+    }
+
+    /**
+     * Tests that a full 100-row page, including its total count, costs exactly two statements.
+     */
+    @Test
+    void findViews_FullPageCostsOneSelectPlusCount() {
+        Page<DiveLogView> page = diveLogRepository.findViews(
+                PageRequest.of(0, DIVE_LOGS, Sort.by("createdAt").descending()));
+        List<DiveLogResponseDTO> dtos = page.map(DiveLogMapper::toResponseDTO).getContent();
+
+        assertEquals(DIVE_LOGS, dtos.size());
+        assertEquals(DIVE_LOGS, page.getTotalElements());
+        assertTrue(dtos.stream().allMatch(dto -> dto.getDiverUsername() != null));
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Tests that the per-diver page is also served without lazy loads.
+     */
+    @Test
+    void findViewsByDiverId_CostsOneSelectPlusCount() {
+        Diver owner = divers.get(0);
+
+        Page<DiveLogView> page = diveLogRepository.findViewsByDiverId(
+                owner.getId(), PageRequest.of(0, 5));
+        List<DiveLogResponseDTO> dtos = page.map(DiveLogMapper::toResponseDTO).getContent();
+
+        assertEquals(5, dtos.size());
+        assertTrue(dtos.stream().allMatch(dto -> owner.getUsername().equals(dto.getDiverUsername())));
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Tests that a 100-row keyset feed page costs exactly one statement.
+     */
+    @Test
+    void findFeedPage_FullPageCostsOneSelect() {
+        List<DiveLogResponseDTO> dtos = diveLogRepository
+                .findFeedPage(DiveLogSort.CREATED_AT, Sort.Direction.DESC, null, null, DIVE_LOGS)
+                .stream()
+                .map(DiveLogMapper::toResponseDTO)
+                .toList();
+
+        assertEquals(DIVE_LOGS, dtos.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Tests that walking the keyset pages of a sort with equal keys (every dive is 18 m)
+     * visits each dive log exactly once, in id order, thanks to the id tiebreaker.
+     */
+    @Test
+    void findFeedPage_WalksEqualKeysByIdTiebreaker() {
+        List<Long> visited = new ArrayList<>();
+        DiveLogCursor after = null;
+        List<DiveLogView> page;
+        do {
+            page = diveLogRepository.findFeedPage(
+                    DiveLogSort.MAX_DEPTH, Sort.Direction.ASC, null, after, 7);
+            page.forEach(view -> visited.add(view.id()));
+            after = page.isEmpty() ? null : DiveLogCursor.after(
+                    page.get(page.size() - 1), DiveLogSort.MAX_DEPTH, Sort.Direction.ASC);
+        } while (!page.isEmpty());
+
+        assertEquals(DIVE_LOGS, visited.size());
+        assertEquals(visited.stream().sorted().toList(), visited);
+    }
+
+    /**
+     * Tests that the seek predicate on a diver's dive dates continues strictly after the cursor.
+     */
+    @Test
+    void findFeedPage_ByDiverContinuesAfterCursor() {
+        Diver owner = divers.get(0);
+        List<DiveLogView> first = diveLogRepository.findFeedPage(
+                DiveLogSort.DIVE_DATE, Sort.Direction.DESC, owner.getId(), null, 5);
+        DiveLogCursor after = DiveLogCursor.after(
+                first.get(4), DiveLogSort.DIVE_DATE, Sort.Direction.DESC);
+
+        List<DiveLogView> second = diveLogRepository.findFeedPage(
+                DiveLogSort.DIVE_DATE, Sort.Direction.DESC, owner.getId(), after, 5);
+
+        assertEquals(5, second.size());
+        assertTrue(second.stream().allMatch(view -> owner.getId().equals(view.diverId())));
+        assertTrue(second.get(0).diveDate().isBefore(first.get(4).diveDate()));
+    }
+
+    /**
+     * Tests that the detail read is a single statement carrying the owner's username.
+     */
+    @Test
+    void findViewById_CostsOneSelect() {
+        Long id = diveLogRepository
+                .findFeedPage(DiveLogSort.CREATED_AT, Sort.Direction.DESC, null, null, 1)
+                .get(0).id();
+        statistics.clear();
+
+        DiveLogView view = diveLogRepository.findViewById(id).orElseThrow();
+
+        assertNotNull(view.diverUsername());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Tests that the export stream yields every row from a single statement
+     * without attaching entities to the persistence context.
+     */
+    @Test
+    void streamViews_ReadsAllRowsWithOneSelect() {
+        try (Stream<DiveLogView> rows = diveLogRepository.streamViews()) {
+            assertEquals(DIVE_LOGS, rows.count());
+        }
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    private static Diver diver(int index) {
+        return Diver.builder()
+                .username("diver" + index)
+                .email("diver" + index + "@scubakeep.com")
+                .password("hash")
+                .firstName("Diver")
+                .lastName("Number" + index)
+                .countryCode("IT")
+                .role(Role.USER)
+                .highestCertification(Certification.OPEN_WATER)
+                .build();
+    }
+
+    private static DiveLog diveLog(Diver diver, int index) {
+        return DiveLog.builder()
+                .diveDate(LocalDate.of(2024, 1, 1).plusDays(index))
+                .location("Red Sea")
+                .diveSite("Site " + index)
+                .maxDepth(18.0)
+                .duration(45)
+                .diver(diver)
+                .build();
+    }
+}
@@ -0,0 +1,220 @@
+package com.lucap.scubakeep.repository;
+
+import com.lucap.scubakeep.dto.DiverResponseDTO;
+import com.lucap.scubakeep.entity.Certification;
+import com.lucap.scubakeep.entity.DiveLog;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.mapper.DiverMapper;
+import com.lucap.scubakeep.projection.DiverCredentials;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the atomic dive counter statements, the directory query and the
+ * credentials lookup of {@link DiverRepository}.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class DiverRepositoryTest {
+
+    private static final int DIRECTORY_PAGE = 200;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DiverRepository diverRepository;
+
+    private Diver diver;
+
+    @BeforeEach
+    void setUp() {
+        diver = entityManager.persistFlushFind(Diver.builder()
+                .username("counter")
+                .email("counter@scubakeep.com")
+                .password("hash")
+                .firstName("Count")
+                .lastName("Er")
+                .countryCode("IT")
+                .role(Role.USER)
+                .highestCertification(Certification.OPEN_WATER)
+                .build());
+    }
+
+    /**
+     * Tests that increments and decrements are applied in the database.
+     */
+    @Test
+    void incrementAndDecrement_UpdateCounter() {
+        diverRepository.incrementTotalDives(diver.getId(), 3L);
+        diverRepository.decrementTotalDives(diver.getId());
+
+        assertEquals(2L, reload().getTotalDives());
+    }
+
+    /**
+     * Tests that the counter never goes below zero.
+     */
+    @Test
+    void decrement_DoesNotGoBelowZero() {
+        int updated = diverRepository.decrementTotalDives(diver.getId());
+
+        assertEquals(0, updated);
+        assertEquals(0L, reload().getTotalDives());
+    }
+
+    /**
+     * Tests that flushing a stale managed diver does not overwrite the counter.
+     */
+    @Test
+    void entityFlush_DoesNotOverwriteCounter() {
+        Diver managed = diverRepository.findById(diver.getId()).orElseThrow();
+        diverRepository.incrementTotalDives(diver.getId(), 1L);
+
+        managed.setFirstName("Changed");
+        entityManager.flush();
+
+        assertEquals(1L, reload().getTotalDives());
+    }
+
+    /**
+     * Tests that reconciliation only touches drifted rows and restores the actual count.
+     */
+    @Test
+    void reconcileTotalDives_FixesDrift() {
+        entityManager.persist(diveLog());
+        entityManager.persist(diveLog());
+        diverRepository.incrementTotalDives(diver.getId(), 5L);
+
+        assertEquals(1, diverRepository.reconcileTotalDives());
+        assertEquals(2L, reload().getTotalDives());
+        assertEquals(0, diverRepository.reconcileTotalDives());
+    }
+
+    /**
+     * Tests that mapping a full 200-diver directory page, specialties included,
+     * costs one SELECT for the divers plus one batched SELECT for the specialties.
+     */
+    @Test
+    void findDirectoryPage_FullPageCostsConstantStatements() {
+        for (int i = 0; i < DIRECTORY_PAGE; i++) {
+            entityManager.persist(directoryDiver(i, "IT"));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = statistics();
+
+        List<DiverResponseDTO> dtos = diverRepository.findDirectoryPage(
+                        "d", null, null, null, null, Limit.of(DIRECTORY_PAGE))
+                .stream()
+                .map(DiverMapper::toResponseDTO)
+                .toList();
+
+        assertEquals(DIRECTORY_PAGE, dtos.size());
+        assertTrue(dtos.stream().allMatch(dto -> dto.getSpecialties().size() == 2));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Tests that filters and the keyset position restrict the directory.
+     */
+    @Test
+    void findDirectoryPage_AppliesFiltersAfterCursor() {
+        for (int i = 0; i < 4; i++) {
+            entityManager.persist(directoryDiver(i, i % 2 == 0 ? "IT" : "AT"));
+        }
+        entityManager.flush();
+
+        List<Diver> page = diverRepository.findDirectoryPage(
+                "dir000", "IT", Certification.OPEN_WATER, Role.USER, "dir%", Limit.of(10));
+
+        assertEquals(List.of("dir002"), page.stream().map(Diver::getUsername).toList());
+    }
+
+    /**
+     * Tests that a login by username or by email reads the credentials
+     * in a single statement.
+     */
+    @Test
+    void findCredentialsByIdentifier_MatchesUsernameOrEmailInOneStatement() {
+        entityManager.clear();
+        Statistics statistics = statistics();
+
+        DiverCredentials byUsername =
+                diverRepository.findCredentialsByIdentifier("counter").orElseThrow();
+        DiverCredentials byEmail =
+                diverRepository.findCredentialsByIdentifier("counter@scubakeep.com").orElseThrow();
+
+        assertEquals(new DiverCredentials(diver.getId(), "counter", "hash", Role.USER), byUsername);
+        assertEquals(byUsername, byEmail);
+        assertTrue(diverRepository.findCredentialsByIdentifier("nobody").isEmpty());
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Tests that a username match wins over another diver's email match.
+     */
+    @Test
+    void findCredentialsByIdentifier_PrefersUsernameMatch() {
+        Diver lookalike = directoryDiver(1, "IT");
+        lookalike.setUsername("counter@scubakeep.com");
+        entityManager.persistAndFlush(lookalike);
+
+        DiverCredentials credentials =
+                diverRepository.findCredentialsByIdentifier("counter@scubakeep.com").orElseThrow();
+
+        assertEquals(lookalike.getId(), credentials.id());
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManager.getEntityManager()
+                .getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private static Diver directoryDiver(int index, String countryCode) {
+        return Diver.builder()
+                .username("dir%03d".formatted(index))
+                .email("dir" + index + "@scubakeep.com")
+                .password("hash")
+                .firstName("Dir")
+                .lastName("Ectory")
+                .countryCode(countryCode)
+                .role(Role.USER)
+                .highestCertification(Certification.OPEN_WATER)
+                .specialties(new HashSet<>(Set.of("Nitrox", "Wreck Diver")))
+                .build();
+    }
+
+    private Diver reload() {
+        entityManager.clear();
+        return diverRepository.findById(diver.getId()).orElseThrow();
+    }
+
+    private DiveLog diveLog() {
+        return DiveLog.builder()
+                .diveDate(LocalDate.of(2024, 6, 1))
+                .location("Red Sea")
+                .diveSite("Reef")
+                .maxDepth(12.0)
+                .duration(40)
+                .diver(diver)
+                .build();
+    }
+}
@@ -0,0 +1,434 @@
+package com.lucap.scubakeep.repository;
+
+import com.lucap.scubakeep.entity.Certification;
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.id.Tsid;
+import com.lucap.scubakeep.id.UuidV7;
+import com.lucap.scubakeep.pagination.DiveLogCursor;
+import com.lucap.scubakeep.pagination.DiveLogSort;
+import com.lucap.scubakeep.projection.DiveLogView;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the execution plans of the repository queries on MariaDB.
+ * <p>
+ * The schema is created by the Flyway migrations and validated against the entity
+ * mapping. Every query of the repositories ({@link DiveLogRepository},
+ * {@link DiverRepository} and the token repositories) is run once; each statement it sends is replayed with {@code EXPLAIN} (same parameters)
+ * and the test fails if any table is read with a full scan, except for the queries
+ * that read whole tables by design. A full scan is a table scan ({@code type = ALL})
+ * or a full index scan ({@code type = index}) not cut short by a LIMIT.
+ * <p>
+ * Needs Docker; skipped otherwise.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(RepositoryQueryPlanTest.StatementCaptureConfig.class)
+class RepositoryQueryPlanTest {
+
+    @Container
+    @ServiceConnection
+    static final MariaDBContainer<?> MARIADB = new MariaDBContainer<>("mariadb:11");
+
+    private static final int DIVERS = 1_000;
+    private static final int DIVE_LOGS_PER_DIVER = 10;
+
+    /**
+     * Queries that read whole tables on purpose.
+     */
+    private static final Set<String> INTENTIONAL_FULL_SCANS = Set.of(
+            // The page total is a COUNT over all dive logs (index-only scan)
+            "DiveLogRepository.findViews",
+            // Full dive log export
+            "DiveLogRepository.streamViews",
+            // Maintenance job that compares every diver's counter with its dive logs
+            "DiverRepository.reconcileTotalDives",
+            // Revocation filter rebuild: the table only holds live revoked tokens
+            "RevokedTokenRepository.findLiveIds"
+    );
+
+    private static final List<CapturedStatement> CAPTURED = new CopyOnWriteArrayList<>();
+    private static volatile boolean recording;
+
+    @Autowired
+    private DiveLogRepository diveLogRepository;
+    @Autowired
+    private DiverRepository diverRepository;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UUID diverId;
+    private Long diveLogId;
+
+    @BeforeAll
+    void seed() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<UUID> diverIds = Stream.generate(UuidV7::next).limit(DIVERS).toList();
+
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO divers (id, username, email, password, first_name, last_name,
+                                    country_code, role, highest_certification, total_dives,
+                                    created_at, updated_at)
+                VALUES (?, ?, ?, 'hash', 'First', 'Last', ?, ?, ?, ?, ?, ?)
+                """, IntStream.range(0, DIVERS).boxed().toList(), 500, (ps, i) -> {
+                    ps.setBytes(1, UuidV7.toBytes(diverIds.get(i)));
+                    ps.setString(2, "diver" + i);
+                    ps.setString(3, "diver" + i + "@scubakeep.com");
+                    ps.setString(4, i % 10 == 0 ? "IT" : "AT");
+                    ps.setString(5, Role.USER.name());
+                    ps.setString(6, Certification.OPEN_WATER.name());
+                    ps.setLong(7, DIVE_LOGS_PER_DIVER);
+                    ps.setTimestamp(8, Timestamp.from(now));
+                    ps.setTimestamp(9, Timestamp.from(now));
+                });
+
+        List<Object[]> diveLogs = new ArrayList<>();
+        for (int i = 0; i < DIVERS * DIVE_LOGS_PER_DIVER; i++) {
+            Timestamp created = Timestamp.from(now.minusSeconds(i));
+            diveLogs.add(new Object[]{
+                    Tsid.next(), UuidV7.toBytes(diverIds.get(i % DIVERS)),
+                    LocalDate.of(2024, 1, 1).plusDays(i % 365), 5.0 + i % 40, created, created
+            });
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO dive_logs (id, diver_id, dive_date, location, dive_site,
+                                       maximum_depth, duration, created_at, updated_at)
+                VALUES (?, ?, ?, 'Red Sea', 'Reef', ?, 45, ?, ?)
+                """, diveLogs);
+        seedTokens(now, diverIds);
+        jdbcTemplate.execute("ANALYZE TABLE divers, dive_logs, diver_specialties, "
+                + "refresh_tokens, revoked_tokens");
+
+        diverId = diverIds.get(DIVERS / 2);
+        diveLogId = (Long) diveLogs.get(diveLogs.size() / 2)[0];
+    }
+
+    /**
+     * One refresh token per diver and as many revoked access tokens, revoked over the
+     * last hour.
+     */
+    private void seedTokens(Instant now, List<UUID> diverIds) {
+        Timestamp expires = Timestamp.from(now.plus(30, ChronoUnit.DAYS));
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO refresh_tokens (token_hash, family_id, diver_id, expires_at,
+                                            created_at)
+                VALUES (?, ?, ?, ?, ?)
+                """, IntStream.range(0, DIVERS).boxed().toList(), 500, (ps, i) -> {
+                    ps.setString(1, "%064x".formatted(i));
+                    ps.setBytes(2, UuidV7.toBytes(UuidV7.next()));
+                    ps.setBytes(3, UuidV7.toBytes(diverIds.get(i)));
+                    ps.setTimestamp(4, expires);
+                    ps.setTimestamp(5, Timestamp.from(now));
+                });
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO revoked_tokens (jti, expires_at, revoked_at) VALUES (?, ?, ?)
+                """, IntStream.range(0, DIVERS).boxed().toList(), 500, (ps, i) -> {
+                    Instant revokedAt = now.minusSeconds(i * 3600L / DIVERS);
+                    ps.setBytes(1, UuidV7.toBytes(UUID.randomUUID()));
+                    ps.setTimestamp(2, Timestamp.from(revokedAt.plus(1, ChronoUnit.HOURS)));
+                    ps.setTimestamp(3, Timestamp.from(revokedAt));
+                });
+    }
+
+    /**
+     * Tests that no repository query reads a whole table, apart from the
+     * intentional full scans.
+     */
+    @Test
+    void repositoryQueries_DoNotScanWholeTables() {
+        Map<String, Runnable> queries = queries();
+        assertEquals(Set.of(), uncovered(queries.keySet()), "Queries missing from this test");
+
+        List<String> fullScans = new ArrayList<>();
+        queries.forEach((name, query) -> {
+            List<CapturedStatement> statements = capture(query);
+            assertFalse(statements.isEmpty(), name + " sent no statement");
+
+            for (CapturedStatement statement : statements) {
+                for (Map<String, Object> step : explain(statement)) {
+                    if (isFullScan(step) && !INTENTIONAL_FULL_SCANS.contains(name)) {
+                        fullScans.add(name + ": full scan of " + step.get("table")
+                                + " in " + statement.sql());
+                    }
+                }
+            }
+        });
+
+        assertTrue(fullScans.isEmpty(), String.join("\n", fullScans));
+    }
+
+    /**
+     * Runs every query of the repositories with realistic arguments.
+     */
+    private Map<String, Runnable> queries() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        DiveLogView middle = diveLogRepository.findViewById(diveLogId).orElseThrow();
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("DiveLogRepository.findById", () -> diveLogRepository.findById(diveLogId));
+        queries.put("DiveLogRepository.findByDiverId",
+                () -> diveLogRepository.findByDiverId(diverId));
+        queries.put("DiveLogRepository.findViewById",
+                () -> diveLogRepository.findViewById(diveLogId));
+        queries.put("DiveLogRepository.findViews", () -> forEachSort((sort, direction) ->
+                diveLogRepository.findViews(PageRequest.of(2, 20, sort.toSort(direction)))));
+        queries.put("DiveLogRepository.findViewsByDiverId", () -> forEachSort((sort, direction) ->
+                diveLogRepository.findViewsByDiverId(
+                        diverId, PageRequest.of(0, 20, sort.toSort(direction)))));
+        queries.put("DiveLogFeedRepository.findFeedPage", () -> forEachSort((sort, direction) -> {
+            DiveLogCursor after = DiveLogCursor.after(middle, sort, direction);
+            diveLogRepository.findFeedPage(sort, direction, null, null, 21);
+            diveLogRepository.findFeedPage(sort, direction, null, after, 21);
+            diveLogRepository.findFeedPage(sort, direction, diverId, null, 21);
+            diveLogRepository.findFeedPage(sort, direction, diverId, after, 21);
+        }));
+        queries.put("DiveLogRepository.streamViews", () -> tx.executeWithoutResult(status -> {
+            try (Stream<?> rows = diveLogRepository.streamViews()) {
+                rows.limit(1).count();
+            }
+        }));
+        queries.put("DiveLogRepository.streamViewsByDiverId",
+                () -> tx.executeWithoutResult(status -> {
+                    try (Stream<?> rows = diveLogRepository.streamViewsByDiverId(diverId)) {
+                        rows.count();
+                    }
+                }));
+        queries.put("DiveLogRepository.findOwnerUsernameById",
+                () -> diveLogRepository.findOwnerUsernameById(diveLogId));
+        queries.put("DiveLogRepository.findImagePathsByIdIn",
+                () -> diveLogRepository.findImagePathsByIdIn(List.of(diveLogId, diveLogId + 1)));
+        queries.put("DiveLogRepository.findPendingImages",
+                () -> diveLogRepository.findPendingImages("", Instant.now(), Limit.of(100)));
+        queries.put("DiveLogRepository.updateImage",
+                () -> diveLogRepository.updateImage(diveLogId, "divelogs/a.jpg", Instant.now()));
+        queries.put("DiveLogRepository.updateImageMetadata",
+                () -> diveLogRepository.updateImageMetadata(
+                        diveLogId, "divelogs/a.jpg", 800, 600, null));
+
+        queries.put("DiverRepository.findById", () -> diverRepository.findById(diverId));
+        queries.put("DiverRepository.findWithSpecialtiesById",
+                () -> diverRepository.findWithSpecialtiesById(diverId));
+        queries.put("DiverRepository.findRoleById",
+                () -> diverRepository.findRoleById(diverId));
+        queries.put("DiverRepository.existsByEmail",
+                () -> diverRepository.existsByEmail("diver7@scubakeep.com"));
+        queries.put("DiverRepository.existsByUsername",
+                () -> diverRepository.existsByUsername("diver7"));
+        queries.put("DiverRepository.findByEmail",
+                () -> diverRepository.findByEmail("diver7@scubakeep.com"));
+        queries.put("DiverRepository.findByUsername",
+                () -> diverRepository.findByUsername("diver7"));
+        queries.put("DiverRepository.findCredentialsByIdentifier", () -> {
+            diverRepository.findCredentialsByIdentifier("diver7");
+            diverRepository.findCredentialsByIdentifier("diver7@scubakeep.com");
+        });
+        queries.put("DiverRepository.findDirectoryPage", () -> {
+            diverRepository.findDirectoryPage(null, null, null, null, null, Limit.of(51));
+            diverRepository.findDirectoryPage("diver500", null, null, null, null, Limit.of(51));
+            diverRepository.findDirectoryPage(null, "IT", null, Role.USER, null, Limit.of(51));
+        });
+        queries.put("DiverRepository.findIdentifiersBetween", () -> {
+            diverRepository.findIdentifiersBetween(
+                    new UUID(0, 0), new UUID(-1L, -1L), Limit.of(5_000));
+            diverRepository.findIdentifiersBetween(
+                    UuidV7.lowerBound(Instant.now().minusSeconds(90)),
+                    UuidV7.lowerBound(Instant.now().plusSeconds(60)), Limit.of(5_000));
+        });
+        queries.put("DiverRepository.updatePassword",
+                () -> diverRepository.updatePassword(diverId, "{bcrypt}hash"));
+        queries.put("DiverRepository.incrementTotalDives",
+                () -> diverRepository.incrementTotalDives(diverId, 1));
+        queries.put("DiverRepository.decrementTotalDives",
+                () -> diverRepository.decrementTotalDives(diverId));
+        queries.put("DiverRepository.reconcileTotalDives",
+                () -> diverRepository.reconcileTotalDives());
+        queries.put("DiverRepository.findUsernameById",
+                () -> diverRepository.findUsernameById(diverId));
+        queries.put("DiverRepository.findProfilePicturePathsByIdIn",
+                () -> diverRepository.findProfilePicturePathsByIdIn(List.of(diverId)));
+        queries.put("DiverRepository.findPendingProfilePictures",
+                () -> diverRepository.findPendingProfilePictures(
+                        "", Instant.now(), Limit.of(100)));
+        queries.put("DiverRepository.updateProfilePicture",
+                () -> diverRepository.updateProfilePicture(diverId, "profiles/a.jpg", Instant.now()));
+        queries.put("DiverRepository.updateProfilePictureMetadata",
+                () -> diverRepository.updateProfilePictureMetadata(
+                        diverId, "profiles/a.jpg", 800, 600, null));
+
+        Instant now = Instant.now();
+        String tokenHash = "%064x".formatted(DIVERS / 2);
+        queries.put("RefreshTokenRepository.markUsed",
+                () -> refreshTokenRepository.markUsed(tokenHash, now));
+        queries.put("RefreshTokenRepository.deleteByFamilyId",
+                () -> refreshTokenRepository.deleteByFamilyId(UuidV7.next()));
+        queries.put("RefreshTokenRepository.deleteExpired",
+                () -> refreshTokenRepository.deleteExpired(now));
+        queries.put("RevokedTokenRepository.findLiveIds",
+                () -> revokedTokenRepository.findLiveIds(now));
+        queries.put("RevokedTokenRepository.findIdsRevokedSince",
+                () -> revokedTokenRepository.findIdsRevokedSince(now.minusSeconds(70)));
+        queries.put("RevokedTokenRepository.deleteExpired",
+                () -> revokedTokenRepository.deleteExpired(now));
+        return queries;
+    }
+
+    /**
+     * Runs a query once for every whitelisted sort field and direction.
+     */
+    private static void forEachSort(BiConsumer<DiveLogSort, Sort.Direction> query) {
+        for (DiveLogSort sort : DiveLogSort.values()) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                query.accept(sort, direction);
+            }
+        }
+    }
+
+    /**
+     * Returns the query methods declared by the repositories that {@link #queries()}
+     * does not exercise, so new queries cannot skip this check.
+     */
+    private static Set<String> uncovered(Set<String> covered) {
+        return Stream.of(
+                        DiveLogRepository.class, DiveLogFeedRepository.class, DiverRepository.class,
+                        RefreshTokenRepository.class, RevokedTokenRepository.class)
+                .flatMap(repository -> Arrays.stream(repository.getDeclaredMethods())
+                        .map(method -> repository.getSimpleName() + "." + method.getName()))
+                .filter(name -> !covered.contains(name))
+                .collect(Collectors.toSet());
+    }
+
+    private static List<CapturedStatement> capture(Runnable query) {
+        CAPTURED.clear();
+        recording = true;
+        try {
+            query.run();
+        } finally {
+            recording = false;
+        }
+        return List.copyOf(CAPTURED);
+    }
+
+    private List<Map<String, Object>> explain(CapturedStatement statement) {
+        return jdbcTemplate.query(
+                "EXPLAIN " + statement.sql(),
+                ps -> bind(ps, statement.parameters()),
+                new ColumnMapRowMapper()
+        );
+    }
+
+    /**
+     * A table scan, or a full index scan: an index read in order without a LIMIT is
+     * estimated to visit every row, while the seeded tables hold at least
+     * {@value #DIVERS} rows each.
+     */
+    private static boolean isFullScan(Map<String, Object> step) {
+        Object type = step.get("type");
+        Object rows = step.get("rows");
+        return "ALL".equals(type)
+                || "index".equals(type) && rows != null && Long.parseLong(rows.toString()) >= DIVERS;
+    }
+
+    private static void bind(PreparedStatement ps, List<ParameterSetOperation> parameters) {
+        for (ParameterSetOperation parameter : parameters) {
+            Method setter = parameter.getMethod();
+            try {
+                setter.invoke(ps, parameter.getArgs());
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException("Cannot replay " + setter.getName(), ex);
+            }
+        }
+    }
+
+    private record CapturedStatement(String sql, List<ParameterSetOperation> parameters) {
+    }
+
+    /**
+     * Wraps the data source so that statements sent while recording are captured
+     * together with their parameters.
+     */
+    @TestConfiguration
+    static class StatementCaptureConfig {
+
+        @Bean
+        static BeanPostProcessor statementCapture() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .afterQuery((execution, queries) -> {
+                                if (!recording) {
+                                    return;
+                                }
+                                queries.forEach(query -> CAPTURED.add(new CapturedStatement(
+                                        query.getQuery(),
+                                        query.getParametersList().isEmpty()
+                                                ? List.of()
+                                                : query.getParametersList().get(0))));
+                            })
+                            .build();
+                }
+            };
+        }
+    }
+}
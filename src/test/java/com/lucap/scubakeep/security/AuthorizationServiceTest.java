@@ -1,15 +1,16 @@
 package com.lucap.scubakeep.security;
 
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.exception.AuthenticatedUserNotFoundException;
 import com.lucap.scubakeep.exception.UnauthorizedResourceAccessException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
-import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -41,9 +42,7 @@ class AuthorizationServiceTest {
     @Test
     void assertOwnerOrAdmin_ShouldPass_WhenUserIsOwner() {
         // Arrange
-        when(authentication.getName()).thenReturn("ownerUser");
-        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
-        when(authentication.getAuthorities()).thenAnswer(invocation -> authorities);
+        authenticateAs("ownerUser", Role.USER);
 
         // Act & Assert
         assertDoesNotThrow(() -> authorizationService.assertOwnerOrAdmin("ownerUser"));
@@ -56,9 +55,7 @@ class AuthorizationServiceTest {
     @Test
     void assertOwnerOrAdmin_ShouldPass_WhenUserIsAdmin() {
         // Arrange
-        when(authentication.getName()).thenReturn("otherUser");
-        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_ADMIN"));
-        doReturn(authorities).when(authentication).getAuthorities();
+        authenticateAs("otherUser", Role.ADMIN);
 
         // Act & Assert
         assertDoesNotThrow(() -> authorizationService.assertOwnerOrAdmin("ownerUser"));
@@ -71,9 +68,7 @@ class AuthorizationServiceTest {
     @Test
     void assertOwnerOrAdmin_ShouldThrow_WhenUserIsNeither() {
         // Arrange
-        when(authentication.getName()).thenReturn("stranger");
-        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
-        doReturn(authorities).when(authentication).getAuthorities();
+        authenticateAs("stranger", Role.USER);
 
         // Act & Assert
         assertThrows(UnauthorizedResourceAccessException.class,
@@ -86,8 +81,7 @@ class AuthorizationServiceTest {
     @Test
     void assertAdmin_ShouldPass_WhenUserIsAdmin() {
         // Arrange
-        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_ADMIN"));
-        doReturn(authorities).when(authentication).getAuthorities();
+        authenticateAs("admin", Role.ADMIN);
 
         // Act & Assert
         assertDoesNotThrow(() -> authorizationService.assertAdmin());
@@ -100,11 +94,43 @@ class AuthorizationServiceTest {
     @Test
     void assertAdmin_ShouldThrow_WhenUserIsNotAdmin() {
         // Arrange
-        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
-        doReturn(authorities).when(authentication).getAuthorities();
+        authenticateAs("user", Role.USER);
 
         // Act & Assert
         assertThrows(UnauthorizedResourceAccessException.class,
                 () -> authorizationService.assertAdmin());
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifies that currentDiver returns the principal built from the token.
+     */
+    @Test
+    void currentDiver_ShouldReturnPrincipal_WhenAuthenticated() {
+        // Arrange
+        DiverPrincipal principal = authenticateAs("steve", Role.USER);
+
+        // Act & Assert
+        assertEquals(principal, authorizationService.currentDiver());
+    }
+
+    /**
+     * Verifies that an anonymous request is neither owner nor admin and has no current diver.
+     */
+    @Test
+    void anonymous_ShouldBeDenied_AndHaveNoCurrentDiver() {
+        // Arrange
+        when(authentication.getPrincipal()).thenReturn("anonymousUser");
+
+        // Act & Assert
+        assertThrows(UnauthorizedResourceAccessException.class,
+                () -> authorizationService.assertOwnerOrAdmin("ownerUser"));
+        assertThrows(AuthenticatedUserNotFoundException.class,
+                () -> authorizationService.currentDiver());
+    }
+
+    private DiverPrincipal authenticateAs(String username, Role role) {
+        DiverPrincipal principal = new DiverPrincipal(UUID.randomUUID(), username, role);
+        when(authentication.getPrincipal()).thenReturn(principal);
+        return principal;
+    }
+}
@@ -0,0 +1,145 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.exception.PasswordHashingOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PasswordEncoder delegate = mock(PasswordEncoder.class);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        encoder.close();
+    }
+
+    /**
+     * Tests that hashing calls are delegated and timed.
+     */
+    @Test
+    void encodeAndMatches_ShouldDelegateAndRecordLatency() {
+        // Arrange
+        encoder = new BoundedPasswordEncoder(
+                delegate, 2, 4, Duration.ofSeconds(1), Duration.ofSeconds(1), meterRegistry);
+        when(delegate.encode("secret")).thenReturn("hash");
+        when(delegate.matches("secret", "hash")).thenReturn(true);
+
+        // Act & Assert
+        assertEquals("hash", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "hash"));
+        assertEquals(1, meterRegistry.get("password.hash").tag("operation", "encode")
+                .timer().count());
+        assertEquals(1, meterRegistry.get("password.hash").tag("operation", "matches")
+                .timer().count());
+    }
+
+    /**
+     * Tests that a call is rejected immediately when the thread and queue are full.
+     */
+    @Test
+    void encode_ShouldReject_WhenQueueIsFull() throws Exception {
+        // Arrange
+        encoder = new BoundedPasswordEncoder(
+                delegate, 1, 1, Duration.ofSeconds(10), Duration.ofSeconds(10), meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.encode("slow")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "hash";
+        });
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("slow"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("slow"));
+        waitForQueueDepth(1);
+
+        // Act & Assert
+        assertThrows(PasswordHashingOverloadedException.class, () -> encoder.encode("third"));
+        assertEquals(1.0, meterRegistry.get("password.hash.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Tests that a call which waited longer than the queue timeout fails without hashing.
+     */
+    @Test
+    void matches_ShouldReject_WhenQueueTimeoutExpired() throws Exception {
+        // Arrange
+        encoder = new BoundedPasswordEncoder(
+                delegate, 1, 4, Duration.ofMillis(50), Duration.ofSeconds(1), meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        when(delegate.matches("slow", "hash")).thenAnswer(invocation -> {
+            started.countDown();
+            Thread.sleep(200);
+            return true;
+        });
+        CompletableFuture<Boolean> running =
+                CompletableFuture.supplyAsync(() -> encoder.matches("slow", "hash"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act & Assert
+        assertThrows(PasswordHashingOverloadedException.class,
+                () -> encoder.matches("late", "hash"));
+        verify(delegate, never()).matches("late", "hash");
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Tests that a caller queued behind a hash that does not finish stops waiting after
+     * the queue timeout plus the hash timeout, and its call never runs.
+     */
+    @Test
+    void encode_ShouldReject_WhenResultNotReadyInTime() throws Exception {
+        // Arrange
+        encoder = new BoundedPasswordEncoder(
+                delegate, 1, 4, Duration.ofMillis(50), Duration.ofMillis(50), meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.encode("slow")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "hash";
+        });
+        CompletableFuture<String> running =
+                CompletableFuture.supplyAsync(() -> encoder.encode("slow"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        long startedAt = System.nanoTime();
+        assertThrows(PasswordHashingOverloadedException.class, () -> encoder.encode("queued"));
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        release.countDown();
+
+        // Assert
+        assertTrue(waitedMillis < 2000, "caller waited " + waitedMillis + " ms");
+        ExecutionException slow =
+                assertThrows(ExecutionException.class, () -> running.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(PasswordHashingOverloadedException.class, slow.getCause());
+        assertEquals(2.0, meterRegistry.get("password.hash.rejected").counter().count());
+        verify(delegate, never()).encode("queued");
+    }
+
+    private void waitForQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("password.hash.queue").gauge().value() < depth) {
+            assertTrue(System.nanoTime() < deadline, "queue never reached " + depth);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.lucap.scubakeep.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+    private static final long MS = 1_000_000L;
+
+    /**
+     * Tests that the chosen cost is the highest whose doubled probe time fits the budget.
+     */
+    @Test
+    void costFor_ShouldPickHighestCostWithinBudget() {
+        // 4 ms at cost 6 -> 8 ms (7), 16 (8), 32 (9), 64 (10), 128 (11)
+        assertEquals(10, CalibratedBCryptPasswordEncoder.costFor(100 * MS, 4 * MS, 6, 4, 31));
+        assertEquals(11, CalibratedBCryptPasswordEncoder.costFor(128 * MS, 4 * MS, 6, 4, 31));
+        // Twice as fast hardware gets one more cost step for the same budget
+        assertEquals(11, CalibratedBCryptPasswordEncoder.costFor(100 * MS, 2 * MS, 6, 4, 31));
+    }
+
+    /**
+     * Tests that the configured range wins over the budget.
+     */
+    @Test
+    void costFor_ShouldClampToConfiguredRange() {
+        assertEquals(10, CalibratedBCryptPasswordEncoder.costFor(MS, 4 * MS, 6, 10, 14));
+        assertEquals(14, CalibratedBCryptPasswordEncoder.costFor(60_000 * MS, MS, 6, 10, 14));
+    }
+
+    /**
+     * Tests that only hashes more than the tolerance away from the cost need rehashing,
+     * so replicas calibrated one step apart do not rehash each other's hashes.
+     */
+    @Test
+    void upgradeEncoding_ShouldFlagCostsOutsideTolerance() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(6, 4, 1);
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(7).encode("secret")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(8).encode("secret")));
+        assertFalse(encoder.upgradeEncoding("not-a-bcrypt-hash"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    /**
+     * Tests that a hash below the minimum cost is rehashed even within the tolerance.
+     */
+    @Test
+    void upgradeEncoding_ShouldFlagCostsBelowMinimum() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5, 5, 1);
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret")));
+    }
+
+    /**
+     * Tests that calibration measures this machine and stays within the range.
+     */
+    @Test
+    void calibrate_ShouldReturnCostWithinRange() {
+        CalibratedBCryptPasswordEncoder encoder =
+                CalibratedBCryptPasswordEncoder.calibrate(Duration.ofMillis(20), 4, 8, 1);
+
+        assertTrue(encoder.getCost() >= 4 && encoder.getCost() <= 8);
+        assertTrue(encoder.matches("secret", encoder.encode("secret")));
+    }
+}
@@ -1,61 +1,76 @@
 package com.lucap.scubakeep.security;
 
-import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.config.SecurityConfig;
 import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.projection.DiverCredentials;
 import com.lucap.scubakeep.repository.DiverRepository;
 import org.junit.jupiter.api.BeforeEach;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.*;
 
 class DiverUserDetailsServiceTest {
 
     private DiverRepository diverRepository;
     private DiverUserDetailsService service;
-    private Diver mockDiver;
+    private DiverCredentials credentials;
 
     @BeforeEach
     void setUp() {
         diverRepository = mock(DiverRepository.class);
         service = new DiverUserDetailsService(diverRepository);
 
-        mockDiver = new Diver();
-        mockDiver.setUsername("scubasteve");
-        mockDiver.setPassword("encodedPass");
-        mockDiver.setRole(Role.USER);
+        credentials = new DiverCredentials(UUID.randomUUID(), "scubasteve", "encodedPass", Role.USER);
     }
 
     /**
-     * Tests that a valid UserDetails object is returned when a user is found by their username.
+     * Tests that a valid UserDetails object, carrying the diver's id and role,
+     * is returned when a user is found by their username.
      */
     @Test
     void loadUserByUsername_ShouldReturnUserDetails_WhenFoundByUsername() {
-        when(diverRepository.findByUsername("scubasteve")).thenReturn(Optional.of(mockDiver));
+        when(diverRepository.findCredentialsByIdentifier("scubasteve"))
+                .thenReturn(Optional.of(credentials));
 
         UserDetails result = service.loadUserByUsername("scubasteve");
 
         assertEquals("scubasteve", result.getUsername());
+        assertEquals("encodedPass", result.getPassword());
         assertTrue(result.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_USER")));
+        DiverUserDetails diver = assertInstanceOf(DiverUserDetails.class, result);
+        assertEquals(credentials.id(), diver.getId());
+        assertEquals(Role.USER, diver.getRole());
     }
 
     /**
-     * Tests the fallback logic: if username search returns empty, the service should
-     * search by email and successfully return UserDetails.
+     * Tests that an email is resolved by the same single lookup.
      */
     @Test
     void loadUserByUsername_ShouldReturnUserDetails_WhenFoundByEmail() {
-        when(diverRepository.findByUsername("steve@dive.com")).thenReturn(Optional.empty());
-        when(diverRepository.findByEmail("steve@dive.com")).thenReturn(Optional.of(mockDiver));
+        when(diverRepository.findCredentialsByIdentifier("steve@dive.com"))
+                .thenReturn(Optional.of(credentials));
 
         UserDetails result = service.loadUserByUsername("steve@dive.com");
 
         assertNotNull(result);
         assertEquals("scubasteve", result.getUsername());
+        verify(diverRepository, times(1)).findCredentialsByIdentifier("steve@dive.com");
+        verifyNoMoreInteractions(diverRepository);
     }
 
     /**
@@ -64,9 +79,80 @@ class DiverUserDetailsServiceTest {
      */
     @Test
     void loadUserByUsername_ShouldThrowException_WhenNotFound() {
-        when(diverRepository.findByUsername("unknown")).thenReturn(Optional.empty());
-        when(diverRepository.findByEmail("unknown")).thenReturn(Optional.empty());
+        when(diverRepository.findCredentialsByIdentifier("unknown")).thenReturn(Optional.empty());
 
         assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("unknown"));
     }
+
+    /**
+     * Tests that the password hash is dropped once authentication erases credentials.
+     */
+    @Test
+    void diverUserDetails_ShouldEraseCredentials() {
+        DiverUserDetails details = new DiverUserDetails(credentials);
+
+        details.eraseCredentials();
+
+        assertNull(details.getPassword());
+        assertEquals(new DiverPrincipal(credentials.id(), "scubasteve", Role.USER),
+                details.toPrincipal());
+    }
+
+    /**
+     * Tests that a login with a hash of another cost (here a legacy hash without
+     * {@code {bcrypt}} prefix) stores a rehash with the configured cost, once.
+     */
+    @Test
+    void login_ShouldRehashPassword_WhenStoredCostDiffers() {
+        // Arrange: the configured encoder, calibrated within [4, 5] for a fast test
+        PasswordEncoder encoder = new SecurityConfig().passwordEncoder(Duration.ofNanos(1),
+                4, 5, 0, 1, 1, 4, Duration.ofSeconds(5), Duration.ofSeconds(5),
+                new SimpleMeterRegistry());
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(encoder);
+        provider.setUserDetailsService(service);
+        provider.setUserDetailsPasswordService(service);
+
+        String legacyHash = new BCryptPasswordEncoder(4).encode("Secret123");
+        when(diverRepository.findCredentialsByIdentifier("scubasteve")).thenReturn(Optional.of(
+                new DiverCredentials(credentials.id(), "scubasteve", legacyHash, Role.USER)));
+
+        // Act
+        provider.authenticate(new UsernamePasswordAuthenticationToken("scubasteve", "Secret123"));
+
+        // Assert
+        verify(diverRepository).updatePassword(eq(credentials.id()), startsWith("{bcrypt}$2a$05$"));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("Secret123")));
+    }
+
+    /**
+     * Tests that a configured cost is used as is, without calibration, so every
+     * instance hashes with the same cost.
+     */
+    @Test
+    void passwordEncoder_ShouldUseConfiguredCost() {
+        // Arrange
+        PasswordEncoder encoder = new SecurityConfig().passwordEncoder(Duration.ofSeconds(10),
+                4, 14, 4, 1, 1, 4, Duration.ofSeconds(5), Duration.ofSeconds(5),
+                new SimpleMeterRegistry());
+
+        // Act
+        String hash = encoder.encode("Secret123");
+
+        // Assert
+        assertTrue(hash.startsWith("{bcrypt}$2a$04$"), hash);
+    }
+
+    /**
+     * Tests that a rehashed password is persisted for the authenticated diver.
+     */
+    @Test
+    void updatePassword_ShouldPersistNewHash() {
+        DiverUserDetails user = new DiverUserDetails(credentials);
+
+        UserDetails updated = service.updatePassword(user, "{bcrypt}new-hash");
+
+        verify(diverRepository).updatePassword(credentials.id(), "{bcrypt}new-hash");
+        assertEquals("{bcrypt}new-hash", updated.getPassword());
+        verify(diverRepository, never()).findCredentialsByIdentifier(any());
+    }
 }
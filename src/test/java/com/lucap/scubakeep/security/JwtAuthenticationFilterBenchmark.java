@@ -0,0 +1,98 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the cost of authenticating one request in {@link JwtAuthenticationFilter}.
+ * <p>
+ * {@code tokenCacheSize=0} verifies the signature and parses the claims on every
+ * request (the behaviour before the verified-token cache); the default size serves
+ * a repeated token from the cache. The principal status check hits its cache and the
+ * revocation check is answered by the in-memory filter in both cases, so no database
+ * access is measured.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main JwtAuthenticationFilterBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-at-least-32-chars-long";
+
+    @Param({"0", "10000"})
+    private long tokenCacheSize;
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain filterChain;
+
+    @Setup
+    public void setUp() {
+        UUID diverId = UUID.randomUUID();
+        DiverRepository diverRepository = mock(DiverRepository.class);
+        when(diverRepository.findRoleById(diverId)).thenReturn(Optional.of(Role.USER));
+
+        JwtService jwtService =
+                new JwtService(SECRET, 3_600_000, tokenCacheSize, new SimpleMeterRegistry());
+        PrincipalStatusCache principalStatusCache = new PrincipalStatusCache(
+                diverRepository, Duration.ofHours(1), new SimpleMeterRegistry());
+        TokenRevocationList tokenRevocationList = new TokenRevocationList(
+                mock(RevokedTokenRepository.class), 100_000, new SimpleMeterRegistry());
+        filter = new JwtAuthenticationFilter(
+                jwtService, principalStatusCache, tokenRevocationList);
+
+        request = new MockHttpServletRequest("GET", "/api/divelogs/1");
+        request.addHeader("Authorization",
+                "Bearer " + jwtService.generateToken(diverId, "steve", Role.USER));
+        response = new MockHttpServletResponse();
+        filterChain = (req, res) -> { };
+    }
+
+    @Benchmark
+    public Authentication authenticateRequest() throws ServletException, IOException {
+        try {
+            filter.doFilterInternal(request, response, filterChain);
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -1,21 +1,20 @@
 package com.lucap.scubakeep.security;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.Claim;
-import com.auth0.jwt.interfaces.DecodedJWT;
+import com.lucap.scubakeep.entity.Role;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 
-import java.util.List;
+import java.time.Instant;
+import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.*;
@@ -23,7 +22,8 @@ import static org.mockito.Mockito.*;
 class JwtAuthenticationFilterTest {
 
     private JwtService jwtService;
-    private UserDetailsService userDetailsService;
+    private PrincipalStatusCache principalStatusCache;
+    private TokenRevocationList tokenRevocationList;
     private JwtAuthenticationFilter filter;
     private HttpServletRequest request;
     private HttpServletResponse response;
@@ -32,8 +32,9 @@ class JwtAuthenticationFilterTest {
     @BeforeEach
     void setUp() {
         jwtService = mock(JwtService.class);
-        userDetailsService = mock(UserDetailsService.class);
-        filter = new JwtAuthenticationFilter(jwtService, userDetailsService);
+        principalStatusCache = mock(PrincipalStatusCache.class);
+        tokenRevocationList = mock(TokenRevocationList.class);
+        filter = new JwtAuthenticationFilter(jwtService, principalStatusCache, tokenRevocationList);
 
         request = mock(HttpServletRequest.class);
         response = mock(HttpServletResponse.class);
@@ -73,35 +74,82 @@ class JwtAuthenticationFilterTest {
     }
 
     /**
-     * Tests successful authentication when a valid Bearer token is provided.
+     * Tests successful authentication when a valid Bearer token is provided: the principal
+     * is built from the claims, without loading the diver.
      */
     @Test
     void doFilterInternal_ShouldAuthenticate_WhenTokenIsValid() throws Exception {
         // Arrange
-        String token = "valid.jwt.token";
-        String username = "steve";
-        String role = "USER";
+        DiverPrincipal expected = new DiverPrincipal(UUID.randomUUID(), "steve", Role.USER);
+        mockToken("valid.jwt.token", expected);
+        when(principalStatusCache.isCurrent(expected)).thenReturn(true);
 
-        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        // Act
+        filter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertEquals(expected, authentication.getPrincipal());
+        assertEquals("steve", authentication.getName());
+        assertEquals("ROLE_USER",
+                authentication.getAuthorities().iterator().next().getAuthority());
+        verify(filterChain).doFilter(request, response);
+    }
 
-        DecodedJWT decodedJWT = mock(DecodedJWT.class);
-        Claim usernameClaim = mock(Claim.class);
-        Claim roleClaim = mock(Claim.class);
+    /**
+     * Tests that a valid token of a deleted diver, or one whose role changed,
+     * does not authenticate.
+     */
+    @Test
+    void doFilterInternal_ShouldNotAuthenticate_WhenPrincipalIsNoLongerCurrent() throws Exception {
+        // Arrange
+        DiverPrincipal stale = new DiverPrincipal(UUID.randomUUID(), "steve", Role.ADMIN);
+        mockToken("stale.jwt.token", stale);
+        when(principalStatusCache.isCurrent(stale)).thenReturn(false);
 
-        when(jwtService.decode(token)).thenReturn(decodedJWT);
-        when(decodedJWT.getClaim("username")).thenReturn(usernameClaim);
-        when(decodedJWT.getClaim("role")).thenReturn(roleClaim);
-        when(usernameClaim.asString()).thenReturn(username);
-        when(roleClaim.asString()).thenReturn(role);
+        // Act
+        filter.doFilterInternal(request, response, filterChain);
 
-        UserDetails userDetails = new User(username, "", List.of());
-        when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
+        // Assert
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(request, response);
+    }
+
+    /**
+     * Tests that a valid token revoked on logout does not authenticate, without
+     * checking the diver's status.
+     */
+    @Test
+    void doFilterInternal_ShouldNotAuthenticate_WhenTokenIsRevoked() throws Exception {
+        // Arrange
+        DiverPrincipal principal = new DiverPrincipal(UUID.randomUUID(), "steve", Role.USER);
+        AccessToken revoked = mockToken("revoked.jwt.token", principal);
+        when(tokenRevocationList.isRevoked(revoked.id())).thenReturn(true);
 
         // Act
         filter.doFilterInternal(request, response, filterChain);
 
         // Assert
-        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(principalStatusCache);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    /**
+     * Tests that a token with a malformed subject or role claim does not authenticate.
+     */
+    @Test
+    void doFilterInternal_ShouldNotAuthenticate_WhenClaimsAreMalformed() throws Exception {
+        // Arrange
+        mockToken("odd.jwt.token", null);
+
+        // Act
+        filter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(principalStatusCache);
         verify(filterChain).doFilter(request, response);
     }
 
@@ -112,11 +160,20 @@ class JwtAuthenticationFilterTest {
     void doFilterInternal_ShouldNotAuthenticate_WhenTokenIsInvalid() throws Exception {
         String token = "invalid.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.decode(token)).thenThrow(new JWTVerificationException("Invalid"));
+        when(jwtService.authenticate(token)).thenThrow(new JWTVerificationException("Invalid"));
 
         filter.doFilterInternal(request, response, filterChain);
 
         assertNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain).doFilter(request, response);
     }
+
+    private AccessToken mockToken(String token, DiverPrincipal principal) {
+        AccessToken accessToken = principal == null
+                ? null
+                : new AccessToken(UUID.randomUUID(), principal, Instant.now().plusSeconds(60));
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtService.authenticate(token)).thenReturn(accessToken);
+        return accessToken;
+    }
 }
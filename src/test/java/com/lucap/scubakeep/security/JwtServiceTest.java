@@ -1,11 +1,16 @@
 package com.lucap.scubakeep.security;
 
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.lucap.scubakeep.entity.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,7 +27,7 @@ class JwtServiceTest {
 
     @BeforeEach
     void setUp() {
-        jwtService = new JwtService(secret, expiration);
+        jwtService = new JwtService(secret, expiration, 100, new SimpleMeterRegistry());
         userId = UUID.randomUUID();
         username = "scubadiver";
         role = Role.USER;
@@ -57,4 +62,108 @@ class JwtServiceTest {
         // Act & Assert
         assertThrows(JWTVerificationException.class, () -> jwtService.decode(tamperedToken));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that every token gets its own id, so it can be revoked on its own.
+     */
+    @Test
+    void generateToken_ShouldAssignUniqueTokenIds() {
+        // Act
+        String first = jwtService.generateToken(userId, username, role);
+        String second = jwtService.generateToken(userId, username, role);
+
+        // Assert
+        assertNotNull(jwtService.decode(first).getId());
+        assertNotEquals(jwtService.decode(first).getId(), jwtService.decode(second).getId());
+    }
+
+    /**
+     * Tests that authenticate builds the principal from the claims and serves
+     * repeated requests with the same token from the cache.
+     */
+    @Test
+    void authenticate_ShouldReturnCachedPrincipal_WhenTokenIsRepeated() {
+        // Arrange
+        String token = jwtService.generateToken(userId, username, role);
+
+        // Act
+        AccessToken first = jwtService.authenticate(token);
+        AccessToken second = jwtService.authenticate(token);
+
+        // Assert
+        assertEquals(new DiverPrincipal(userId, username, role), first.principal());
+        assertEquals(UUID.fromString(jwtService.decode(token).getId()), first.id());
+        assertSame(first, second);
+    }
+
+    /**
+     * Tests that every request is verified again when the token cache is disabled.
+     */
+    @Test
+    void authenticate_ShouldVerifyEveryTime_WhenCacheIsDisabled() {
+        // Arrange
+        JwtService uncached = new JwtService(secret, expiration, 0, new SimpleMeterRegistry());
+        String token = uncached.generateToken(userId, username, role);
+
+        // Act
+        AccessToken first = uncached.authenticate(token);
+        AccessToken second = uncached.authenticate(token);
+
+        // Assert
+        assertEquals(first, second);
+        assertNotSame(first, second);
+    }
+
+    /**
+     * Tests that tampered and expired tokens are rejected, also after a valid token
+     * of the same user was cached.
+     */
+    @Test
+    void authenticate_ShouldThrow_WhenTokenIsTamperedOrExpired() {
+        // Arrange
+        String validToken = jwtService.generateToken(userId, username, role);
+        jwtService.authenticate(validToken);
+        JwtService expiredIssuer = new JwtService(secret, -1000, 0, new SimpleMeterRegistry());
+        String expiredToken = expiredIssuer.generateToken(userId, username, role);
+
+        // Act & Assert
+        assertThrows(JWTVerificationException.class,
+                () -> jwtService.authenticate(validToken + "manipulated"));
+        assertThrows(TokenExpiredException.class, () -> jwtService.authenticate(expiredToken));
+    }
+
+    /**
+     * Tests that a correctly signed token with a malformed subject yields no principal.
+     */
+    @Test
+    void authenticate_ShouldReturnNull_WhenClaimsAreMalformed() {
+        // Arrange
+        String token = JWT.create()
+                .withSubject("not-a-uuid")
+                .withJWTId(UUID.randomUUID().toString())
+                .withExpiresAt(Instant.now().plusSeconds(60))
+                .withClaim("username", username)
+                .withClaim("role", role.name())
+                .sign(Algorithm.HMAC256(secret));
+
+        // Act & Assert
+        assertNull(jwtService.authenticate(token));
+    }
+
+    /**
+     * Tests that a token without id, which could not be revoked, yields no principal.
+     */
+    @Test
+    void authenticate_ShouldReturnNull_WhenTokenIdIsMissing() {
+        // Arrange
+        String token = JWT.create()
+                .withSubject(String.valueOf(userId))
+                .withExpiresAt(Instant.now().plusSeconds(60))
+                .withClaim("username", username)
+                .withClaim("role", role.name())
+                .sign(Algorithm.HMAC256(secret));
+
+        // Act & Assert
+        assertNull(jwtService.authenticate(token));
+    }
+}
@@ -0,0 +1,64 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.exception.LoginThrottledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    private static final String ATTACKER = "203.0.113.7";
+
+    private SimpleMeterRegistry meterRegistry;
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loginThrottle = new LoginThrottle(3, Duration.ofMinutes(15), meterRegistry);
+    }
+
+    /**
+     * Tests that an account is throttled for a client once it reached the failure
+     * limit from it, while the same account from another address and other accounts
+     * are not affected.
+     */
+    @Test
+    void checkAllowed_ShouldThrow_AfterMaxFailuresFromClient() {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.checkAllowed("steve", ATTACKER);
+            loginThrottle.recordFailure("steve", ATTACKER);
+        }
+
+        // Act & Assert
+        LoginThrottledException ex = assertThrows(LoginThrottledException.class,
+                () -> loginThrottle.checkAllowed("steve", ATTACKER));
+        assertEquals(900, ex.getRetryAfterSeconds());
+        assertDoesNotThrow(() -> loginThrottle.checkAllowed("steve", "198.51.100.2"));
+        assertDoesNotThrow(() -> loginThrottle.checkAllowed("other", ATTACKER));
+        assertEquals(1.0, meterRegistry.get("login.throttled").counter().count());
+    }
+
+    /**
+     * Tests that a successful login clears the failures of its account from the client.
+     */
+    @Test
+    void recordSuccess_ShouldClearFailures() {
+        // Arrange
+        loginThrottle.recordFailure("steve", ATTACKER);
+        loginThrottle.recordFailure("steve", ATTACKER);
+
+        // Act
+        loginThrottle.recordSuccess("steve", ATTACKER);
+        loginThrottle.recordFailure("steve", ATTACKER);
+        loginThrottle.recordFailure("steve", ATTACKER);
+
+        // Assert
+        assertDoesNotThrow(() -> loginThrottle.checkAllowed("steve", ATTACKER));
+    }
+}
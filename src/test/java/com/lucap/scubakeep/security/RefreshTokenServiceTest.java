@@ -0,0 +1,115 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.entity.RefreshToken;
+import com.lucap.scubakeep.exception.InvalidRefreshTokenException;
+import com.lucap.scubakeep.repository.RefreshTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceTest {
+
+    private RefreshTokenRepository refreshTokenRepository;
+    private RefreshTokenService refreshTokenService;
+    private UUID diverId;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, Duration.ofDays(30));
+        diverId = UUID.randomUUID();
+    }
+
+    /**
+     * Tests that only the digest of an issued token is stored, in a new family.
+     */
+    @Test
+    void issue_StoresDigestOnly() {
+        // Act
+        String token = refreshTokenService.issue(diverId);
+
+        // Assert
+        RefreshToken stored = savedToken();
+        assertEquals(43, token.length());
+        assertEquals(64, stored.getTokenHash().length());
+        assertFalse(stored.getTokenHash().contains(token));
+        assertEquals(diverId, stored.getDiverId());
+        assertNotNull(stored.getFamilyId());
+        assertTrue(stored.getExpiresAt().isAfter(Instant.now().plus(Duration.ofDays(29))));
+    }
+
+    /**
+     * Tests that a rotation consumes the token and issues a successor in the same family.
+     */
+    @Test
+    void rotate_IssuesSuccessorInSameFamily() {
+        // Arrange
+        String token = refreshTokenService.issue(diverId);
+        RefreshToken stored = savedToken();
+        when(refreshTokenRepository.findById(stored.getTokenHash()))
+                .thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.markUsed(eq(stored.getTokenHash()), any())).thenReturn(1);
+        clearInvocations(refreshTokenRepository);
+
+        // Act
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(token);
+
+        // Assert
+        RefreshToken successor = savedToken();
+        assertEquals(diverId, rotation.diverId());
+        assertNotEquals(token, rotation.refreshToken());
+        assertEquals(stored.getFamilyId(), successor.getFamilyId());
+        verify(refreshTokenRepository, never()).deleteByFamilyId(any());
+    }
+
+    /**
+     * Tests that presenting a used token again revokes its whole family.
+     */
+    @Test
+    void rotate_RevokesFamily_WhenTokenIsReused() {
+        // Arrange
+        String token = refreshTokenService.issue(diverId);
+        RefreshToken stored = savedToken();
+        when(refreshTokenRepository.findById(stored.getTokenHash()))
+                .thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.markUsed(eq(stored.getTokenHash()), any())).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate(token));
+        verify(refreshTokenRepository).deleteByFamilyId(stored.getFamilyId());
+    }
+
+    /**
+     * Tests that unknown and expired tokens are rejected without being consumed.
+     */
+    @Test
+    void rotate_Throws_WhenTokenIsUnknownOrExpired() {
+        // Arrange
+        RefreshToken expired = RefreshToken.builder()
+                .tokenHash("expired").familyId(UUID.randomUUID()).diverId(diverId)
+                .expiresAt(Instant.now().minusSeconds(1))
+                .build();
+        when(refreshTokenRepository.findById(anyString())).thenReturn(Optional.of(expired));
+
+        // Act & Assert
+        assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate("expired-token"));
+        verify(refreshTokenRepository, never()).markUsed(any(), any());
+    }
+
+    private RefreshToken savedToken() {
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,118 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.exception.LoginThrottledException;
+import com.lucap.scubakeep.projection.DiverCredentials;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ThrottledAuthenticationProviderTest {
+
+    private static final String ATTACKER = "203.0.113.7";
+    private static final String OWNER = "198.51.100.2";
+
+    private DiverUserDetailsService userDetailsService;
+    private PasswordEncoder passwordEncoder;
+    private ThrottledAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = mock(DiverUserDetailsService.class);
+        passwordEncoder = mock(PasswordEncoder.class);
+        LoginThrottle loginThrottle =
+                new LoginThrottle(2, Duration.ofMinutes(15), new SimpleMeterRegistry());
+        provider = new ThrottledAuthenticationProvider(
+                userDetailsService, passwordEncoder, loginThrottle);
+
+        DiverUserDetails steve = new DiverUserDetails(
+                new DiverCredentials(UUID.randomUUID(), "steve", "encodedPass", Role.USER));
+        when(userDetailsService.loadUserByUsername("steve")).thenReturn(steve);
+        when(userDetailsService.loadUserByUsername("steve@example.com")).thenReturn(steve);
+        when(passwordEncoder.matches("wrong", "encodedPass")).thenReturn(false);
+        when(passwordEncoder.matches("secret", "encodedPass")).thenReturn(true);
+    }
+
+    /**
+     * Tests that failures with the username and with the email count against one
+     * budget, and that the throttled account is rejected before its password is checked.
+     */
+    @Test
+    void authenticate_ShouldShareBudgetBetweenUsernameAndEmail() {
+        // Arrange
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(token("steve", "wrong", ATTACKER)));
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(token("steve@example.com", "wrong", ATTACKER)));
+        clearInvocations(passwordEncoder);
+
+        // Act & Assert
+        assertThrows(LoginThrottledException.class,
+                () -> provider.authenticate(token("steve", "secret", ATTACKER)));
+        assertThrows(LoginThrottledException.class,
+                () -> provider.authenticate(token("steve@example.com", "secret", ATTACKER)));
+        verify(passwordEncoder, never()).matches(any(), anyString());
+    }
+
+    /**
+     * Tests that an attacker's failures do not lock the account's owner out
+     * when they sign in from another address.
+     */
+    @Test
+    void authenticate_ShouldNotThrottleOtherClients() {
+        // Arrange
+        for (int i = 0; i < 2; i++) {
+            assertThrows(BadCredentialsException.class,
+                    () -> provider.authenticate(token("steve", "wrong", ATTACKER)));
+        }
+
+        // Act
+        Authentication result = provider.authenticate(token("steve", "secret", OWNER));
+
+        // Assert
+        assertTrue(result.isAuthenticated());
+    }
+
+    /**
+     * Tests that identifiers matching no diver are throttled by their normalized form.
+     */
+    @Test
+    void authenticate_ShouldThrottleUnknownIdentifiers() {
+        // Arrange
+        when(userDetailsService.loadUserByUsername(anyString()))
+                .thenThrow(new UsernameNotFoundException("not found"));
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(token("ghost", "wrong", ATTACKER)));
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(token(" Ghost ", "wrong", ATTACKER)));
+
+        // Act & Assert
+        assertThrows(LoginThrottledException.class,
+                () -> provider.authenticate(token("GHOST", "wrong", ATTACKER)));
+    }
+
+    private static UsernamePasswordAuthenticationToken token(
+            String identifier,
+            String password,
+            String client
+    ) {
+        UsernamePasswordAuthenticationToken token =
+                UsernamePasswordAuthenticationToken.unauthenticated(identifier, password);
+        token.setDetails(new WebAuthenticationDetails(client, null));
+        return token;
+    }
+}
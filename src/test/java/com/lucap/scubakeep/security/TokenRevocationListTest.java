@@ -0,0 +1,113 @@
+package com.lucap.scubakeep.security;
+
+import com.lucap.scubakeep.entity.RevokedToken;
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationListTest {
+
+    private RevokedTokenRepository revokedTokenRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UUID revokedAtStartup;
+
+    @BeforeEach
+    void setUp() {
+        revokedTokenRepository = mock(RevokedTokenRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        revokedAtStartup = UUID.randomUUID();
+        when(revokedTokenRepository.findLiveIds(any())).thenReturn(List.of(revokedAtStartup));
+        when(revokedTokenRepository.existsById(revokedAtStartup)).thenReturn(true);
+    }
+
+    /**
+     * Tests that tokens that were never revoked are accepted without a query, while
+     * revoked ones loaded at startup are confirmed against the table.
+     */
+    @Test
+    void isRevoked_QueriesOnlyOnFilterMatch() {
+        // Arrange
+        TokenRevocationList list = newList();
+
+        // Act & Assert
+        for (int i = 0; i < 100; i++) {
+            assertFalse(list.isRevoked(UUID.randomUUID()));
+        }
+        assertTrue(list.isRevoked(revokedAtStartup));
+        verify(revokedTokenRepository, times(1)).existsById(any());
+        verify(revokedTokenRepository).deleteExpired(any());
+    }
+
+    /**
+     * Tests that a revoked token is stored until its expiry and rejected at once.
+     */
+    @Test
+    void revoke_StoresTokenAndRejectsIt() {
+        // Arrange
+        TokenRevocationList list = newList();
+        AccessToken token = accessToken(Instant.now().plusSeconds(600));
+        when(revokedTokenRepository.existsById(token.id())).thenReturn(true);
+
+        // Act
+        list.revoke(token);
+
+        // Assert
+        verify(revokedTokenRepository).save(argThat((RevokedToken row) ->
+                row.getJti().equals(token.id()) && row.getExpiresAt().equals(token.expiresAt())));
+        assertTrue(list.isRevoked(token.id()));
+    }
+
+    /**
+     * Tests that an already expired token is not stored.
+     */
+    @Test
+    void revoke_IgnoresExpiredToken() {
+        // Arrange
+        TokenRevocationList list = newList();
+
+        // Act
+        list.revoke(accessToken(Instant.now().minusSeconds(1)));
+
+        // Assert
+        verify(revokedTokenRepository, never()).save(any());
+    }
+
+    /**
+     * Tests that a sync picks up tokens revoked by other instances.
+     */
+    @Test
+    void synchronize_AddsTokensRevokedElsewhere() {
+        // Arrange
+        TokenRevocationList list = newList();
+        UUID revokedElsewhere = UUID.randomUUID();
+        when(revokedTokenRepository.findIdsRevokedSince(any()))
+                .thenReturn(List.of(revokedElsewhere));
+        when(revokedTokenRepository.existsById(revokedElsewhere)).thenReturn(true);
+
+        // Act
+        list.synchronize();
+
+        // Assert
+        assertTrue(list.isRevoked(revokedElsewhere));
+        assertEquals(1.0, meterRegistry.get("token.revocation.lookups").counter().count());
+    }
+
+    private TokenRevocationList newList() {
+        return new TokenRevocationList(revokedTokenRepository, 1_000, meterRegistry);
+    }
+
+    private static AccessToken accessToken(Instant expiresAt) {
+        return new AccessToken(UUID.randomUUID(),
+                new DiverPrincipal(UUID.randomUUID(), "steve", Role.USER), expiresAt);
+    }
+}
@@ -1,12 +1,20 @@
 package com.lucap.scubakeep.service;
 
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.lucap.scubakeep.dto.TokenRequestDTO;
 import com.lucap.scubakeep.dto.TokenResponseDTO;
 import com.lucap.scubakeep.entity.Diver;
 import com.lucap.scubakeep.entity.Role;
 import com.lucap.scubakeep.exception.AuthenticatedUserNotFoundException;
+import com.lucap.scubakeep.exception.InvalidRefreshTokenException;
+import com.lucap.scubakeep.projection.DiverCredentials;
 import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.security.AccessToken;
+import com.lucap.scubakeep.security.DiverPrincipal;
+import com.lucap.scubakeep.security.DiverUserDetails;
 import com.lucap.scubakeep.security.JwtService;
+import com.lucap.scubakeep.security.RefreshTokenService;
+import com.lucap.scubakeep.security.TokenRevocationList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,14 +22,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 /**
@@ -33,15 +45,19 @@ class AuthServiceTest {
     @Mock
     private AuthenticationManager authenticationManager;
     @Mock
-    private DiverRepository diverRepository;
-    @Mock
     private JwtService jwtService;
+    @Mock
+    private RefreshTokenService refreshTokenService;
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+    @Mock
+    private DiverRepository diverRepository;
 
     @InjectMocks
     private AuthService authService;
 
     private TokenRequestDTO requestDTO;
-    private Diver diver;
+    private DiverUserDetails diver;
 
     @BeforeEach
     void setUp() {
@@ -49,56 +65,150 @@ class AuthServiceTest {
         requestDTO.setIdentifier("testuser");
         requestDTO.setPassword("password123");
 
-        diver = Diver.builder()
-                .id(UUID.randomUUID())
-                .username("testuser")
-                .role(Role.USER)
-                .build();
+        diver = new DiverUserDetails(
+                new DiverCredentials(UUID.randomUUID(), "testuser", "hash", Role.USER));
     }
 
     /**
-     * Tests that a valid authentication request returns a valid JWT token.
+     * Tests that a valid authentication request returns a valid JWT token and a
+     * refresh token, issued from the authenticated user details without another lookup,
+     * and that the client address is passed on for throttling.
      */
     @Test
     void authenticate_Success() {
         // Arrange
         Authentication authentication = mock(Authentication.class);
-        when(authentication.getName()).thenReturn("testuser");
+        when(authentication.getPrincipal()).thenReturn(diver);
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
-        when(diverRepository.findByUsername("testuser")).thenReturn(Optional.of(diver));
         when(jwtService.generateToken(diver.getId(), diver.getUsername(), diver.getRole()))
                 .thenReturn("mocked-jwt-token");
+        when(refreshTokenService.issue(diver.getId())).thenReturn("mocked-refresh-token");
 
         // Act
-        TokenResponseDTO result = authService.authenticate(requestDTO);
+        TokenResponseDTO result = authService.authenticate(requestDTO, "203.0.113.7");
 
         // Assert
         assertNotNull(result);
         assertEquals("mocked-jwt-token", result.getToken());
-        verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
+        assertEquals("mocked-refresh-token", result.getRefreshToken());
+        verifyNoInteractions(diverRepository);
+        verify(authenticationManager).authenticate(argThat(credentials ->
+                "testuser".equals(credentials.getPrincipal())
+                        && credentials.getDetails() instanceof WebAuthenticationDetails details
+                        && "203.0.113.7".equals(details.getRemoteAddress())));
         verify(jwtService).generateToken(diver.getId(), diver.getUsername(), diver.getRole());
     }
 
+    /**
+     * Tests that a wrong password is rethrown without issuing any token.
+     */
+    @Test
+    void authenticate_Throws_WhenCredentialsAreBad() {
+        // Arrange
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenThrow(new BadCredentialsException("Bad credentials"));
+
+        // Act & Assert
+        assertThrows(BadCredentialsException.class, () ->
+                authService.authenticate(requestDTO, "203.0.113.7"));
+        verifyNoInteractions(jwtService, refreshTokenService);
+    }
+
     /**
      * Tests that an {@link AuthenticatedUserNotFoundException} is thrown if the
-     * authenticated user is not present in the database.
+     * authentication does not carry the diver's details.
      */
     @Test
     void authenticate_ThrowsUserNotFound() {
         // Arrange
         Authentication authentication = mock(Authentication.class);
-        when(authentication.getName()).thenReturn("ghostUser");
+        when(authentication.getPrincipal()).thenReturn("ghostUser");
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
-        when(diverRepository.findByUsername("ghostUser")).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(AuthenticatedUserNotFoundException.class, () ->
-                authService.authenticate(requestDTO));
+                authService.authenticate(requestDTO, "203.0.113.7"));
+
+        verify(jwtService, never()).generateToken(any(), any(), any());
+    }
+
+    /**
+     * Tests that a refresh rotates the refresh token and issues an access token with
+     * the diver's current username and role.
+     */
+    @Test
+    void refresh_IssuesAccessTokenWithCurrentRole() {
+        // Arrange
+        Diver current = Diver.builder().id(diver.getId()).username("renamed").role(Role.ADMIN)
+                .build();
+        when(refreshTokenService.rotate("old-refresh-token"))
+                .thenReturn(new RefreshTokenService.Rotation(diver.getId(), "new-refresh-token"));
+        when(diverRepository.findById(diver.getId())).thenReturn(Optional.of(current));
+        when(jwtService.generateToken(diver.getId(), "renamed", Role.ADMIN))
+                .thenReturn("new-jwt-token");
+
+        // Act
+        TokenResponseDTO result = authService.refresh("old-refresh-token");
+
+        // Assert
+        assertEquals("new-jwt-token", result.getToken());
+        assertEquals("new-refresh-token", result.getRefreshToken());
+    }
+
+    /**
+     * Tests that the refresh token of a diver deleted in the meantime is rejected.
+     */
+    @Test
+    void refresh_ThrowsInvalidRefreshToken_WhenDiverWasDeleted() {
+        // Arrange
+        when(refreshTokenService.rotate("old-refresh-token"))
+                .thenReturn(new RefreshTokenService.Rotation(diver.getId(), "new-refresh-token"));
+        when(diverRepository.findById(diver.getId())).thenReturn(Optional.empty());
 
+        // Act & Assert
+        assertThrows(InvalidRefreshTokenException.class,
+                () -> authService.refresh("old-refresh-token"));
         verify(jwtService, never()).generateToken(any(), any(), any());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that logout revokes the access token and the refresh token's session.
+     */
+    @Test
+    void logout_RevokesAccessAndRefreshToken() {
+        // Arrange
+        AccessToken accessToken = new AccessToken(UUID.randomUUID(),
+                new DiverPrincipal(diver.getId(), "testuser", Role.USER),
+                Instant.now().plusSeconds(600));
+        when(jwtService.authenticate("access-token")).thenReturn(accessToken);
+
+        // Act
+        authService.logout("access-token", "refresh-token");
+
+        // Assert
+        verify(tokenRevocationList).revoke(accessToken);
+        verify(refreshTokenService).revoke("refresh-token");
+    }
+
+    /**
+     * Tests that an expired access token is ignored on logout, while the refresh
+     * token is still revoked.
+     */
+    @Test
+    void logout_IgnoresExpiredAccessToken() {
+        // Arrange
+        when(jwtService.authenticate("expired-token"))
+                .thenThrow(new TokenExpiredException("expired", Instant.now()));
+
+        // Act
+        authService.logout("expired-token", "refresh-token");
+
+        // Assert
+        verifyNoInteractions(tokenRevocationList);
+        verify(refreshTokenService).revoke("refresh-token");
+    }
+}
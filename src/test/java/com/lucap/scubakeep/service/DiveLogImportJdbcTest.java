@@ -0,0 +1,92 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.dto.DiveLogImportResultDTO;
+import com.lucap.scubakeep.entity.Certification;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.repository.DiverRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the bulk import SQL against an embedded database to verify that the JDBC
+ * insert matches the mapped {@code dive_logs} schema and keeps the counter in step.
+ */
+@DataJpaTest
+class DiveLogImportJdbcTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private DiverRepository diverRepository;
+    @Autowired
+    private DiveLogRepository diveLogRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Tests that imported rows are readable through JPA with the right owner and counter.
+     */
+    @Test
+    void importDiveLogs_RowsAreVisibleThroughJpa() {
+        Diver diver = entityManager.persistFlushFind(Diver.builder()
+                .username("importer")
+                .email("importer@scubakeep.com")
+                .password("hash")
+                .firstName("Im")
+                .lastName("Porter")
+                .countryCode("IT")
+                .role(Role.USER)
+                .highestCertification(Certification.OPEN_WATER)
+                .build());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("importer", null, List.of()));
+        DiveLogImportServiceImpl importService = new DiveLogImportServiceImpl(
+                diverRepository,
+                jdbcTemplate,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                transactionManager,
+                new EntityCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry())
+        );
+        String csv = """
+                diveDate,location,diveSite,maxDepth,duration,diveBuddy,notes
+                2023-08-15,Red Sea,Thistlegorm,30.5,45,John,Wreck
+                2023-08-16,Red Sea,Shark Reef,25,50,,
+                """;
+
+        DiveLogImportResultDTO result = importService.importDiveLogs(new MockMultipartFile(
+                "file", "dives.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)), null);
+        entityManager.clear();
+
+        assertEquals(2, result.getImported());
+        assertEquals(2, diveLogRepository.findViewsByDiverId(
+                diver.getId(), Pageable.unpaged()).getTotalElements());
+        assertEquals(2L, diverRepository.findById(diver.getId()).orElseThrow().getTotalDives());
+    }
+}
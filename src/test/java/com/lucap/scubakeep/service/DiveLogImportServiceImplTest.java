@@ -0,0 +1,154 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.dto.DiveLogImportResultDTO;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.exception.AuthenticatedUserNotFoundException;
+import com.lucap.scubakeep.exception.UnsupportedImportFormatException;
+import com.lucap.scubakeep.repository.DiverRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test suite for the {@link DiveLogImportServiceImpl} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class DiveLogImportServiceImplTest {
+
+    private static final String HEADER = "diveDate,location,diveSite,maxDepth,duration\n";
+
+    @Mock
+    private DiverRepository diverRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DiveLogImportServiceImpl importService;
+    private Diver diver;
+
+    @BeforeEach
+    void setUp() {
+        importService = new DiveLogImportServiceImpl(
+                diverRepository,
+                jdbcTemplate,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                transactionManager,
+                new EntityCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry())
+        );
+
+        diver = Diver.builder().id(UUID.randomUUID()).username("testuser").build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("testuser", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Tests that valid rows are inserted in JDBC batches of 1000, each batch bumping
+     * the diver's dive counter, while invalid rows are reported with their row number.
+     */
+    @Test
+    void importDiveLogs_InsertsInBatchesAndReportsInvalidRows() {
+        // Arrange
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 2500; i++) {
+            csv.append("2024-01-01,Red Sea,Reef ").append(i).append(",18.5,45\n");
+        }
+        csv.append("2024-01-01,,Reef,18.5,45\n");
+        csv.append("2024-01-01,Red Sea,Reef,0.5,45\n");
+        when(diverRepository.findByUsername("testuser")).thenReturn(Optional.of(diver));
+
+        // Act
+        DiveLogImportResultDTO result = importService.importDiveLogs(csvFile(csv.toString()), null);
+
+        // Assert
+        assertEquals(2502, result.getTotalRows());
+        assertEquals(2500, result.getImported());
+        assertEquals(2, result.getRejected());
+        assertEquals(2501, result.getErrors().get(0).getRow());
+        assertEquals("Location is required", result.getErrors().get(0).getMessage());
+        assertEquals("Maximum depth must be 1 or greater", result.getErrors().get(1).getMessage());
+
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList(), eq(1000), any());
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList(), eq(500), any());
+        verify(diverRepository, times(2)).incrementTotalDives(diver.getId(), 1000);
+        verify(diverRepository).incrementTotalDives(diver.getId(), 500);
+    }
+
+    /**
+     * Tests that a file with only invalid rows inserts nothing.
+     */
+    @Test
+    void importDiveLogs_NothingToInsert() {
+        // Arrange
+        when(diverRepository.findByUsername("testuser")).thenReturn(Optional.of(diver));
+
+        // Act
+        DiveLogImportResultDTO result = importService.importDiveLogs(
+                csvFile(HEADER + "2024-01-01,Red Sea,Reef,18,0\n"), "csv");
+
+        // Assert
+        assertEquals(0, result.getImported());
+        assertEquals(1, result.getRejected());
+        verifyNoInteractions(jdbcTemplate);
+        verify(diverRepository, never()).incrementTotalDives(any(), anyLong());
+    }
+
+    /**
+     * Tests that an unknown file type is rejected before reading it.
+     */
+    @Test
+    void importDiveLogs_ThrowsOnUnsupportedFormat() {
+        // Arrange
+        when(diverRepository.findByUsername("testuser")).thenReturn(Optional.of(diver));
+        MockMultipartFile file = new MockMultipartFile("file", "dives.xlsx", null, new byte[0]);
+
+        // Act & Assert
+        assertThrows(UnsupportedImportFormatException.class,
+                () -> importService.importDiveLogs(file, null));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    /**
+     * Tests that the import fails if the authenticated user does not exist.
+     */
+    @Test
+    void importDiveLogs_ThrowsWhenUserNotFound() {
+        // Arrange
+        when(diverRepository.findByUsername("testuser")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(AuthenticatedUserNotFoundException.class,
+                () -> importService.importDiveLogs(csvFile(HEADER), null));
+    }
+
+    private static MockMultipartFile csvFile(String content) {
+        return new MockMultipartFile("file", "dives.csv", "text/csv",
+                content.getBytes(StandardCharsets.UTF_8));
+    }
+}
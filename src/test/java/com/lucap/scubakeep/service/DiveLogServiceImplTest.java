@@ -1,42 +1,65 @@
 package com.lucap.scubakeep.service;
 
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogRequestDTO;
 import com.lucap.scubakeep.dto.DiveLogResponseDTO;
 import com.lucap.scubakeep.dto.DiveLogUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadConfirmDTO;
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
 import com.lucap.scubakeep.entity.DiveLog;
 import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.entity.Role;
 import com.lucap.scubakeep.exception.AuthenticatedUserNotFoundException;
 import com.lucap.scubakeep.exception.DiveLogNotFoundException;
+import com.lucap.scubakeep.exception.InvalidCursorException;
 import com.lucap.scubakeep.exception.InvalidFileTypeException;
+import com.lucap.scubakeep.exception.InvalidUploadException;
 import com.lucap.scubakeep.exception.StorageOperationException;
+import com.lucap.scubakeep.pagination.DiveLogCursor;
+import com.lucap.scubakeep.pagination.DiveLogSort;
+import com.lucap.scubakeep.projection.DiveLogView;
 import com.lucap.scubakeep.repository.DiveLogRepository;
 import com.lucap.scubakeep.repository.DiverRepository;
 import com.lucap.scubakeep.security.AuthorizationService;
+import com.lucap.scubakeep.security.DiverPrincipal;
 import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.PresignedUploads;
+import com.lucap.scubakeep.storage.StoredImage;
+import com.lucap.scubakeep.storage.StoredObject;
+import com.lucap.scubakeep.storage.StreamingUploads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import static com.lucap.scubakeep.pagination.DiveLogSort.CREATED_AT;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 
 /**
  * Unit test suite for the {@link DiveLogServiceImpl} class.
@@ -52,12 +75,23 @@ class DiveLogServiceImplTest {
     private AuthorizationService authorizationService;
     @Mock
     private MinioStorageService minioStorageService;
+    @Mock
+    private PresignedUploads presignedUploads;
+    @Mock
+    private StreamingUploads streamingUploads;
+    @Mock
+    private ImageVariantService imageVariantService;
+
+    @Spy
+    private EntityCache entityCache =
+            new EntityCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
 
     @InjectMocks
     private DiveLogServiceImpl diveLogService;
 
     private Diver diver;
     private DiveLog diveLog;
+    private DiveLogView diveLogView;
     private DiveLogRequestDTO requestDTO;
     private DiveLogUpdateRequestDTO updateRequestDTO;
 
@@ -83,6 +117,8 @@ class DiveLogServiceImplTest {
                 .diveSite("Blue Hole")
                 .build();
 
+        diveLogView = feedEntry(1L, Instant.parse("2024-06-01T12:00:00Z"));
+
         requestDTO = new DiveLogRequestDTO();
         requestDTO.setDiveDate(LocalDate.now());
         requestDTO.setLocation("Malta");
@@ -103,80 +139,153 @@ class DiveLogServiceImplTest {
     }
 
     /**
-     * Tests that requesting all dive logs correctly passes an unpaged
-     * request with a null ID to the underlying method.
+     * Tests that fetching dive logs with pagination but without a specific
+     * diver ID correctly calls findViews() on the repository.
      */
     @Test
-    void getAllDiveLogs_Success() {
+    void getDiveLogs_WithoutDiverId_Success() {
         // Arrange
-        PageImpl<DiveLog> diveLogPage = new PageImpl<>(List.of(diveLog));
-        when(diveLogRepository.findAll(any(Pageable.class))).thenReturn(diveLogPage);
+        Pageable pageable = PageRequest.of(0, 10);
+        PageImpl<DiveLogView> diveLogPage = new PageImpl<>(List.of(diveLogView));
+        when(diveLogRepository.findViews(eq(pageable))).thenReturn(diveLogPage);
 
         // Act
-        List<DiveLogResponseDTO> result = diveLogService.getAllDiveLogs();
+        List<DiveLogResponseDTO> result = diveLogService.getDiveLogs(pageable, null);
 
         // Assert
         assertFalse(result.isEmpty());
         assertEquals(1, result.size());
-        verify(diveLogRepository, times(1)).findAll(Pageable.unpaged());
+        verify(diveLogRepository, times(1)).findViews(pageable);
+        verify(diveLogRepository, never()).findViewsByDiverId(any(), any());
     }
 
     /**
-     * Tests that fetching dive logs with pagination but without a specific
-     * diver ID correctly calls findAll() on the repository.
+     * Tests that fetching dive logs for a specific diver correctly routes
+     * the call to findViewsByDiverId() on the repository.
      */
     @Test
-    void getDiveLogs_WithoutDiverId_Success() {
+    void getDiveLogs_WithDiverId_Success() {
         // Arrange
         Pageable pageable = PageRequest.of(0, 10);
-        PageImpl<DiveLog> diveLogPage = new PageImpl<>(List.of(diveLog));
-        when(diveLogRepository.findAll(eq(pageable))).thenReturn(diveLogPage);
+        PageImpl<DiveLogView> diveLogPage = new PageImpl<>(List.of(diveLogView));
+        when(diveLogRepository.findViewsByDiverId(eq(diver.getId()), eq(pageable)))
+                .thenReturn(diveLogPage);
 
         // Act
-        List<DiveLogResponseDTO> result = diveLogService.getDiveLogs(pageable, null);
+        List<DiveLogResponseDTO> result = diveLogService.getDiveLogs(pageable, diver.getId());
 
         // Assert
         assertFalse(result.isEmpty());
         assertEquals(1, result.size());
-        verify(diveLogRepository, times(1)).findAll(pageable);
-        verify(diveLogRepository, never()).findByDiverId(any(), any());
+        assertEquals("testuser", result.get(0).getDiverUsername());
+        verify(diveLogRepository, times(1)).findViewsByDiverId(diver.getId(), pageable);
+        verify(diveLogRepository, never()).findViews(any(Pageable.class));
     }
 
     /**
-     * Tests that fetching dive logs for a specific diver correctly routes
-     * the call to findByDiverId() on the repository.
+     * Tests that the first feed page uses the global seek query and returns
+     * a cursor pointing at the last row when more rows exist.
      */
     @Test
-    void getDiveLogs_WithDiverId_Success() {
+    void getDiveLogFeed_FirstPage_ReturnsNextCursor() {
         // Arrange
-        Pageable pageable = PageRequest.of(0, 10);
-        PageImpl<DiveLog> diveLogPage = new PageImpl<>(List.of(diveLog));
-        when(diveLogRepository.findByDiverId(eq(diver.getId()), eq(pageable))).thenReturn(diveLogPage);
+        Instant now = Instant.parse("2024-06-01T12:00:00Z");
+        DiveLogView first = feedEntry(3L, now);
+        DiveLogView second = feedEntry(2L, now);
+        DiveLogView extra = feedEntry(1L, now);
+        when(diveLogRepository.findFeedPage(CREATED_AT, DESC, null, null, 3))
+                .thenReturn(List.of(first, second, extra));
 
         // Act
-        List<DiveLogResponseDTO> result = diveLogService.getDiveLogs(pageable, diver.getId());
+        CursorPageResponseDTO<DiveLogResponseDTO> result =
+                diveLogService.getDiveLogFeed(null, 2, null, CREATED_AT, DESC);
 
         // Assert
-        assertFalse(result.isEmpty());
-        assertEquals(1, result.size());
-        verify(diveLogRepository, times(1)).findByDiverId(diver.getId(), pageable);
-        verify(diveLogRepository, never()).findAll(any(Pageable.class));
+        assertEquals(2, result.getItems().size());
+        assertEquals(new DiveLogCursor(CREATED_AT, DESC, now, 2L),
+                DiveLogCursor.decode(result.getNextCursor()));
+        verify(diveLogRepository, never()).findViews(any(Pageable.class));
+    }
+
+    /**
+     * Tests that a follow-up page for a diver seeks after the cursor position
+     * and returns no cursor once the end of the feed is reached.
+     */
+    @Test
+    void getDiveLogFeed_WithCursorAndDiver_SeeksAfterCursor() {
+        // Arrange
+        Instant createdAt = Instant.parse("2024-06-01T12:00:00Z");
+        DiveLogCursor after = new DiveLogCursor(CREATED_AT, DESC, createdAt, 10L);
+        when(diveLogRepository.findFeedPage(CREATED_AT, DESC, diver.getId(), after, 21))
+                .thenReturn(List.of(diveLogView));
+
+        // Act
+        CursorPageResponseDTO<DiveLogResponseDTO> result =
+                diveLogService.getDiveLogFeed(after.encode(), 20, diver.getId(), CREATED_AT, DESC);
+
+        // Assert
+        assertEquals(1, result.getItems().size());
+        assertNull(result.getNextCursor());
+    }
+
+    /**
+     * Tests that the requested feed size is clamped to the supported maximum.
+     */
+    @Test
+    void getDiveLogFeed_ClampsPageSize() {
+        // Arrange
+        when(diveLogRepository.findFeedPage(CREATED_AT, DESC, diver.getId(), null, 101))
+                .thenReturn(List.of());
+
+        // Act
+        CursorPageResponseDTO<DiveLogResponseDTO> result =
+                diveLogService.getDiveLogFeed(null, 10_000, diver.getId(), CREATED_AT, DESC);
+
+        // Assert
+        assertTrue(result.getItems().isEmpty());
+        verify(diveLogRepository).findFeedPage(CREATED_AT, DESC, diver.getId(), null, 101);
+    }
+
+    /**
+     * Tests that a malformed cursor is rejected before any query is issued.
+     */
+    @Test
+    void getDiveLogFeed_ThrowsInvalidCursor() {
+        assertThrows(InvalidCursorException.class, () ->
+                diveLogService.getDiveLogFeed("garbage!", 20, null, CREATED_AT, DESC));
+
+        verifyNoInteractions(diveLogRepository);
+    }
+
+    /**
+     * Tests that a cursor issued for one sort cannot continue a different sort,
+     * whose seek predicate would skip or repeat rows.
+     */
+    @Test
+    void getDiveLogFeed_ThrowsInvalidCursor_WhenSortDiffers() {
+        // Arrange
+        String cursor = new DiveLogCursor(DiveLogSort.MAX_DEPTH, DESC, 30.0, 10L).encode();
+
+        // Act & Assert
+        assertThrows(InvalidCursorException.class, () ->
+                diveLogService.getDiveLogFeed(cursor, 20, null, CREATED_AT, DESC));
+        assertThrows(InvalidCursorException.class, () ->
+                diveLogService.getDiveLogFeed(cursor, 20, null, DiveLogSort.MAX_DEPTH,
+                        Sort.Direction.ASC));
+        verifyNoInteractions(diveLogRepository);
     }
 
     /**
      * Tests that a dive log is successfully created for the currently
-     * authenticated user.
+     * authenticated user, referencing the diver from the token without loading it.
      */
     @Test
     void createDiveLog_Success() {
         // Arrange
-        Authentication authentication = mock(Authentication.class);
-        SecurityContext securityContext = mock(SecurityContext.class);
-        when(authentication.getName()).thenReturn("testuser");
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        SecurityContextHolder.setContext(securityContext);
-
-        when(diverRepository.findByUsername("testuser")).thenReturn(Optional.of(diver));
+        when(authorizationService.currentDiver())
+                .thenReturn(new DiverPrincipal(diver.getId(), "testuser", Role.USER));
+        when(diverRepository.incrementTotalDives(diver.getId(), 1L)).thenReturn(1);
+        when(diverRepository.getReferenceById(diver.getId())).thenReturn(diver);
         when(diveLogRepository.save(any(DiveLog.class))).thenReturn(diveLog);
 
         // Act
@@ -185,33 +294,30 @@ class DiveLogServiceImplTest {
         // Assert
         assertNotNull(result);
         assertEquals(diveLog.getLocation(), result.getLocation());
+        assertEquals("testuser", result.getDiverUsername());
         verify(diveLogRepository, times(1)).save(any(DiveLog.class));
-
-        SecurityContextHolder.clearContext();
+        verify(diverRepository, times(1)).incrementTotalDives(diver.getId(), 1L);
+        verify(diverRepository, never()).findByUsername(any());
+        verify(diverRepository, never()).findById(any());
     }
 
     /**
-     * Tests that if the authenticated username is not found in the database,
+     * Tests that if the authenticated diver no longer exists in the database,
      * an {@link AuthenticatedUserNotFoundException} is thrown.
      */
     @Test
     void createDiveLog_ThrowsAuthenticatedUserNotFound() {
         // Arrange
-        Authentication authentication = mock(Authentication.class);
-        SecurityContext securityContext = mock(SecurityContext.class);
-        when(authentication.getName()).thenReturn("unknownUser");
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        SecurityContextHolder.setContext(securityContext);
-
-        when(diverRepository.findByUsername("unknownUser")).thenReturn(Optional.empty());
+        UUID deletedId = UUID.randomUUID();
+        when(authorizationService.currentDiver())
+                .thenReturn(new DiverPrincipal(deletedId, "unknownUser", Role.USER));
+        when(diverRepository.incrementTotalDives(deletedId, 1L)).thenReturn(0);
 
         // Act & Assert
         assertThrows(AuthenticatedUserNotFoundException.class, () ->
                 diveLogService.createDiveLog(requestDTO));
 
         verify(diveLogRepository, never()).save(any(DiveLog.class));
-
-        SecurityContextHolder.clearContext();
     }
 
     /**
@@ -220,7 +326,7 @@ class DiveLogServiceImplTest {
     @Test
     void getDiveLogById_Success() {
         // Arrange
-        when(diveLogRepository.findById(1L)).thenReturn(Optional.of(diveLog));
+        when(diveLogRepository.findViewById(1L)).thenReturn(Optional.of(diveLogView));
 
         // Act
         DiveLogResponseDTO result = diveLogService.getDiveLogById(1L);
@@ -229,7 +335,9 @@ class DiveLogServiceImplTest {
         assertNotNull(result);
         assertEquals(1L, result.getId());
         assertEquals("Red Sea", result.getLocation());
-        verify(diveLogRepository, times(1)).findById(1L);
+        assertEquals(diver.getId(), result.getDiverId());
+        verify(diveLogRepository, times(1)).findViewById(1L);
+        verify(diveLogRepository, never()).findById(any());
     }
 
     /**
@@ -239,13 +347,33 @@ class DiveLogServiceImplTest {
     @Test
     void getDiveLogById_ThrowsNotFound() {
         // Arrange
-        when(diveLogRepository.findById(999L)).thenReturn(Optional.empty());
+        when(diveLogRepository.findViewById(999L)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(DiveLogNotFoundException.class, () ->
                 diveLogService.getDiveLogById(999L));
 
-        verify(diveLogRepository, times(1)).findById(999L);
+        verify(diveLogRepository, times(1)).findViewById(999L);
+    }
+
+    /**
+     * Tests that repeated reads of a dive log are served from the cache and that
+     * an update makes the next read load the new state.
+     */
+    @Test
+    void getDiveLogById_IsCachedUntilUpdated() {
+        // Arrange
+        when(diveLogRepository.findViewById(1L)).thenReturn(Optional.of(diveLogView));
+        when(diveLogRepository.findById(1L)).thenReturn(Optional.of(diveLog));
+
+        // Act
+        diveLogService.getDiveLogById(1L);
+        diveLogService.getDiveLogById(1L);
+        diveLogService.updateDiveLog(1L, updateRequestDTO);
+        diveLogService.getDiveLogById(1L);
+
+        // Assert
+        verify(diveLogRepository, times(2)).findViewById(1L);
     }
 
     /**
@@ -265,6 +393,7 @@ class DiveLogServiceImplTest {
         // Assert
         verify(authorizationService, times(1)).assertOwnerOrAdmin(diver.getUsername());
         verify(diveLogRepository, times(1)).delete(diveLog);
+        verify(diverRepository, times(1)).decrementTotalDives(diver.getId());
     }
 
     /**
@@ -282,6 +411,7 @@ class DiveLogServiceImplTest {
                 diveLogService.deleteDiveLog(logId));
 
         verify(diveLogRepository, never()).delete(any());
+        verify(diverRepository, never()).decrementTotalDives(any());
     }
 
     /**
@@ -323,16 +453,18 @@ class DiveLogServiceImplTest {
     }
 
     /**
-     * Tests that a dive log image is successfully uploaded to storage
-     * when the file is valid and the user is authorized.
+     * Tests that a dive log image is uploaded to storage first and its key committed
+     * afterwards, when the file is valid and the user is authorized.
      */
     @Test
     void uploadImage_Success() throws Exception {
         // Arrange
         MultipartFile mockFile = mock(MultipartFile.class);
         InputStream mockStream = mock(InputStream.class);
-        when(diveLogRepository.findById(1L)).thenReturn(Optional.of(diveLog));
-        doNothing().when(authorizationService).assertOwnerOrAdmin(diver.getUsername());
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
+        when(diveLogRepository.updateImage(eq(1L), startsWith("divelogs/1/"), any()))
+                .thenReturn(1);
+        when(diveLogRepository.findViewById(1L)).thenReturn(Optional.of(diveLogView));
 
         // Setup mock file behavior
         when(mockFile.getContentType()).thenReturn("image/jpeg");
@@ -343,9 +475,57 @@ class DiveLogServiceImplTest {
         DiveLogResponseDTO result = diveLogService.uploadImage(1L, mockFile);
 
         // Assert
-        assertNotNull(diveLog.getImagePath());
-        assertTrue(diveLog.getImagePath().startsWith("divelogs/1/"));
-        verify(minioStorageService, times(1)).upload(anyString(), eq(mockStream), eq(1024L), eq("image/jpeg"));
+        assertEquals(1L, result.getId());
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        InOrder inOrder = inOrder(authorizationService, minioStorageService, diveLogRepository);
+        inOrder.verify(authorizationService).assertOwnerOrAdmin("testuser");
+        inOrder.verify(minioStorageService)
+                .upload(key.capture(), eq(mockStream), eq(1024L), eq("image/jpeg"));
+        inOrder.verify(diveLogRepository).updateImage(eq(1L), eq(key.getValue()), any());
+        verify(imageVariantService).generateForDiveLog(1L, key.getValue());
+        verify(minioStorageService, never()).delete(anyString());
+    }
+
+    /**
+     * Tests that the stored object is deleted again when committing its key fails.
+     */
+    @Test
+    void uploadImage_DeletesObjectWhenUpdateFails() throws Exception {
+        // Arrange
+        MultipartFile mockFile = mock(MultipartFile.class);
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
+        when(mockFile.getContentType()).thenReturn("image/png");
+        when(mockFile.getInputStream()).thenReturn(mock(InputStream.class));
+        when(diveLogRepository.updateImage(eq(1L), anyString(), any()))
+                .thenThrow(new QueryTimeoutException("Lock wait timeout exceeded"));
+
+        // Act & Assert
+        assertThrows(QueryTimeoutException.class, () ->
+                diveLogService.uploadImage(1L, mockFile));
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        verify(minioStorageService).upload(key.capture(), any(), anyLong(), anyString());
+        verify(minioStorageService).delete(key.getValue());
+        verifyNoInteractions(imageVariantService);
+    }
+
+    /**
+     * Tests that the stored object is deleted again when the dive log was deleted
+     * during the upload.
+     */
+    @Test
+    void uploadImage_DeletesObjectWhenDiveLogWasDeleted() throws Exception {
+        // Arrange
+        MultipartFile mockFile = mock(MultipartFile.class);
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
+        when(mockFile.getContentType()).thenReturn("image/png");
+        when(mockFile.getInputStream()).thenReturn(mock(InputStream.class));
+        when(diveLogRepository.updateImage(eq(1L), anyString(), any())).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(DiveLogNotFoundException.class, () ->
+                diveLogService.uploadImage(1L, mockFile));
+        verify(minioStorageService).delete(startsWith("divelogs/1/"));
+        verifyNoInteractions(imageVariantService);
     }
 
     /**
@@ -356,7 +536,7 @@ class DiveLogServiceImplTest {
     void uploadImage_ThrowsInvalidFileTypeException() {
         // Arrange
         MultipartFile mockFile = mock(MultipartFile.class);
-        when(diveLogRepository.findById(1L)).thenReturn(Optional.of(diveLog));
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
 
         // Trigger validation failure
         when(mockFile.getContentType()).thenReturn("application/pdf");
@@ -368,6 +548,23 @@ class DiveLogServiceImplTest {
         verify(minioStorageService, never()).upload(anyString(), any(), anyLong(), anyString());
     }
 
+    /**
+     * Tests that an SVG image, which may carry script, is rejected before anything is
+     * stored.
+     */
+    @Test
+    void uploadImage_RejectsSvg() {
+        // Arrange
+        MultipartFile mockFile = mock(MultipartFile.class);
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
+        when(mockFile.getContentType()).thenReturn("image/svg+xml");
+
+        // Act & Assert
+        assertThrows(InvalidFileTypeException.class, () ->
+                diveLogService.uploadImage(1L, mockFile));
+        verify(minioStorageService, never()).upload(anyString(), any(), anyLong(), anyString());
+    }
+
     /**
      * Tests that a {@link StorageOperationException} is thrown when an
      * {@link java.io.IOException} occurs during the file streaming process.
@@ -376,7 +573,7 @@ class DiveLogServiceImplTest {
     void uploadImage_ThrowsStorageOperationException() throws Exception {
         // Arrange
         MultipartFile mockFile = mock(MultipartFile.class);
-        when(diveLogRepository.findById(1L)).thenReturn(Optional.of(diveLog));
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
         when(mockFile.getContentType()).thenReturn("image/png");
 
         // Force the IO failure
@@ -385,43 +582,142 @@ class DiveLogServiceImplTest {
         // Act & Assert
         assertThrows(StorageOperationException.class, () ->
                 diveLogService.uploadImage(1L, mockFile));
+        verify(diveLogRepository, never()).updateImage(anyLong(), anyString(), any());
     }
 
     /**
-     * Tests that the image bytes are successfully retrieved from storage
-     * when the dive log has an associated image path.
+     * Tests that the image's object key is returned, without querying the object
+     * store, when the dive log has an associated image path, and that its variants
+     * are reported once its dimensions are known.
      */
     @Test
-    void getDiveLogImageBytes_Success() {
+    void getDiveLogImage_Success() {
         // Arrange
-        byte[] expectedBytes = "fake-image-content".getBytes();
         diveLog.setImagePath("divelogs/1/photo.jpg");
-
         when(diveLogRepository.findById(1L)).thenReturn(Optional.of(diveLog));
-        when(minioStorageService.download("divelogs/1/photo.jpg")).thenReturn(expectedBytes);
 
         // Act
-        byte[] result = diveLogService.getDiveLogImageBytes(1L);
+        StoredImage pending = diveLogService.getDiveLogImage(1L);
+        diveLog.setImageWidth(4000);
+        StoredImage processed = diveLogService.getDiveLogImage(1L);
 
         // Assert
-        assertArrayEquals(expectedBytes, result);
-        verify(minioStorageService, times(1)).download(anyString());
+        assertEquals("divelogs/1/photo.jpg", pending.key());
+        assertFalse(pending.hasVariants());
+        assertTrue(processed.hasVariants());
+        verifyNoInteractions(minioStorageService);
     }
 
     /**
-     * Tests that null is returned when attempting to retrieve image bytes
-     * for a dive log that has no image path set.
+     * Tests that null is returned when attempting to retrieve the image
+     * of a dive log that has no image path set.
      */
     @Test
-    void getDiveLogImageBytes_ReturnsNullWhenNoPath() {
+    void getDiveLogImage_ReturnsNullWhenNoPath() {
         // Arrange
         when(diveLogRepository.findById(1L)).thenReturn(Optional.of(diveLog));
 
         // Act
-        byte[] result = diveLogService.getDiveLogImageBytes(1L);
+        StoredImage result = diveLogService.getDiveLogImage(1L);
 
         // Assert
         assertNull(result);
-        verify(minioStorageService, never()).download(anyString());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that an upload URL is issued for the dive log's own key prefix, after
+     * the ownership check.
+     */
+    @Test
+    void createImageUpload_IssuesUrlUnderDiveLogPrefix() {
+        // Arrange
+        ImageUploadRequestDTO dto = new ImageUploadRequestDTO();
+        dto.setContentType("image/png");
+        dto.setSize(1024L);
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
+
+        // Act
+        diveLogService.createImageUpload(1L, dto);
+
+        // Assert
+        verify(authorizationService).assertOwnerOrAdmin("testuser");
+        verify(presignedUploads).issue("divelogs/1/", dto);
+    }
+
+    /**
+     * Tests that a confirmed upload becomes the dive log's image.
+     */
+    @Test
+    void confirmImageUpload_SetsImagePath() {
+        // Arrange
+        ImageUploadConfirmDTO dto = new ImageUploadConfirmDTO();
+        dto.setObjectKey("divelogs/1/new.png");
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
+        when(presignedUploads.confirm("divelogs/1/", "divelogs/1/new.png")).thenReturn(
+                new StoredObject("divelogs/1/new.png", 1024, "image/png", Instant.now()));
+        when(diveLogRepository.updateImage(eq(1L), eq("divelogs/1/new.png"), any()))
+                .thenReturn(1);
+        when(diveLogRepository.findViewById(1L)).thenReturn(Optional.of(diveLogView));
+
+        // Act
+        DiveLogResponseDTO result = diveLogService.confirmImageUpload(1L, dto);
+
+        // Assert
+        assertEquals(1L, result.getId());
+        verify(imageVariantService).generateForDiveLog(1L, "divelogs/1/new.png");
+    }
+
+    /**
+     * Tests that a rejected upload leaves the dive log's image unchanged.
+     */
+    @Test
+    void confirmImageUpload_KeepsImagePathWhenRejected() {
+        // Arrange
+        ImageUploadConfirmDTO dto = new ImageUploadConfirmDTO();
+        dto.setObjectKey("divelogs/1/missing.png");
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
+        when(presignedUploads.confirm("divelogs/1/", "divelogs/1/missing.png"))
+                .thenThrow(new InvalidUploadException("Object was not uploaded"));
+
+        // Act & Assert
+        assertThrows(InvalidUploadException.class, () ->
+                diveLogService.confirmImageUpload(1L, dto));
+        verify(diveLogRepository, never()).updateImage(anyLong(), anyString(), any());
+    }
+
+    /**
+     * Tests that a streamed image is stored under the dive log's prefix, after the
+     * ownership check, and attached to the dive log.
+     */
+    @Test
+    void streamImage_AttachesStreamedObject() {
+        // Arrange
+        InputStream body = new ByteArrayInputStream(new byte[]{1, 2, 3});
+        when(diveLogRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("testuser"));
+        when(streamingUploads.upload("divelogs/1/", body, "image/png", 3)).thenReturn(
+                new StoredObject("divelogs/1/new.png", 3, "image/png", Instant.now()));
+        when(diveLogRepository.updateImage(eq(1L), eq("divelogs/1/new.png"), any()))
+                .thenReturn(1);
+        when(diveLogRepository.findViewById(1L)).thenReturn(Optional.of(diveLogView));
+
+        // Act
+        DiveLogResponseDTO result = diveLogService.streamImage(1L, body, "image/png", 3);
+
+        // Assert
+        assertEquals(1L, result.getId());
+        InOrder inOrder = inOrder(authorizationService, streamingUploads);
+        inOrder.verify(authorizationService).assertOwnerOrAdmin("testuser");
+        inOrder.verify(streamingUploads).upload("divelogs/1/", body, "image/png", 3);
+        verify(imageVariantService).generateForDiveLog(1L, "divelogs/1/new.png");
+    }
+
+    /**
+     * Builds a dive log projection as returned by the read queries.
+     */
+    private DiveLogView feedEntry(Long id, Instant createdAt) {
+        return new DiveLogView(
+                id, LocalDate.now(), "Red Sea", "Blue Hole", 18.5, 45, null, null, null,
+                null, null, null, createdAt, createdAt, diver.getId(), diver.getUsername()
+        );
+    }
+}
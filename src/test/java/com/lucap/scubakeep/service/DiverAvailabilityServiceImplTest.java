@@ -0,0 +1,158 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.dto.AvailabilityResponseDTO;
+import com.lucap.scubakeep.id.UuidV7;
+import com.lucap.scubakeep.projection.DiverIdentifiers;
+import com.lucap.scubakeep.repository.DiverRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link DiverAvailabilityServiceImpl}.
+ */
+class DiverAvailabilityServiceImplTest {
+
+    private DiverRepository diverRepository;
+    private DiverAvailabilityServiceImpl availabilityService;
+
+    @BeforeEach
+    void setUp() {
+        diverRepository = mock(DiverRepository.class);
+        when(diverRepository.findIdentifiersBetween(
+                any(UUID.class), any(UUID.class), any(Limit.class)))
+                .thenReturn(List.of(new DiverIdentifiers(
+                        UUID.randomUUID(), "Nemo", "nemo@reef.org")))
+                .thenReturn(List.of());
+        availabilityService =
+                new DiverAvailabilityServiceImpl(diverRepository, 1000, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Tests that values the filter has never seen are reported free without a query.
+     */
+    @Test
+    void checkAvailability_FreeValuesNeedNoQuery() {
+        // Act
+        AvailabilityResponseDTO result =
+                availabilityService.checkAvailability("dory", "dory@reef.org");
+
+        // Assert
+        assertTrue(result.getUsernameAvailable());
+        assertTrue(result.getEmailAvailable());
+        verify(diverRepository, never()).existsByUsername(anyString());
+        verify(diverRepository, never()).existsByEmail(anyString());
+    }
+
+    /**
+     * Tests that a filter match is confirmed against the database, ignoring case and
+     * surrounding whitespace, and that a value freed since is reported available.
+     */
+    @Test
+    void checkAvailability_ConfirmsFilterMatches() {
+        // Arrange
+        when(diverRepository.existsByUsername("nemo")).thenReturn(true);
+        when(diverRepository.existsByEmail("NEMO@reef.org")).thenReturn(false);
+
+        // Act
+        AvailabilityResponseDTO result =
+                availabilityService.checkAvailability(" nemo ", "NEMO@reef.org");
+
+        // Assert
+        assertFalse(result.getUsernameAvailable());
+        assertTrue(result.getEmailAvailable());
+    }
+
+    /**
+     * Tests that only the given values are checked.
+     */
+    @Test
+    void checkAvailability_SkipsMissingValues() {
+        // Act
+        AvailabilityResponseDTO result = availabilityService.checkAvailability(null, " ");
+
+        // Assert
+        assertNull(result.getUsernameAvailable());
+        assertNull(result.getEmailAvailable());
+    }
+
+    /**
+     * Tests that a diver registered on this instance is known to the filter at once.
+     */
+    @Test
+    void recordTaken_AddsValuesToFilter() {
+        // Arrange
+        when(diverRepository.existsByUsername("dory")).thenReturn(true);
+
+        // Act
+        availabilityService.recordTaken("Dory", "dory@reef.org");
+
+        // Assert
+        assertFalse(availabilityService.checkAvailability("dory", null).getUsernameAvailable());
+        verify(diverRepository).existsByUsername("dory");
+    }
+
+    /**
+     * Tests that a sync adds the divers created since the last load by any instance.
+     */
+    @Test
+    void synchronize_AddsNewDivers() {
+        // Arrange
+        when(diverRepository.findIdentifiersBetween(
+                any(UUID.class), any(UUID.class), any(Limit.class)))
+                .thenReturn(List.of(new DiverIdentifiers(
+                        UUID.randomUUID(), "marlin", "marlin@reef.org")));
+        when(diverRepository.existsByUsername("marlin")).thenReturn(true);
+
+        // Act
+        availabilityService.synchronize();
+
+        // Assert
+        assertFalse(availabilityService.checkAvailability("marlin", null).getUsernameAvailable());
+    }
+
+    /**
+     * Tests that a sync reads only the version 7 ids of the last minutes, leaving out
+     * the random ids of migrated divers, and that the filter holds both values of as
+     * many divers as it was sized for without being rebuilt.
+     */
+    @Test
+    void synchronize_ReadsOnlyRecentTimeOrderedIds() {
+        // Arrange
+        when(diverRepository.findIdentifiersBetween(
+                any(UUID.class), any(UUID.class), any(Limit.class)))
+                .thenReturn(List.of(new DiverIdentifiers(
+                        UUID.randomUUID(), "Nemo", "nemo@reef.org")))
+                .thenReturn(List.of());
+        availabilityService =
+                new DiverAvailabilityServiceImpl(diverRepository, 1, new SimpleMeterRegistry());
+        clearInvocations(diverRepository);
+        Instant now = Instant.now();
+
+        // Act
+        availabilityService.synchronize();
+
+        // Assert
+        ArgumentCaptor<UUID> from = ArgumentCaptor.forClass(UUID.class);
+        ArgumentCaptor<UUID> to = ArgumentCaptor.forClass(UUID.class);
+        verify(diverRepository).findIdentifiersBetween(from.capture(), to.capture(),
+                any(Limit.class));
+        assertEquals(7, from.getValue().version());
+        assertEquals(7, to.getValue().version());
+        assertTrue(UuidV7.timestamp(from.getValue()).isBefore(now));
+        assertTrue(UuidV7.timestamp(to.getValue()).isAfter(now));
+        assertTrue(UuidV7.timestamp(to.getValue()).isBefore(now.plus(Duration.ofMinutes(2))));
+    }
+}
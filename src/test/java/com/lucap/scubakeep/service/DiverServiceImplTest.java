@@ -1,27 +1,49 @@
 package com.lucap.scubakeep.service;
 
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.dto.CursorPageResponseDTO;
+import com.lucap.scubakeep.dto.DiverFilterDTO;
 import com.lucap.scubakeep.dto.DiverRequestDTO;
 import com.lucap.scubakeep.dto.DiverResponseDTO;
 import com.lucap.scubakeep.dto.DiverUpdateRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadConfirmDTO;
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
 import com.lucap.scubakeep.entity.Certification;
 import com.lucap.scubakeep.entity.Diver;
 import com.lucap.scubakeep.entity.Role;
 import com.lucap.scubakeep.exception.*;
-import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.pagination.DiverCursor;
 import com.lucap.scubakeep.repository.DiverRepository;
 import com.lucap.scubakeep.security.AuthorizationService;
+import com.lucap.scubakeep.security.PrincipalStatusCache;
 import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.PresignedUploads;
+import com.lucap.scubakeep.storage.StoredImage;
+import com.lucap.scubakeep.storage.StoredObject;
+import com.lucap.scubakeep.storage.StreamingUploads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -41,13 +63,25 @@ class DiverServiceImplTest {
     @Mock
     private DiverRepository diverRepository;
     @Mock
-    private DiveLogRepository diveLogRepository;
-    @Mock
     private PasswordEncoder passwordEncoder;
     @Mock
     private AuthorizationService authorizationService;
     @Mock
     private MinioStorageService minioStorageService;
+    @Mock
+    private PrincipalStatusCache principalStatusCache;
+    @Mock
+    private DiverAvailabilityService diverAvailabilityService;
+    @Mock
+    private PresignedUploads presignedUploads;
+    @Mock
+    private StreamingUploads streamingUploads;
+    @Mock
+    private ImageVariantService imageVariantService;
+
+    @Spy
+    private EntityCache entityCache =
+            new EntityCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
 
     @InjectMocks
     private DiverServiceImpl diverService;
@@ -89,73 +123,144 @@ class DiverServiceImplTest {
     }
 
     /**
-     * Tests that an administrator can successfully retrieve a list of all registered divers.
+     * Tests that an administrator can retrieve a directory page with dive counts
+     * taken from the denormalized counter and a cursor when more rows exist.
      */
     @Test
-    void getAllDivers_Success() {
+    void getDivers_Success() {
         // Arrange
+        diver.setTotalDives(10L);
+        Diver next = Diver.builder().id(UUID.randomUUID()).username("zeta").build();
         doNothing().when(authorizationService).assertAdmin();
-        when(diverRepository.findAll()).thenReturn(List.of(diver));
-        when(diveLogRepository.countByDiverId(any(UUID.class))).thenReturn(10L);
+        when(diverRepository.findDirectoryPage(null, null, null, null, null, Limit.of(2)))
+                .thenReturn(List.of(diver, next));
 
         // Act
-        List<DiverResponseDTO> result = diverService.getAllDivers();
+        CursorPageResponseDTO<DiverResponseDTO> result =
+                diverService.getDivers(new DiverFilterDTO(), null, 1);
 
         // Assert
-        assertFalse(result.isEmpty());
-        assertEquals(1, result.size());
-        assertEquals(10L, result.get(0).getTotalDives());
+        assertEquals(1, result.getItems().size());
+        assertEquals(10L, result.getItems().get(0).getTotalDives());
+        assertEquals("testuser", DiverCursor.decode(result.getNextCursor()).username());
         verify(authorizationService, times(1)).assertAdmin();
     }
 
     /**
-     * Tests that a new diver is successfully created and saved to the database
-     * when all provided data is valid and unique.
+     * Tests that filters are normalized before querying and that the cursor
+     * position is passed as the seek key.
+     */
+    @Test
+    void getDivers_AppliesFiltersAndCursor() {
+        // Arrange
+        DiverFilterDTO filter = DiverFilterDTO.builder()
+                .countryCode(" it ")
+                .certification(Certification.ADVANCED)
+                .role(Role.USER)
+                .q("te_st%")
+                .build();
+        String cursor = new DiverCursor("mario").encode();
+        when(diverRepository.findDirectoryPage(
+                "mario", "IT", Certification.ADVANCED, Role.USER, "te!_st!%%", Limit.of(201)))
+                .thenReturn(List.of(diver));
+
+        // Act
+        CursorPageResponseDTO<DiverResponseDTO> result =
+                diverService.getDivers(filter, cursor, 500);
+
+        // Assert
+        assertEquals(1, result.getItems().size());
+        assertNull(result.getNextCursor());
+    }
+
+    /**
+     * Tests that a non-admin cannot list the diver directory.
+     */
+    @Test
+    void getDivers_ThrowsWhenNotAdmin() {
+        // Arrange
+        doThrow(new UnauthorizedResourceAccessException())
+                .when(authorizationService).assertAdmin();
+
+        // Act & Assert
+        assertThrows(UnauthorizedResourceAccessException.class,
+                () -> diverService.getDivers(new DiverFilterDTO(), null, 20));
+        verifyNoInteractions(diverRepository);
+    }
+
+    /**
+     * Tests that a diver is created with a single insert, with the password encoded
+     * and the role set by the server, and that its identifiers are recorded as taken.
      */
     @Test
     void createDiver_Success() {
         // Arrange
-        when(diverRepository.existsByEmail(anyString())).thenReturn(false);
-        when(diverRepository.existsByUsername(anyString())).thenReturn(false);
-        when(passwordEncoder.encode(anyString())).thenReturn("hashedPassword");
-        when(diverRepository.save(any(Diver.class))).thenReturn(diver);
+        when(passwordEncoder.encode("Password123!")).thenReturn("hashed");
+        when(diverRepository.saveAndFlush(any(Diver.class))).thenReturn(diver);
 
         // Act
-        DiverResponseDTO response = diverService.createDiver(requestDTO);
+        DiverResponseDTO result = diverService.createDiver(requestDTO);
 
         // Assert
-        assertNotNull(response);
-        assertEquals("testuser", response.getUsername());
-        verify(diverRepository, times(1)).save(any(Diver.class));
+        assertEquals("testuser", result.getUsername());
+        verify(diverRepository).saveAndFlush(argThat(saved ->
+                "hashed".equals(saved.getPassword()) && saved.getRole() == Role.USER));
+        verify(diverRepository, never()).existsByEmail(anyString());
+        verify(diverRepository, never()).existsByUsername(anyString());
+        verify(diverAvailabilityService).recordTaken("testuser", "test@test.com");
     }
 
     /**
      * Tests that a registration attempt fails and throws an {@link EmailAlreadyExistsException}
-     * if the requested email address is already in use.
+     * if the requested email address is already in use, i.e. the insert violates its
+     * unique constraint.
      */
     @Test
     void createDiver_ThrowsEmailAlreadyExistsException() {
         // Arrange
-        when(diverRepository.existsByEmail(anyString())).thenReturn(true);
+        when(diverRepository.saveAndFlush(any(Diver.class)))
+                .thenThrow(duplicate("UQ_DIVERS_EMAIL_INDEX_1"));
 
         // Act & Assert
-        assertThrows(EmailAlreadyExistsException.class, () -> diverService.createDiver(requestDTO));
-        verify(diverRepository, never()).save(any(Diver.class));
+        assertThrows(EmailAlreadyExistsException.class, () ->
+                diverService.createDiver(requestDTO));
+        verifyNoInteractions(diverAvailabilityService);
     }
 
     /**
      * Tests that a registration attempt fails and throws a {@link UsernameAlreadyExistsException}
-     * if the requested username is already in use.
+     * if the requested username is already in use, i.e. the insert violates its
+     * unique constraint.
      */
     @Test
     void createDiver_ThrowsUsernameAlreadyExistsException() {
         // Arrange
-        when(diverRepository.existsByEmail(anyString())).thenReturn(false);
-        when(diverRepository.existsByUsername(anyString())).thenReturn(true);
+        when(diverRepository.saveAndFlush(any(Diver.class)))
+                .thenThrow(duplicate("uq_divers_username"));
 
         // Act & Assert
-        assertThrows(UsernameAlreadyExistsException.class, () -> diverService.createDiver(requestDTO));
-        verify(diverRepository, never()).save(any(Diver.class));
+        assertThrows(UsernameAlreadyExistsException.class, () ->
+                diverService.createDiver(requestDTO));
+    }
+
+    /**
+     * Tests that other integrity violations are not mistaken for duplicates.
+     */
+    @Test
+    void createDiver_RethrowsOtherViolations() {
+        // Arrange
+        when(diverRepository.saveAndFlush(any(Diver.class)))
+                .thenThrow(duplicate("chk_divers_country_code"));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () ->
+                diverService.createDiver(requestDTO));
+    }
+
+    private static DataIntegrityViolationException duplicate(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("Duplicate entry",
+                        new SQLIntegrityConstraintViolationException(), constraint));
     }
 
     /**
@@ -165,9 +270,9 @@ class DiverServiceImplTest {
     @Test
     void getDiverById_Success() {
         // Arrange
-        when(diverRepository.findById(any(UUID.class))).thenReturn(Optional.of(diver));
+        when(diverRepository.findWithSpecialtiesById(any(UUID.class))).thenReturn(Optional.of(diver));
         doNothing().when(authorizationService).assertOwnerOrAdmin(anyString());
-        when(diveLogRepository.countByDiverId(any(UUID.class))).thenReturn(5L);
+        diver.setTotalDives(5L);
 
         // Act
         DiverResponseDTO result = diverService.getDiverById(diver.getId());
@@ -185,12 +290,33 @@ class DiverServiceImplTest {
     @Test
     void getDiverById_ThrowsNotFound() {
         // Arrange
-        when(diverRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
+        when(diverRepository.findWithSpecialtiesById(any(UUID.class))).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(DiverNotFoundException.class, () -> diverService.getDiverById(UUID.randomUUID()));
     }
 
+    /**
+     * Tests that repeated reads are served from the cache, while the access check
+     * still runs on every call, and that an update makes the next read reload.
+     */
+    @Test
+    void getDiverById_IsCachedUntilUpdated() {
+        // Arrange
+        when(diverRepository.findWithSpecialtiesById(diver.getId())).thenReturn(Optional.of(diver));
+        when(diverRepository.findById(diver.getId())).thenReturn(Optional.of(diver));
+
+        // Act
+        diverService.getDiverById(diver.getId());
+        diverService.getDiverById(diver.getId());
+        diverService.updateDiver(diver.getId(), new DiverUpdateRequestDTO());
+        diverService.getDiverById(diver.getId());
+
+        // Assert
+        verify(diverRepository, times(2)).findWithSpecialtiesById(diver.getId());
+        verify(authorizationService, times(4)).assertOwnerOrAdmin(diver.getUsername());
+    }
+
     /**
      * Tests that a diver record can be successfully deleted from the system,
      * assuming the requester has the correct authorization.
@@ -208,6 +334,7 @@ class DiverServiceImplTest {
         // Assert
         verify(diverRepository, times(1)).delete(diver);
         verify(authorizationService, times(1)).assertOwnerOrAdmin(diver.getUsername());
+        verify(principalStatusCache, times(1)).invalidateAfterCommit(diver.getId());
     }
 
     /**
@@ -220,7 +347,7 @@ class DiverServiceImplTest {
         // Arrange
         when(diverRepository.findById(any(UUID.class))).thenReturn(Optional.of(diver));
         doNothing().when(authorizationService).assertOwnerOrAdmin(anyString());
-        when(diveLogRepository.countByDiverId(any(UUID.class))).thenReturn(5L);
+        diver.setTotalDives(5L);
 
         // Act
         DiverResponseDTO result = diverService.updateDiver(diver.getId(), updateRequestDTO);
@@ -255,36 +382,39 @@ class DiverServiceImplTest {
     /**
      * Tests that a user can successfully upload and save a new profile picture.
      * Verifies that security is checked, the file stream is passed to MinIO,
-     * and the resulting path is saved to the diver entity.
+     * and the resulting path is committed afterwards.
      */
     @Test
     void uploadProfilePicture_Success() throws Exception {
         // Arrange
         MultipartFile mockFile = mock(MultipartFile.class);
         InputStream mockStream = mock(InputStream.class);
+        String prefix = "profiles/" + diver.getId() + "/";
 
         // Mock the MultipartFile behavior to match MinioStorageService requirements
         when(mockFile.getInputStream()).thenReturn(mockStream);
         when(mockFile.getSize()).thenReturn(2048L);
         when(mockFile.getContentType()).thenReturn("image/png");
 
-        when(diverRepository.findById(any(UUID.class))).thenReturn(Optional.of(diver));
-        doNothing().when(authorizationService).assertOwnerOrAdmin(anyString());
-
-        // Mock the void upload method
-        doNothing().when(minioStorageService).upload(
-                anyString(), eq(mockStream), eq(2048L), eq("image/png")
-        );
+        when(diverRepository.findUsernameById(diver.getId()))
+                .thenReturn(Optional.of(diver.getUsername()));
+        when(diverRepository.updateProfilePicture(eq(diver.getId()), startsWith(prefix), any()))
+                .thenReturn(1);
+        when(diverRepository.findWithSpecialtiesById(diver.getId())).thenReturn(Optional.of(diver));
 
         // Act
-        diverService.uploadProfilePicture(diver.getId(), mockFile);
+        DiverResponseDTO result = diverService.uploadProfilePicture(diver.getId(), mockFile);
 
         // Assert
-        assertNotNull(diver.getProfilePicturePath());
-        verify(authorizationService, times(1)).assertOwnerOrAdmin(diver.getUsername());
-        verify(minioStorageService, times(1)).upload(
-                anyString(), eq(mockStream), eq(2048L), eq("image/png")
-        );
+        assertEquals(diver.getId(), result.getId());
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        InOrder inOrder = inOrder(minioStorageService, diverRepository);
+        inOrder.verify(minioStorageService).upload(
+                key.capture(), eq(mockStream), eq(2048L), eq("image/png"));
+        inOrder.verify(diverRepository)
+                .updateProfilePicture(eq(diver.getId()), eq(key.getValue()), any());
+        verify(authorizationService, atLeastOnce()).assertOwnerOrAdmin(diver.getUsername());
+        verify(imageVariantService).generateForDiver(diver.getId(), key.getValue());
     }
 
     /**
@@ -295,7 +425,7 @@ class DiverServiceImplTest {
     void uploadProfilePicture_ThrowsNotFound() throws Exception {
         // Arrange
         MultipartFile mockFile = mock(MultipartFile.class);
-        when(diverRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
+        when(diverRepository.findUsernameById(any(UUID.class))).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(DiverNotFoundException.class, () ->
@@ -305,6 +435,30 @@ class DiverServiceImplTest {
         verify(minioStorageService, never()).upload(anyString(), any(), anyLong(), anyString());
     }
 
+    /**
+     * Tests that the stored picture is deleted again when the diver was deleted
+     * during the upload.
+     */
+    @Test
+    void uploadProfilePicture_DeletesObjectWhenDiverWasDeleted() throws Exception {
+        // Arrange
+        MultipartFile mockFile = mock(MultipartFile.class);
+        when(mockFile.getContentType()).thenReturn("image/png");
+        when(mockFile.getInputStream()).thenReturn(mock(InputStream.class));
+        when(diverRepository.findUsernameById(diver.getId()))
+                .thenReturn(Optional.of(diver.getUsername()));
+        when(diverRepository.updateProfilePicture(eq(diver.getId()), anyString(), any()))
+                .thenReturn(0);
+
+        // Act & Assert
+        assertThrows(DiverNotFoundException.class, () ->
+                diverService.uploadProfilePicture(diver.getId(), mockFile));
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        verify(minioStorageService).upload(key.capture(), any(), anyLong(), anyString());
+        verify(minioStorageService).delete(key.getValue());
+        verifyNoInteractions(imageVariantService);
+    }
+
     /**
      * Tests that uploading a file with a non-image content type
      * throws an {@link InvalidFileTypeException}.
@@ -313,7 +467,8 @@ class DiverServiceImplTest {
     void uploadProfilePicture_ThrowsInvalidFileTypeException() {
         // Arrange
         MultipartFile mockFile = mock(MultipartFile.class);
-        when(diverRepository.findById(any(UUID.class))).thenReturn(Optional.of(diver));
+        when(diverRepository.findUsernameById(diver.getId()))
+                .thenReturn(Optional.of(diver.getUsername()));
         doNothing().when(authorizationService).assertOwnerOrAdmin(anyString());
 
         // Trigger the if-statement by returning a non-image content type
@@ -333,7 +488,8 @@ class DiverServiceImplTest {
     void uploadProfilePicture_ThrowsStorageOperationException() throws Exception {
         // Arrange
         MultipartFile mockFile = mock(MultipartFile.class);
-        when(diverRepository.findById(any(UUID.class))).thenReturn(Optional.of(diver));
+        when(diverRepository.findUsernameById(diver.getId()))
+                .thenReturn(Optional.of(diver.getUsername()));
         doNothing().when(authorizationService).assertOwnerOrAdmin(anyString());
         when(mockFile.getContentType()).thenReturn("image/jpeg");
         when(mockFile.getOriginalFilename()).thenReturn("photo.jpg");
@@ -344,30 +500,93 @@ class DiverServiceImplTest {
         // Act & Assert
         assertThrows(StorageOperationException.class, () ->
                 diverService.uploadProfilePicture(diver.getId(), mockFile));
-        assertNull(diver.getProfilePicturePath());
+        verify(diverRepository, never()).updateProfilePicture(any(), anyString(), any());
+    }
+
+    /**
+     * Tests that a profile picture upload URL is issued for the diver's own key
+     * prefix, after the ownership check.
+     */
+    @Test
+    void createProfilePictureUpload_IssuesUrlUnderDiverPrefix() {
+        // Arrange
+        ImageUploadRequestDTO dto = new ImageUploadRequestDTO();
+        dto.setContentType("image/jpeg");
+        dto.setSize(2048L);
+        when(diverRepository.findUsernameById(diver.getId()))
+                .thenReturn(Optional.of(diver.getUsername()));
+
+        // Act
+        diverService.createProfilePictureUpload(diver.getId(), dto);
+
+        // Assert
+        verify(authorizationService).assertOwnerOrAdmin(diver.getUsername());
+        verify(presignedUploads).issue("profiles/" + diver.getId() + "/", dto);
+    }
+
+    /**
+     * Tests that a confirmed upload becomes the diver's profile picture.
+     */
+    @Test
+    void confirmProfilePictureUpload_SetsPicturePath() {
+        // Arrange
+        String prefix = "profiles/" + diver.getId() + "/";
+        ImageUploadConfirmDTO dto = new ImageUploadConfirmDTO();
+        dto.setObjectKey(prefix + "new.jpg");
+        when(diverRepository.findUsernameById(diver.getId()))
+                .thenReturn(Optional.of(diver.getUsername()));
+        when(presignedUploads.confirm(prefix, prefix + "new.jpg")).thenReturn(
+                new StoredObject(prefix + "new.jpg", 2048, "image/jpeg", Instant.now()));
+        when(diverRepository.updateProfilePicture(eq(diver.getId()), eq(prefix + "new.jpg"), any()))
+                .thenReturn(1);
+        when(diverRepository.findWithSpecialtiesById(diver.getId())).thenReturn(Optional.of(diver));
+
+        // Act
+        diverService.confirmProfilePictureUpload(diver.getId(), dto);
+
+        // Assert
+        verify(diverRepository).updateProfilePicture(eq(diver.getId()), eq(prefix + "new.jpg"), any());
+        verify(imageVariantService).generateForDiver(diver.getId(), prefix + "new.jpg");
     }
 
     /**
-     * Tests that a valid MinIO object path correctly fetches and returns
-     * the raw byte array from the storage service.
+     * Tests that a picture rejected while streaming leaves the profile unchanged.
      */
     @Test
-    void getProfilePictureBytes_Success() {
+    void streamProfilePicture_KeepsPictureWhenTooLarge() {
+        // Arrange
+        String prefix = "profiles/" + diver.getId() + "/";
+        InputStream body = new ByteArrayInputStream(new byte[]{1});
+        when(diverRepository.findUsernameById(diver.getId()))
+                .thenReturn(Optional.of(diver.getUsername()));
+        when(streamingUploads.upload(prefix, body, "image/jpeg", -1))
+                .thenThrow(new UploadTooLargeException(DataSize.ofMegabytes(10)));
+
+        // Act & Assert
+        assertThrows(UploadTooLargeException.class, () ->
+                diverService.streamProfilePicture(diver.getId(), body, "image/jpeg", -1));
+        verify(diverRepository, never()).updateProfilePicture(any(), any(), any());
+        verifyNoInteractions(imageVariantService);
+    }
+
+    /**
+     * Tests that a valid MinIO object path is returned as the picture's key,
+     * without querying the storage service.
+     */
+    @Test
+    void getProfilePicture_Success() {
         // Arrange
         String validPath = "profiles/" + diver.getId() + "/image.jpg";
         diver.setProfilePicturePath(validPath);
-        byte[] expectedBytes = new byte[]{1, 2, 3, 4, 5};
-
         when(diverRepository.findById(diver.getId())).thenReturn(Optional.of(diver));
-        when(minioStorageService.download(validPath)).thenReturn(expectedBytes);
 
         // Act
-        byte[] actualBytes = diverService.getProfilePictureBytes(diver.getId());
+        StoredImage actual = diverService.getProfilePicture(diver.getId());
 
         // Assert
-        assertNotNull(actualBytes);
-        assertArrayEquals(expectedBytes, actualBytes);
-        verify(minioStorageService, times(1)).download(validPath);
+        assertEquals(validPath, actual.key());
+        assertFalse(actual.hasVariants());
+        verifyNoInteractions(minioStorageService);
     }
 
     /**
@@ -375,17 +594,16 @@ class DiverServiceImplTest {
      * the method safely returns null without calling MinIO.
      */
     @Test
-    void getProfilePictureBytes_ReturnsNullWhenPathIsNull() {
+    void getProfilePicture_ReturnsNullWhenPathIsNull() {
         // Arrange
         diver.setProfilePicturePath(null);
         when(diverRepository.findById(diver.getId())).thenReturn(Optional.of(diver));
 
         // Act
-        byte[] actualBytes = diverService.getProfilePictureBytes(diver.getId());
+        StoredImage actual = diverService.getProfilePicture(diver.getId());
 
         // Assert
-        assertNull(actualBytes);
-        verify(minioStorageService, never()).download(anyString());
+        assertNull(actual);
     }
 
     /**
@@ -393,31 +611,62 @@ class DiverServiceImplTest {
      * the method safely returns null without calling MinIO.
      */
     @Test
-    void getProfilePictureBytes_ReturnsNullWhenPathIsHttp() {
+    void getProfilePicture_ReturnsNullWhenPathIsHttp() {
         // Arrange
         diver.setProfilePicturePath("https://robohash.org/scuba");
         when(diverRepository.findById(diver.getId())).thenReturn(Optional.of(diver));
 
         // Act
-        byte[] actualBytes = diverService.getProfilePictureBytes(diver.getId());
+        StoredImage actual = diverService.getProfilePicture(diver.getId());
 
         // Assert
-        assertNull(actualBytes);
-        verify(minioStorageService, never()).download(anyString());
+        assertNull(actual);
     }
 
     /**
-     * Tests that requesting bytes for a non-existent diver
+     * Tests that requesting the picture of a non-existent diver
      * throws a {@link DiverNotFoundException}.
      */
     @Test
-    void getProfilePictureBytes_ThrowsNotFound() {
+    void getProfilePicture_ThrowsNotFound() {
         // Arrange
         when(diverRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(DiverNotFoundException.class, () ->
-                diverService.getProfilePictureBytes(UUID.randomUUID()));
-        verify(minioStorageService, never()).download(anyString());
+                diverService.getProfilePicture(UUID.randomUUID()));
+    }
+
+    /**
+     * Tests that an administrator can trigger the dive counter reconciliation
+     * and receives the number of corrected divers.
+     */
+    @Test
+    void reconcileTotalDives_Success() {
+        // Arrange
+        doNothing().when(authorizationService).assertAdmin();
+        when(diverRepository.reconcileTotalDives()).thenReturn(3);
+
+        // Act
+        int corrected = diverService.reconcileTotalDives();
+
+        // Assert
+        assertEquals(3, corrected);
+        verify(authorizationService, times(1)).assertAdmin();
+    }
+
+    /**
+     * Tests that a non-admin cannot trigger the dive counter reconciliation.
+     */
+    @Test
+    void reconcileTotalDives_ThrowsWhenNotAdmin() {
+        // Arrange
+        doThrow(new UnauthorizedResourceAccessException())
+                .when(authorizationService).assertAdmin();
+
+        // Act & Assert
+        assertThrows(UnauthorizedResourceAccessException.class,
+                () -> diverService.reconcileTotalDives());
+        verify(diverRepository, never()).reconcileTotalDives();
     }
 }
@@ -0,0 +1,172 @@
+package com.lucap.scubakeep.service;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.lucap.scubakeep.dto.DiverFilterDTO;
+import com.lucap.scubakeep.entity.Diver;
+import com.lucap.scubakeep.entity.Role;
+import com.lucap.scubakeep.exception.UnauthorizedResourceAccessException;
+import com.lucap.scubakeep.export.ExportFormat;
+import com.lucap.scubakeep.projection.DiveLogView;
+import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.security.AuthorizationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test suite for the {@link ExportServiceImpl} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class ExportServiceImplTest {
+
+    @Mock
+    private DiveLogRepository diveLogRepository;
+    @Mock
+    private DiverRepository diverRepository;
+    @Mock
+    private AuthorizationService authorizationService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ExportServiceImpl exportService;
+    private Diver diver;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new ExportServiceImpl(
+                diveLogRepository,
+                diverRepository,
+                authorizationService,
+                JsonMapper.builder().findAndAddModules().build(),
+                transactionManager
+        );
+
+        diver = diver("testuser");
+    }
+
+    /**
+     * Tests that an admin export of all dive logs streams one NDJSON line per row, with
+     * the id as a string, and closes the underlying database stream.
+     */
+    @Test
+    void exportDiveLogs_StreamsAllRowsAsNdjson() throws Exception {
+        // Arrange
+        AtomicBoolean closed = new AtomicBoolean();
+        when(diveLogRepository.streamViews()).thenReturn(
+                Stream.of(view(1L), view(2L)).onClose(() -> closed.set(true)));
+
+        // Act
+        StreamingResponseBody body = exportService.exportDiveLogs(ExportFormat.NDJSON, null);
+        String output = write(body);
+
+        // Assert
+        verify(authorizationService).assertAdmin();
+        String[] lines = output.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":\"1\","));
+        assertTrue(lines[0].contains("\"diverUsername\":\"testuser\""));
+        assertTrue(closed.get());
+    }
+
+    /**
+     * Tests that a diver can export their own dive logs as CSV.
+     */
+    @Test
+    void exportDiveLogs_ForOneDiverAsCsv() throws Exception {
+        // Arrange
+        when(diverRepository.findById(diver.getId())).thenReturn(Optional.of(diver));
+        when(diveLogRepository.streamViewsByDiverId(diver.getId()))
+                .thenReturn(Stream.of(view(7L)));
+
+        // Act
+        String output = write(exportService.exportDiveLogs(ExportFormat.CSV, diver.getId()));
+
+        // Assert
+        verify(authorizationService).assertOwnerOrAdmin("testuser");
+        String[] lines = output.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("id,diveDate,location"));
+        assertTrue(lines[1].startsWith("7,2024-05-01,Red Sea"));
+    }
+
+    /**
+     * Tests that exporting every dive log is rejected for non-admins before
+     * anything is read.
+     */
+    @Test
+    void exportDiveLogs_ThrowsWhenNotAdmin() {
+        // Arrange
+        doThrow(new UnauthorizedResourceAccessException())
+                .when(authorizationService).assertAdmin();
+
+        // Act & Assert
+        assertThrows(UnauthorizedResourceAccessException.class,
+                () -> exportService.exportDiveLogs(ExportFormat.CSV, null));
+        verifyNoInteractions(diveLogRepository);
+    }
+
+    /**
+     * Tests that the diver export walks the directory in keyset chunks until
+     * a short chunk is returned.
+     */
+    @Test
+    void exportDivers_ReadsInKeysetChunks() throws Exception {
+        // Arrange
+        List<Diver> fullChunk = IntStream.range(0, 200)
+                .mapToObj(i -> diver("diver%03d".formatted(i)))
+                .toList();
+        when(diverRepository.findDirectoryPage(null, null, null, null, null, Limit.of(200)))
+                .thenReturn(fullChunk);
+        when(diverRepository.findDirectoryPage("diver199", null, null, null, null, Limit.of(200)))
+                .thenReturn(List.of(diver("zeta")));
+
+        // Act
+        String output = write(exportService.exportDivers(ExportFormat.NDJSON, new DiverFilterDTO()));
+
+        // Assert
+        verify(authorizationService).assertAdmin();
+        assertEquals(201, output.split("\n").length);
+        verify(diverRepository, times(2)).findDirectoryPage(any(), any(), any(), any(), any(), any());
+    }
+
+    private static String write(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Diver diver(String username) {
+        return Diver.builder()
+                .id(UUID.randomUUID())
+                .username(username)
+                .email(username + "@scubakeep.com")
+                .role(Role.USER)
+                .build();
+    }
+
+    private DiveLogView view(Long id) {
+        Instant now = Instant.parse("2024-05-01T10:00:00Z");
+        return new DiveLogView(id, LocalDate.of(2024, 5, 1), "Red Sea", "Reef", 18.0, 45,
+                null, null, null, null, null, null, now, now, diver.getId(), diver.getUsername());
+    }
+}
@@ -0,0 +1,225 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.cache.EntityCache;
+import com.lucap.scubakeep.projection.PendingDiveLogImage;
+import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.storage.ImageProcessor;
+import com.lucap.scubakeep.storage.ImageVariant;
+import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.ProcessedImage;
+import com.lucap.scubakeep.storage.StoredObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test suite for the {@link ImageVariantServiceImpl} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class ImageVariantServiceImplTest {
+
+    private static final String KEY = "divelogs/1/a.png";
+    private static final int MAX_ATTEMPTS = 2;
+
+    @Mock
+    private MinioStorageService minioStorageService;
+    @Mock
+    private ImageProcessor imageProcessor;
+    @Mock
+    private DiveLogRepository diveLogRepository;
+    @Mock
+    private DiverRepository diverRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ImageVariantServiceImpl imageVariantService;
+    private ProcessedImage processed;
+
+    /**
+     * Creates the service with a single worker thread and stubs reading the original.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        EntityCache entityCache =
+                new EntityCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        meterRegistry = new SimpleMeterRegistry();
+        imageVariantService = new ImageVariantServiceImpl(minioStorageService, imageProcessor,
+                diveLogRepository, diverRepository, entityCache, 1, 10, Duration.ofMinutes(5),
+                MAX_ATTEMPTS, meterRegistry);
+
+        processed = new ProcessedImage(4000, 3000, "data:image/png;base64,AA==", Map.of(
+                ImageVariant.THUMB, new byte[]{1},
+                ImageVariant.MEDIUM, new byte[]{2},
+                ImageVariant.FULL, new byte[]{3}));
+        lenient().when(minioStorageService.stat(KEY))
+                .thenReturn(new StoredObject(KEY, 3, "image/png", Instant.now()));
+        lenient().doAnswer(invocation -> {
+            invocation.getArgument(3, OutputStream.class).write(new byte[]{7, 7, 7});
+            return null;
+        }).when(minioStorageService).copyRange(eq(KEY), eq(0L), eq(3L), any());
+        lenient().when(imageProcessor.process(new byte[]{7, 7, 7})).thenReturn(processed);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageVariantService.close();
+    }
+
+    /**
+     * Tests that every variant is stored under its derived key and the metadata is
+     * recorded on the dive log.
+     */
+    @Test
+    void generateDiveLogVariants_StoresVariantsAndRecordsMetadata() throws Exception {
+        // Arrange
+        when(diveLogRepository.updateImageMetadata(1L, KEY, 4000, 3000, processed.placeholder()))
+                .thenReturn(1);
+
+        // Act
+        imageVariantService.generateDiveLogVariants(1L, KEY);
+
+        // Assert
+        verify(minioStorageService).upload(eq("divelogs/1/a-thumb.jpg"), any(), eq(1L),
+                eq("image/jpeg"));
+        verify(minioStorageService).upload(eq("divelogs/1/a-medium.jpg"), any(), eq(1L),
+                eq("image/jpeg"));
+        verify(minioStorageService).upload(eq("divelogs/1/a-full.jpg"), any(), eq(1L),
+                eq("image/jpeg"));
+        verify(minioStorageService, never()).delete(anyString());
+    }
+
+    /**
+     * Tests that the variants are deleted again when the diver set another picture
+     * while they were generated.
+     */
+    @Test
+    void generateDiverVariants_DeletesVariantsOfReplacedPicture() throws Exception {
+        // Arrange
+        UUID diverId = UUID.randomUUID();
+        when(diverRepository.updateProfilePictureMetadata(
+                diverId, KEY, 4000, 3000, processed.placeholder())).thenReturn(0);
+
+        // Act
+        imageVariantService.generateDiverVariants(diverId, KEY);
+
+        // Assert
+        verify(minioStorageService).delete("divelogs/1/a-thumb.jpg");
+        verify(minioStorageService).delete("divelogs/1/a-medium.jpg");
+        verify(minioStorageService).delete("divelogs/1/a-full.jpg");
+    }
+
+    /**
+     * Tests that nothing is stored when the original cannot be decoded.
+     */
+    @Test
+    void generateDiveLogVariants_StoresNothingForUndecodableImage() throws Exception {
+        // Arrange
+        when(imageProcessor.process(any())).thenThrow(new IOException("Unsupported image format"));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> imageVariantService.generateDiveLogVariants(1L, KEY));
+        verify(minioStorageService, never()).upload(anyString(), any(), anyLong(), anyString());
+        verifyNoInteractions(diveLogRepository);
+    }
+
+    /**
+     * Tests that generation does not start before the uploading transaction commits.
+     */
+    @Test
+    void generateForDiveLog_WaitsForCommit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            imageVariantService.generateForDiveLog(1L, KEY);
+
+            // Assert
+            assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+            verifyNoInteractions(minioStorageService, imageProcessor);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Tests that the retry sweep queues the images whose variants are still missing,
+     * e.g. after the queue was full.
+     */
+    @Test
+    void retryPending_GeneratesMissingVariants() {
+        // Arrange
+        when(diveLogRepository.findPendingImages(eq(""), any(Instant.class), any(Limit.class)))
+                .thenReturn(List.of(new PendingDiveLogImage(1L, KEY)));
+        when(diverRepository.findPendingProfilePictures(
+                eq(""), any(Instant.class), any(Limit.class))).thenReturn(List.of());
+        when(diveLogRepository.updateImageMetadata(1L, KEY, 4000, 3000,
+                "data:image/png;base64,AA==")).thenReturn(1);
+
+        // Act
+        imageVariantService.retryPending();
+
+        // Assert
+        verify(diveLogRepository, timeout(5000)).updateImageMetadata(1L, KEY, 4000, 3000,
+                "data:image/png;base64,AA==");
+        verify(minioStorageService).upload(eq(ImageVariant.FULL.keyOf(KEY)), any(), eq(1L),
+                eq("image/jpeg"));
+    }
+
+    /**
+     * Tests that an image whose generation keeps failing is retried up to the maximum
+     * number of attempts only.
+     */
+    @Test
+    void retryPending_GivesUpAfterMaxAttempts() throws Exception {
+        // Arrange
+        when(diveLogRepository.findPendingImages(eq(""), any(Instant.class), any(Limit.class)))
+                .thenReturn(List.of(new PendingDiveLogImage(1L, KEY)));
+        when(diverRepository.findPendingProfilePictures(
+                eq(""), any(Instant.class), any(Limit.class))).thenReturn(List.of());
+        when(imageProcessor.process(any())).thenThrow(new IOException("Unsupported image format"));
+
+        // Act
+        for (int run = 1; run <= MAX_ATTEMPTS + 1; run++) {
+            imageVariantService.retryPending();
+            awaitJobs(Math.min(run, MAX_ATTEMPTS));
+        }
+
+        // Assert
+        verify(imageProcessor, times(MAX_ATTEMPTS)).process(any());
+        assertEquals(MAX_ATTEMPTS, meterRegistry.get("image.variants.failed").counter().count());
+    }
+
+    /**
+     * Waits until the given number of jobs have finished.
+     */
+    private void awaitJobs(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("image.variants").timer().count() < count
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, meterRegistry.get("image.variants").timer().count());
+    }
+}
@@ -0,0 +1,165 @@
+package com.lucap.scubakeep.service;
+
+import com.lucap.scubakeep.dto.StorageReconciliationReportDTO;
+import com.lucap.scubakeep.exception.UnauthorizedResourceAccessException;
+import com.lucap.scubakeep.repository.DiveLogRepository;
+import com.lucap.scubakeep.repository.DiverRepository;
+import com.lucap.scubakeep.security.AuthorizationService;
+import com.lucap.scubakeep.storage.MinioStorageService;
+import com.lucap.scubakeep.storage.StoredObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test suite for the {@link StorageReconciliationServiceImpl} class, with a grace
+ * period of one day.
+ */
+@ExtendWith(MockitoExtension.class)
+class StorageReconciliationServiceImplTest {
+
+    private static final Instant OLD = Instant.now().minus(Duration.ofDays(3));
+    private static final UUID DIVER_ID = UUID.randomUUID();
+
+    @Mock
+    private MinioStorageService minioStorageService;
+    @Mock
+    private DiveLogRepository diveLogRepository;
+    @Mock
+    private DiverRepository diverRepository;
+    @Mock
+    private AuthorizationService authorizationService;
+
+    private StorageReconciliationServiceImpl reconciliationService;
+
+    /**
+     * Stubs a bucket holding the current image of dive log 1 with a variant, a replaced
+     * image with its variant, the image of the deleted dive log 2, an upload still
+     * within the grace period, a current profile picture and a foreign key.
+     */
+    @BeforeEach
+    void setUp() {
+        reconciliationService = new StorageReconciliationServiceImpl(minioStorageService,
+                diveLogRepository, diverRepository, authorizationService, Duration.ofDays(1),
+                false, new SimpleMeterRegistry());
+
+        String profiles = "profiles/" + DIVER_ID + "/";
+        lenient().when(minioStorageService.list("divelogs/")).thenReturn(Stream.of(
+                stored("divelogs/1/current.png", OLD),
+                stored("divelogs/1/current-thumb.jpg", OLD),
+                stored("divelogs/1/replaced.png", OLD),
+                stored("divelogs/1/replaced-thumb.jpg", OLD),
+                stored("divelogs/1/uploading.png", Instant.now()),
+                stored("divelogs/2/gone.png", OLD)));
+        lenient().when(minioStorageService.list("profiles/")).thenReturn(Stream.of(
+                stored(profiles + "picture.jpg", OLD),
+                stored("profiles/not-a-diver/x.jpg", OLD)));
+        lenient().when(diveLogRepository.findImagePathsByIdIn(argThat(ids ->
+                        Set.copyOf(ids).equals(Set.of(1L, 2L)))))
+                .thenReturn(List.of("divelogs/1/current.png"));
+        lenient().when(diverRepository.findProfilePicturePathsByIdIn(List.of(DIVER_ID)))
+                .thenReturn(List.of(profiles + "picture.jpg"));
+    }
+
+    /**
+     * Tests that a dry run reports the unreferenced objects past the grace period
+     * without deleting anything.
+     */
+    @Test
+    void reconcile_DryRunReportsOrphans() {
+        // Act
+        StorageReconciliationReportDTO report = reconciliationService.reconcile(true);
+
+        // Assert
+        verify(authorizationService).assertAdmin();
+        assertTrue(report.isDryRun());
+        assertEquals(8, report.getScanned());
+        assertEquals(3, report.getReferenced());
+        assertEquals(1, report.getRecent());
+        assertEquals(4, report.getOrphaned());
+        assertEquals(400, report.getOrphanedBytes());
+        assertEquals(List.of("divelogs/1/replaced.png", "divelogs/1/replaced-thumb.jpg",
+                "divelogs/2/gone.png", "profiles/not-a-diver/x.jpg"), report.getOrphans());
+        assertEquals(0, report.getDeleted());
+        verify(minioStorageService, never()).deleteAll(any());
+    }
+
+    /**
+     * Tests that the scheduled run deletes the orphans of each prefix in one request,
+     * without an authenticated admin, and goes on when a key cannot be deleted.
+     */
+    @Test
+    void reconcileScheduled_DeletesOrphans() {
+        // Arrange
+        when(minioStorageService.deleteAll(anyCollection())).thenReturn(List.of());
+        when(minioStorageService.deleteAll(List.of("profiles/not-a-diver/x.jpg")))
+                .thenReturn(List.of("profiles/not-a-diver/x.jpg"));
+
+        // Act
+        reconciliationService.reconcileScheduled();
+
+        // Assert
+        verify(minioStorageService).deleteAll(List.of("divelogs/1/replaced.png",
+                "divelogs/1/replaced-thumb.jpg", "divelogs/2/gone.png"));
+        verify(minioStorageService).deleteAll(List.of("profiles/not-a-diver/x.jpg"));
+        verifyNoInteractions(authorizationService);
+    }
+
+    /**
+     * Tests that large listings are reconciled in batches of 1000 objects.
+     */
+    @Test
+    void reconcile_ProcessesListingInBatches() {
+        // Arrange
+        when(minioStorageService.list("divelogs/")).thenReturn(IntStream.range(0, 2001)
+                .mapToObj(i -> stored("divelogs/" + i + "/a.png", OLD)));
+        when(minioStorageService.list("profiles/")).thenReturn(Stream.empty());
+        when(diveLogRepository.findImagePathsByIdIn(anyCollection())).thenReturn(List.of());
+        when(minioStorageService.deleteAll(anyCollection())).thenReturn(List.of());
+
+        // Act
+        StorageReconciliationReportDTO report = reconciliationService.reconcile(false);
+
+        // Assert
+        verify(diveLogRepository, times(3)).findImagePathsByIdIn(anyCollection());
+        verify(minioStorageService, times(3)).deleteAll(anyCollection());
+        assertEquals(2001, report.getDeleted());
+        assertEquals(1000, report.getOrphans().size());
+    }
+
+    /**
+     * Tests that only admins can start a reconciliation.
+     */
+    @Test
+    void reconcile_ThrowsForNonAdmin() {
+        // Arrange
+        doThrow(new UnauthorizedResourceAccessException())
+                .when(authorizationService).assertAdmin();
+
+        // Act & Assert
+        assertThrows(UnauthorizedResourceAccessException.class, () ->
+                reconciliationService.reconcile(true));
+        verify(minioStorageService, never()).list(any());
+    }
+
+    private static StoredObject stored(String key, Instant lastModified) {
+        return new StoredObject(key, 100, null, lastModified);
+    }
+}
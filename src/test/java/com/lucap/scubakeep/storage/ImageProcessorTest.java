@@ -0,0 +1,157 @@
+package com.lucap.scubakeep.storage;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test suite for the {@link ImageProcessor} class, on images generated in memory.
+ */
+class ImageProcessorTest {
+
+    private final ImageProcessor imageProcessor = new ImageProcessor(0.8f, 50_000_000);
+
+    /**
+     * Tests that every variant fits its bound, keeps the aspect ratio and is a JPEG,
+     * and that the original dimensions and a placeholder are reported.
+     */
+    @Test
+    void process_GeneratesBoundedVariants() throws Exception {
+        // Arrange
+        byte[] png = encode(halves(3000, 2000), "png");
+
+        // Act
+        ProcessedImage result = imageProcessor.process(png);
+
+        // Assert
+        assertEquals(3000, result.width());
+        assertEquals(2000, result.height());
+        assertDimensions(result, ImageVariant.FULL, 2048, 1365);
+        assertDimensions(result, ImageVariant.MEDIUM, 800, 533);
+        assertDimensions(result, ImageVariant.THUMB, 200, 133);
+        assertTrue(result.placeholder().startsWith("data:image/png;base64,"));
+        assertTrue(result.placeholder().length() <= 512);
+    }
+
+    /**
+     * Tests that images smaller than a variant are not enlarged.
+     */
+    @Test
+    void process_DoesNotUpscaleSmallImages() throws Exception {
+        // Act
+        ProcessedImage result = imageProcessor.process(encode(halves(120, 60), "png"));
+
+        // Assert
+        assertDimensions(result, ImageVariant.FULL, 120, 60);
+        assertDimensions(result, ImageVariant.THUMB, 120, 60);
+    }
+
+    /**
+     * Tests that a photo stored sideways with EXIF orientation 6 (rotate 90 degrees
+     * clockwise) is turned upright, and that the EXIF segment is not copied.
+     */
+    @Test
+    void process_AppliesExifOrientationAndStripsMetadata() throws Exception {
+        // Arrange: red left half, blue right half, stored with orientation 6
+        byte[] jpeg = withOrientation(encode(halves(400, 200), "jpeg"), 6);
+
+        // Act
+        ProcessedImage result = imageProcessor.process(jpeg);
+
+        // Assert
+        assertEquals(200, result.width());
+        assertEquals(400, result.height());
+        byte[] full = result.variants().get(ImageVariant.FULL);
+        BufferedImage upright = ImageIO.read(new ByteArrayInputStream(full));
+        assertEquals(200, upright.getWidth());
+        assertEquals(400, upright.getHeight());
+        assertTrue(isRed(upright.getRGB(100, 50)), "left half rotated to the top");
+        assertTrue(isBlue(upright.getRGB(100, 350)), "right half rotated to the bottom");
+        assertFalse(new String(full, StandardCharsets.ISO_8859_1).contains("Exif"));
+    }
+
+    /**
+     * Tests that content which is not an image, and images above the pixel limit,
+     * are rejected.
+     */
+    @Test
+    void process_RejectsUndecodableAndOversizedImages() throws Exception {
+        // Arrange
+        ImageProcessor limited = new ImageProcessor(0.8f, 10_000);
+        byte[] png = encode(halves(200, 100), "png");
+
+        // Act & Assert
+        assertThrows(IOException.class, () ->
+                imageProcessor.process("<html></html>".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IOException.class, () -> limited.process(png));
+    }
+
+    private static void assertDimensions(
+            ProcessedImage result,
+            ImageVariant variant,
+            int width,
+            int height
+    ) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.variants().get(variant)));
+        assertEquals(width, image.getWidth(), variant + " width");
+        assertEquals(height, image.getHeight(), variant + " height");
+    }
+
+    /**
+     * Draws an image whose left half is red and right half is blue.
+     */
+    private static BufferedImage halves(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(width / 2, 0, width - width / 2, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, format, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Inserts an EXIF segment holding only the orientation tag after the JPEG's SOI.
+     */
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+                (byte) 0xFF, (byte) 0xE1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        byte[] result = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(app1, 0, result, 2, app1.length);
+        System.arraycopy(jpeg, 2, result, 2 + app1.length, jpeg.length - 2);
+        return result;
+    }
+
+    private static boolean isRed(int rgb) {
+        Color color = new Color(rgb);
+        return color.getRed() > 200 && color.getBlue() < 60;
+    }
+
+    private static boolean isBlue(int rgb) {
+        Color color = new Color(rgb);
+        return color.getBlue() > 200 && color.getRed() < 60;
+    }
+}
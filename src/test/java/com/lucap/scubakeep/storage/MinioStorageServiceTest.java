@@ -3,27 +3,57 @@ package com.lucap.scubakeep.storage;
 import com.lucap.scubakeep.exception.StorageOperationException;
 import io.minio.GetObjectArgs;
 import io.minio.GetObjectResponse;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.ErrorResponse;
+import io.minio.messages.Part;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 class MinioStorageServiceTest {
 
     private MinioClient minioClient;
+    private MinioAsyncClient minioAsyncClient;
+    private MinioClient presigningClient;
     private MinioStorageService storageService;
     private final String bucketName = "scuba-bucket";
 
     @BeforeEach
     void setUp() {
         minioClient = mock(MinioClient.class);
-        storageService = new MinioStorageService(minioClient, bucketName);
+        minioAsyncClient = mock(MinioAsyncClient.class);
+        presigningClient = MinioClient.builder()
+                .endpoint("https://files.scubakeep.example")
+                .region("us-east-1")
+                .credentials("access", "secret")
+                .build();
+        storageService = new MinioStorageService(
+                minioClient, minioAsyncClient, presigningClient, bucketName);
     }
 
     /**
@@ -60,41 +90,174 @@ class MinioStorageServiceTest {
     }
 
     /**
-     * Tests that download returns the correct byte array.
-     * <p>
-     * Verifies that the {@link MinioStorageService#download} correctly
-     * transfers data from the MinIO stream to a byte array.
+     * Tests that completing a multipart upload numbers the parts from 1, in order.
      */
     @Test
-    void download_ShouldReturnBytes_WhenSuccessful() throws Exception {
+    void completeMultipartUpload_NumbersPartsInOrder() throws Exception {
         // Arrange
-        String key = "test.jpg";
-        byte[] expectedContent = "file-data".getBytes();
-        ByteArrayInputStream bais = new ByteArrayInputStream(expectedContent);
-        GetObjectResponse mockResponse = mock(GetObjectResponse.class);
+        when(minioAsyncClient.completeMultipartUploadAsync(
+                any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
-        when(mockResponse.transferTo(any())).thenAnswer(invocation -> {
-            return bais.transferTo(invocation.getArgument(0));
-        });
+        // Act
+        storageService.completeMultipartUpload("key", "upload-1", List.of("etag-a", "etag-b"));
+
+        // Assert
+        verify(minioAsyncClient).completeMultipartUploadAsync(eq(bucketName), isNull(),
+                eq("key"), eq("upload-1"), argThat((Part[] parts) -> parts.length == 2
+                        && parts[0].partNumber() == 1 && "etag-a".equals(parts[0].etag())
+                        && parts[1].partNumber() == 2 && "etag-b".equals(parts[1].etag())),
+                any(), any());
+    }
+
+    /**
+     * Tests that a failed part upload is reported as a storage failure with its cause.
+     */
+    @Test
+    void uploadPart_ShouldThrowStorageException_WhenMinioFails() throws Exception {
+        // Arrange
+        when(minioAsyncClient.uploadPartAsync(any(), any(), any(), any(Object.class), anyLong(),
+                any(), anyInt(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("reset")));
 
-        when(minioClient.getObject(any(GetObjectArgs.class))).thenReturn(mockResponse);
+        // Act & Assert
+        StorageOperationException ex = assertThrows(StorageOperationException.class, () ->
+                storageService.uploadPart("key", "upload-1", 1, new byte[4], 4));
+        assertNotNull(ex.getCause());
+    }
 
+    /**
+     * Tests that a batch delete reports the keys MinIO could not delete.
+     */
+    @Test
+    void deleteAll_ReturnsFailedKeys() throws Exception {
+        // Arrange
+        DeleteError error = mock(DeleteError.class);
+        when(error.objectName()).thenReturn("divelogs/1/b.png");
+        when(minioClient.removeObjects(any(RemoveObjectsArgs.class)))
+                .thenReturn(List.of(new Result<>(error)));
+
+        // Act
+        List<String> failed = storageService.deleteAll(
+                List.of("divelogs/1/a.png", "divelogs/1/b.png"));
+
+        // Assert
+        assertEquals(List.of("divelogs/1/b.png"), failed);
+        verify(minioClient).removeObjects(argThat((RemoveObjectsArgs args) ->
+                args.bucket().equals(bucketName)));
+    }
+
+    /**
+     * Tests that stat maps the object metadata returned by MinIO.
+     */
+    @Test
+    void stat_ShouldReturnObjectMetadata() throws Exception {
+        // Arrange
+        StatObjectResponse response = mock(StatObjectResponse.class);
+        when(response.size()).thenReturn(42L);
+        when(response.contentType()).thenReturn("image/png");
+        when(response.lastModified())
+                .thenReturn(ZonedDateTime.parse("2026-01-01T10:00:00Z"));
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(response);
+
+        // Act
+        StoredObject object = storageService.stat("test.png");
+
+        // Assert
+        assertEquals(new StoredObject("test.png", 42L, "image/png",
+                Instant.parse("2026-01-01T10:00:00Z")), object);
+    }
+
+    /**
+     * Tests that copyRange requests only the given range from MinIO and copies it
+     * to the output stream.
+     */
+    @Test
+    void copyRange_ShouldCopyRequestedRange() throws Exception {
+        // Arrange
+        byte[] content = "file-data".getBytes();
+        GetObjectResponse response = mock(GetObjectResponse.class);
+        ByteArrayInputStream bais = new ByteArrayInputStream(content);
+        when(response.read(any(byte[].class))).thenAnswer(invocation ->
+                bais.read(invocation.getArgument(0)));
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenReturn(response);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        storageService.copyRange("test.jpg", 5, 9, out);
+
+        // Assert
+        assertArrayEquals(content, out.toByteArray());
+        verify(minioClient).getObject(argThat((GetObjectArgs args) ->
+                args.offset() == 5 && args.length() == 9 && "test.jpg".equals(args.object())));
+        verify(response).close();
+    }
+
+    /**
+     * Tests that find returns empty for a missing object instead of failing.
+     */
+    @Test
+    void find_ShouldReturnEmpty_WhenObjectIsMissing() throws Exception {
+        // Arrange
+        ErrorResponseException missing = mock(ErrorResponseException.class);
+        when(missing.errorResponse()).thenReturn(new ErrorResponse(
+                "NoSuchKey", "missing", bucketName, "key", "/key", "1", "host"));
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenThrow(missing);
+
+        // Act & Assert
+        assertTrue(storageService.find("key").isEmpty());
+    }
+
+    /**
+     * Tests that presigned URLs are signed offline for the public endpoint.
+     */
+    @Test
+    void presignedUploadUrl_ShouldSignForPublicEndpoint() {
+        // Act
+        String url = storageService.presignedUploadUrl("divelogs/1/a.png", Duration.ofMinutes(5));
+
+        // Assert
+        assertTrue(url.startsWith("https://files.scubakeep.example/scuba-bucket/divelogs/1/a.png?"));
+        assertTrue(url.contains("X-Amz-Expires=300"));
+        assertTrue(url.contains("X-Amz-Signature="));
+        verifyNoInteractions(minioClient);
+    }
+
+    /**
+     * Tests that a presigned download URL asks MinIO for the given Cache-Control header.
+     */
+    @Test
+    void presignedDownloadUrl_ShouldOverrideCacheControl() {
+        // Act
+        String url = storageService.presignedDownloadUrl("divelogs/1/a.png",
+                Duration.ofMinutes(5), "max-age=60");
+
+        // Assert
+        assertTrue(url.contains("response-cache-control=max-age%3D60"));
+    }
+
+    /**
+     * Tests that delete removes the object from the bucket.
+     */
+    @Test
+    void delete_ShouldRemoveObject() throws Exception {
         // Act
-        byte[] actualContent = storageService.download(key);
+        storageService.delete("divelogs/1/a.png");
 
         // Assert
-        assertArrayEquals(expectedContent, actualContent);
-        verify(minioClient).getObject(any(GetObjectArgs.class));
+        verify(minioClient).removeObject(argThat((RemoveObjectArgs args) ->
+                "divelogs/1/a.png".equals(args.object())));
     }
 
     /**
-     * Tests that download throws StorageOperationException on failure.
+     * Tests that copyRange throws StorageOperationException on failure.
      */
     @Test
-    void download_ShouldThrowStorageException_WhenMinioFails() throws Exception {
+    void copyRange_ShouldThrowStorageException_WhenMinioFails() throws Exception {
         when(minioClient.getObject(any(GetObjectArgs.class)))
                 .thenThrow(new RuntimeException("Read error"));
 
-        assertThrows(StorageOperationException.class, () -> storageService.download("key"));
+        assertThrows(StorageOperationException.class, () ->
+                storageService.copyRange("key", 0, 1, new ByteArrayOutputStream()));
     }
 }
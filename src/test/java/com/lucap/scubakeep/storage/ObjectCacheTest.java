@@ -0,0 +1,270 @@
+package com.lucap.scubakeep.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test suite for the {@link ObjectCache} class, with MinIO mocked and the disk
+ * tier in a temporary directory.
+ */
+class ObjectCacheTest {
+
+    @TempDir
+    private Path directory;
+
+    private MinioStorageService minioStorageService;
+    private SimpleMeterRegistry meterRegistry;
+    private final Map<String, byte[]> objects = new HashMap<>();
+
+    /**
+     * Stubs MinIO to serve the requested range of the objects in {@link #objects}.
+     */
+    @BeforeEach
+    void setUp() {
+        minioStorageService = mock(MinioStorageService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        doAnswer(invocation -> {
+            byte[] content = objects.get(invocation.getArgument(0, String.class));
+            int offset = (int) (long) invocation.getArgument(1, Long.class);
+            int length = (int) (long) invocation.getArgument(2, Long.class);
+            invocation.getArgument(3, OutputStream.class).write(content, offset, length);
+            return null;
+        }).when(minioStorageService).copyRange(anyString(), anyLong(), anyLong(), any());
+    }
+
+    /**
+     * Tests that a miss downloads the object once, and that later reads, including
+     * ranges, are served from memory and counted as saved bytes.
+     */
+    @Test
+    void copyRange_ServesRepeatedReadsFromMemory() throws Exception {
+        // Arrange
+        ObjectCache cache = cache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(64));
+        StoredObject object = store("divelogs/1/a.png", 1000);
+
+        // Act
+        byte[] first = read(cache, object, 0, 1000);
+        byte[] range = read(cache, object, 900, 100);
+
+        // Assert
+        assertArrayEquals(objects.get(object.key()), first);
+        assertArrayEquals(Arrays.copyOfRange(objects.get(object.key()), 900, 1000), range);
+        verify(minioStorageService, times(1))
+                .copyRange(eq(object.key()), eq(0L), eq(1000L), any());
+        assertEquals(1, requests("miss"));
+        assertEquals(1, requests("memory"));
+        assertEquals(100, meterRegistry.get("storage.cache.bytes.saved").counter().count());
+        assertEquals(0.5, meterRegistry.get("storage.cache.hit.ratio").gauge().value());
+    }
+
+    /**
+     * Tests that with the memory tier disabled, objects are served from their file.
+     */
+    @Test
+    void copyRange_ServesFromDiskWithoutMemoryTier() throws Exception {
+        // Arrange
+        ObjectCache cache = cache(DataSize.ofBytes(0), DataSize.ofKilobytes(64));
+        StoredObject object = store("divelogs/1/a.png", 2000);
+        read(cache, object, 0, 2000);
+
+        // Act
+        byte[] range = read(cache, object, 10, 1500);
+
+        // Assert
+        assertArrayEquals(Arrays.copyOfRange(objects.get(object.key()), 10, 1510), range);
+        assertEquals(1, requests("disk"));
+        assertEquals(1, cachedFiles());
+        assertEquals(2000, meterRegistry.get("storage.cache.size")
+                .tag("tier", "disk").gauge().value());
+        verify(minioStorageService, times(1)).copyRange(anyString(), anyLong(), anyLong(), any());
+    }
+
+    /**
+     * Tests that the least recently used file is evicted when the disk tier is full,
+     * and that the evicted object is downloaded again on its next read.
+     */
+    @Test
+    void copyRange_EvictsLeastRecentlyUsedFile() throws Exception {
+        // Arrange
+        ObjectCache cache = cache(DataSize.ofBytes(0), DataSize.ofBytes(2500));
+        StoredObject first = store("divelogs/1/a.png", 1000);
+        StoredObject second = store("divelogs/2/b.png", 1000);
+        StoredObject third = store("divelogs/3/c.png", 1000);
+        read(cache, first, 0, 1000);
+        read(cache, second, 0, 1000);
+        read(cache, first, 0, 1000);
+
+        // Act
+        read(cache, third, 0, 1000);
+        read(cache, second, 0, 1000);
+
+        // Assert
+        assertEquals(2, cachedFiles());
+        verify(minioStorageService, times(2))
+                .copyRange(eq(second.key()), eq(0L), eq(1000L), any());
+        verify(minioStorageService, times(1))
+                .copyRange(eq(first.key()), eq(0L), eq(1000L), any());
+    }
+
+    /**
+     * Tests that concurrent misses of the same object download it from MinIO once:
+     * the other readers wait for that download and are served from the cache.
+     */
+    @Test
+    void copyRange_CoalescesConcurrentMisses() throws Exception {
+        // Arrange
+        ObjectCache cache = cache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(64));
+        StoredObject object = store("divelogs/1/a.png", 1000);
+        List<Thread> readers = new ArrayList<>();
+        Map<Integer, byte[]> results = new ConcurrentHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            int reader = i;
+            readers.add(new Thread(() -> {
+                try {
+                    results.put(reader, read(cache, object, 0, 1000));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }));
+        }
+        doAnswer(invocation -> {
+            // Hold the download until every other reader waits for it
+            awaitWaiting(readers);
+            byte[] content = objects.get(object.key());
+            invocation.getArgument(3, OutputStream.class).write(content);
+            return null;
+        }).when(minioStorageService).copyRange(eq(object.key()), eq(0L), eq(1000L), any());
+
+        // Act
+        readers.forEach(Thread::start);
+        for (Thread reader : readers) {
+            reader.join(5000);
+        }
+
+        // Assert
+        assertEquals(8, results.size());
+        results.values().forEach(result ->
+                assertArrayEquals(objects.get(object.key()), result));
+        verify(minioStorageService, times(1)).copyRange(anyString(), anyLong(), anyLong(), any());
+        assertEquals(1, requests("miss"));
+        assertEquals(7, requests("memory"));
+        assertEquals(1, cachedFiles());
+    }
+
+    /**
+     * Tests that objects above the size limit are streamed from MinIO every time,
+     * only fetching the requested range.
+     */
+    @Test
+    void copyRange_StreamsLargeObjectsUncached() throws Exception {
+        // Arrange
+        ObjectCache cache = cache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(64));
+        StoredObject object = store("divelogs/1/a.png", 3000);
+
+        // Act
+        read(cache, object, 0, 3000);
+        byte[] range = read(cache, object, 100, 50);
+
+        // Assert
+        assertArrayEquals(Arrays.copyOfRange(objects.get(object.key()), 100, 150), range);
+        verify(minioStorageService).copyRange(eq(object.key()), eq(100L), eq(50L), any());
+        assertEquals(2, requests("miss"));
+        assertEquals(0, cachedFiles());
+    }
+
+    /**
+     * Tests that the metadata of a cached object is not requested from MinIO again,
+     * and that files left by a previous run are removed on startup.
+     */
+    @Test
+    void stat_ReadsCachedMetadataLocally() throws Exception {
+        // Arrange
+        Files.write(directory.resolve("object-stale.bin"), new byte[]{1});
+        ObjectCache cache = cache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(64));
+        StoredObject object = store("divelogs/1/a.png", 10);
+        when(minioStorageService.stat(object.key())).thenReturn(object);
+        read(cache, cache.stat(object.key()), 0, 10);
+
+        // Act
+        StoredObject cached = cache.stat(object.key());
+
+        // Assert
+        assertEquals(object, cached);
+        verify(minioStorageService, times(1)).stat(object.key());
+        assertFalse(Files.exists(directory.resolve("object-stale.bin")));
+    }
+
+    /**
+     * Creates a cache that caches objects up to 2 KiB.
+     */
+    private ObjectCache cache(DataSize memorySize, DataSize diskSize) {
+        return new ObjectCache(minioStorageService, memorySize, diskSize,
+                DataSize.ofKilobytes(2), directory, meterRegistry);
+    }
+
+    private StoredObject store(String key, int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31 + key.length());
+        }
+        objects.put(key, content);
+        return new StoredObject(key, size, "image/png", Instant.parse("2026-01-01T10:00:00Z"));
+    }
+
+    private static byte[] read(ObjectCache cache, StoredObject object, long offset, long length)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.copyRange(object, offset, length, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Waits until every reader but the calling one is blocked.
+     */
+    private static void awaitWaiting(List<Thread> readers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (Thread reader : readers) {
+            while (reader != Thread.currentThread()
+                    && reader.getState() != Thread.State.WAITING
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("storage.cache.requests").tag("result", result).counter().count();
+    }
+
+    private long cachedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
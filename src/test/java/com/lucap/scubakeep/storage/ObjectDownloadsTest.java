@@ -0,0 +1,329 @@
+package com.lucap.scubakeep.storage;
+
+import com.lucap.scubakeep.exception.ImageNotReadyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ObjectDownloadsTest {
+
+    private static final String KEY = "divelogs/1/a.png";
+    private static final Instant LAST_MODIFIED = Instant.parse("2026-01-01T10:00:00Z");
+
+    private MinioStorageService minioStorageService;
+    private ObjectCache objectCache;
+    private ObjectDownloads objectDownloads;
+    private String etag;
+
+    @BeforeEach
+    void setUp() {
+        minioStorageService = mock(MinioStorageService.class);
+        objectCache = mock(ObjectCache.class);
+        objectDownloads = new ObjectDownloads(
+                minioStorageService, objectCache, false, Duration.ofMinutes(10));
+        etag = "\"" + ObjectDownloads.version(KEY) + "\"";
+        lenient().when(objectCache.stat(KEY))
+                .thenReturn(new StoredObject(KEY, 1000, "image/png", LAST_MODIFIED));
+    }
+
+    /**
+     * Tests that the version is a short, stable digest that differs between keys.
+     */
+    @Test
+    void version_IsStableDigestOfKey() {
+        assertEquals(16, ObjectDownloads.version(KEY).length());
+        assertEquals(ObjectDownloads.version(KEY), ObjectDownloads.version(KEY));
+        assertNotEquals(ObjectDownloads.version(KEY), ObjectDownloads.version("divelogs/1/b.png"));
+    }
+
+    /**
+     * Tests that a plain request gets the whole object with its stored content type and
+     * validators, and that the body streams the whole object when written.
+     */
+    @Test
+    void serve_ReturnsWholeObject() throws Exception {
+        // Act
+        ResponseEntity<StreamingResponseBody> response = get(new HttpHeaders(), null);
+        response.getBody().writeTo(new ByteArrayOutputStream());
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
+        assertEquals(1000, response.getHeaders().getContentLength());
+        assertEquals(etag, response.getHeaders().getETag());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("no-cache, public", response.getHeaders().getCacheControl());
+        verify(objectCache).copyRange(
+                argThat(object -> KEY.equals(object.key())), eq(0L), eq(1000L), any());
+    }
+
+    /**
+     * Tests that a URL with the current version may be cached as immutable, and one with
+     * an outdated version must be revalidated.
+     */
+    @Test
+    void serve_MarksVersionedUrlsImmutable() {
+        // Act
+        ResponseEntity<StreamingResponseBody> current =
+                get(new HttpHeaders(), ObjectDownloads.version(KEY));
+        ResponseEntity<StreamingResponseBody> outdated = get(new HttpHeaders(), "0123");
+
+        // Assert
+        assertEquals("max-age=31536000, public, immutable",
+                current.getHeaders().getCacheControl());
+        assertEquals("no-cache, public", outdated.getHeaders().getCacheControl());
+    }
+
+    /**
+     * Tests that a matching If-None-Match returns 304 without reading the object store.
+     */
+    @Test
+    void serve_ReturnsNotModifiedWithoutTouchingStorage() {
+        // Arrange
+        HttpHeaders request = new HttpHeaders();
+        request.set(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + etag);
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response =
+                get(request, ObjectDownloads.version(KEY));
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(etag, response.getHeaders().getETag());
+        assertEquals("max-age=31536000, public, immutable",
+                response.getHeaders().getCacheControl());
+        assertNull(response.getBody());
+        verifyNoInteractions(minioStorageService, objectCache);
+    }
+
+    /**
+     * Tests that a HEAD request gets the headers of the object but no body.
+     */
+    @Test
+    void serve_ReturnsHeadersOnlyForHead() throws Exception {
+        // Act
+        ResponseEntity<StreamingResponseBody> response =
+                objectDownloads.serve(KEY, null, HttpMethod.HEAD, new HttpHeaders());
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1000, response.getHeaders().getContentLength());
+        assertNull(response.getBody());
+        verify(objectCache, never()).copyRange(any(), anyLong(), anyLong(), any());
+    }
+
+    /**
+     * Tests that a suffix range returns 206 with the last bytes only.
+     */
+    @Test
+    void serve_ReturnsSuffixRange() throws Exception {
+        // Arrange
+        HttpHeaders request = new HttpHeaders();
+        request.set(HttpHeaders.RANGE, "bytes=-100");
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = get(request, null);
+        response.getBody().writeTo(new ByteArrayOutputStream());
+
+        // Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 900-999/1000",
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, response.getHeaders().getContentLength());
+        verify(objectCache).copyRange(any(), eq(900L), eq(100L), any());
+    }
+
+    /**
+     * Tests that a range starting past the end of the object returns 416 without
+     * reading it.
+     */
+    @Test
+    void serve_RejectsUnsatisfiableRange() throws Exception {
+        // Arrange
+        HttpHeaders request = new HttpHeaders();
+        request.set(HttpHeaders.RANGE, "bytes=1000-");
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = get(request, null);
+
+        // Assert
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */1000", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertNull(response.getBody());
+        verify(objectCache, never()).copyRange(any(), anyLong(), anyLong(), any());
+    }
+
+    /**
+     * Tests that If-Range applies the range only while the ETag or the date matches.
+     */
+    @Test
+    void serve_AppliesRangeOnlyWhenIfRangeMatches() {
+        // Arrange
+        HttpHeaders currentDate = new HttpHeaders();
+        currentDate.set(HttpHeaders.RANGE, "bytes=0-9");
+        currentDate.setZonedDateTime(HttpHeaders.IF_RANGE, LAST_MODIFIED.atZone(ZoneOffset.UTC));
+
+        // Act & Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, get(rangeRequest(etag), null).getStatusCode());
+        assertEquals(HttpStatus.OK, get(rangeRequest("\"old\""), null).getStatusCode());
+        assertEquals(HttpStatus.OK, get(rangeRequest("W/" + etag), null).getStatusCode());
+        assertEquals(HttpStatus.PARTIAL_CONTENT, get(currentDate, null).getStatusCode());
+    }
+
+    /**
+     * Tests that invalid or multiple ranges are ignored and the whole object is sent.
+     */
+    @Test
+    void serve_IgnoresInvalidAndMultipleRanges() {
+        // Arrange
+        HttpHeaders invalid = new HttpHeaders();
+        invalid.set(HttpHeaders.RANGE, "pages=1-2");
+        HttpHeaders multiple = new HttpHeaders();
+        multiple.set(HttpHeaders.RANGE, "bytes=0-9,20-29");
+
+        // Act & Assert
+        assertEquals(HttpStatus.OK, get(invalid, null).getStatusCode());
+        assertEquals(HttpStatus.OK, get(multiple, null).getStatusCode());
+    }
+
+    /**
+     * Tests that with presigned downloads enabled, a request is redirected to MinIO
+     * without reading the object, and that only versioned redirects may be cached.
+     */
+    @Test
+    void serve_RedirectsToPresignedUrlWhenEnabled() {
+        // Arrange
+        ObjectDownloads redirecting =
+                new ObjectDownloads(minioStorageService, objectCache, true, Duration.ofMinutes(10));
+        when(minioStorageService.presignedDownloadUrl(eq(KEY), eq(Duration.ofMinutes(10)), any()))
+                .thenReturn("http://minio.example/files/divelogs/1/a.png?X-Amz-Signature=s");
+
+        // Act
+        ResponseEntity<StreamingResponseBody> versioned = redirecting.serve(
+                KEY, ObjectDownloads.version(KEY), HttpMethod.GET, new HttpHeaders());
+        ResponseEntity<StreamingResponseBody> unversioned =
+                redirecting.serve(KEY, null, HttpMethod.GET, new HttpHeaders());
+
+        // Assert
+        assertEquals(HttpStatus.FOUND, versioned.getStatusCode());
+        assertEquals("http://minio.example/files/divelogs/1/a.png?X-Amz-Signature=s",
+                versioned.getHeaders().getLocation().toString());
+        assertEquals("max-age=300, public", versioned.getHeaders().getCacheControl());
+        assertNull(versioned.getHeaders().getETag());
+        assertEquals("no-store", unversioned.getHeaders().getCacheControl());
+        verify(minioStorageService).presignedDownloadUrl(KEY, Duration.ofMinutes(10),
+                "max-age=31536000, public, immutable");
+        verify(objectCache, never()).stat(any());
+    }
+
+    /**
+     * Tests that a requested variant is served under its own key and ETag, and is
+     * immutable under the version of the original upload.
+     */
+    @Test
+    void serveImage_ServesVariantOnceGenerated() {
+        // Arrange
+        String thumb = ImageVariant.THUMB.keyOf(KEY);
+        when(objectCache.stat(thumb))
+                .thenReturn(new StoredObject(thumb, 100, "image/jpeg", LAST_MODIFIED));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = objectDownloads.serveImage(
+                new StoredImage(KEY, true), ImageVariant.THUMB, ObjectDownloads.version(KEY),
+                HttpMethod.GET, new HttpHeaders());
+
+        // Assert
+        assertEquals("divelogs/1/a-thumb.jpg", thumb);
+        assertEquals(MediaType.IMAGE_JPEG, response.getHeaders().getContentType());
+        assertEquals("\"" + ObjectDownloads.version(thumb) + "\"", response.getHeaders().getETag());
+        assertEquals("max-age=31536000, public, immutable",
+                response.getHeaders().getCacheControl());
+    }
+
+    /**
+     * Tests that an image requested without a size is served as its metadata-free
+     * {@code FULL} variant once the variants exist, never as the original upload.
+     */
+    @Test
+    void serveImage_ServesFullVariantWithoutSize() {
+        // Arrange
+        String full = ImageVariant.FULL.keyOf(KEY);
+        when(objectCache.stat(full))
+                .thenReturn(new StoredObject(full, 100, "image/jpeg", LAST_MODIFIED));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = objectDownloads.serveImage(
+                new StoredImage(KEY, true), null, ObjectDownloads.version(KEY),
+                HttpMethod.GET, new HttpHeaders());
+
+        // Assert
+        assertEquals(MediaType.IMAGE_JPEG, response.getHeaders().getContentType());
+        assertEquals("\"" + ObjectDownloads.version(full) + "\"", response.getHeaders().getETag());
+        assertEquals("max-age=31536000, public, immutable",
+                response.getHeaders().getCacheControl());
+        verify(objectCache, never()).stat(KEY);
+    }
+
+    /**
+     * Tests that the original, which may carry EXIF metadata, is neither sent nor
+     * redirected to while the variants do not exist yet.
+     */
+    @Test
+    void serveImage_NeverSendsOriginal() {
+        // Act & Assert
+        ImageNotReadyException ex = assertThrows(ImageNotReadyException.class, () ->
+                objectDownloads.serveImage(new StoredImage(KEY, false), null,
+                        ObjectDownloads.version(KEY), HttpMethod.GET, new HttpHeaders()));
+        assertTrue(ex.getRetryAfterSeconds() > 0);
+        verifyNoInteractions(objectCache, minioStorageService);
+    }
+
+    /**
+     * Tests that an object that is not an accepted image type, such as an SVG stored
+     * before types were checked, is sent as an opaque attachment.
+     */
+    @Test
+    void serve_SendsOtherTypesAsAttachment() {
+        // Arrange
+        String svg = "divelogs/1/b.svg";
+        when(objectCache.stat(svg))
+                .thenReturn(new StoredObject(svg, 100, "image/svg+xml", LAST_MODIFIED));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response =
+                objectDownloads.serve(svg, null, HttpMethod.GET, new HttpHeaders());
+
+        // Assert
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, response.getHeaders().getContentType());
+        assertTrue(response.getHeaders().getContentDisposition().isAttachment());
+        assertEquals("nosniff", response.getHeaders().getFirst("X-Content-Type-Options"));
+    }
+
+    private ResponseEntity<StreamingResponseBody> get(HttpHeaders request, String version) {
+        return objectDownloads.serve(KEY, version, HttpMethod.GET, request);
+    }
+
+    private static HttpHeaders rangeRequest(String ifRange) {
+        HttpHeaders request = new HttpHeaders();
+        request.set(HttpHeaders.RANGE, "bytes=0-9");
+        request.set(HttpHeaders.IF_RANGE, ifRange);
+        return request;
+    }
+}
@@ -0,0 +1,153 @@
+package com.lucap.scubakeep.storage;
+
+import com.lucap.scubakeep.dto.ImageUploadRequestDTO;
+import com.lucap.scubakeep.dto.ImageUploadResponseDTO;
+import com.lucap.scubakeep.exception.InvalidFileTypeException;
+import com.lucap.scubakeep.exception.InvalidUploadException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test suite for the {@link PresignedUploads} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class PresignedUploadsTest {
+
+    private static final String PREFIX = "divelogs/1/";
+
+    @Mock
+    private MinioStorageService minioStorageService;
+
+    private PresignedUploads presignedUploads;
+
+    /**
+     * Creates the component with a 10 minute expiry and a 1 MB size limit.
+     */
+    @BeforeEach
+    void setUp() {
+        presignedUploads = new PresignedUploads(
+                minioStorageService, Duration.ofMinutes(10), DataSize.ofMegabytes(1));
+    }
+
+    /**
+     * Tests that an upload URL is issued for a fresh key under the prefix, keeping
+     * the file's extension.
+     */
+    @Test
+    void issue_ReturnsUrlForNewKey() {
+        // Arrange
+        when(minioStorageService.presignedUploadUrl(any(), eq(Duration.ofMinutes(10))))
+                .thenReturn("http://minio.example/upload");
+
+        // Act
+        ImageUploadResponseDTO result =
+                presignedUploads.issue(PREFIX, request("image/png", 1024L, "reef.png"));
+
+        // Assert
+        assertEquals("http://minio.example/upload", result.getUploadUrl());
+        assertTrue(result.getObjectKey().startsWith(PREFIX));
+        assertTrue(result.getObjectKey().endsWith(".png"));
+        assertTrue(result.getExpiresAt().isAfter(Instant.now()));
+    }
+
+    /**
+     * Tests that no URL is issued for a declared non-image or SVG type or an oversized
+     * image.
+     */
+    @Test
+    void issue_RejectsNonImagesAndOversizedImages() {
+        // Act & Assert
+        assertThrows(InvalidFileTypeException.class, () ->
+                presignedUploads.issue(PREFIX, request("application/pdf", 1024L, "a.pdf")));
+        assertThrows(InvalidFileTypeException.class, () ->
+                presignedUploads.issue(PREFIX, request("image/svg+xml", 1024L, "a.svg")));
+        assertThrows(InvalidUploadException.class, () ->
+                presignedUploads.issue(PREFIX, request("image/png", 2_000_000L, "a.png")));
+        verifyNoInteractions(minioStorageService);
+    }
+
+    /**
+     * Tests that an uploaded image under the prefix is confirmed.
+     */
+    @Test
+    void confirm_ReturnsUploadedImage() {
+        // Arrange
+        StoredObject image = new StoredObject(PREFIX + "a.png", 1024, "image/png", Instant.now());
+        when(minioStorageService.find(PREFIX + "a.png")).thenReturn(Optional.of(image));
+
+        // Act
+        StoredObject result = presignedUploads.confirm(PREFIX, PREFIX + "a.png");
+
+        // Assert
+        assertSame(image, result);
+        verify(minioStorageService, never()).delete(any());
+    }
+
+    /**
+     * Tests that keys outside the resource's prefix, or nested below it, are refused
+     * without looking them up.
+     */
+    @Test
+    void confirm_RejectsForeignKeys() {
+        // Act & Assert
+        assertThrows(InvalidUploadException.class, () ->
+                presignedUploads.confirm(PREFIX, "divelogs/2/a.png"));
+        assertThrows(InvalidUploadException.class, () ->
+                presignedUploads.confirm(PREFIX, PREFIX + "../2/a.png"));
+        verifyNoInteractions(minioStorageService);
+    }
+
+    /**
+     * Tests that confirming an object that was never uploaded fails.
+     */
+    @Test
+    void confirm_RejectsMissingObject() {
+        // Arrange
+        when(minioStorageService.find(PREFIX + "a.png")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(InvalidUploadException.class, () ->
+                presignedUploads.confirm(PREFIX, PREFIX + "a.png"));
+    }
+
+    /**
+     * Tests that an uploaded object which is not an image, or too large, is deleted.
+     */
+    @Test
+    void confirm_DeletesRejectedObjects() {
+        // Arrange
+        when(minioStorageService.find(PREFIX + "a.png")).thenReturn(Optional.of(
+                new StoredObject(PREFIX + "a.png", 1024, "text/html", Instant.now())));
+        when(minioStorageService.find(PREFIX + "b.png")).thenReturn(Optional.of(
+                new StoredObject(PREFIX + "b.png", 5_000_000, "image/png", Instant.now())));
+
+        // Act & Assert
+        assertThrows(InvalidFileTypeException.class, () ->
+                presignedUploads.confirm(PREFIX, PREFIX + "a.png"));
+        assertThrows(InvalidUploadException.class, () ->
+                presignedUploads.confirm(PREFIX, PREFIX + "b.png"));
+        verify(minioStorageService).delete(PREFIX + "a.png");
+        verify(minioStorageService).delete(PREFIX + "b.png");
+    }
+
+    private static ImageUploadRequestDTO request(String contentType, Long size, String name) {
+        ImageUploadRequestDTO dto = new ImageUploadRequestDTO();
+        dto.setContentType(contentType);
+        dto.setSize(size);
+        dto.setFileName(name);
+        return dto;
+    }
+}
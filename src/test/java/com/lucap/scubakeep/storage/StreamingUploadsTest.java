@@ -0,0 +1,374 @@
+package com.lucap.scubakeep.storage;
+
+import com.lucap.scubakeep.exception.InvalidFileTypeException;
+import com.lucap.scubakeep.exception.InvalidUploadException;
+import com.lucap.scubakeep.exception.StorageOperationException;
+import com.lucap.scubakeep.exception.UploadTooLargeException;
+import com.lucap.scubakeep.exception.UploadsOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test suite for the {@link StreamingUploads} class, with 5 MiB parts, a 12 MiB
+ * limit and MinIO mocked.
+ */
+class StreamingUploadsTest {
+
+    private static final int MIB = 1024 * 1024;
+    private static final int BUFFERS = 3;
+
+    private MinioStorageService minioStorageService;
+    private SimpleMeterRegistry meterRegistry;
+    private StreamingUploads streamingUploads;
+
+    @BeforeEach
+    void setUp() {
+        minioStorageService = mock(MinioStorageService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        streamingUploads = uploads(BUFFERS, Duration.ofSeconds(30), Duration.ofSeconds(10));
+        lenient().when(minioStorageService.createMultipartUpload(anyString(), anyString()))
+                .thenReturn("upload-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamingUploads.close();
+    }
+
+    /**
+     * Tests that a body smaller than a part is stored with a single PUT of known length,
+     * under a new key carrying the content type's extension.
+     */
+    @Test
+    void upload_StoresSmallBodyWithSinglePut() {
+        // Act
+        StoredObject stored = streamingUploads.upload("divelogs/1/",
+                new ByteArrayInputStream(new byte[1000]), "image/png", -1);
+
+        // Assert
+        assertTrue(stored.key().matches("divelogs/1/[0-9a-f-]{36}\\.png"), stored.key());
+        assertEquals(1000, stored.size());
+        verify(minioStorageService).upload(eq(stored.key()), any(), eq(1000L), eq("image/png"));
+        verify(minioStorageService, never()).createMultipartUpload(anyString(), anyString());
+        assertEquals(BUFFERS, freeBuffers());
+    }
+
+    /**
+     * Tests that a body ending within the first part is stored with a single PUT from
+     * the upload's own buffer, without taking a part buffer.
+     */
+    @Test
+    void upload_TakesNoPartBufferForSinglePut() {
+        // Arrange
+        CountingStream small = new CountingStream(new byte[1000]);
+        CountingStream larger = new CountingStream(new byte[5 * MIB - 1]);
+
+        // Act
+        streamingUploads.upload("divelogs/1/", small, "image/png", -1);
+        streamingUploads.upload("divelogs/1/", larger, "image/png", -1);
+
+        // Assert
+        assertEquals(BUFFERS, small.fewestFreeBuffers);
+        assertEquals(BUFFERS, larger.fewestFreeBuffers);
+        verify(minioStorageService).upload(anyString(), any(), eq(1000L), eq("image/png"));
+        verify(minioStorageService).upload(anyString(), any(), eq(5L * MIB - 1),
+                eq("image/png"));
+        verify(minioStorageService, never()).createMultipartUpload(anyString(), anyString());
+        assertEquals(BUFFERS, freeBuffers());
+    }
+
+    /**
+     * Tests that a client still sending its first part holds no part buffer.
+     */
+    @Test
+    void upload_HoldsNoPartBufferWhileClientSends() {
+        // Arrange
+        streamingUploads.close();
+        meterRegistry = new SimpleMeterRegistry();
+        streamingUploads = uploads(BUFFERS, Duration.ofMillis(200), Duration.ofSeconds(10));
+        SlowStream slow = new SlowStream();
+        InputStream body = new SequenceInputStream(
+                new ByteArrayInputStream(new byte[MIB]), slow);
+
+        // Act
+        assertThrows(InvalidUploadException.class, () ->
+                streamingUploads.upload("divelogs/1/", body, "image/png", -1));
+
+        // Assert
+        assertEquals(BUFFERS, slow.fewestFreeBuffers);
+        verifyNoInteractions(minioStorageService);
+    }
+
+    /**
+     * Tests that a read taking longer than the idle timeout fails the upload.
+     */
+    @Test
+    void upload_FailsWhenReadExceedsIdleTimeout() {
+        // Arrange
+        streamingUploads.close();
+        meterRegistry = new SimpleMeterRegistry();
+        streamingUploads = uploads(BUFFERS, Duration.ofSeconds(30), Duration.ofMillis(5));
+
+        // Act & Assert
+        InvalidUploadException ex = assertThrows(InvalidUploadException.class, () ->
+                streamingUploads.upload("divelogs/1/", new SlowStream(), "image/png", -1));
+        assertTrue(ex.getMessage().startsWith("No upload data received"), ex.getMessage());
+        assertEquals(1, meterRegistry.get("storage.uploads.timeouts").counter().count());
+        verifyNoInteractions(minioStorageService);
+    }
+
+    /**
+     * Tests that an upload finding every part buffer in use past the buffer timeout
+     * is rejected as overloaded, and aborted.
+     */
+    @Test
+    void upload_RejectsWhenNoPartBufferBecomesFree() {
+        // Arrange
+        streamingUploads.close();
+        meterRegistry = new SimpleMeterRegistry();
+        streamingUploads = uploads(1, Duration.ofSeconds(30), Duration.ofSeconds(10));
+        when(minioStorageService.uploadPart(anyString(), anyString(), anyInt(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(1000);
+                    return "etag-" + invocation.getArgument(2);
+                });
+
+        // Act & Assert
+        assertThrows(UploadsOverloadedException.class, () ->
+                streamingUploads.upload("divelogs/1/",
+                        new ByteArrayInputStream(new byte[11 * MIB]), "image/png", -1));
+        verify(minioStorageService).abortMultipartUpload(anyString(), eq("upload-1"));
+        assertEquals(1, freeBuffers());
+    }
+
+    /**
+     * Tests that a body still arriving after the read timeout fails the upload, aborts
+     * it and returns every buffer.
+     */
+    @Test
+    void upload_AbortsWhenBodyArrivesTooSlowly() {
+        // Arrange
+        streamingUploads.close();
+        meterRegistry = new SimpleMeterRegistry();
+        streamingUploads = uploads(BUFFERS, Duration.ofMillis(200), Duration.ofSeconds(10));
+        when(minioStorageService.uploadPart(anyString(), anyString(), anyInt(), any(), anyInt()))
+                .thenAnswer(invocation -> "etag-" + invocation.getArgument(2));
+        InputStream body = new SequenceInputStream(
+                new ByteArrayInputStream(new byte[6 * MIB]), new SlowStream());
+
+        // Act & Assert
+        InvalidUploadException ex = assertThrows(InvalidUploadException.class, () ->
+                streamingUploads.upload("divelogs/1/", body, "image/png", -1));
+        assertTrue(ex.getMessage().contains("not received within"), ex.getMessage());
+        verify(minioStorageService).abortMultipartUpload(startsWith("divelogs/1/"),
+                eq("upload-1"));
+        verify(minioStorageService, never()).completeMultipartUpload(any(), any(), any());
+        assertEquals(1, meterRegistry.get("storage.uploads.timeouts").counter().count());
+        assertEquals(BUFFERS, freeBuffers());
+    }
+
+    /**
+     * Tests that an SVG body is rejected before it is read, and that an accepted type
+     * is stored without its parameters.
+     */
+    @Test
+    void upload_AcceptsOnlyRasterImageTypes() {
+        // Arrange
+        EndlessStream body = new EndlessStream();
+
+        // Act & Assert
+        assertThrows(InvalidFileTypeException.class, () ->
+                streamingUploads.upload("divelogs/1/", body, "image/svg+xml", -1));
+        assertEquals(0, body.read);
+        StoredObject stored = streamingUploads.upload("divelogs/1/",
+                new ByteArrayInputStream(new byte[10]), "Image/WEBP; q=1", -1);
+        assertTrue(stored.key().endsWith(".webp"), stored.key());
+        verify(minioStorageService).upload(eq(stored.key()), any(), eq(10L), eq("image/webp"));
+    }
+
+    /**
+     * Tests that a larger body is sent as parts of the configured size, two of them at
+     * the same time, and that the upload is completed with their ETags in order.
+     */
+    @Test
+    void upload_SendsLargeBodyInParallelParts() {
+        // Arrange
+        CountDownLatch bothSending = new CountDownLatch(2);
+        AtomicBoolean parallel = new AtomicBoolean(true);
+        Map<Integer, Integer> lengths = new ConcurrentHashMap<>();
+        when(minioStorageService.uploadPart(anyString(), eq("upload-1"), anyInt(), any(),
+                anyInt())).thenAnswer(invocation -> {
+                    int partNumber = invocation.getArgument(2);
+                    lengths.put(partNumber, invocation.getArgument(4));
+                    if (partNumber <= 2) {
+                        bothSending.countDown();
+                        parallel.compareAndSet(true, bothSending.await(5, TimeUnit.SECONDS));
+                    }
+                    return "etag-" + partNumber;
+                });
+
+        // Act
+        StoredObject stored = streamingUploads.upload("divelogs/1/",
+                new ByteArrayInputStream(new byte[11 * MIB]), "image/jpeg", 11 * MIB);
+
+        // Assert
+        assertTrue(parallel.get(), "the first two parts were sent at the same time");
+        assertEquals(Map.of(1, 5 * MIB, 2, 5 * MIB, 3, MIB), lengths);
+        verify(minioStorageService).completeMultipartUpload(stored.key(), "upload-1",
+                List.of("etag-1", "etag-2", "etag-3"));
+        assertEquals(11 * MIB, stored.size());
+        assertEquals(3, meterRegistry.get("storage.uploads.parts").counter().count());
+        assertEquals(BUFFERS, freeBuffers());
+    }
+
+    /**
+     * Tests that a body of unknown length is rejected as soon as it crosses the limit,
+     * without reading further, and that its multipart upload is aborted.
+     */
+    @Test
+    void upload_RejectsBodyCrossingLimitMidStream() {
+        // Arrange
+        EndlessStream body = new EndlessStream();
+        when(minioStorageService.uploadPart(anyString(), anyString(), anyInt(), any(), anyInt()))
+                .thenAnswer(invocation -> "etag-" + invocation.getArgument(2));
+
+        // Act & Assert
+        assertThrows(UploadTooLargeException.class, () ->
+                streamingUploads.upload("divelogs/1/", body, "image/png", -1));
+        assertEquals(12L * MIB + 1, body.read);
+        verify(minioStorageService).abortMultipartUpload(startsWith("divelogs/1/"),
+                eq("upload-1"));
+        verify(minioStorageService, never()).completeMultipartUpload(any(), any(), any());
+        assertEquals(1, meterRegistry.get("storage.uploads.rejected").counter().count());
+        assertEquals(BUFFERS, freeBuffers());
+    }
+
+    /**
+     * Tests that a declared length above the limit is rejected before the body is read.
+     */
+    @Test
+    void upload_RejectsDeclaredLengthWithoutReading() {
+        // Arrange
+        EndlessStream body = new EndlessStream();
+
+        // Act & Assert
+        assertThrows(UploadTooLargeException.class, () ->
+                streamingUploads.upload("divelogs/1/", body, "image/png", 13L * MIB));
+        assertEquals(0, body.read);
+        verifyNoInteractions(minioStorageService);
+    }
+
+    /**
+     * Tests that a failed part fails the upload, aborts it and returns every buffer.
+     */
+    @Test
+    void upload_AbortsWhenPartFails() {
+        // Arrange
+        when(minioStorageService.uploadPart(anyString(), anyString(), anyInt(), any(), anyInt()))
+                .thenThrow(new StorageOperationException("divelogs/1/a.png"));
+
+        // Act & Assert
+        assertThrows(StorageOperationException.class, () ->
+                streamingUploads.upload("divelogs/1/",
+                        new ByteArrayInputStream(new byte[11 * MIB]), "image/png", -1));
+        verify(minioStorageService).abortMultipartUpload(anyString(), eq("upload-1"));
+        verify(minioStorageService, never()).completeMultipartUpload(any(), any(), any());
+        assertEquals(BUFFERS, freeBuffers());
+    }
+
+    private StreamingUploads uploads(int buffers, Duration readTimeout, Duration idleTimeout) {
+        return new StreamingUploads(minioStorageService, DataSize.ofMegabytes(5),
+                DataSize.ofMegabytes(12), 2, buffers, Duration.ofMillis(200), readTimeout,
+                idleTimeout, meterRegistry);
+    }
+
+    private double freeBuffers() {
+        return meterRegistry.get("storage.uploads.buffers.free").gauge().value();
+    }
+
+    /**
+     * A body that never ends, counting the bytes read from it.
+     */
+    private static final class EndlessStream extends InputStream {
+
+        private long read;
+
+        @Override
+        public int read() {
+            read++;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            read += length;
+            return length;
+        }
+    }
+
+    /**
+     * A body recording the fewest free part buffers seen while it was read.
+     */
+    private final class CountingStream extends ByteArrayInputStream {
+
+        private double fewestFreeBuffers = Double.MAX_VALUE;
+
+        private CountingStream(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            fewestFreeBuffers = Math.min(fewestFreeBuffers, freeBuffers());
+            return super.read(buffer, offset, length);
+        }
+    }
+
+    /**
+     * A body that never ends, sending one byte every 10 ms and recording the fewest
+     * free part buffers seen meanwhile.
+     */
+    private final class SlowStream extends InputStream {
+
+        private double fewestFreeBuffers = Double.MAX_VALUE;
+
+        @Override
+        public int read() {
+            fewestFreeBuffers = Math.min(fewestFreeBuffers, freeBuffers());
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            buffer[offset] = (byte) read();
+            return 1;
+        }
+    }
+}